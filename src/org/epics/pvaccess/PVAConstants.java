@@ -92,6 +92,11 @@ public interface PVAConstants {
 	 */
 	public static final int MAX_CHANNEL_NAME_LENGTH = 500;
 	
+	/**
+	 * Max number of channels in one create channel request.
+	 */
+	public static final int MAX_CREATE_CHANNEL_BATCH_SIZE = 1024;
+	
     /**
      * Invalid IOID.
      */
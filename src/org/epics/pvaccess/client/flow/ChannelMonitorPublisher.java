@@ -0,0 +1,261 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.client.flow;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.epics.pvaccess.PVAException;
+import org.epics.pvaccess.client.Channel;
+import org.epics.pvdata.monitor.Monitor;
+import org.epics.pvdata.monitor.MonitorElement;
+import org.epics.pvdata.monitor.MonitorRequester;
+import org.epics.pvdata.pv.MessageType;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * <code>MonitorPublisher</code> implementation on top of <code>Channel.createMonitor</code>.
+ * Elements are polled from the monitor queue only while there is a demand, and released
+ * as soon as <code>onNext</code> returns. For pipelined monitors (<code>record[pipeline=true]</code>)
+ * released elements are what gives credits back to the server, i.e. <code>request(n)</code> drives
+ * server's flow control and there is no unbounded buffering anywhere: at most <code>queueSize</code>
+ * elements are buffered on the client and the server stops sending (or merges updates) when the
+ * subscriber does not request more.
+ * Without pipelining, the backpressure ends at the client queue (overrun updates get merged).
+ */
+public class ChannelMonitorPublisher implements MonitorPublisher {
+
+	private final Channel channel;
+	private final PVStructure pvRequest;
+
+	/**
+	 * Constructor.
+	 * @param channel channel to monitor.
+	 * @param pvRequest monitor pvRequest, use <code>record[pipeline=true]</code> for end-to-end backpressure.
+	 */
+	public ChannelMonitorPublisher(Channel channel, PVStructure pvRequest)
+	{
+		if (channel == null)
+			throw new IllegalArgumentException("channel == null");
+		if (pvRequest == null)
+			throw new IllegalArgumentException("pvRequest == null");
+
+		this.channel = channel;
+		this.pvRequest = pvRequest;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.client.flow.MonitorPublisher#subscribe(org.epics.pvaccess.client.flow.MonitorSubscriber)
+	 */
+	@Override
+	public void subscribe(MonitorSubscriber subscriber) {
+		if (subscriber == null)
+			throw new IllegalArgumentException("subscriber == null");
+
+		final SubscriptionImpl subscription = new SubscriptionImpl(subscriber);
+		subscriber.onSubscribe(subscription);
+		subscription.connect();
+	}
+
+	private final class SubscriptionImpl implements MonitorSubscription, MonitorRequester {
+
+		private final MonitorSubscriber subscriber;
+
+		private final AtomicLong demand = new AtomicLong();
+		// drain loop "work in progress" counter, only one thread delivers at the time
+		private final AtomicInteger wip = new AtomicInteger();
+
+		private volatile Monitor monitor = null;
+		private volatile boolean cancelled = false;
+		private volatile boolean completed = false;
+		private volatile Throwable error = null;
+		private boolean terminated = false;
+
+		SubscriptionImpl(MonitorSubscriber subscriber)
+		{
+			this.subscriber = subscriber;
+		}
+
+		void connect()
+		{
+			if (cancelled)
+				return;
+
+			try {
+				final Monitor monitor = channel.createMonitor(this, pvRequest);
+				// monitorConnect could have been already called
+				if (this.monitor == null)
+					this.monitor = monitor;
+			} catch (Throwable th) {
+				terminate(th);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.flow.MonitorSubscription#request(long)
+		 */
+		@Override
+		public void request(long n) {
+			if (n <= 0)
+			{
+				terminate(new IllegalArgumentException("non-positive request: " + n));
+				return;
+			}
+
+			while (true)
+			{
+				final long current = demand.get();
+				long next = current + n;
+				// overflow, unbounded demand
+				if (next < 0)
+					next = Long.MAX_VALUE;
+				if (demand.compareAndSet(current, next))
+					break;
+			}
+
+			drain();
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.flow.MonitorSubscription#cancel()
+		 */
+		@Override
+		public void cancel() {
+			if (cancelled)
+				return;
+			cancelled = true;
+
+			final Monitor monitor = this.monitor;
+			if (monitor != null)
+				monitor.destroy();
+		}
+
+		private void terminate(Throwable throwable)
+		{
+			error = throwable;
+			cancel();
+			drain();
+		}
+
+		private void drain()
+		{
+			if (wip.getAndIncrement() != 0)
+				return;
+
+			int missed = 1;
+			while (true)
+			{
+				deliver();
+
+				missed = wip.addAndGet(-missed);
+				if (missed == 0)
+					return;
+			}
+		}
+
+		/**
+		 * Called only by the thread that owns the drain loop.
+		 */
+		private void deliver()
+		{
+			if (terminated)
+				return;
+
+			final Throwable error = this.error;
+			if (error != null)
+			{
+				terminated = true;
+				subscriber.onError(error);
+				return;
+			}
+
+			final Monitor monitor = this.monitor;
+			while (monitor != null && !cancelled && demand.get() > 0)
+			{
+				final MonitorElement element = monitor.poll();
+				if (element == null)
+					break;
+
+				try {
+					if (demand.get() != Long.MAX_VALUE)
+						demand.decrementAndGet();
+					subscriber.onNext(element);
+				} catch (Throwable th) {
+					// subscriber violated the contract, stop delivering
+					terminated = true;
+					cancel();
+					return;
+				} finally {
+					monitor.release(element);
+				}
+			}
+
+			if (completed && !cancelled)
+			{
+				terminated = true;
+				subscriber.onComplete();
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.monitor.MonitorRequester#monitorConnect(org.epics.pvdata.pv.Status, org.epics.pvdata.monitor.Monitor, org.epics.pvdata.pv.Structure)
+		 */
+		@Override
+		public void monitorConnect(Status status, Monitor monitor, Structure structure) {
+			if (!status.isSuccess())
+			{
+				terminate(new PVAException(status.getMessage()));
+				return;
+			}
+
+			this.monitor = monitor;
+			if (cancelled)
+			{
+				monitor.destroy();
+				return;
+			}
+
+			final Status startStatus = monitor.start();
+			if (!startStatus.isSuccess())
+				terminate(new PVAException(startStatus.getMessage()));
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.monitor.MonitorRequester#monitorEvent(org.epics.pvdata.monitor.Monitor)
+		 */
+		@Override
+		public void monitorEvent(Monitor monitor) {
+			drain();
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.monitor.MonitorRequester#unlisten(org.epics.pvdata.monitor.Monitor)
+		 */
+		@Override
+		public void unlisten(Monitor monitor) {
+			completed = true;
+			drain();
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.pv.Requester#getRequesterName()
+		 */
+		@Override
+		public String getRequesterName() {
+			return getClass().getName();
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.pv.Requester#message(java.lang.String, org.epics.pvdata.pv.MessageType)
+		 */
+		@Override
+		public void message(String message, MessageType messageType) {
+			// noop
+		}
+	}
+}
@@ -0,0 +1,20 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.client.flow;
+
+/**
+ * Publisher of monitor updates, shaped after (and trivially adaptable to)
+ * <code>java.util.concurrent.Flow.Publisher</code> and Reactive Streams <code>Publisher</code>.
+ */
+public interface MonitorPublisher {
+
+	/**
+	 * Subscribe, each subscriber gets its own (independent) monitor.
+	 * <code>MonitorSubscriber.onSubscribe</code> is called before this method returns.
+	 * @param subscriber subscriber to subscribe.
+	 */
+	void subscribe(MonitorSubscriber subscriber);
+}
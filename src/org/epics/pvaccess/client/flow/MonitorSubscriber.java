@@ -0,0 +1,40 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.client.flow;
+
+import org.epics.pvdata.monitor.MonitorElement;
+
+/**
+ * Subscriber of monitor updates, shaped after <code>java.util.concurrent.Flow.Subscriber</code>.
+ * Callbacks of one subscription are never called concurrently.
+ */
+public interface MonitorSubscriber {
+
+	/**
+	 * Called once, before any other callback.
+	 * No updates are delivered until <code>MonitorSubscription.request</code> is called.
+	 * @param subscription the subscription.
+	 */
+	void onSubscribe(MonitorSubscription subscription);
+
+	/**
+	 * Next update. Element is (re)used by the monitor queue and is valid only until this method returns,
+	 * data that is needed afterwards must be copied.
+	 * @param element monitor element.
+	 */
+	void onNext(MonitorElement element);
+
+	/**
+	 * Monitor failed (e.g. could not be created), no further callbacks will be called.
+	 * @param throwable failure cause.
+	 */
+	void onError(Throwable throwable);
+
+	/**
+	 * Monitor was destroyed by the server, no further callbacks will be called.
+	 */
+	void onComplete();
+}
@@ -0,0 +1,24 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.client.flow;
+
+/**
+ * Subscription of a <code>MonitorSubscriber</code>, shaped after <code>java.util.concurrent.Flow.Subscription</code>.
+ */
+public interface MonitorSubscription {
+
+	/**
+	 * Request (more) updates.
+	 * @param n number of updates to add to the current demand, must be &gt; 0.
+	 */
+	void request(long n);
+
+	/**
+	 * Cancel the subscription, i.e. destroy the monitor.
+	 * Some updates might still be delivered if they were already being delivered.
+	 */
+	void cancel();
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.client.impl.remote;
+
+/**
+ * Adaptive credit-based flow control of a pipelined monitor (<code>record._options.pipeline=adaptive</code>).
+ * Instead of granting static <code>queueSize</code> credits and acking every <code>ackAny</code> released elements,
+ * the window of outstanding credits (granted, but not yet received) is auto-tuned (similar to TCP window auto-tuning):
+ * <ul>
+ * <li>if the server runs out of credits while the consumer keeps up, the window is doubled (up to <code>queueSize</code>);</li>
+ * <li>if the consumer falls behind, the window is halved, but kept above the measured
+ * drain rate * round-trip time (bandwidth-delay product) estimate.</li>
+ * </ul>
+ * Credits granted never exceed free queue elements, so a slow consumer gets lossless backpressure.
+ * Round-trip time is measured from an ack sent to a stalled server to the next update received.
+ */
+final class AdaptiveFlowControl {
+
+	private static final int MIN_WINDOW = 2;
+
+	// EWMA smoothing factor
+	private static final double ALPHA = 0.125;
+
+	private final int maxCredits;
+
+	// guarded by this
+	private int window;
+	private int outstanding = 0;
+	private int held = 0;
+	private boolean stalled = false;
+
+	private long rttProbeTime = 0;
+	private double rtt = 0;
+
+	private long lastReleaseTime = 0;
+	private double drainRate = 0;
+
+	/**
+	 * Constructor.
+	 * @param maxCredits maximum number of credits, i.e. queue size.
+	 */
+	AdaptiveFlowControl(int maxCredits)
+	{
+		this.maxCredits = maxCredits;
+		this.window = Math.min(maxCredits, Math.max(MIN_WINDOW, maxCredits / 4));
+	}
+
+	/**
+	 * Credits granted with the (re)subscription, all previously granted credits are invalidated.
+	 * @return initial number of credits.
+	 */
+	synchronized int initialCredits()
+	{
+		outstanding = window;
+		held = 0;
+		stalled = false;
+		rttProbeTime = 0;
+		return window;
+	}
+
+	/**
+	 * Local queue was cleared (monitor (re)started), no elements are held.
+	 */
+	synchronized void queueCleared()
+	{
+		held = 0;
+	}
+
+	/**
+	 * An update was received.
+	 */
+	synchronized void received()
+	{
+		if (outstanding > 0)
+			outstanding--;
+		held++;
+
+		if (rttProbeTime != 0)
+		{
+			final double sample = (System.nanoTime() - rttProbeTime) / 1e9;
+			rtt = (rtt == 0) ? sample : (1 - ALPHA) * rtt + ALPHA * sample;
+			rttProbeTime = 0;
+		}
+
+		// server needs to wait for credits
+		if (outstanding == 0)
+			stalled = true;
+	}
+
+	/**
+	 * An element was released by the consumer.
+	 * @return <code>true</code> if credits are to be sent.
+	 */
+	synchronized boolean released()
+	{
+		if (held > 0)
+			held--;
+
+		final long now = System.nanoTime();
+		if (lastReleaseTime != 0)
+		{
+			final double interval = (now - lastReleaseTime) / 1e9;
+			if (interval > 0)
+			{
+				final double rate = 1 / interval;
+				drainRate = (drainRate == 0) ? rate : (1 - ALPHA) * drainRate + ALPHA * rate;
+			}
+		}
+		lastReleaseTime = now;
+
+		adjustWindow();
+
+		final int credits = availableCredits();
+		if (credits <= 0)
+			return false;
+
+		// do not keep stalled server waiting, otherwise batch acks
+		return outstanding == 0 || credits >= Math.max(1, window / 2);
+	}
+
+	/**
+	 * Must be called while holding this lock.
+	 */
+	private void adjustWindow()
+	{
+		if (held > window / 2)
+		{
+			// consumer falls behind, keep only what it can drain within round-trip time
+			final int bdp = (int)Math.ceil(drainRate * rtt) + 1;
+			window = Math.max(MIN_WINDOW, Math.min(maxCredits, Math.max(bdp, window / 2)));
+			stalled = false;
+		}
+		else if (stalled && held <= 1)
+		{
+			// consumer keeps up, window is the limit
+			window = Math.min(maxCredits, window * 2);
+			stalled = false;
+		}
+	}
+
+	/**
+	 * Must be called while holding this lock.
+	 */
+	private int availableCredits()
+	{
+		return Math.min(window - outstanding, maxCredits - outstanding - held);
+	}
+
+	/**
+	 * Take credits to be sent to the server.
+	 * @return number of credits granted, can be 0.
+	 */
+	synchronized int takeCredits()
+	{
+		final int credits = Math.max(0, availableCredits());
+		if (credits > 0 && outstanding == 0)
+			rttProbeTime = System.nanoTime();
+		outstanding += credits;
+		return credits;
+	}
+
+	/**
+	 * Get current window size.
+	 * @return current window size.
+	 */
+	synchronized int getWindow()
+	{
+		return window;
+	}
+}
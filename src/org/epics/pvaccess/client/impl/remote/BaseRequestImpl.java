@@ -15,6 +15,8 @@
 package org.epics.pvaccess.client.impl.remote;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.epics.pvaccess.PVFactory;
@@ -88,6 +90,11 @@ public abstract class BaseRequestImpl implements DataResponse, SubscriptionReque
 	 */
 	protected volatile boolean destroyed = false;
 	
+	/**
+	 * Destroy guard, set only once (destroy CAS).
+	 */
+	private final AtomicBoolean destroyGuard = new AtomicBoolean(false);
+	
 	/**
 	 * Remote instance destroyed.
 	 */
@@ -98,7 +105,11 @@ public abstract class BaseRequestImpl implements DataResponse, SubscriptionReque
 	 */
 	protected volatile boolean subscribed = false;
 	
-	protected int pendingRequest = NULL_REQUEST;
+	/**
+	 * Pending request (QoS), <code>NULL_REQUEST</code> if none.
+	 * Lock-free state machine: a request is started by CAS from <code>NULL_REQUEST</code>.
+	 */
+	private final AtomicInteger pendingRequest = new AtomicInteger(NULL_REQUEST);
 	/* negative... */
 	protected static final int NULL_REQUEST = -1;
 	protected static final int PURE_DESTROY_REQUEST = -2;
@@ -133,43 +144,22 @@ public abstract class BaseRequestImpl implements DataResponse, SubscriptionReque
 	}
 
 	public final boolean startRequest(int qos) {
-		synchronized (this) {
-			// we allow pure destroy and cancel...
-			if (pendingRequest != NULL_REQUEST && qos != PURE_DESTROY_REQUEST && qos != PURE_CANCEL_REQUEST)
-				return false;
-			
-			pendingRequest = qos;
-			return true;
-		}
-		
-		/*
-		if (qos == PURE_DESTROY_REQUEST)
+		// we allow pure destroy and cancel...
+		if (qos == PURE_DESTROY_REQUEST || qos == PURE_CANCEL_REQUEST)
 		{
-			pendingRequest.set(PURE_DESTROY_REQUEST);
-			return true;
-		}
-		else if (qos == PURE_CANCEL_REQUEST)
-		{
-			pendingRequest.set(PURE_CANCEL_REQUEST);
+			pendingRequest.set(qos);
 			return true;
 		}
 		else
 			return pendingRequest.compareAndSet(NULL_REQUEST, qos);
-		 */
 	}
 	
 	public final void stopRequest() {
-		synchronized (this) {
-			pendingRequest = NULL_REQUEST;
-		}
-		// pendingRequest.set(NULL_REQUEST);
+		pendingRequest.set(NULL_REQUEST);
 	}
 	
 	public final int getPendingRequest() {
-		synchronized (this) {
-			return pendingRequest;
-		}
-		// return pendingRequest.get();
+		return pendingRequest.get();
 	}
 
 	/* (non-Javadoc)
@@ -263,12 +253,9 @@ public abstract class BaseRequestImpl implements DataResponse, SubscriptionReque
 	 */
 	protected void destroy(boolean createRequestFailed) {
 		
-		synchronized (this) {
-			if (destroyed)
-				return;
-			destroyed = true;
-		}
-		// if (destroyed.getAndSet(true)) return;
+		if (destroyGuard.getAndSet(true))
+			return;
+		destroyed = true;
 
 		// unregister response request
 		context.unregisterResponseRequest(this);
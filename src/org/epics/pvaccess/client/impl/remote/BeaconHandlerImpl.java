@@ -18,7 +18,10 @@ import java.net.InetSocketAddress;
 import java.util.Arrays;
 
 import org.epics.pvaccess.impl.remote.Transport;
+import org.epics.pvdata.pv.PVDouble;
 import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVStructure;
 
 
 /**
@@ -53,6 +56,11 @@ public class BeaconHandlerImpl implements BeaconHandler {
 	 */
 	private int serverChangeCount;
 
+	/**
+	 * Server load score reported by the last beacon, <code>Double.NaN</code> if unknown.
+	 */
+	private volatile double load = Double.NaN;
+
 	/**
 	 * Constructor.
 	 * @param context context ot handle.
@@ -74,11 +82,51 @@ public class BeaconHandlerImpl implements BeaconHandler {
 							 long timestamp, byte[] guid, int sequentalID,
 							 int changeCount, PVField data)
 	{
+		load = loadScore(data);
+		
 		boolean networkChanged = updateBeacon(remoteTransportRevision, timestamp, guid, sequentalID, changeCount);
 		if (networkChanged)
 			changedTransport();
 	}
 
+	/**
+	 * Get server load score reported by the last beacon.
+	 * @return load score (lower is better), <code>Double.NaN</code> if unknown.
+	 */
+	public double getLoad() {
+		return load;
+	}
+
+	/**
+	 * Compute load score from beacon server status data
+	 * (see <code>DefaultBeaconServerDataProvider</code>).
+	 * Score is number of connections and queued requests, scaled by CPU load (if known).
+	 * @param data beacon server status data, can be <code>null</code>.
+	 * @return load score (lower is better), <code>Double.NaN</code> if status data is not available.
+	 */
+	static double loadScore(PVField data)
+	{
+		if (!(data instanceof PVStructure))
+			return Double.NaN;
+		
+		final PVStructure status = (PVStructure)data;
+		final PVField connections = status.getSubField("connections");
+		if (!(connections instanceof PVInt))
+			return Double.NaN;
+
+		double score = ((PVInt)connections).get();
+		
+		final PVField queueDepth = status.getSubField("queueDepth");
+		if (queueDepth instanceof PVInt)
+			score += ((PVInt)queueDepth).get();
+		
+		final PVField cpuLoad = status.getSubField("cpuLoad");
+		if (cpuLoad instanceof PVDouble && ((PVDouble)cpuLoad).get() >= 0)
+			score *= 1.0 + ((PVDouble)cpuLoad).get();
+		
+		return score;
+	}
+
 	/**
 	 * Update beacon.
 	 */
@@ -97,28 +145,25 @@ public class BeaconHandlerImpl implements BeaconHandler {
 			return false;
 		}
 
-		final boolean networkChange = Arrays.equals(serverGUID, guid);
+		// server restarted (new GUID)
+		final boolean networkChange = !Arrays.equals(serverGUID, guid);
 		if (networkChange)
 		{
 			// update startup time and change count 
 			serverGUID = guid;
 			serverChangeCount = changeCount;
-
 			context.newServerDetected();
-			
 			return true;
 		}
 		else if (serverChangeCount != changeCount)
 		{
-			//  change count 
+			// hosted channels changed, re-search unresolved channels (no transport change)
 			serverChangeCount = changeCount;
-
-			// TODO be more specific (possible optimizations)
 			context.newServerDetected();
-			
-			return true;
+			return false;
 		}
 		
+		// no change, searches stay on their back-off schedule
 		return false;
 	}
 
@@ -180,7 +180,7 @@ public class ChannelGetRequestImpl extends BaseRequestImpl implements ChannelGet
 	 * @see org.epics.pvaccess.client.ChannelGet#get()
 	 */
 	@Override
-	public synchronized void get() {
+	public void get() {
 		if (destroyed) {
 			callback.getDone(destroyedStatus, this, null, null);
 			return;
@@ -20,9 +20,12 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 
 import org.epics.pvaccess.PVAConstants;
 import org.epics.pvaccess.PVAException;
@@ -44,7 +47,10 @@ import org.epics.pvaccess.client.ChannelRPC;
 import org.epics.pvaccess.client.ChannelRPCRequester;
 import org.epics.pvaccess.client.ChannelRequester;
 import org.epics.pvaccess.client.GetFieldRequester;
+import org.epics.pvaccess.client.impl.remote.search.ChannelNameCache;
 import org.epics.pvaccess.client.impl.remote.search.SearchInstance;
+import org.epics.pvaccess.client.impl.remote.tcp.BlockingTCPConnector;
+import org.epics.pvaccess.impl.remote.ConnectionException;
 import org.epics.pvaccess.impl.remote.Transport;
 import org.epics.pvaccess.impl.remote.TransportClient;
 import org.epics.pvaccess.impl.remote.TransportSendControl;
@@ -52,6 +58,9 @@ import org.epics.pvaccess.impl.remote.TransportSender;
 import org.epics.pvaccess.impl.remote.request.ResponseRequest;
 import org.epics.pvaccess.impl.remote.request.SubscriptionRequest;
 import org.epics.pvaccess.impl.remote.utils.GUID;
+import org.epics.pvaccess.util.sync.ExecutorProxy;
+import org.epics.pvaccess.util.sync.SerialExecutor;
+import org.epics.pvaccess.util.sync.StripedExecutor;
 import org.epics.pvdata.misc.SerializeHelper;
 import org.epics.pvdata.misc.TimerFactory;
 import org.epics.pvdata.misc.Timer.TimerCallback;
@@ -104,14 +113,31 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 
 	/**
 	 * Connection status.
+	 * Changed only while holding this lock, read w/o locking.
 	 */
-	protected ConnectionState connectionState = ConnectionState.NEVER_CONNECTED;
+	protected volatile ConnectionState connectionState = ConnectionState.NEVER_CONNECTED;
+
+	/**
+	 * Transport of the connected channel, non-<code>null</code> only in <code>CONNECTED</code> state.
+	 * Connection state and transport published as one reference, so that request path needs no locking.
+	 */
+	private volatile Transport connectedTransport = null;
 
 	/**
 	 * Channel requester.
 	 */
 	protected final ChannelRequester requester;
 
+	/**
+	 * Executor used to deliver callbacks (in order) off the transport receive thread.
+	 */
+	private final SerialExecutor callbackExecutor;
+
+	/**
+	 * Channel requester used for callbacks, <code>requester</code> proxy if there is a callback executor.
+	 */
+	private volatile ChannelRequester callbackRequester;
+
 	/**
 	 * List of all channel's pending requests (keys are subscription IDs). 
 	 */
@@ -135,12 +161,12 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 	/**
 	 * Server transport.
 	 */
-	protected Transport transport = null;
+	protected volatile Transport transport = null;
 
 	/**
 	 * Server channel ID.
 	 */
-	protected int serverChannelID = 0xFFFFFFFF;
+	protected volatile int serverChannelID = 0xFFFFFFFF;
 
 	/**
 	 * User value used by SearchInstance.
@@ -152,6 +178,31 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 	 */
 	private GUID serverGUID = null;
 
+	/**
+	 * Name cache resolution being tried, <code>null</code> if none.
+	 */
+	private ChannelNameCache.Entry cachedResolution = null;
+
+	/**
+	 * Name cache is tried only on the first connect.
+	 */
+	private boolean nameCacheTried = false;
+
+	/**
+	 * Transport connect in progress, <code>null</code> if none.
+	 */
+	private TransportConnect pendingConnect = null;
+
+	/**
+	 * Search responses collected during server selection window, <code>null</code> if none.
+	 */
+	private ArrayList<SearchResponse> responses = null;
+
+	/**
+	 * Server selection window timer node, created on first use.
+	 */
+	private TimerNode selectionTimerNode = null;
+
 	/* ****************** */
 
 	protected ChannelImpl(ClientContextImpl context, int channelID, String name,
@@ -164,6 +215,11 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 		this.addresses = addresses;
 		this.requester = requester;
 		
+		final StripedExecutor callbackPool = context.getCallbackExecutor();
+		this.callbackExecutor = new SerialExecutor(callbackPool != null ? callbackPool.getStripe(channelID) : null);
+		this.callbackRequester = (callbackPool != null) ?
+				ExecutorProxy.create(ChannelRequester.class, requester, callbackExecutor) : requester;
+		
 		// register before issuing search request
 		context.registerChannel(this);
 		
@@ -198,7 +254,12 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 		}
 		
 		this.transport = transport;
-		this.transport.enqueueSendRequest(this);
+		if (connectionState == ConnectionState.CONNECTED)
+			connectedTransport = transport;
+		if (context.getCreateChannelBatchSize() > 1)
+			context.getCreateChannelBatcher().enqueue(transport, this);
+		else
+			this.transport.enqueueSendRequest(this);
 	}
 	
 	/**
@@ -222,12 +283,24 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 	{
 		cancel();
 		
+		final boolean serverReached = (transport != null);
 		if (transport != null)
 		{
 			transport.release(this);
 			transport = null;
 		}
 		
+		// cached resolution failed, search w/o penalty
+		if (cachedResolution != null)
+		{
+			cachedResolution = null;
+			final ChannelNameCache nameCache = context.getNameCache();
+			if (serverReached && nameCache != null)
+				nameCache.remove(name);
+			initiateSearch(false);
+			return;
+		}
+		
 		// ... and search again, with penalty
 		initiateSearch(true);
 	}
@@ -253,6 +326,15 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 			
 			addressIndex = 0;	// reset
 
+			if (cachedResolution != null)
+				cachedResolution = null;
+			else if (addresses == null && serverGUID != null && transport != null)
+			{
+				final ChannelNameCache nameCache = context.getNameCache();
+				if (nameCache != null)
+					nameCache.put(name, transport.getRemoteAddress(), serverGUID);
+			}
+
 			// TODO think what to call first
 			resubscribeSubscriptions();
 			setConnectionState(ConnectionState.CONNECTED);
@@ -310,6 +392,13 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 		// stop searching...
 		context.getChannelSearchManager().unregister(this);
 		cancel();
+		if (selectionTimerNode != null)
+			selectionTimerNode.cancel();
+		responses = null;
+		pendingConnect = null;
+
+		// destroy shared monitors, hands over wire monitor owned by this channel
+		context.getSharedMonitorRegistry().channelDestroyed(this);
 
 		disconnectPendingIO(true);
 
@@ -391,7 +480,22 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 		allowCreation = true;
 		
 		if (addresses == null)
+		{
+			// first connect, try cached resolution first
+			if (!penalize && !nameCacheTried && connectionState == ConnectionState.NEVER_CONNECTED)
+			{
+				nameCacheTried = true;
+				final ChannelNameCache nameCache = context.getNameCache();
+				cachedResolution = (nameCache != null) ? nameCache.get(name) : null;
+				if (cachedResolution != null)
+				{
+					context.getTimer().scheduleAfterDelay(timerNode, 0);
+					return;
+				}
+			}
+			
 			context.getChannelSearchManager().register(this, penalize);
+		}
 		else
 		{
 			context.getTimer().scheduleAfterDelay(timerNode,
@@ -408,6 +512,22 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 	
 	@Override
 	public void callback() {
+		// cached resolution
+		if (addresses == null)
+		{
+			final ChannelNameCache.Entry entry;
+			synchronized (this) {
+				if (connectionState == ConnectionState.DESTROYED)
+					return;
+				entry = cachedResolution;
+			}
+			
+			// NOTE: calls createChannelFailed() on failure, which falls back to search
+			if (entry != null)
+				connect(entry.getGUID(), PVAConstants.PVA_PROTOCOL_REVISION, entry.getAddress());
+			return;
+		}
+		
 		// TODO not in this timer thread !!!
 		// TODO boost when a server (from address list) is started!!! IP vs address !!!
 		int ix = addressIndex % addresses.length;
@@ -416,7 +536,7 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 			addressIndex = addresses.length*STATIC_SEARCH_MAX_MULTIPLIER;
 		
 		// NOTE: calls channelConnectFailed() on failure
-		searchResponse(dummyGUID, PVAConstants.PVA_PROTOCOL_REVISION, addresses[ix]);
+		connect(dummyGUID, PVAConstants.PVA_PROTOCOL_REVISION, addresses[ix]);
 	}
 
 	@Override
@@ -432,36 +552,185 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 		return userValue;
 	}
 
+	/**
+	 * Search response (one of the servers hosting the channel).
+	 */
+	private static final class SearchResponse {
+		final GUID guid;
+		final byte minorRevision;
+		final InetSocketAddress serverAddress;
+		
+		SearchResponse(GUID guid, byte minorRevision, InetSocketAddress serverAddress) {
+			this.guid = guid;
+			this.minorRevision = minorRevision;
+			this.serverAddress = serverAddress;
+		}
+	}
+
+	/**
+	 * Server selection window expiration, connects to the least-loaded responder.
+	 */
+	private final class ServerSelection implements TimerCallback {
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.misc.Timer.TimerCallback#callback()
+		 */
+		@Override
+		public void callback() {
+			synchronized (ChannelImpl.this) {
+				final ArrayList<SearchResponse> collected = responses;
+				responses = null;
+				if (collected == null || collected.isEmpty() ||
+					connectionState == ConnectionState.DESTROYED)
+					return;
+				
+				// least-loaded server wins, unknown load ranks last, ties go to the first responder 
+				SearchResponse selected = null;
+				double selectedLoad = Double.POSITIVE_INFINITY;
+				for (SearchResponse response : collected)
+				{
+					double load = context.getServerLoad(response.serverAddress);
+					if (Double.isNaN(load))
+						load = Double.POSITIVE_INFINITY;
+					if (selected == null || load < selectedLoad)
+					{
+						selected = response;
+						selectedLoad = load;
+					}
+				}
+				
+				connect(selected.guid, selected.minorRevision, selected.serverAddress);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.misc.Timer.TimerCallback#timerStopped()
+		 */
+		@Override
+		public void timerStopped() {
+			// noop
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.client.impl.remote.search.SearchInstance#searchResponse(org.epics.pvaccess.impl.remote.utils.GUID, byte, java.net.InetSocketAddress)
+	 */
 	@Override
 	public synchronized void searchResponse(GUID guid, byte minorRevision, InetSocketAddress serverAddress) {
 		// channel is already automatically unregistered
 		
+		final float selectionWindow = context.getServerSelectionWindow();
+		if (selectionWindow > 0 && getTransport() == null &&
+			connectionState != ConnectionState.DESTROYED)
+		{
+			// collect responses of redundant servers, connect when the window expires
+			if (responses == null)
+			{
+				responses = new ArrayList<SearchResponse>(2);
+				if (selectionTimerNode == null)
+					selectionTimerNode = TimerFactory.createNode(new ServerSelection());
+				context.getTimer().scheduleAfterDelay(selectionTimerNode, selectionWindow);
+			}
+			else
+			{
+				for (SearchResponse response : responses)
+					if (response.serverAddress.equals(serverAddress))
+						return;
+			}
+			responses.add(new SearchResponse(guid, minorRevision, serverAddress));
+			return;
+		}
+		
+		connect(guid, minorRevision, serverAddress);
+	}
+	
+	/**
+	 * Connect to the server hosting the channel.
+	 * @param guid server GUID.
+	 * @param minorRevision server minor PVA revision.
+	 * @param serverAddress server address.
+	 */
+	private synchronized void connect(GUID guid, byte minorRevision, InetSocketAddress serverAddress) {
 		Transport transport = getTransport();
-		if (transport != null)
+		final InetSocketAddress connectedTo = (transport != null) ? transport.getRemoteAddress() :
+			(pendingConnect != null) ? pendingConnect.serverAddress : null;
+		if (connectedTo != null)
 		{
 			// TODO use GUID to determine whether there are multiple servers with the same channel
 			// multiple defined PV or reconnect request (same server address)
-			if (!transport.getRemoteAddress().equals(serverAddress) &&
+			if (!connectedTo.equals(serverAddress) &&
 				!guid.equals(serverGUID))
 			{
-				requester.message("More than one channel with name '" + name +
-							 "' detected, connected to: " + transport.getRemoteAddress() + ", ignored: " + serverAddress, MessageType.warning);
+				callbackRequester.message("More than one channel with name '" + name +
+							 "' detected, connected to: " + connectedTo + ", ignored: " + serverAddress, MessageType.warning);
 				return;
 			}
 		}
 		
-		transport = context.getTransport(this, serverAddress, minorRevision, priority);
-		if (transport == null)
-		{
-			createChannelFailed();
+		// already connecting
+		if (pendingConnect != null)
 			return;
-		}
+		
+		// NOTE: callback can be called immediately (existing transport reused)
+		pendingConnect = new TransportConnect(guid, serverAddress);
+		context.getTransport(this, serverAddress, minorRevision, priority, pendingConnect);
+	}
 
-		// remember GUID
-		serverGUID = guid;
+	/**
+	 * Transport connect in progress, channel waits for it w/o blocking search processing.
+	 */
+	private final class TransportConnect implements BlockingTCPConnector.ConnectCallback {
+		final GUID guid;
+		final InetSocketAddress serverAddress;
 		
-		// create channel
-		createChannel(transport);
+		TransportConnect(GUID guid, InetSocketAddress serverAddress) {
+			this.guid = guid;
+			this.serverAddress = serverAddress;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.impl.remote.tcp.BlockingTCPConnector.ConnectCallback#transportConnected(org.epics.pvaccess.impl.remote.Transport)
+		 */
+		@Override
+		public void transportConnected(Transport transport) {
+			synchronized (ChannelImpl.this) {
+				// stale connect (channel destroyed)
+				if (pendingConnect != this || connectionState == ConnectionState.DESTROYED)
+				{
+					transport.release(ChannelImpl.this);
+					return;
+				}
+				pendingConnect = null;
+				
+				// remember GUID
+				serverGUID = guid;
+				
+				// create channel
+				createChannel(transport);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.impl.remote.tcp.BlockingTCPConnector.ConnectCallback#transportConnectFailed(org.epics.pvaccess.impl.remote.ConnectionException)
+		 */
+		@Override
+		public void transportConnectFailed(ConnectionException cause) {
+			context.getLogger().log(Level.SEVERE, "Failed to create transport for: " + serverAddress, cause);
+			
+			synchronized (ChannelImpl.this) {
+				if (pendingConnect != this || connectionState == ConnectionState.DESTROYED)
+					return;
+				pendingConnect = null;
+				
+				if (cachedResolution != null)
+				{
+					final ChannelNameCache nameCache = context.getNameCache();
+					if (nameCache != null)
+						nameCache.serverUnreachable(serverAddress);
+				}
+				createChannelFailed();
+			}
+		}
 	}
 
 	/**
@@ -469,6 +738,9 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 	 */
 	public void transportClosed() {
 //System.err.println("CHANNEL transportClosed");
+		final Transport t = transport;
+		if (t != null)
+			context.getCreateChannelBatcher().transportClosed(t);
 		disconnect(true, false);
 	}
 
@@ -521,11 +793,16 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 	{
 		if (this.connectionState != connectionState)
 		{
+			// connected transport is set only in CONNECTED state
+			if (connectionState != ConnectionState.CONNECTED)
+				connectedTransport = null;
 			this.connectionState = connectionState;
+			if (connectionState == ConnectionState.CONNECTED)
+				connectedTransport = transport;
 			
 			try
 			{
-				requester.channelStateChange(this, connectionState);
+				callbackRequester.channelStateChange(this, connectionState);
 			}
 			catch (Throwable th)
 			{
@@ -533,7 +810,7 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 				Writer writer = new StringWriter();
 				PrintWriter printWriter = new PrintWriter(writer);
 				th.printStackTrace(printWriter);
-				requester.message("Unexpected exception caught: " + writer, MessageType.fatalError);
+				callbackRequester.message("Unexpected exception caught: " + writer, MessageType.fatalError);
 			}
 		}
 	}
@@ -542,17 +819,18 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 	 * @see org.epics.pvaccess.client.Channel#getConnectionState()
 	 */
 	@Override
-	public synchronized ConnectionState getConnectionState() {
+	public ConnectionState getConnectionState() {
 		return connectionState;
 	}
 
 	/**
-	 * NOTE: synchronization guarantees that <code>transport</code> is non-<code>null</code> and <code>state == CONNECTED</code>.
+	 * NOTE: <code>connectedTransport</code> is non-<code>null</code> only if <code>state == CONNECTED</code>.
 	 * @see org.epics.pvaccess.client.Channel#getRemoteAddress()
 	 */
 	@Override
-	public synchronized String getRemoteAddress() {
-		if (connectionState != ConnectionState.CONNECTED)
+	public String getRemoteAddress() {
+		final Transport transport = connectedTransport;
+		if (transport == null)
 			return null;
 		else
 			return transport.getRemoteAddress().toString();
@@ -589,13 +867,17 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 	 * @return used transport.
 	 * @throws IllegalStateException if not connected.
 	 */
-	public synchronized final Transport checkAndGetTransport()
+	public final Transport checkAndGetTransport()
 	{
+		// w/o locking, non-null only if connected
+		final Transport transport = connectedTransport;
+		if (transport != null)
+			return transport;
+		
 		if (connectionState == ConnectionState.DESTROYED)
 			throw new IllegalStateException("Channel destroyed.");
-		else if (connectionState != ConnectionState.CONNECTED)
+		else
 			throw new IllegalStateException("Channel not connected.");
-		return transport;		// TODO transport can be null !!!!!!!!!!
 	}
 
 	/**
@@ -603,12 +885,15 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 	 * @return used transport.
 	 * @throws IllegalStateException if not connected
 	 */
-	public synchronized final Transport checkDestroyedAndGetTransport()
+	public final Transport checkDestroyedAndGetTransport()
 	{
+		// w/o locking, non-null only if connected
+		final Transport transport = connectedTransport;
+		if (transport != null)
+			return transport;
+		
 		if (connectionState == ConnectionState.DESTROYED)
 			throw new IllegalStateException("Channel destroyed.");
-		else if (connectionState == ConnectionState.CONNECTED)
-			return transport;
 		else 
 			return null;
 	}
@@ -638,7 +923,7 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 	 * Get transport used by this channel.
 	 * @return transport used by this channel.
 	 */
-	public synchronized Transport getTransport() {
+	public Transport getTransport() {
 		return transport;
 	}
 
@@ -646,7 +931,7 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 	 * Get SID.
 	 * @return SID.
 	 */
-	public synchronized int getServerChannelID() {
+	public int getServerChannelID() {
 		return serverChannelID;
 	}
 
@@ -837,16 +1122,50 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 			disconnect(false, true);
 }
 
+	/**
+	 * Set executor to deliver callbacks of this channel (channel state changes and requests created afterwards).
+	 * Callbacks are delivered in order, one at the time, regardless of the executor's threading.
+	 * Overrides context's callback executor pool.
+	 * @param executor executor to use, <code>null</code> to deliver callbacks by the transport receive thread.
+	 */
+	public void setCallbackExecutor(Executor executor) {
+		if (executor == null)
+			executor = context.getCallbackExecutor() != null ? context.getCallbackExecutor().getStripe(channelID) : null;
+		callbackExecutor.setExecutor(executor);
+		if (executor != null && callbackRequester == requester)
+			callbackRequester = ExecutorProxy.create(ChannelRequester.class, requester, callbackExecutor);
+	}
+
+	/**
+	 * Get number of callbacks waiting to be delivered.
+	 * @return number of callbacks waiting to be delivered.
+	 */
+	public int getCallbackQueueDepth() {
+		return callbackExecutor.getQueueDepth();
+	}
+
+	/**
+	 * Wrap request's requester to deliver callbacks via channel's callback executor, if any.
+	 */
+	private <T> T wrap(Class<T> requesterInterface, T requester) {
+		if (requester == null || callbackExecutor.getExecutor() == null)
+			return requester;
+		return ExecutorProxy.create(requesterInterface, requester, callbackExecutor);
+	}
+
 	@Override
 	public ChannelGet createChannelGet(
 			ChannelGetRequester channelGetRequester,
 			PVStructure pvRequest) {
-		return ChannelGetRequestImpl.create(this, channelGetRequester, pvRequest);
+		return ChannelGetRequestImpl.create(this, wrap(ChannelGetRequester.class, channelGetRequester), pvRequest);
 	}
 
 	@Override
 	public Monitor createMonitor(
 			MonitorRequester monitorRequester, PVStructure pvRequest) {
+		monitorRequester = wrap(MonitorRequester.class, monitorRequester);
+		if (context.isMonitorSharing() && SharedChannelMonitorRegistry.isShareable(pvRequest))
+			return context.getSharedMonitorRegistry().subscribe(this, monitorRequester, pvRequest);
     	return ChannelMonitorImpl.create(this, monitorRequester, pvRequest);	
 	}
 
@@ -854,26 +1173,26 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 	public ChannelProcess createChannelProcess(
 			ChannelProcessRequester channelProcessRequester,
 			PVStructure pvRequest) {
-		return ChannelProcessRequestImpl.create(this, channelProcessRequester, pvRequest);
+		return ChannelProcessRequestImpl.create(this, wrap(ChannelProcessRequester.class, channelProcessRequester), pvRequest);
 	}
 	
 	@Override
 	public ChannelPut createChannelPut(
 			ChannelPutRequester channelPutRequester,
 			PVStructure pvRequest) {
-    	return ChannelPutRequestImpl.create(this, channelPutRequester, pvRequest);
+    	return ChannelPutRequestImpl.create(this, wrap(ChannelPutRequester.class, channelPutRequester), pvRequest);
 	}
 
 	@Override
 	public ChannelPutGet createChannelPutGet(
 			ChannelPutGetRequester channelPutGetRequester,
 			PVStructure pvRequest) {
-    	return ChannelPutGetRequestImpl.create(this, channelPutGetRequester, pvRequest);	
+    	return ChannelPutGetRequestImpl.create(this, wrap(ChannelPutGetRequester.class, channelPutGetRequester), pvRequest);	
 	}
 
 	@Override
 	public ChannelRPC createChannelRPC(ChannelRPCRequester channelRPCRequester, PVStructure pvRequest) {
-    	return ChannelRPCRequestImpl.create(this, channelRPCRequester, pvRequest);	
+    	return ChannelRPCRequestImpl.create(this, wrap(ChannelRPCRequester.class, channelRPCRequester), pvRequest);	
 	}
 
 	/* (non-Javadoc)
@@ -913,7 +1232,7 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 	 * @see org.epics.pvaccess.client.Channel#isConnected()
 	 */
 	@Override
-	public synchronized boolean isConnected() {
+	public boolean isConnected() {
 		return connectionState == ConnectionState.CONNECTED;
 	}
 
@@ -955,7 +1274,7 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 	public ChannelArray createChannelArray(
 			ChannelArrayRequester channelArrayRequester,
 			PVStructure pvRequest) {
-		return ChannelArrayRequestImpl.create(this, channelArrayRequester, pvRequest);
+		return ChannelArrayRequestImpl.create(this, wrap(ChannelArrayRequester.class, channelArrayRequester), pvRequest);
 	}
     
 	/* (non-Javadoc)
@@ -963,7 +1282,7 @@ public class ChannelImpl implements Channel, SearchInstance, TransportClient, Tr
 	 */
 	@Override
 	public void getField(GetFieldRequester requester, String subField) {
-		ChannelGetFieldRequestImpl.create(this, requester, subField);
+		ChannelGetFieldRequestImpl.create(this, wrap(GetFieldRequester.class, requester), subField);
 	}
 
 	/* (non-Javadoc)
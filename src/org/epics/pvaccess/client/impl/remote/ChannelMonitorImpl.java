@@ -16,6 +16,8 @@ package org.epics.pvaccess.client.impl.remote;
 
 import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.epics.pvaccess.PVFactory;
 import org.epics.pvaccess.impl.remote.QoS;
@@ -23,7 +25,7 @@ import org.epics.pvaccess.impl.remote.SerializationHelper;
 import org.epics.pvaccess.impl.remote.Transport;
 import org.epics.pvaccess.impl.remote.TransportSendControl;
 import org.epics.pvaccess.impl.remote.TransportSender;
-import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvaccess.util.SPSCCircularBuffer;
 import org.epics.pvdata.misc.BitSet;
 import org.epics.pvdata.misc.BitSetUtil;
 import org.epics.pvdata.misc.BitSetUtilFactory;
@@ -32,7 +34,6 @@ import org.epics.pvdata.monitor.MonitorElement;
 import org.epics.pvdata.monitor.MonitorQueue;
 import org.epics.pvdata.monitor.MonitorQueueFactory;
 import org.epics.pvdata.monitor.MonitorRequester;
-import org.epics.pvdata.pv.Convert;
 import org.epics.pvdata.pv.PVDataCreate;
 import org.epics.pvdata.pv.PVField;
 import org.epics.pvdata.pv.PVString;
@@ -63,6 +64,7 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
 	protected final int queueSize;
 	protected final boolean pipeline;
 	protected final int ackAny;
+	protected final AdaptiveFlowControl flowControl;
 
 	private interface MonitorStrategy extends Monitor {
 		void init(Structure structure);
@@ -93,6 +95,8 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
 		int qs = 2;
 		boolean pl = false;
 		int aa = 1;
+		boolean lf = false;
+		boolean adaptive = false;
 		
 		PVField pvField = pvRequest.getSubField("record._options");
 		if (pvField!=null) {
@@ -102,21 +106,27 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
 		        String value = pvString.get();
 	            try {
 	                qs = Integer.parseInt(value);
-	                if (qs < 2) qs = 2;
+	                if (qs < 1) qs = 1;
 	            } catch (NumberFormatException e) {
 	                callback.monitorConnect(
 	                        PVFactory.getStatusCreate().createStatus(StatusType.ERROR, "queueSize is not a valid integer", e),
 	                        this, null);
-	                monitorStrategy = null; queueSize = 2; pipeline = false; ackAny = 1;
+	                monitorStrategy = null; queueSize = 2; pipeline = false; ackAny = 1; flowControl = null;
 	                destroy(true);
 	                return;
 	            }
 		    }
 
+		    pvString = pvOptions.getStringField("lockFree");
+		    if (pvString!=null)
+		    	lf = Boolean.parseBoolean(pvString.get());
+
 		    pvString = pvOptions.getStringField("pipeline");
 		    if (pvString!=null) {
 		        String value = pvString.get();
-                pl = Boolean.parseBoolean(value);
+                // adaptive: queueSize is the upper bound of the auto-tuned window, ackAny is ignored
+                adaptive = "adaptive".equalsIgnoreCase(value);
+                pl = adaptive || Boolean.parseBoolean(value);
                 
                 // pipeline options
                 if (pl)
@@ -140,7 +150,7 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
         	                callback.monitorConnect(
         	                        PVFactory.getStatusCreate().createStatus(StatusType.ERROR, "ackAny is not a valid integer", e),
         	                        this, null);
-        	                monitorStrategy = null; queueSize = 2; pipeline = false; ackAny = 1;
+        	                monitorStrategy = null; queueSize = 2; pipeline = false; ackAny = 1; flowControl = null;
         	                destroy(true);
         	                return;
         	            }
@@ -150,11 +160,21 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
 		    }
 		}
 		
+		// latest value only, there is no queue to flow-control
+		if (qs == 1)
+			pl = false;
+		
         queueSize = qs;
         pipeline = pl;
         ackAny = aa;
+        flowControl = (pl && adaptive) ? new AdaptiveFlowControl(queueSize) : null;
         
-        monitorStrategy = new MonitorStrategyQueue(queueSize, pipeline, ackAny);
+        if (queueSize == 1)
+        	monitorStrategy = new MonitorStrategyLatest();
+        else if (lf)
+        	monitorStrategy = new MonitorStrategyRing(queueSize, pipeline, ackAny);
+        else
+        	monitorStrategy = new MonitorStrategyQueue(queueSize, pipeline, ackAny);
 	}
 
 
@@ -184,7 +204,596 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
 	}
 
 	private static final BitSetUtil bitSetUtil = BitSetUtilFactory.getCompressBitSet();
-    private static final Convert convert = ConvertFactory.getConvert();
+
+    private static MonitorElement[] createElements(Structure structure, int count)
+    {
+		MonitorElement[] monitorElements = new MonitorElement[count];
+        for(int i=0; i<count; i++) {
+            PVStructure pvNew = pvDataCreate.createPVStructure(structure);
+            monitorElements[i] = MonitorQueueFactory.createMonitorElement(pvNew);
+        }
+        return monitorElements;
+    }
+    
+    /**
+     * Keeps track (per element) of fields that are not up-to-date w.r.t. last written element,
+     * so that only these fields need to be copied when an element is reused
+     * (instead of copying entire structure).
+     * Not synchronized, to be used by the thread writing to the elements only.
+     */
+    private static final class StaleFieldsTracker {
+    	private final MonitorElement[] elements;
+    	private final BitSet[] staleBitSets;
+    	
+    	public StaleFieldsTracker(MonitorElement[] elements)
+    	{
+    		this.elements = elements;
+    		this.staleBitSets = new BitSet[elements.length];
+    		for (int i = 0; i < elements.length; i++)
+    			staleBitSets[i] = new BitSet(elements[i].getPVStructure().getNumberFields());
+    		reset();
+    	}
+    	
+    	/**
+    	 * Mark all the fields of all the elements as stale.
+    	 */
+    	public void reset()
+    	{
+            for (BitSet staleBitSet : staleBitSets)
+            {
+            	staleBitSet.clear();
+            	staleBitSet.set(0);
+            }
+    	}
+    	
+    	/**
+    	 * Fields were written to the element, i.e. they become stale in all other elements.
+    	 * @param element element written to.
+    	 * @param changedBitSet fields written.
+    	 */
+    	public void written(MonitorElement element, BitSet changedBitSet)
+    	{
+    		for (int i = 0; i < elements.length; i++)
+    			if (elements[i] != element)
+    				staleBitSets[i].or(changedBitSet);
+    	}
+    	
+    	/**
+    	 * Copy stale fields to the element.
+    	 * @param from last written element, can be <code>null</code> (nothing was written yet).
+    	 * @param to element to bring up-to-date.
+    	 */
+    	public void update(MonitorElement from, MonitorElement to)
+    	{
+    		if (from == null || from == to)
+    			return;
+    		
+    		for (int i = 0; i < elements.length; i++)
+    			if (elements[i] == to)
+    			{
+    				SerializationHelper.partialCopy(from.getPVStructure(), to.getPVStructure(), staleBitSets[i]);
+    				staleBitSets[i].clear();
+    				return;
+    			}
+    	}
+    }
+    
+    /**
+     * "Latest value only" strategy (queueSize == 1), unconsumed updates get conflated.
+     * Lock-free triple buffer: the transport receive thread writes to its (back) element and
+     * publishes it by atomically swapping it with the middle one, <code>poll</code> takes the
+     * middle one (if not yet taken) by swapping it with its (front) element.
+     * Only one thread is expected to call <code>poll</code> and <code>release</code>.
+     */
+    private final class MonitorStrategyLatest implements MonitorStrategy {
+    	private static final int ELEMENTS = 3;
+    	private static final int INDEX_MASK = 0x03;
+    	private static final int DIRTY = 0x04;
+    	
+	    private volatile Structure lastStructure = null;
+		private volatile MonitorElement[] monitorElements = null;
+	    private StaleFieldsTracker staleFieldsTracker = null;
+	    
+	    // middle element index and dirty (published, but not yet taken) flag
+	    private final AtomicInteger state = new AtomicInteger();
+	    
+	    // owned by the transport receive thread
+	    private int backIndex;
+	    private MonitorElement lastWritten = null;
+		private BitSet bitSet1 = null;
+		private BitSet bitSet2 = null;
+
+		// owned by the consumer
+		private int frontIndex;
+	    private volatile boolean needToReleaseFirst = false;
+
+	    private final AtomicBoolean unlisten = new AtomicBoolean(false);
+	    
+		@Override
+		public void init(Structure structure)
+		{
+			unlisten.set(false);
+
+			// reuse on reconnect
+			if (lastStructure == null || !lastStructure.equals(structure))
+			{
+				MonitorElement[] elements = createElements(structure, ELEMENTS);
+				staleFieldsTracker = new StaleFieldsTracker(elements);
+				lastWritten = null;
+				backIndex = 0;
+				state.set(1);
+				frontIndex = 2;
+				monitorElements = elements;
+	            lastStructure = structure;
+			}
+		}
+
+		@Override
+		public void response(Transport transport, ByteBuffer payloadBuffer)
+		{
+			// try to take back published, but not yet taken element
+			final int s = state.get();
+			final boolean conflate = ((s & DIRTY) != 0) && state.compareAndSet(s, s & INDEX_MASK);
+			
+			final MonitorElement[] monitorElements = this.monitorElements;
+			final MonitorElement element = monitorElements[conflate ? (s & INDEX_MASK) : backIndex];
+			final PVStructure pvStructure = element.getPVStructure();
+            final BitSet changedBitSet = element.getChangedBitSet();
+            final BitSet overrunBitSet = element.getOverrunBitSet();
+
+            if (conflate)
+            {
+            	// lazy init
+            	if (bitSet1 == null) bitSet1 = new BitSet(changedBitSet.size());
+            	if (bitSet2 == null) bitSet2 = new BitSet(overrunBitSet.size());
+            	
+            	bitSet1.deserialize(payloadBuffer, transport);
+				pvStructure.deserialize(payloadBuffer, transport, bitSet1);
+				bitSet2.deserialize(payloadBuffer, transport);
+
+				// OR local overrun
+				overrunBitSet.or_and(changedBitSet, bitSet1);
+
+				// OR remote change
+				changedBitSet.or(bitSet1);
+
+				// OR remote overrun
+				overrunBitSet.or(bitSet2);
+
+	            bitSetUtil.compress(changedBitSet, pvStructure);
+	            bitSetUtil.compress(overrunBitSet, pvStructure);
+
+	            staleFieldsTracker.written(element, bitSet1);
+	            
+	            // publish again, state could not be changed by the consumer
+	            state.set(s);
+            }
+            else
+            {
+            	staleFieldsTracker.update(lastWritten, element);
+            	
+            	// deserialize changedBitSet and data, and overrun bit set
+	            changedBitSet.deserialize(payloadBuffer, transport);
+				pvStructure.deserialize(payloadBuffer, transport, changedBitSet);
+				overrunBitSet.deserialize(payloadBuffer, transport);
+
+	            staleFieldsTracker.written(element, changedBitSet);
+
+	            // publish, middle element becomes back element
+	            // NOTE: middle element can only be a clean one here
+	            final int old = state.getAndSet(backIndex | DIRTY);
+	            backIndex = old & INDEX_MASK;
+            }
+            
+            lastWritten = element;
+
+			callback.monitorEvent(this);
+		}
+
+		@Override
+		public void unlisten()
+		{
+			unlisten.set(true);
+			if ((state.get() & DIRTY) == 0 && unlisten.compareAndSet(true, false))
+				callback.unlisten(this);
+		}
+
+		@Override
+		public MonitorElement poll()
+		{
+			if (needToReleaseFirst)
+				return null;
+			
+			int s;
+			while (((s = state.get()) & DIRTY) != 0)
+			{
+				if (state.compareAndSet(s, frontIndex))
+				{
+					frontIndex = s & INDEX_MASK;
+					needToReleaseFirst = true;
+					return monitorElements[frontIndex];
+				}
+			}
+			
+			if (unlisten.compareAndSet(true, false))
+				callback.unlisten(this);
+			return null;
+		}
+
+		@Override
+		public void release(MonitorElement monitorElement)
+		{
+	        // fast sanity check check if monitorElement->pvStructurePtr->getStructure() matches
+	        // not to accept wrong structure (might happen on monitor reconnect with different type)
+	        // silent return
+			if (monitorElement.getPVStructure().getStructure() != lastStructure)
+				return;
+
+			// element remains front element until next poll
+			needToReleaseFirst = false;
+		}
+
+		@Override
+		public Status start()
+		{
+			needToReleaseFirst = false;
+			
+			// discard not yet taken element, its content remains valid
+			int s;
+			while (((s = state.get()) & DIRTY) != 0 && !state.compareAndSet(s, s & INDEX_MASK));
+
+			return okStatus;
+		}
+
+		@Override
+		public Status stop() {
+			return okStatus;
+		}
+
+		@Override
+		public void destroy() {
+			// noop
+		}
+    }
+    
+    /**
+     * Queue strategy that does not lock, i.e. the transport receive thread never blocks on the consumer.
+     * Filled elements are passed to the consumer and released ones returned back
+     * via two single-producer/single-consumer lock-free circular buffers.
+     * When there is no free element, updates get conflated into an (overrun) element that
+     * <code>poll</code> takes (atomically) once all the queued elements are taken.
+     * Only one thread is expected to call <code>poll</code> and <code>release</code>.
+     * <code>start</code> publishes a new epoch (queues), the transport receive thread
+     * switches to it (and resets its own state) before its next write.
+     * An element taken, but not yet released, on <code>start</code> is not part of the new epoch
+     * until released. Consumer side (<code>poll</code>, <code>release</code>, <code>start</code>)
+     * is serialized by a lock that is never taken when an update is written.
+     */
+    private final class MonitorStrategyRing implements MonitorStrategy, TransportSender {
+		private final int queueSize;
+	    private final boolean pipeline;
+	    private final int ackAny;
+
+	    /**
+	     * Queues of one start-stop cycle, not to mix elements of different cycles.
+	     */
+	    private final class Epoch {
+	    	// first element to be written by the transport receive thread
+	    	final MonitorElement firstElement;
+		    final SPSCCircularBuffer<MonitorElement> usedQueue;
+		    final SPSCCircularBuffer<MonitorElement> freeQueue;
+		    final AtomicReference<MonitorElement> overrunElement = new AtomicReference<MonitorElement>();
+		    
+		    Epoch(MonitorElement[] elements, MonitorElement heldElement)
+		    {
+		    	usedQueue = new SPSCCircularBuffer<MonitorElement>(elements.length);
+		    	freeQueue = new SPSCCircularBuffer<MonitorElement>(elements.length);
+		    	
+		    	MonitorElement first = null;
+	            for (int i = 0; i < elements.length; i++)
+	            {
+	            	// held element is given to the free queue when released
+	            	if (elements[i] == heldElement)
+	            		continue;
+	            	else if (first == null)
+	            		first = elements[i];
+	            	else
+	            		freeQueue.offer(elements[i]);
+	            }
+	            firstElement = first;
+		    }
+	    }
+	    
+	    private volatile Structure lastStructure = null;
+		private volatile MonitorElement[] monitorElements = null;
+	    private StaleFieldsTracker staleFieldsTracker = null;
+
+	    // current epoch, set on start
+	    private volatile Epoch epoch = null;
+
+	    // owned by the transport receive thread
+	    private Epoch producerEpoch = null;
+		private MonitorElement monitorElement = null;
+		private MonitorElement parkedElement = null;
+	    private MonitorElement lastWritten = null;
+		private BitSet bitSet1 = null;
+		private BitSet bitSet2 = null;
+
+		// owned by the consumer, taken but not yet released element
+		private final Object consumerLock = new Object();
+		private volatile MonitorElement polledElement = null;
+		
+	    private final AtomicInteger releasedCount = new AtomicInteger();
+	    private final AtomicBoolean reportQueueStateInProgress = new AtomicBoolean(false);
+	    private final AtomicBoolean unlisten = new AtomicBoolean(false);
+
+		public MonitorStrategyRing(
+				int queueSize,
+				boolean pipeline, int ackAny)
+		{
+			if (queueSize <= 1)
+				throw new IllegalArgumentException("queueSize <= 1");
+			
+			this.queueSize = queueSize;
+			this.pipeline = pipeline;
+			this.ackAny = ackAny;
+		}
+		
+		@Override
+		public void init(Structure structure)
+		{
+			releasedCount.set(0);
+			reportQueueStateInProgress.set(false);
+			unlisten.set(false);
+			
+			// reuse on reconnect
+			if (lastStructure == null || !lastStructure.equals(structure))
+			{
+				monitorElements = createElements(structure, queueSize);
+				staleFieldsTracker = new StaleFieldsTracker(monitorElements);
+	            lastStructure = structure;
+			}
+		}
+		
+		/**
+		 * Switch to the current epoch, if changed (restarted).
+		 * Called only by the transport receive thread.
+		 * @return current epoch, <code>null</code> if never started.
+		 */
+		private Epoch producerEpoch()
+		{
+			final Epoch current = epoch;
+			if (current != producerEpoch)
+			{
+				producerEpoch = current;
+				
+				// content of the elements is unknown, full copy is needed
+				if (staleFieldsTracker != null)
+					staleFieldsTracker.reset();
+				lastWritten = null;
+	            monitorElement = current.firstElement;
+	            parkedElement = null;
+			}
+			return current;
+		}
+		
+		@Override
+		public void response(Transport transport, ByteBuffer payloadBuffer)
+		{
+			final Epoch epoch = producerEpoch();
+			if (epoch == null)
+				return;
+			final AtomicReference<MonitorElement> overrunElement = epoch.overrunElement;
+			final SPSCCircularBuffer<MonitorElement> freeQueue = epoch.freeQueue;
+			
+			MonitorElement element = monitorElement;
+			boolean overrun = false;
+			
+			final MonitorElement parked = parkedElement;
+			if (parked != null)
+			{
+				parkedElement = null;
+				if (overrunElement.compareAndSet(parked, null))
+				{
+					// not taken yet, conflate
+					element = parked;
+					overrun = true;
+				}
+				else
+				{
+					// taken, there must be free element since only one element can be held by the consumer
+					element = freeQueue.poll();
+					staleFieldsTracker.update(lastWritten, element);
+				}
+			}
+			
+			final PVStructure pvStructure = element.getPVStructure();
+            final BitSet changedBitSet = element.getChangedBitSet();
+            final BitSet overrunBitSet = element.getOverrunBitSet();
+
+            if (overrun)
+            {
+            	// lazy init
+            	if (bitSet1 == null) bitSet1 = new BitSet(changedBitSet.size());
+            	if (bitSet2 == null) bitSet2 = new BitSet(overrunBitSet.size());
+            	
+            	bitSet1.deserialize(payloadBuffer, transport);
+				pvStructure.deserialize(payloadBuffer, transport, bitSet1);
+				bitSet2.deserialize(payloadBuffer, transport);
+
+				// OR local overrun
+				overrunBitSet.or_and(changedBitSet, bitSet1);
+
+				// OR remote change
+				changedBitSet.or(bitSet1);
+
+				// OR remote overrun
+				overrunBitSet.or(bitSet2);
+
+	            bitSetUtil.compress(changedBitSet, pvStructure);
+	            bitSetUtil.compress(overrunBitSet, pvStructure);
+
+	            staleFieldsTracker.written(element, bitSet1);
+            }
+            else
+            {
+            	// deserialize changedBitSet and data, and overrun bit set
+	            changedBitSet.deserialize(payloadBuffer, transport);
+				pvStructure.deserialize(payloadBuffer, transport, changedBitSet);
+				overrunBitSet.deserialize(payloadBuffer, transport);
+
+	            staleFieldsTracker.written(element, changedBitSet);
+            }
+            lastWritten = element;
+
+			// prepare next free (if any)
+			final MonitorElement newElement = freeQueue.poll();
+			if (newElement == null)
+			{
+				// park, poll will take it when the queue gets empty
+				monitorElement = null;
+				parkedElement = element;
+				overrunElement.set(element);
+			}
+			else
+			{
+				staleFieldsTracker.update(element, newElement);
+				
+				// cannot be full, there are only queueSize elements
+				epoch.usedQueue.offer(element);
+				monitorElement = newElement;
+			}
+
+			callback.monitorEvent(this);
+		}
+
+		@Override
+		public void unlisten()
+		{
+			unlisten.set(true);
+			final Epoch epoch = this.epoch;
+			if ((epoch == null || (epoch.usedQueue.size() == 0 && epoch.overrunElement.get() == null)) &&
+				polledElement == null && unlisten.compareAndSet(true, false))
+				callback.unlisten(this);
+		}
+
+		@Override
+		public MonitorElement poll()
+		{
+			synchronized (consumerLock) {
+				if (polledElement != null)
+					return null;
+				
+				final Epoch epoch = this.epoch;
+				MonitorElement element = null;
+				if (epoch != null)
+				{
+					element = epoch.usedQueue.poll();
+					if (element == null)
+						element = epoch.overrunElement.getAndSet(null);
+				}
+				
+				if (element != null)
+				{
+					polledElement = element;
+					return element;
+				}
+			}
+			
+			if (unlisten.compareAndSet(true, false))
+				callback.unlisten(this);
+			return null;
+		}
+
+		@Override
+		public void release(MonitorElement monitorElement)
+		{
+	        // fast sanity check check if monitorElement->pvStructurePtr->getStructure() matches
+	        // not to accept wrong structure (might happen on monitor reconnect with different type)
+	        // silent return
+			if (monitorElement.getPVStructure().getStructure() != lastStructure)
+				return;
+			
+			synchronized (consumerLock) {
+				// only taken element can be released
+				if (monitorElement != polledElement)
+					return;
+				
+				// element taken in the previous epoch is not part of the current one (see start)
+				epoch.freeQueue.offer(monitorElement);
+				polledElement = null;
+			}
+			
+	        final boolean sendAck = (flowControl != null) ?
+	        		flowControl.released() : (pipeline && releasedCount.incrementAndGet() > ackAny);
+	        if (sendAck &&
+	        	reportQueueStateInProgress.compareAndSet(false, true))
+	        {
+        		try
+        		{
+        			channel.checkAndGetTransport().enqueueSendRequest(this);
+        		}
+        		catch (IllegalStateException ise)
+        		{
+        			reportQueueStateInProgress.set(false);
+        		}
+	        }
+		}
+
+		@Override
+		public void lock() {
+			// noop
+		}
+
+		@Override
+		public void unlock() {
+			// noop
+		}
+
+		@Override
+		public void send(ByteBuffer buffer, TransportSendControl control) {
+			control.startMessage((byte)13, 9);
+			buffer.putInt(channel.getServerChannelID());
+			buffer.putInt(ioid);
+			buffer.put((byte)QoS.GET_PUT.getMaskValue());
+			buffer.putInt(flowControl != null ? flowControl.takeCredits() : releasedCount.getAndSet(0));
+			reportQueueStateInProgress.set(false);
+			
+			control.flush(true);
+		}
+
+		@Override
+		public Status start()
+		{
+			final MonitorElement[] elements = monitorElements;
+			if (elements == null)
+				return okStatus;
+			
+			// producer state is reset by the transport receive thread, see producerEpoch()
+			synchronized (consumerLock) {
+				MonitorElement heldElement = polledElement;
+				if (heldElement != null && heldElement.getPVStructure().getStructure() != elements[0].getPVStructure().getStructure())
+				{
+					// element of the previous structure (reconnect), cannot be released any more
+					polledElement = heldElement = null;
+				}
+				epoch = new Epoch(elements, heldElement);
+			}
+            
+			return okStatus;
+		}
+
+		@Override
+		public Status stop() {
+			return okStatus;
+		}
+
+		@Override
+		public void destroy() {
+			// noop
+		}
+		
+    }
 
     // TODO fix sync
     private final class MonitorStrategyQueue implements MonitorStrategy, TransportSender {
@@ -197,6 +806,8 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
 
 	    private Structure lastStructure = null;
 	    private MonitorQueue monitorQueue = null;
+
+	    private StaleFieldsTracker staleFieldsTracker = null;
 	    
 	    private final Object monitorSync = new Object();
 	    
@@ -235,12 +846,9 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
 				// reuse on reconnect
 				if (lastStructure == null || !lastStructure.equals(structure))
 				{
-		    		MonitorElement[] monitorElements = new MonitorElement[queueSize];
-		            for(int i=0; i<queueSize; i++) {
-		                PVStructure pvNew = pvDataCreate.createPVStructure(structure);
-		                monitorElements[i] = MonitorQueueFactory.createMonitorElement(pvNew);
-		            }
+		    		MonitorElement[] monitorElements = createElements(structure, queueSize);
 		            monitorQueue = MonitorQueueFactory.create(monitorElements);
+		            staleFieldsTracker = new StaleFieldsTracker(monitorElements);
 		            lastStructure = structure;
 				}
 			}
@@ -278,7 +886,7 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
 	            	{
 	            		// take new, put current in use
 	    				final PVStructure pvStructure = monitorElement.getPVStructure();
-			            convert.copy(pvStructure, newElement.getPVStructure());
+			            copyToNext(newElement);
 
 			            bitSetUtil.compress(monitorElement.getChangedBitSet(), pvStructure);
 			            bitSetUtil.compress(monitorElement.getOverrunBitSet(), pvStructure);
@@ -348,7 +956,7 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
 		            overrunInProgress = false;
 	            }
 	            
-	            convert.copy(pvStructure, newElement.getPVStructure());
+	            copyToNext(newElement);
      
 	            monitorQueue.setUsed(monitorElement);
 
@@ -358,6 +966,17 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
         	callback.monitorEvent(this);
 		}
 
+		/**
+		 * Bring <code>newElement</code> up-to-date with current <code>monitorElement</code>.
+		 * Must be called while holding <code>monitorSync</code> lock.
+		 * @param newElement element that is to become current element.
+		 */
+		private void copyToNext(MonitorElement newElement)
+		{
+			staleFieldsTracker.written(monitorElement, monitorElement.getChangedBitSet());
+			staleFieldsTracker.update(monitorElement, newElement);
+		}
+		
 		@Override
 		public MonitorElement poll()
 		{
@@ -381,7 +1000,7 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
 	            	{
 	            		// take new, put current in use
 	    				final PVStructure pvStructure = monitorElement.getPVStructure();
-			            convert.copy(pvStructure, newElement.getPVStructure());
+			            copyToNext(newElement);
 
 			            bitSetUtil.compress(monitorElement.getChangedBitSet(), pvStructure);
 			            bitSetUtil.compress(monitorElement.getOverrunBitSet(), pvStructure);
@@ -432,8 +1051,12 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
 		        {
 		        	boolean sendAck = false;
 
-		        	releasedCount++;
-		        	if (!reportQueueStateInProgress && releasedCount > ackAny)
+		        	final boolean ackDue;
+		        	if (flowControl != null)
+		        		ackDue = flowControl.released();
+		        	else
+		        		ackDue = (++releasedCount > ackAny);
+		        	if (!reportQueueStateInProgress && ackDue)
 		        	{
 		        		sendAck = true;
 		        		reportQueueStateInProgress = true;
@@ -473,7 +1096,7 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
 			buffer.put((byte)QoS.GET_PUT.getMaskValue());
 			
 			synchronized (monitorSync) {
-				buffer.putInt(releasedCount);
+				buffer.putInt(flowControl != null ? flowControl.takeCredits() : releasedCount);
 				releasedCount = 0;
 				reportQueueStateInProgress = false;
 			}
@@ -489,6 +1112,9 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
 	            monitorQueue.clear();
 	            monitorElement = monitorQueue.getFree();
 	            needToReleaseFirst = false;
+	            
+	            // content of the elements is unknown, full copy is needed
+	            staleFieldsTracker.reset();
 			}
 			return okStatus;
 		}
@@ -531,7 +1157,7 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
 			if (pipeline)
 			{
 				control.ensureBuffer(4);
-				buffer.putInt(queueSize);
+				buffer.putInt(flowControl != null ? flowControl.initialCredits() : queueSize);
 			}
 		}
 
@@ -578,6 +1204,8 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
 		}
 		else
 		{
+			if (flowControl != null)
+				flowControl.received();
 			monitorStrategy.response(transport, payloadBuffer);
 		}
 	}
@@ -634,6 +1262,8 @@ public class ChannelMonitorImpl extends BaseRequestImpl implements Monitor {
 		// TODO not initialized (aka created) check?!!
 		
 		monitorStrategy.start();
+		if (flowControl != null)
+			flowControl.queueCleared();
 		
 		try {
 			// start == process + get
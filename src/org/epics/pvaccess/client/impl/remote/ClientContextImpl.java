@@ -14,6 +14,7 @@
 
 package org.epics.pvaccess.client.impl.remote;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.net.InetAddress;
@@ -42,9 +43,10 @@ import org.epics.pvaccess.client.ChannelFindRequester;
 import org.epics.pvaccess.client.ChannelListRequester;
 import org.epics.pvaccess.client.ChannelProvider;
 import org.epics.pvaccess.client.ChannelRequester;
+import org.epics.pvaccess.client.impl.remote.search.ChannelNameCache;
 import org.epics.pvaccess.client.impl.remote.search.ChannelSearchManager;
 import org.epics.pvaccess.client.impl.remote.search.SearchInstance;
-import org.epics.pvaccess.client.impl.remote.search.SimpleChannelSearchManagerImpl;
+import org.epics.pvaccess.client.impl.remote.search.TimingWheelChannelSearchManagerImpl;
 import org.epics.pvaccess.client.impl.remote.tcp.BlockingClientTCPTransport;
 import org.epics.pvaccess.client.impl.remote.tcp.BlockingTCPConnector;
 import org.epics.pvaccess.client.impl.remote.tcp.BlockingTCPConnector.TransportFactory;
@@ -63,13 +65,14 @@ import org.epics.pvaccess.impl.remote.udp.BlockingUDPTransport;
 import org.epics.pvaccess.impl.remote.utils.GUID;
 import org.epics.pvaccess.plugins.SecurityPlugin;
 import org.epics.pvaccess.plugins.impl.client.CAClientSecurityPlugin;
+import org.epics.pvaccess.util.IDTable;
 import org.epics.pvaccess.util.InetAddressUtil;
-import org.epics.pvaccess.util.IntHashMap;
 import org.epics.pvaccess.util.configuration.Configuration;
 import org.epics.pvaccess.util.configuration.ConfigurationProvider;
 import org.epics.pvaccess.util.configuration.impl.ConfigurationFactory;
 import org.epics.pvaccess.util.logging.ConsoleLogHandler;
 import org.epics.pvaccess.util.sync.NamedLockPattern;
+import org.epics.pvaccess.util.sync.StripedExecutor;
 import org.epics.pvdata.factory.StatusFactory;
 import org.epics.pvdata.misc.ThreadPriority;
 import org.epics.pvdata.misc.Timer;
@@ -174,6 +177,65 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 	 */
 	protected int receiveBufferSize = PVAConstants.MAX_TCP_RECV;
 	
+	/**
+	 * Share one (wire) subscription among all the monitors with the same channel name and pvRequest.
+	 */
+	protected volatile boolean monitorSharing = false;
+	
+	/**
+	 * Number of threads (stripes) used to deliver callbacks off the transport receive thread,
+	 * 0 to deliver callbacks by the receive thread.
+	 */
+	protected int callbackThreads = 0;
+	
+	/**
+	 * Max number of channels in one create channel request, 1 to disable batching.
+	 * Batching requires server support, therefore it is disabled by default.
+	 */
+	protected volatile int createChannelBatchSize = 1;
+	
+	/**
+	 * Number of TCP connections (stripes) opened per server (and priority), channels are striped across them.
+	 */
+	protected int connectionsPerServer = 1;
+	
+	/**
+	 * Policy used to stripe channels across connections to the same server, "hash" or "leastLoaded".
+	 */
+	protected String connectionStriping = "hash";
+	
+	/**
+	 * Time window (in seconds) in which search responses of redundant servers are collected
+	 * before connecting to the least-loaded one (as reported by beacons), 0 to connect to the first responder.
+	 */
+	protected float serverSelectionWindow = 0.0f;
+	
+	/**
+	 * Persistent channel name resolution cache file, empty to disable the cache.
+	 */
+	protected String nameCacheFile = "";
+	
+	/**
+	 * Channel name resolution cache, <code>null</code> if disabled.
+	 */
+	protected ChannelNameCache nameCache = null;
+	
+	/**
+	 * A space-separated list of name server addresses, searches are sent to name servers over TCP instead of UDP.
+	 * Each address must be of the form: ip.number:port or host.name:port, empty to disable.
+	 */
+	protected String nameServerList = "";
+	
+	/**
+	 * Name server connector, <code>null</code> if no name servers are configured.
+	 */
+	protected NameServerConnector nameServerConnector = null;
+	
+	/**
+	 * Callback executor pool, <code>null</code> if callbacks are delivered by the receive thread.
+	 */
+	protected StripedExecutor callbackExecutor = null;
+	
 	/**
 	 * Timer.
 	 */
@@ -229,32 +291,27 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 	private static final int LOCK_TIMEOUT = 20 * 1000;	// 20s
 
 	/**
-	 * Map of channels (keys are CIDs).
+	 * Minimal period between two name cache writes.
 	 */
-	// TODO consider using WeakHashMap (and call Channel.destroy() in finalize() method).
-	protected final IntHashMap channelsByCID = new IntHashMap();
+	private static final long NAME_CACHE_WRITE_PERIOD_MS = 10 * 1000;	// 10s
 
 	/**
-	 * Map of channels (keys are names).
+	 * Table of channels (keys are CIDs), lock-free.
 	 */
 	// TODO consider using WeakHashMap (and call Channel.destroy() in finalize() method).
-	//protected final Map<String, ChannelImpl> channelsByName = new HashMap<String, ChannelImpl>();
+	protected final IDTable<ChannelImpl> channelsByCID = new IDTable<ChannelImpl>();
 
 	/**
-	 * Last CID cache. 
+	 * Map of channels (keys are names).
 	 */
-	private int lastCID = 0;
+	// TODO consider using WeakHashMap (and call Channel.destroy() in finalize() method).
+	//protected final Map<String, ChannelImpl> channelsByName = new HashMap<String, ChannelImpl>();
 
 	/**
-	 * Map of pending response requests (keys are IOID).
+	 * Table of pending response requests (keys are IOID), lock-free.
 	 */
 	// TODO consider using WeakHashMap (and call ResponseRequest.destroy() in finalize() method).
-	protected final IntHashMap pendingResponseRequests = new IntHashMap();
-
-	/**
-	 * Last IOID cache. 
-	 */
-	private int lastIOID = 0;
+	protected final IDTable<ResponseRequest> pendingResponseRequests = new IDTable<ResponseRequest>();
 
 	/**
 	 * Channel search manager.
@@ -277,6 +334,16 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 	 */
 	protected ChannelProvider channelProvider = new ChannelProviderImpl();
 	
+	/**
+	 * Shared monitor registry.
+	 */
+	private final SharedChannelMonitorRegistry sharedMonitorRegistry = new SharedChannelMonitorRegistry();
+
+	/**
+	 * Create channel request batcher.
+	 */
+	private final CreateChannelBatcher createChannelBatcher = new CreateChannelBatcher(this);
+	
 	/**
 	 * Constructor.
 	 */
@@ -355,6 +422,14 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 		beaconPeriod = config.getPropertyAsFloat("EPICS_PVA_BEACON_PERIOD", beaconPeriod);
 		broadcastPort = config.getPropertyAsInteger("EPICS_PVA_BROADCAST_PORT", broadcastPort);
 		receiveBufferSize = config.getPropertyAsInteger("EPICS_PVA_MAX_ARRAY_BYTES", receiveBufferSize);
+		monitorSharing = config.getPropertyAsBoolean("EPICS_PVA_MONITOR_SHARING", monitorSharing);
+		callbackThreads = config.getPropertyAsInteger("EPICS_PVA_CALLBACK_THREADS", callbackThreads);
+		setCreateChannelBatchSize(config.getPropertyAsInteger("EPICS_PVA_CREATE_CHANNEL_BATCH", createChannelBatchSize));
+		connectionsPerServer = config.getPropertyAsInteger("EPICS_PVA_CONNECTIONS_PER_SERVER", connectionsPerServer);
+		connectionStriping = config.getPropertyAsString("EPICS_PVA_CONNECTION_STRIPING", connectionStriping);
+		serverSelectionWindow = config.getPropertyAsFloat("EPICS_PVA_SERVER_SELECTION_WINDOW", serverSelectionWindow);
+		nameCacheFile = config.getPropertyAsString("EPICS_PVA_NAME_CACHE", nameCacheFile);
+		nameServerList = config.getPropertyAsString("EPICS_PVA_NAME_SERVERS", nameServerList);
 	}
 
 	/**
@@ -404,6 +479,15 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 	private void internalInitialize() throws PVAException {
 		
 		timer = TimerFactory.create("pvAccess-client timer", ThreadPriority.lower);
+		
+		if (callbackThreads > 0)
+			callbackExecutor = new StripedExecutor("pvAccess-client callback", callbackThreads);
+		
+		if (nameCacheFile != null && nameCacheFile.length() > 0)
+		{
+			nameCache = new ChannelNameCache(new File(nameCacheFile), NAME_CACHE_WRITE_PERIOD_MS, logger);
+			nameCache.start();
+		}
 //		connector = new TCPConnector(this, receiveBufferSize, connectionTimeout);
 		
 		TransportFactory transportFactory = new TransportFactory() {
@@ -445,6 +529,10 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 		};
 
 		connector = new BlockingTCPConnector(this, transportFactory, receiveBufferSize, connectionTimeout);
+		connector.setStriping(connectionsPerServer,
+				"leastLoaded".equalsIgnoreCase(connectionStriping) ?
+						BlockingTCPConnector.StripingPolicy.LEAST_LOADED :
+						BlockingTCPConnector.StripingPolicy.HASH);
 		//connector = new BlockingTCPConnector(this, nonBlockingTransportFactory, receiveBufferSize, connectionTimeout);
 		transportRegistry = new TransportRegistry();
 		namedLocker = new NamedLockPattern();
@@ -497,10 +585,21 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 		// setup UDP transport
 		initializeUDPTransport();
 
+		// setup name server connections
+		if (nameServerList != null && nameServerList.trim().length() > 0)
+		{
+			InetSocketAddress[] nameServers = InetAddressUtil.getSocketAddressList(nameServerList, PVAConstants.PVA_SERVER_PORT);
+			if (nameServers != null && nameServers.length > 0)
+			{
+				nameServerConnector = new NameServerConnector(this, nameServers);
+				nameServerConnector.start();
+			}
+		}
+
 		// setup search manager
 		// TODO
 //		channelSearchManager = new ChannelSearchManagerImpl(this);
-		channelSearchManager = new SimpleChannelSearchManagerImpl(this);
+		channelSearchManager = new TimingWheelChannelSearchManagerImpl(this);
 	}
 
 	/**
@@ -620,9 +719,20 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 		if (channelSearchManager != null)
 			channelSearchManager.cancel();
 
+		if (nameServerConnector != null)
+			nameServerConnector.destroy();
+
 		// stop timer
 		if (timer != null) 
 			timer.stop();
+		
+		// already queued callbacks are still delivered
+		if (callbackExecutor != null)
+			callbackExecutor.shutdown();
+		
+		// write pending name cache changes
+		if (nameCache != null)
+			nameCache.destroy();
 		 
 		//
 		// cleanup
@@ -630,6 +740,10 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 		
 		// this will also close all PVA transports
 		destroyAllChannels();
+
+		// fail pending connects (of already destroyed channels)
+		if (connector != null)
+			connector.destroy();
 		
 		// close broadcast transport
 		if (broadcastTransport != null)
@@ -674,15 +788,8 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 	 */
 	private void destroyAllChannels() {
 		
-		Channel[] channelsArray;
-		synchronized (channelsByCID)
-		{
-			// not some elements might be null
-			Channel[] ch = new Channel[channelsByCID.size()];
-			channelsArray = (Channel[])channelsByCID.toArray(ch);
-			channelsByCID.clear();
-			//channelsByName.clear();
-		}
+		// channels unregister themselves when destroyed
+		final Channel[] channelsArray = channelsByCID.values().toArray(new Channel[0]);
 		
 		for (int i = 0; i < channelsArray.length; i++)
 		{
@@ -804,11 +911,9 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 	 */
 	void registerChannel(ChannelImpl channel)
 	{
-		synchronized (channelsByCID)
-		{
-			channelsByCID.put(channel.getChannelID(), channel);
-			//channelsByName.put(getUniqueChannelName(channel.getChannelName(), channel.getPriority()), channel);
-		}
+		// CID is already reserved
+		channelsByCID.set(channel.getChannelID(), channel);
+		//channelsByName.put(getUniqueChannelName(channel.getChannelName(), channel.getPriority()), channel);
 	}
 
 	/**
@@ -817,11 +922,8 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 	 */
 	void unregisterChannel(ChannelImpl channel)
 	{
-		synchronized (channelsByCID)
-		{
-			channelsByCID.remove(channel.getChannelID());
-			//channelsByName.remove(getUniqueChannelName(channel.getChannelName(), channel.getPriority()));
-		}
+		channelsByCID.remove(channel.getChannelID());
+		//channelsByName.remove(getUniqueChannelName(channel.getChannelName(), channel.getPriority()));
 	}
 
 	/**
@@ -831,10 +933,7 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 	 */
 	public ChannelImpl getChannel(int channelID)
 	{
-		synchronized (channelsByCID)
-		{
-			return (ChannelImpl)channelsByCID.get(channelID);
-		}
+		return channelsByCID.get(channelID);
 	}
 	
 	/*
@@ -886,6 +985,21 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 		out.println("BEACON_PERIOD : " + beaconPeriod);
 		out.println("BROADCAST_PORT : " + broadcastPort);
 		out.println("RCV_BUFFER_SIZE : " + receiveBufferSize);
+		out.println("MONITOR_SHARING : " + monitorSharing);
+		out.println("CALLBACK_THREADS : " + callbackThreads);
+		out.println("CREATE_CHANNEL_BATCH : " + createChannelBatchSize);
+		out.println("CONNECTIONS_PER_SERVER : " + connectionsPerServer);
+		out.println("CONNECTION_STRIPING : " + connectionStriping);
+		out.println("SERVER_SELECTION_WINDOW : " + serverSelectionWindow);
+		out.println("NAME_CACHE : " + nameCacheFile);
+		if (nameCache != null)
+			out.println("NAME_CACHE_SIZE : " + nameCache.size());
+		out.println("NAME_SERVERS : " + nameServerList);
+		if (nameServerConnector != null)
+			out.println("NAME_SERVERS_CONNECTED : " + nameServerConnector.getConnectedCount());
+		if (callbackExecutor != null)
+			for (int i = 0; i < callbackExecutor.getStripeCount(); i++)
+				out.println("CALLBACK_QUEUE_DEPTH #" + i + " : " + callbackExecutor.getQueueDepth(i));
 		//out.println("EVENT_DISPATCHER: " + eventDispatcher);
 		out.print("STATE : ");
 		switch (state)
@@ -973,6 +1087,87 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 		return receiveBufferSize;
 	}
 
+	/**
+	 * Check whether monitors with the same channel name and pvRequest share one (wire) subscription.
+	 * @return <code>true</code> if monitor sharing is enabled.
+	 */
+	public boolean isMonitorSharing() {
+		return monitorSharing;
+	}
+
+	/**
+	 * Enable or disable monitor sharing, applies only to the monitors created afterwards.
+	 * @param monitorSharing <code>true</code> to enable monitor sharing.
+	 */
+	public void setMonitorSharing(boolean monitorSharing) {
+		this.monitorSharing = monitorSharing;
+	}
+
+	/**
+	 * Get callback executor pool, used to deliver callbacks (per channel in order) off the transport receive thread.
+	 * @return callback executor pool, <code>null</code> if callbacks are delivered by the receive thread.
+	 */
+	public StripedExecutor getCallbackExecutor() {
+		return callbackExecutor;
+	}
+
+	/**
+	 * Get max number of channels in one create channel request.
+	 * @return max number of channels in one create channel request, 1 if batching is disabled.
+	 */
+	public int getCreateChannelBatchSize() {
+		return createChannelBatchSize;
+	}
+
+	/**
+	 * Set max number of channels in one create channel request, applies to the requests issued afterwards.
+	 * Value is limited to <code>[1, PVAConstants.MAX_CREATE_CHANNEL_BATCH_SIZE]</code>.
+	 * @param createChannelBatchSize max number of channels in one create channel request, 1 to disable batching.
+	 */
+	public void setCreateChannelBatchSize(int createChannelBatchSize) {
+		this.createChannelBatchSize = Math.max(1, Math.min(createChannelBatchSize, PVAConstants.MAX_CREATE_CHANNEL_BATCH_SIZE));
+	}
+
+	/**
+	 * Get server selection window.
+	 * @return time window (in seconds) in which search responses of redundant servers are collected, 0 if disabled.
+	 */
+	public float getServerSelectionWindow() {
+		return serverSelectionWindow;
+	}
+
+	/**
+	 * Get channel name resolution cache.
+	 * @return channel name resolution cache, <code>null</code> if disabled.
+	 */
+	public ChannelNameCache getNameCache() {
+		return nameCache;
+	}
+
+	/**
+	 * Get name server connector.
+	 * @return name server connector, <code>null</code> if no name servers are configured.
+	 */
+	public NameServerConnector getNameServerConnector() {
+		return nameServerConnector;
+	}
+
+	/**
+	 * Get create channel request batcher.
+	 * @return create channel request batcher.
+	 */
+	public CreateChannelBatcher getCreateChannelBatcher() {
+		return createChannelBatcher;
+	}
+
+	/**
+	 * Get shared monitor registry.
+	 * @return shared monitor registry.
+	 */
+	public SharedChannelMonitorRegistry getSharedMonitorRegistry() {
+		return sharedMonitorRegistry;
+	}
+
 	/**
 	 * Get broadcast port.
 	 * @return broadcast port.
@@ -1132,20 +1327,28 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 		return null;
 	}
    
+	/**
+	 * Get (and if necessary create) transport of given server address, w/o blocking the caller.
+	 * @param client client (channel) requesting the transport.
+	 * @param serverAddress server address.
+	 * @param minorRevision server minor protocol revision.
+	 * @param priority process priority.
+	 * @param callback callback notified when transport is connected (or connect failed).
+	 */
+	void getTransport(TransportClient client, InetSocketAddress serverAddress, byte minorRevision, short priority,
+					  BlockingTCPConnector.ConnectCallback callback)
+	{
+		connector.connectAsync(client, clientResponseHandler, serverAddress, minorRevision, priority, callback);
+	}
+   
 	/**
 	 * Generate Client channel ID (CID).
 	 * @return Client channel ID (CID). 
 	 */
 	private int generateCID()
 	{
-		synchronized (channelsByCID)
-		{
-			// search first free (theoretically possible loop of death)
-			while (getChannel(++lastCID) != null);
-			// reserve CID
-			channelsByCID.put(lastCID, null);
-			return lastCID;
-		}
+		// reserve CID
+		return channelsByCID.allocate();
 	}
 
 	/**
@@ -1153,10 +1356,7 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 	 */
 	private void freeCID(int cid)
 	{
-		synchronized (channelsByCID)
-		{
-			channelsByCID.remove(cid);
-		}
+		channelsByCID.remove(cid);
 	}
 
 	/**
@@ -1166,10 +1366,7 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 	 */
 	public ResponseRequest getResponseRequest(int ioid)
 	{
-		synchronized (pendingResponseRequests)
-		{
-			return (ResponseRequest)pendingResponseRequests.get(ioid);
-		}
+		return pendingResponseRequests.get(ioid);
 	}
 
 	/**
@@ -1179,12 +1376,8 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 	 */
 	public int registerResponseRequest(ResponseRequest request)
 	{
-		synchronized (pendingResponseRequests)
-		{
-			int ioid = generateIOID();
-			pendingResponseRequests.put(ioid, request);
-			return ioid;
-		}
+		// NOTE: IOID is never PVA_INVALID_IOID (0)
+		return pendingResponseRequests.put(request);
 	}
 
 	/**
@@ -1194,26 +1387,7 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 	 */
 	public ResponseRequest unregisterResponseRequest(ResponseRequest request)
 	{
-		synchronized (pendingResponseRequests)
-		{
-			return (ResponseRequest)pendingResponseRequests.remove(request.getIOID());
-		}
-	}
-
-	/**
-	 * Generate IOID.
-	 * @return IOID. 
-	 */
-	private int generateIOID()
-	{
-		synchronized (pendingResponseRequests)
-		{
-			// search first free (theoretically possible loop of death)
-			while (pendingResponseRequests.get(++lastIOID) != null || lastIOID == PVAConstants.PVA_INVALID_IOID);
-			// reserve IOID
-			pendingResponseRequests.put(lastIOID, null);
-			return lastIOID;
-		}
+		return pendingResponseRequests.remove(request.getIOID());
 	}
 
 	/**
@@ -1234,7 +1408,7 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 			if (protocolBeaconHandlersMap == null)
 			{
 				protocolBeaconHandlersMap = new HashMap<InetSocketAddress, BeaconHandlerImpl>();
-				beaconHandlers.get(protocolBeaconHandlersMap);
+				beaconHandlers.put(protocol, protocolBeaconHandlersMap);
 			}
 			
 			BeaconHandlerImpl handler = protocolBeaconHandlersMap.get(responseFrom);
@@ -1247,6 +1421,24 @@ public class ClientContextImpl implements Context/*, Configurable*/ {
 		}
 	}
 
+	/**
+	 * Get server load as last reported by its beacon.
+	 * @param serverAddress server (TCP) address.
+	 * @return server load score (lower is better), <code>Double.NaN</code> if unknown.
+	 */
+	public double getServerLoad(InetSocketAddress serverAddress)
+	{
+		synchronized (beaconHandlers) {
+			Map<InetSocketAddress, BeaconHandlerImpl> protocolBeaconHandlersMap = 
+				beaconHandlers.get(ProtocolType.tcp.name());
+			if (protocolBeaconHandlersMap == null)
+				return Double.NaN;
+			
+			BeaconHandlerImpl handler = protocolBeaconHandlersMap.get(serverAddress);
+			return (handler != null) ? handler.getLoad() : Double.NaN;
+		}
+	}
+
 	public ChannelProvider getProvider() {
 		return channelProvider;
 	}
@@ -0,0 +1,170 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.client.impl.remote;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.epics.pvaccess.impl.remote.Transport;
+import org.epics.pvaccess.impl.remote.TransportSendControl;
+import org.epics.pvaccess.impl.remote.TransportSender;
+import org.epics.pvdata.misc.SerializeHelper;
+
+/**
+ * Coalesces create channel requests issued to the same transport into
+ * as few create channel messages (count &gt; 1) as possible.
+ * Channels are collected until the transport send thread picks up the batch,
+ * i.e. in a mass connect or in a reconnect storm all the channels resolved in the meantime
+ * end up in the same (or a few) messages.
+ * A pending batch is dropped as soon as its transport is closed, the channels it holds
+ * are disconnected (and re-searched) by the transport anyway.
+ */
+public class CreateChannelBatcher {
+
+	private final ClientContextImpl context;
+
+	/**
+	 * Pending (not yet picked up by the send thread) batches, keyed by transport instance, guarded by itself.
+	 */
+	private final Map<Transport, Batch> batches = new IdentityHashMap<Transport, Batch>();
+
+	/**
+	 * Constructor.
+	 * @param context client context.
+	 */
+	public CreateChannelBatcher(ClientContextImpl context) {
+		this.context = context;
+	}
+
+	/**
+	 * Enqueue create channel request.
+	 * @param transport transport to use.
+	 * @param channel channel to create.
+	 */
+	public void enqueue(Transport transport, ChannelImpl channel)
+	{
+		Batch batch;
+		boolean newBatch = false;
+		synchronized (batches) {
+			if (!transport.isOpen())
+			{
+				// closed transport will never pick up the batch, the channel gets disconnected anyway
+				batches.remove(transport);
+				return;
+			}
+			
+			batch = batches.get(transport);
+			if (batch == null)
+			{
+				batch = new Batch(transport);
+				batches.put(transport, batch);
+				newBatch = true;
+			}
+			batch.channels.add(channel);
+		}
+
+		if (newBatch)
+		{
+			transport.enqueueSendRequest(batch);
+			
+			// closed in the meantime, the send request might have been discarded
+			if (!transport.isOpen())
+				transportClosed(transport);
+		}
+	}
+
+	/**
+	 * Drop pending batch (if any) of the closed transport.
+	 * @param transport closed transport.
+	 */
+	public void transportClosed(Transport transport)
+	{
+		synchronized (batches) {
+			Batch batch = batches.remove(transport);
+			if (batch != null)
+				batch.channels.clear();
+		}
+	}
+
+	/**
+	 * Get number of pending batches.
+	 * @return number of pending batches.
+	 */
+	public int getPendingBatchCount()
+	{
+		synchronized (batches) {
+			return batches.size();
+		}
+	}
+
+	private class Batch implements TransportSender {
+
+		private final Transport transport;
+
+		// guarded by batches
+		private final List<ChannelImpl> channels = new ArrayList<ChannelImpl>();
+
+		Batch(Transport transport) {
+			this.transport = transport;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportSender#send(java.nio.ByteBuffer, org.epics.pvaccess.impl.remote.TransportSendControl)
+		 */
+		@Override
+		public void send(ByteBuffer buffer, TransportSendControl control) {
+			// close the batch, channels enqueued from now on go into a new one
+			final ChannelImpl[] toSend;
+			synchronized (batches) {
+				if (batches.get(transport) == this)
+					batches.remove(transport);
+				toSend = channels.toArray(new ChannelImpl[channels.size()]);
+				channels.clear();
+			}
+
+			final int maxBatchSize = context.getCreateChannelBatchSize();
+
+			for (int pos = 0; pos < toSend.length; pos += maxBatchSize)
+			{
+				final int count = Math.min(maxBatchSize, toSend.length - pos);
+
+				control.startMessage((byte)7, (Short.SIZE+Integer.SIZE)/Byte.SIZE);
+				// count
+				buffer.putShort((short)count);
+				// array of CIDs and names
+				for (int i = pos; i < pos + count; i++)
+				{
+					control.ensureBuffer(Integer.SIZE/Byte.SIZE);
+					buffer.putInt(toSend[i].getChannelID());
+					SerializeHelper.serializeString(toSend[i].getChannelName(), buffer, control);
+				}
+				control.endMessage();
+			}
+
+			// send immediately
+			control.flush(true);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportSender#lock()
+		 */
+		@Override
+		public void lock() {
+			// noop
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportSender#unlock()
+		 */
+		@Override
+		public void unlock() {
+			// noop
+		}
+	}
+}
@@ -0,0 +1,300 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.client.impl.remote;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+import org.epics.pvaccess.PVAConstants;
+import org.epics.pvaccess.client.ChannelProvider;
+import org.epics.pvaccess.impl.remote.Transport;
+import org.epics.pvaccess.impl.remote.TransportClient;
+import org.epics.pvaccess.impl.remote.TransportSendControl;
+import org.epics.pvaccess.impl.remote.TransportSender;
+
+/**
+ * Maintains persistent TCP connections to the configured name servers.
+ * Search requests are sent over these connections instead of UDP broadcasts,
+ * name servers reply with search responses (over the same connection) pointing to the hosting servers.
+ * (Re)connecting is done by the connector's own thread, so that searching is never blocked by connection attempts.
+ */
+public class NameServerConnector implements TransportClient, Runnable {
+
+	private static final long MIN_RECONNECT_PERIOD_MS = 1000;
+	private static final long MAX_RECONNECT_PERIOD_MS = 30000;
+	
+	/**
+	 * Context.
+	 */
+	private final ClientContextImpl context;
+	
+	/**
+	 * Name server addresses.
+	 */
+	private final InetSocketAddress[] addresses;
+	
+	/**
+	 * Name server transports, <code>null</code> if not connected, guarded by this.
+	 */
+	private final Transport[] transports;
+	
+	private volatile boolean destroyed = false;
+	
+	public NameServerConnector(ClientContextImpl context, InetSocketAddress[] addresses)
+	{
+		if (addresses == null || addresses.length == 0)
+			throw new IllegalArgumentException("no name server addresses given");
+		
+		this.context = context;
+		this.addresses = addresses;
+		this.transports = new Transport[addresses.length];
+	}
+	
+	/**
+	 * Start connecting to the name servers.
+	 */
+	public void start()
+	{
+		Thread thread = new Thread(this, "pvAccess name server connector");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run()
+	{
+		long reconnectPeriod = MIN_RECONNECT_PERIOD_MS;
+		while (!destroyed)
+		{
+			boolean connected = false;
+			boolean allConnected = true;
+			for (int i = 0; i < addresses.length && !destroyed; i++)
+			{
+				synchronized (this) {
+					if (transports[i] != null)
+						continue;
+				}
+				
+				// blocking
+				Transport transport = context.getTransport(this, addresses[i], PVAConstants.PVA_PROTOCOL_REVISION, ChannelProvider.PRIORITY_DEFAULT);
+				if (transport == null)
+				{
+					allConnected = false;
+					continue;
+				}
+				
+				synchronized (this) {
+					if (destroyed)
+					{
+						transport.release(this);
+						return;
+					}
+					transports[i] = transport;
+				}
+				connected = true;
+				context.getLogger().fine("Connected to name server: " + addresses[i]);
+			}
+			
+			// search all the unresolved channels via new connection(s)
+			if (connected)
+				context.newServerDetected();
+			
+			synchronized (this) {
+				if (destroyed)
+					break;
+				
+				try {
+					if (allConnected)
+					{
+						reconnectPeriod = MIN_RECONNECT_PERIOD_MS;
+						// wait for disconnect
+						if (isAllConnected())
+							this.wait();
+					}
+					else
+					{
+						this.wait(reconnectPeriod);
+						reconnectPeriod = Math.min(reconnectPeriod * 2, MAX_RECONNECT_PERIOD_MS);
+					}
+				} catch (InterruptedException e) {
+					// noop
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Must be called while holding this lock.
+	 */
+	private boolean isAllConnected()
+	{
+		for (Transport transport : transports)
+			if (transport == null)
+				return false;
+		return true;
+	}
+	
+	/**
+	 * Get number of connected name servers.
+	 * @return number of connected name servers.
+	 */
+	public synchronized int getConnectedCount()
+	{
+		int count = 0;
+		for (Transport transport : transports)
+			if (transport != null)
+				count++;
+		return count;
+	}
+	
+	/**
+	 * Send search request (UDP frame) to all connected name servers.
+	 * @param frame search request frame, including PVA message header, from position <code>0</code> to the current position. 
+	 * @return <code>true</code> if request was sent to at least one name server.
+	 */
+	public boolean send(ByteBuffer frame)
+	{
+		final int payloadSize = frame.position() - PVAConstants.PVA_MESSAGE_HEADER_SIZE;
+		final byte[] payload = new byte[payloadSize];
+		for (int i = 0; i < payloadSize; i++)
+			payload[i] = frame.get(PVAConstants.PVA_MESSAGE_HEADER_SIZE + i);
+
+		// NOTE: unicast flag must not be set, otherwise request is locally re-broadcasted by the server 
+		payload[4] &= ~0x80;
+		
+		final TransportSender sender = new SearchRequestSender(payload);
+		boolean sent = false;
+		synchronized (this) {
+			for (Transport transport : transports)
+				if (transport != null)
+				{
+					transport.enqueueSendRequest(sender);
+					sent = true;
+				}
+		}
+		return sent;
+	}
+	
+	/**
+	 * Sends copy of the search request payload as a TCP message.
+	 */
+	private static class SearchRequestSender implements TransportSender {
+		
+		private final byte[] payload;
+		
+		public SearchRequestSender(byte[] payload) {
+			this.payload = payload;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportSender#send(java.nio.ByteBuffer, org.epics.pvaccess.impl.remote.TransportSendControl)
+		 */
+		@Override
+		public void send(ByteBuffer buffer, TransportSendControl control) {
+			control.startMessage((byte)3, payload.length);
+			buffer.put(payload);
+			control.flush(true);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.Lockable#lock()
+		 */
+		@Override
+		public void lock() {
+			// noop
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.Lockable#unlock()
+		 */
+		@Override
+		public void unlock() {
+			// noop
+		}
+	}
+	
+	/**
+	 * Forget closed transports and wake-up the connector thread.
+	 */
+	private synchronized void disconnected()
+	{
+		boolean changed = false;
+		for (int i = 0; i < transports.length; i++)
+		{
+			final Transport transport = transports[i];
+			if (transport != null && !transport.isOpen())
+			{
+				context.getLogger().fine("Disconnected from name server: " + addresses[i]);
+				transport.release(this);
+				transports[i] = null;
+				changed = true;
+			}
+		}
+		
+		if (changed)
+			this.notifyAll();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.impl.remote.TransportClient#transportUnresponsive()
+	 */
+	@Override
+	public void transportUnresponsive() {
+		// noop, searches are retried anyway
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.impl.remote.TransportClient#transportResponsive(org.epics.pvaccess.impl.remote.Transport)
+	 */
+	@Override
+	public void transportResponsive(Transport transport) {
+		// noop
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.impl.remote.TransportClient#transportChanged()
+	 */
+	@Override
+	public void transportChanged() {
+		// name server restarted, its directory might be (re)built
+		context.newServerDetected();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.impl.remote.TransportClient#transportClosed()
+	 */
+	@Override
+	public void transportClosed() {
+		disconnected();
+	}
+	
+	/**
+	 * Destroy, release all the name server connections.
+	 */
+	public void destroy()
+	{
+		synchronized (this) {
+			if (destroyed)
+				return;
+			destroyed = true;
+			
+			for (int i = 0; i < transports.length; i++)
+			{
+				if (transports[i] != null)
+				{
+					transports[i].release(this);
+					transports[i] = null;
+				}
+			}
+			
+			this.notifyAll();
+		}
+	}
+	
+}
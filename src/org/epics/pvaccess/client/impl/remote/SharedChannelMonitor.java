@@ -0,0 +1,593 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.client.impl.remote;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+import org.epics.pvaccess.PVFactory;
+import org.epics.pvaccess.impl.remote.SerializationHelper;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.monitor.Monitor;
+import org.epics.pvdata.monitor.MonitorElement;
+import org.epics.pvdata.monitor.MonitorQueueFactory;
+import org.epics.pvdata.monitor.MonitorRequester;
+import org.epics.pvdata.pv.MessageType;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Status.StatusType;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * Client monitor (one subscription on the wire) shared among all the local monitors
+ * with the same channel name and (normalized) pvRequest.
+ * Each local monitor (<code>Subscription</code>) has its own queue of <code>queueSize</code> elements
+ * and its own overrun tracking; when its queue is full, new updates are merged into the last queued element.
+ * Wire monitor is started when the first local monitor starts and stopped when the last one stops.
+ * Wire monitor is created using the channel of one of the local monitors (owner);
+ * when the owner is destroyed, a new wire monitor is created using the channel of the next local monitor.
+ */
+public class SharedChannelMonitor {
+
+	private static final Status okStatus = PVFactory.getStatusCreate().getStatusOK();
+
+	private static final int DEFAULT_QUEUE_SIZE = 2;
+
+	/**
+	 * Wire monitor requester, new instance for each wire monitor created.
+	 */
+	private final class Upstream implements MonitorRequester {
+
+		private final MonitorRequester ownerRequester;
+
+		Upstream(MonitorRequester ownerRequester) {
+			this.ownerRequester = ownerRequester;
+		}
+
+		@Override
+		public void monitorConnect(Status status, Monitor monitor, Structure structure) {
+			upstreamConnected(this, status, monitor, structure);
+		}
+
+		@Override
+		public void monitorEvent(Monitor monitor) {
+			upstreamEvent(this);
+		}
+
+		@Override
+		public void unlisten(Monitor monitor) {
+			upstreamUnlisten(this);
+		}
+
+		@Override
+		public String getRequesterName() {
+			return ownerRequester.getRequesterName();
+		}
+
+		@Override
+		public void message(String message, MessageType messageType) {
+			ownerRequester.message(message, messageType);
+		}
+	}
+
+	/**
+	 * Local monitor, i.e. subscription to the shared monitor.
+	 */
+	public final class Subscription implements Monitor {
+
+		private final ChannelImpl channel;
+		private final MonitorRequester requester;
+		private final int queueSize;
+
+		// guarded by SharedChannelMonitor.this
+		private MonitorElement[] elements = null;
+		// per element, fields that are not up-to-date w.r.t. latest value
+		private BitSet[] staleBitSets = null;
+		private final LinkedList<MonitorElement> freeQueue = new LinkedList<MonitorElement>();
+		private final LinkedList<MonitorElement> usedQueue = new LinkedList<MonitorElement>();
+		private boolean started = false;
+
+		// updates received while all the elements were taken
+		private boolean missed = false;
+		private final BitSet missedChangedBitSet = new BitSet();
+		private final BitSet missedOverrunBitSet = new BitSet();
+
+		Subscription(ChannelImpl channel, MonitorRequester requester, int queueSize) {
+			this.channel = channel;
+			this.requester = requester;
+			this.queueSize = queueSize;
+		}
+
+		/**
+		 * Must be called while holding SharedChannelMonitor.this lock.
+		 */
+		void init(Structure structure) {
+			elements = new MonitorElement[queueSize];
+			staleBitSets = new BitSet[queueSize];
+			freeQueue.clear();
+			usedQueue.clear();
+			for (int i = 0; i < queueSize; i++)
+			{
+				final PVStructure pvStructure = PVFactory.getPVDataCreate().createPVStructure(structure);
+				elements[i] = MonitorQueueFactory.createMonitorElement(pvStructure);
+				staleBitSets[i] = new BitSet(pvStructure.getNumberFields());
+				staleBitSets[i].set(0);
+				freeQueue.add(elements[i]);
+			}
+			missed = false;
+		}
+
+		/**
+		 * Bring element up-to-date with the latest value.
+		 * Must be called while holding SharedChannelMonitor.this lock.
+		 */
+		private void copyLatest(MonitorElement element) {
+			for (int i = 0; i < elements.length; i++)
+				if (elements[i] == element)
+				{
+					SerializationHelper.partialCopy(latest, element.getPVStructure(), staleBitSets[i]);
+					staleBitSets[i].clear();
+					return;
+				}
+		}
+
+		/**
+		 * Queue an update, latest value must already be updated.
+		 * Must be called while holding SharedChannelMonitor.this lock.
+		 * @return <code>true</code> if requester needs to be notified.
+		 */
+		boolean deliver(BitSet changedBitSet, BitSet overrunBitSet) {
+			if (!started || elements == null)
+				return false;
+
+			for (BitSet staleBitSet : staleBitSets)
+				staleBitSet.or(changedBitSet);
+
+			MonitorElement element = freeQueue.poll();
+			if (element != null)
+			{
+				copyLatest(element);
+				element.getChangedBitSet().clear();
+				element.getChangedBitSet().or(changedBitSet);
+				element.getOverrunBitSet().clear();
+				element.getOverrunBitSet().or(overrunBitSet);
+				usedQueue.add(element);
+				return true;
+			}
+
+			element = usedQueue.peekLast();
+			if (element != null)
+			{
+				// queue full, merge into the last element
+				copyLatest(element);
+				element.getOverrunBitSet().or_and(element.getChangedBitSet(), changedBitSet);
+				element.getChangedBitSet().or(changedBitSet);
+				element.getOverrunBitSet().or(overrunBitSet);
+				return false;
+			}
+
+			// all the elements are taken, remember until one gets released
+			if (missed)
+				missedOverrunBitSet.or_and(missedChangedBitSet, changedBitSet);
+			else
+			{
+				missedChangedBitSet.clear();
+				missedOverrunBitSet.clear();
+				missed = true;
+			}
+			missedChangedBitSet.or(changedBitSet);
+			missedOverrunBitSet.or(overrunBitSet);
+			return false;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.monitor.Monitor#poll()
+		 */
+		@Override
+		public MonitorElement poll() {
+			synchronized (SharedChannelMonitor.this) {
+				return usedQueue.poll();
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.monitor.Monitor#release(org.epics.pvdata.monitor.MonitorElement)
+		 */
+		@Override
+		public void release(MonitorElement monitorElement) {
+			boolean notify = false;
+			synchronized (SharedChannelMonitor.this) {
+				if (elements == null || freeQueue.contains(monitorElement) || usedQueue.contains(monitorElement))
+					return;
+
+				boolean known = false;
+				for (MonitorElement element : elements)
+					if (element == monitorElement)
+					{
+						known = true;
+						break;
+					}
+				if (!known)
+					return;
+
+				if (missed && started)
+				{
+					missed = false;
+					copyLatest(monitorElement);
+					monitorElement.getChangedBitSet().clear();
+					monitorElement.getChangedBitSet().or(missedChangedBitSet);
+					monitorElement.getOverrunBitSet().clear();
+					monitorElement.getOverrunBitSet().or(missedOverrunBitSet);
+					usedQueue.add(monitorElement);
+					notify = true;
+				}
+				else
+					freeQueue.add(monitorElement);
+			}
+
+			if (notify)
+				requester.monitorEvent(this);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.monitor.Monitor#start()
+		 */
+		@Override
+		public Status start() {
+			return startSubscription(this);
+		}
+
+		/**
+		 * Must be called while holding SharedChannelMonitor.this lock.
+		 * @return <code>true</code> if this subscription was started.
+		 */
+		boolean internalStop() {
+			if (!started)
+				return false;
+
+			started = false;
+			missed = false;
+			freeQueue.addAll(usedQueue);
+			usedQueue.clear();
+			return true;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.monitor.Monitor#stop()
+		 */
+		@Override
+		public Status stop() {
+			return stopSubscription(this);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.misc.Destroyable#destroy()
+		 */
+		@Override
+		public void destroy() {
+			unsubscribe(this);
+		}
+	}
+
+	private final SharedChannelMonitorRegistry registry;
+	private final String key;
+	private final PVStructure pvRequest;
+
+	private final BitSet fullBitSet = new BitSet();
+	private final BitSet emptyBitSet = new BitSet();
+
+	// guarded by this (and registry for subscriptions and destroyed)
+	private final ArrayList<Subscription> subscriptions = new ArrayList<Subscription>();
+	private Subscription owner = null;
+	private Upstream upstream = null;
+	private Monitor upstreamMonitor = null;
+	private boolean connected = false;
+	private boolean destroyed = false;
+	private int startedCount = 0;
+	private Structure structure = null;
+	private PVStructure latest = null;
+	private boolean hasLatest = false;
+
+	SharedChannelMonitor(SharedChannelMonitorRegistry registry, String key, PVStructure pvRequest)
+	{
+		this.registry = registry;
+		this.key = key;
+		this.pvRequest = pvRequest;
+		fullBitSet.set(0);
+	}
+
+	static int getQueueSize(PVStructure pvRequest)
+	{
+		if (pvRequest != null)
+		{
+			final PVField pvField = pvRequest.getSubField("record._options.queueSize");
+			if (pvField instanceof PVString)
+			{
+				try {
+					return Math.max(1, Integer.parseInt(((PVString)pvField).get()));
+				} catch (NumberFormatException e) {
+					// noop, use default
+				}
+			}
+		}
+		return DEFAULT_QUEUE_SIZE;
+	}
+
+	String getKey()
+	{
+		return key;
+	}
+
+	/**
+	 * Get number of local monitors.
+	 * @return number of local monitors.
+	 */
+	public synchronized int getSubscriberCount()
+	{
+		return subscriptions.size();
+	}
+
+	/**
+	 * Must be called while holding registry lock.
+	 */
+	Subscription subscribe(ChannelImpl channel, MonitorRequester requester, int queueSize)
+	{
+		synchronized (this) {
+			final Subscription subscription = new Subscription(channel, requester, queueSize);
+			subscriptions.add(subscription);
+			return subscription;
+		}
+	}
+
+	/**
+	 * Get local monitors using given channel.
+	 * Must be called while holding registry lock.
+	 */
+	synchronized void getSubscriptions(ChannelImpl channel, ArrayList<Subscription> list)
+	{
+		for (Subscription subscription : subscriptions)
+			if (subscription.channel == channel)
+				list.add(subscription);
+	}
+
+	/**
+	 * Connect the subscription, creates wire monitor if needed.
+	 * Must be called w/o holding any lock.
+	 */
+	void connect(Subscription subscription)
+	{
+		final Upstream newUpstream;
+		final Structure structure;
+		synchronized (this) {
+			if (connected)
+			{
+				newUpstream = null;
+				structure = this.structure;
+				subscription.init(structure);
+			}
+			else if (upstream == null)
+			{
+				owner = subscription;
+				upstream = newUpstream = new Upstream(subscription.requester);
+				structure = null;
+			}
+			else
+			{
+				// wire monitor is being connected
+				return;
+			}
+		}
+
+		if (newUpstream != null)
+			createUpstream(subscription.channel, newUpstream);
+		else
+			subscription.requester.monitorConnect(okStatus, subscription, structure);
+	}
+
+	private void createUpstream(ChannelImpl channel, Upstream upstream)
+	{
+		try {
+			ChannelMonitorImpl.create(channel, upstream, pvRequest);
+		} catch (Throwable th) {
+			upstream.monitorConnect(
+					PVFactory.getStatusCreate().createStatus(StatusType.FATAL, "Unexpected exception caught: " + th.getMessage(), th),
+					null, null);
+		}
+	}
+
+	private void upstreamConnected(Upstream up, Status status, Monitor monitor, Structure structure)
+	{
+		boolean stale = false;
+		boolean start = false;
+		ArrayList<Subscription> toConnect = null;
+
+		synchronized (registry) {
+			synchronized (this) {
+				if (up != upstream || destroyed)
+				{
+					stale = true;
+				}
+				else if (!status.isSuccess())
+				{
+					if (!connected)
+					{
+						// failed to create wire monitor, nothing to share
+						upstream = null;
+						toConnect = new ArrayList<Subscription>(subscriptions);
+						subscriptions.clear();
+						destroyed = true;
+						registry.remove(this);
+					}
+					else
+					{
+						// failed on reconnect, report to all
+						toConnect = new ArrayList<Subscription>(subscriptions);
+					}
+				}
+				else
+				{
+					// a new wire monitor (not a reconnect of the existing one) needs to be started
+					start = (monitor != upstreamMonitor) && startedCount > 0;
+					upstreamMonitor = monitor;
+					if (!connected || !structure.equals(this.structure))
+					{
+						connected = true;
+						this.structure = structure;
+						latest = PVFactory.getPVDataCreate().createPVStructure(structure);
+						hasLatest = false;
+						for (Subscription subscription : subscriptions)
+							subscription.init(structure);
+						toConnect = new ArrayList<Subscription>(subscriptions);
+					}
+				}
+			}
+		}
+
+		if (stale)
+		{
+			if (monitor != null && monitor != upstreamMonitor)
+				monitor.destroy();
+			return;
+		}
+
+		if (start)
+			monitor.start();
+
+		if (toConnect != null)
+			for (Subscription subscription : toConnect)
+				subscription.requester.monitorConnect(status, subscription, status.isSuccess() ? structure : null);
+	}
+
+	private void upstreamEvent(Upstream up)
+	{
+		final ArrayList<Subscription> toNotify = new ArrayList<Subscription>();
+		synchronized (this) {
+			final Monitor monitor = upstreamMonitor;
+			if (up != upstream || monitor == null)
+				return;
+
+			MonitorElement element;
+			while ((element = monitor.poll()) != null)
+			{
+				try {
+					final BitSet changedBitSet = element.getChangedBitSet();
+					final BitSet overrunBitSet = (element.getOverrunBitSet() != null) ? element.getOverrunBitSet() : emptyBitSet;
+					SerializationHelper.partialCopy(element.getPVStructure(), latest, changedBitSet);
+					hasLatest = true;
+
+					for (Subscription subscription : subscriptions)
+						if (subscription.deliver(changedBitSet, overrunBitSet) && !toNotify.contains(subscription))
+							toNotify.add(subscription);
+				} finally {
+					monitor.release(element);
+				}
+			}
+		}
+
+		for (Subscription subscription : toNotify)
+			subscription.requester.monitorEvent(subscription);
+	}
+
+	private void upstreamUnlisten(Upstream up)
+	{
+		final ArrayList<Subscription> toUnlisten;
+		synchronized (this) {
+			if (up != upstream)
+				return;
+			toUnlisten = new ArrayList<Subscription>(subscriptions);
+		}
+
+		for (Subscription subscription : toUnlisten)
+			subscription.requester.unlisten(subscription);
+	}
+
+	private Status startSubscription(Subscription subscription)
+	{
+		Monitor toStart = null;
+		boolean notify = false;
+		synchronized (this) {
+			if (destroyed || !subscriptions.contains(subscription))
+				return ChannelMonitorImpl.destroyedStatus;
+
+			if (subscription.started)
+				return okStatus;
+
+			subscription.started = true;
+			if (startedCount++ == 0)
+			{
+				// wire monitor will send the initial value
+				toStart = upstreamMonitor;
+			}
+			else if (hasLatest)
+			{
+				// wire monitor already running, give the latest value
+				notify = subscription.deliver(fullBitSet, emptyBitSet);
+			}
+		}
+
+		if (notify)
+			subscription.requester.monitorEvent(subscription);
+
+		return (toStart != null) ? toStart.start() : okStatus;
+	}
+
+	private Status stopSubscription(Subscription subscription)
+	{
+		Monitor toStop = null;
+		synchronized (this) {
+			if (subscription.internalStop() && --startedCount == 0)
+				toStop = upstreamMonitor;
+		}
+
+		return (toStop != null) ? toStop.stop() : okStatus;
+	}
+
+	void unsubscribe(Subscription subscription)
+	{
+		Monitor toDestroy = null;
+		Monitor toStop = null;
+		Upstream newUpstream = null;
+		ChannelImpl channel = null;
+
+		synchronized (registry) {
+			synchronized (this) {
+				if (!subscriptions.remove(subscription))
+					return;
+
+				if (subscription.internalStop() && --startedCount == 0)
+					toStop = upstreamMonitor;
+
+				if (subscriptions.isEmpty())
+				{
+					destroyed = true;
+					registry.remove(this);
+					toDestroy = upstreamMonitor;
+					upstreamMonitor = null;
+					upstream = null;
+				}
+				else if (subscription == owner)
+				{
+					// recreate wire monitor using the channel of the next local monitor
+					owner = subscriptions.get(0);
+					toDestroy = upstreamMonitor;
+					upstreamMonitor = null;
+					upstream = newUpstream = new Upstream(owner.requester);
+					channel = owner.channel;
+				}
+			}
+		}
+
+		if (toDestroy != null)
+			toDestroy.destroy();
+		else if (toStop != null)
+			toStop.stop();
+
+		if (newUpstream != null)
+			createUpstream(channel, newUpstream);
+	}
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.client.impl.remote;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.epics.pvdata.monitor.MonitorRequester;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+
+/**
+ * Registry of shared client monitors, keyed by channel name and normalized pvRequest.
+ * pvRequest is normalized by leaving out options that apply only to the local monitor (i.e. <code>queueSize</code>).
+ * @see SharedChannelMonitor
+ */
+public class SharedChannelMonitorRegistry {
+
+	// guarded by this, lock order: registry, shared monitor
+	private final Map<String, SharedChannelMonitor> monitors = new HashMap<String, SharedChannelMonitor>();
+
+	/**
+	 * Check whether monitor with given pvRequest can be shared.
+	 * Pipelined monitors have per-monitor flow control and are never shared.
+	 * @param pvRequest pvRequest.
+	 * @return <code>true</code> if monitor can be shared.
+	 */
+	public static boolean isShareable(PVStructure pvRequest)
+	{
+		if (pvRequest == null)
+			return false;
+
+		final PVField pvField = pvRequest.getSubField("record._options.pipeline");
+		if (!(pvField instanceof PVString))
+			return true;
+		final String value = ((PVString)pvField).get();
+		return !(Boolean.parseBoolean(value) || "adaptive".equalsIgnoreCase(value));
+	}
+
+	private static String createKey(ChannelImpl channel, PVStructure pvRequest)
+	{
+		final StringBuilder key = new StringBuilder();
+		key.append(channel.getChannelName()).append('\n');
+		appendNormalized(key, pvRequest, "");
+		return key.toString();
+	}
+
+	private static void appendNormalized(StringBuilder key, PVStructure pvStructure, String path)
+	{
+		for (PVField pvField : pvStructure.getPVFields())
+		{
+			final String fieldPath = path + pvField.getFieldName();
+			if (fieldPath.equals("record._options.queueSize"))
+				continue;
+
+			if (pvField instanceof PVStructure)
+			{
+				key.append(fieldPath).append('{');
+				appendNormalized(key, (PVStructure)pvField, fieldPath + '.');
+				key.append('}');
+			}
+			else
+				key.append(fieldPath).append('=').append(pvField.toString()).append(';');
+		}
+	}
+
+	/**
+	 * Subscribe to a shared monitor, create one (using given channel) if there is none.
+	 * Requester gets <code>monitorConnect</code> callback when shared monitor is connected.
+	 * @param channel channel of the local monitor.
+	 * @param requester local monitor requester.
+	 * @param pvRequest pvRequest.
+	 * @return local monitor.
+	 */
+	public SharedChannelMonitor.Subscription subscribe(ChannelImpl channel, MonitorRequester requester, PVStructure pvRequest)
+	{
+		final String key = createKey(channel, pvRequest);
+		final int queueSize = SharedChannelMonitor.getQueueSize(pvRequest);
+
+		final SharedChannelMonitor.Subscription subscription;
+		final SharedChannelMonitor sharedMonitor;
+		synchronized (this) {
+			SharedChannelMonitor monitor = monitors.get(key);
+			if (monitor == null)
+			{
+				monitor = new SharedChannelMonitor(this, key, pvRequest);
+				monitors.put(key, monitor);
+			}
+			sharedMonitor = monitor;
+			subscription = sharedMonitor.subscribe(channel, requester, queueSize);
+		}
+
+		sharedMonitor.connect(subscription);
+		return subscription;
+	}
+
+	/**
+	 * Destroy all the local monitors of the channel (being destroyed).
+	 * @param channel channel being destroyed.
+	 */
+	public void channelDestroyed(ChannelImpl channel)
+	{
+		final ArrayList<SharedChannelMonitor.Subscription> toDestroy = new ArrayList<SharedChannelMonitor.Subscription>();
+		synchronized (this) {
+			if (monitors.isEmpty())
+				return;
+
+			for (SharedChannelMonitor monitor : monitors.values())
+				monitor.getSubscriptions(channel, toDestroy);
+		}
+
+		for (SharedChannelMonitor.Subscription subscription : toDestroy)
+			subscription.destroy();
+	}
+
+	/**
+	 * Remove shared monitor, must be called while holding this lock.
+	 * @param sharedMonitor monitor to remove.
+	 */
+	void remove(SharedChannelMonitor sharedMonitor)
+	{
+		if (monitors.get(sharedMonitor.getKey()) == sharedMonitor)
+			monitors.remove(sharedMonitor.getKey());
+	}
+
+	/**
+	 * Get number of shared monitors.
+	 * @return number of shared monitors.
+	 */
+	public synchronized int size()
+	{
+		return monitors.size();
+	}
+}
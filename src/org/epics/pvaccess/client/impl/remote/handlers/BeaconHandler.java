@@ -22,7 +22,9 @@ import java.util.logging.Level;
 
 import org.epics.pvaccess.PVFactory;
 import org.epics.pvaccess.client.impl.remote.ClientContextImpl;
+import org.epics.pvaccess.client.impl.remote.search.ChannelNameCache;
 import org.epics.pvaccess.impl.remote.Transport;
+import org.epics.pvaccess.impl.remote.utils.GUID;
 import org.epics.pvdata.misc.SerializeHelper;
 import org.epics.pvdata.pv.Field;
 import org.epics.pvdata.pv.FieldCreate;
@@ -95,6 +97,11 @@ public class BeaconHandler extends AbstractClientResponseHandler {
 		
 		final String protocol = SerializeHelper.deserializeString(payloadBuffer, transport);
 
+		// validate cached channel name resolutions
+		final ChannelNameCache nameCache = context.getNameCache();
+		if (nameCache != null)
+			nameCache.serverGUIDReported(responseFrom, new GUID(guid));
+
 		org.epics.pvaccess.client.impl.remote.BeaconHandler beaconHandler = context.getBeaconHandler(protocol, responseFrom);
 		// currently we care only for servers used by this context  
 		if (beaconHandler == null)
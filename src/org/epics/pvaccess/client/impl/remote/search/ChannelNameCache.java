@@ -0,0 +1,353 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.client.impl.remote.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.epics.pvaccess.impl.remote.utils.GUID;
+import org.epics.pvaccess.util.InetAddressUtil;
+
+/**
+ * Persistent channel name resolution cache (channel name to server address and GUID).
+ * Cache is loaded from a (memory-mapped) file on startup and written back by a background thread
+ * whenever it changes, so that a restarted client can connect to the servers directly w/o searching.
+ * Entries are invalidated when the server cannot be reached, the channel is not found on the server
+ * or the server (at that address) reports a different GUID.
+ * <p>
+ * File format (big endian): magic (int), version (short), count (int), followed by count records of
+ * name length (short), UTF-8 name, IPv6 (or IPv4-mapped) address (16 bytes), port (short), GUID (12 bytes).
+ */
+public class ChannelNameCache implements Runnable {
+
+	private static final int MAGIC = 0x50564E43;	// "PVNC"
+	private static final short VERSION = 1;
+	private static final int HEADER_SIZE = 4 + 2 + 4;
+	private static final int RECORD_FIXED_SIZE = 2 + 16 + 2 + 12;
+	private static final int GUID_SIZE = 12;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Cached resolution.
+	 */
+	public static final class Entry {
+		private final InetSocketAddress address;
+		private final GUID guid;
+		private final byte[] guidBytes;
+
+		Entry(InetSocketAddress address, byte[] guidBytes) {
+			this.address = address;
+			this.guidBytes = guidBytes;
+			this.guid = new GUID(guidBytes);
+		}
+
+		/**
+		 * Get server address.
+		 * @return server address.
+		 */
+		public InetSocketAddress getAddress() {
+			return address;
+		}
+
+		/**
+		 * Get server GUID.
+		 * @return server GUID.
+		 */
+		public GUID getGUID() {
+			return guid;
+		}
+	}
+
+	private final File file;
+	private final long writePeriodMs;
+	private final Logger logger;
+
+	// guarded by this
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+	// servers that could not be reached in this session
+	private final Set<InetSocketAddress> unreachable = new HashSet<InetSocketAddress>();
+	// server GUIDs as reported by beacons
+	private final Map<InetSocketAddress, GUID> reportedGUIDs = new HashMap<InetSocketAddress, GUID>();
+	private boolean dirty = false;
+	private boolean destroyed = false;
+	private Thread writer = null;
+
+	/**
+	 * Constructor.
+	 * @param file cache file.
+	 * @param writePeriodMs minimal period between two writes in ms.
+	 * @param logger logger to use.
+	 */
+	public ChannelNameCache(File file, long writePeriodMs, Logger logger) {
+		this.file = file;
+		this.writePeriodMs = writePeriodMs;
+		this.logger = logger;
+	}
+
+	/**
+	 * Load the cache from the file (if exists) and start background writer.
+	 */
+	public synchronized void start()
+	{
+		if (file.exists())
+		{
+			try {
+				load();
+			} catch (Throwable th) {
+				logger.log(Level.WARNING, "Failed to load channel name cache from '" + file + "', ignoring it.", th);
+				entries.clear();
+			}
+		}
+
+		writer = new Thread(this, "pvAccess name cache writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	private void load() throws IOException
+	{
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+				throw new IOException("not a channel name cache file");
+			if (buffer.getShort() != VERSION)
+				throw new IOException("unsupported channel name cache file version");
+
+			final int count = buffer.getInt();
+			final byte[] address = new byte[16];
+			for (int i = 0; i < count; i++)
+			{
+				final byte[] name = new byte[buffer.getShort() & 0xFFFF];
+				buffer.get(name);
+				buffer.get(address);
+				final int port = buffer.getShort() & 0xFFFF;
+				final byte[] guid = new byte[GUID_SIZE];
+				buffer.get(guid);
+
+				entries.put(new String(name, UTF8),
+						new Entry(new InetSocketAddress(InetAddress.getByAddress(address), port), guid));
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Write the cache to the file, via temporary file.
+	 * @param snapshot entries to write.
+	 */
+	private void write(Map<String, Entry> snapshot) throws IOException
+	{
+		final byte[][] names = new byte[snapshot.size()][];
+		final Entry[] values = new Entry[snapshot.size()];
+		int size = HEADER_SIZE;
+		int i = 0;
+		for (Map.Entry<String, Entry> e : snapshot.entrySet())
+		{
+			names[i] = e.getKey().getBytes(UTF8);
+			values[i] = e.getValue();
+			size += RECORD_FIXED_SIZE + names[i].length;
+			i++;
+		}
+
+		final File tmpFile = new File(file.getPath() + ".tmp");
+		final RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw");
+		try {
+			raf.setLength(size);
+			final FileChannel channel = raf.getChannel();
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+			buffer.putInt(MAGIC);
+			buffer.putShort(VERSION);
+			buffer.putInt(names.length);
+			for (i = 0; i < names.length; i++)
+			{
+				buffer.putShort((short)names[i].length);
+				buffer.put(names[i]);
+				InetAddressUtil.encodeAsIPv6Address(buffer, values[i].address.getAddress());
+				buffer.putShort((short)values[i].address.getPort());
+				buffer.put(values[i].guidBytes);
+			}
+			buffer.force();
+		} finally {
+			raf.close();
+		}
+
+		// replace
+		if (!tmpFile.renameTo(file))
+		{
+			file.delete();
+			if (!tmpFile.renameTo(file))
+				throw new IOException("failed to rename '" + tmpFile + "' to '" + file + "'");
+		}
+	}
+
+	/**
+	 * Write the cache, if changed.
+	 */
+	public void flush()
+	{
+		final Map<String, Entry> snapshot;
+		synchronized (this) {
+			if (!dirty)
+				return;
+			dirty = false;
+			snapshot = new HashMap<String, Entry>(entries);
+		}
+
+		try {
+			write(snapshot);
+		} catch (Throwable th) {
+			logger.log(Level.WARNING, "Failed to write channel name cache to '" + file + "'.", th);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run()
+	{
+		while (true)
+		{
+			synchronized (this) {
+				try {
+					while (!dirty && !destroyed)
+						this.wait();
+					if (destroyed)
+						return;
+					// coalesce changes
+					this.wait(writePeriodMs);
+				} catch (InterruptedException e) {
+					// noop
+				}
+				if (destroyed)
+					return;
+			}
+
+			flush();
+		}
+	}
+
+	/**
+	 * Stop background writer and write pending changes.
+	 */
+	public void destroy()
+	{
+		synchronized (this) {
+			if (destroyed)
+				return;
+			destroyed = true;
+			this.notifyAll();
+		}
+
+		flush();
+	}
+
+	/**
+	 * Get cached resolution of the channel.
+	 * @param channelName channel name.
+	 * @return cached resolution, <code>null</code> if not cached or invalid.
+	 */
+	public synchronized Entry get(String channelName)
+	{
+		final Entry entry = entries.get(channelName);
+		if (entry == null || unreachable.contains(entry.address))
+			return null;
+
+		final GUID reportedGUID = reportedGUIDs.get(entry.address);
+		if (reportedGUID != null && !reportedGUID.equals(entry.guid))
+			return null;
+
+		return entry;
+	}
+
+	/**
+	 * Cache resolution of the channel.
+	 * @param channelName channel name.
+	 * @param address server address.
+	 * @param guid server GUID.
+	 */
+	public synchronized void put(String channelName, InetSocketAddress address, GUID guid)
+	{
+		final byte[] guidBytes = guid.getBytes();
+		if (guidBytes == null || guidBytes.length != GUID_SIZE)
+			return;
+
+		final Entry entry = entries.get(channelName);
+		if (entry != null && entry.address.equals(address) && entry.guid.equals(guid))
+			return;
+
+		entries.put(channelName, new Entry(address, guidBytes.clone()));
+		unreachable.remove(address);
+		markDirty();
+	}
+
+	/**
+	 * Remove cached resolution of the channel (e.g. channel not found on the cached server).
+	 * @param channelName channel name.
+	 */
+	public synchronized void remove(String channelName)
+	{
+		if (entries.remove(channelName) != null)
+			markDirty();
+	}
+
+	/**
+	 * Server could not be reached, do not use cached resolutions to it (in this session).
+	 * @param address server address.
+	 */
+	public synchronized void serverUnreachable(InetSocketAddress address)
+	{
+		unreachable.add(address);
+	}
+
+	/**
+	 * Server GUID was reported (e.g. by a beacon), resolutions to the same address with other GUID are invalid.
+	 * @param address server address.
+	 * @param guid server GUID.
+	 */
+	public synchronized void serverGUIDReported(InetSocketAddress address, GUID guid)
+	{
+		unreachable.remove(address);
+		reportedGUIDs.put(address, guid);
+	}
+
+	/**
+	 * Get number of cached resolutions.
+	 * @return number of cached resolutions.
+	 */
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	private void markDirty()
+	{
+		if (!dirty)
+		{
+			dirty = true;
+			this.notifyAll();
+		}
+	}
+}
@@ -0,0 +1,250 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.client.impl.remote.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import org.epics.pvaccess.util.IntHashMap;
+
+/**
+ * Hashed timing wheel of channels to be searched.
+ * Each channel is kept in the wheel slot of its next search time (tick), so that
+ * only channels due are touched on each tick (instead of all the unresolved channels).
+ * Search period of a channel doubles after each search up to <code>MAX_DELAY_TICKS</code>.
+ * Channels due are moved to a pending queue where they wait to be searched.
+ * This class is not thread-safe, access must be guarded by the owner.
+ */
+public final class SearchTimingWheel {
+
+	/**
+	 * Max search period in ticks, must be less than wheel size.
+	 */
+	public static final int MAX_DELAY_TICKS = 128;
+
+	private static final int WHEEL_SIZE = 256;
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+	private static final long PENDING = -1;
+	private static final long CANCELLED = -2;
+	
+	/**
+	 * Registered channel.
+	 */
+	private static final class Entry {
+		final SearchInstance instance;
+		// next search period in ticks
+		int delay;
+		// tick of the next search, or PENDING or CANCELLED
+		long scheduledTick;
+		
+		Entry(SearchInstance instance) {
+			this.instance = instance;
+		}
+	}
+
+	/**
+	 * Registered channels (CID to <code>Entry</code> map).
+	 */
+	private final IntHashMap channels = new IntHashMap();
+	
+	/**
+	 * Timing wheel, each slot holds entries to be searched on ticks mapping to the slot,
+	 * entries that were rescheduled or cancelled in the meantime are dropped lazily.
+	 */
+	private final ArrayList<Entry>[] wheel;
+	
+	/**
+	 * Entries to be searched as soon as possible.
+	 */
+	private final ArrayDeque<Entry> pending = new ArrayDeque<Entry>();
+	
+	private long tick = 0;
+
+	@SuppressWarnings("unchecked")
+	public SearchTimingWheel()
+	{
+		wheel = new ArrayList[WHEEL_SIZE];
+		for (int i = 0; i < WHEEL_SIZE; i++)
+			wheel[i] = new ArrayList<Entry>();
+	}
+	
+	/**
+	 * Get current tick.
+	 * @return current tick.
+	 */
+	public long getTick() {
+		return tick;
+	}
+	
+	/**
+	 * Get number of registered channels.
+	 * @return number of registered channels.
+	 */
+	public int registeredCount() {
+		return channels.size();
+	}
+
+	/**
+	 * Get number of channels in the pending queue,
+	 * including the ones rescheduled or cancelled in the meantime.
+	 * @return number of pending channels.
+	 */
+	public int pendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Register channel, previous registration of the same channel (CID) is overridden.
+	 * @param channel channel to register.
+	 * @param penalize register with penalty (search after <code>MAX_DELAY_TICKS</code>),
+	 * 		otherwise search as soon as possible.
+	 */
+	public void register(SearchInstance channel, boolean penalize)
+	{
+		final Entry entry = new Entry(channel);
+		entry.scheduledTick = CANCELLED;
+
+		final Entry previous = (Entry)channels.put(channel.getChannelID(), entry);
+		if (previous != null)
+			previous.scheduledTick = CANCELLED;
+		
+		if (penalize)
+		{
+			entry.delay = MAX_DELAY_TICKS;
+			schedule(entry, MAX_DELAY_TICKS);
+		}
+		else
+		{
+			entry.delay = 1;
+			schedule(entry, 0);
+		}
+	}
+
+	/**
+	 * Unregister channel.
+	 * @param channelID channel ID (CID).
+	 * @return unregistered channel, <code>null</code> if not registered.
+	 */
+	public SearchInstance unregister(int channelID)
+	{
+		final Entry entry = (Entry)channels.remove(channelID);
+		if (entry == null)
+			return null;
+		
+		entry.scheduledTick = CANCELLED;
+		return entry.instance;
+	}
+	
+	/**
+	 * Search all registered channels as soon as possible and reset their search period.
+	 */
+	public void boost()
+	{
+		Object[] entries = channels.toArray(new Object[channels.size()]);
+		for (Object o : entries)
+		{
+			final Entry entry = (Entry)o;
+			entry.delay = 1;
+			schedule(entry, 0);
+		}
+	}
+	
+	/**
+	 * Advance the wheel for one tick, entries due are moved to the pending queue.
+	 */
+	public void advance()
+	{
+		tick++;
+
+		final ArrayList<Entry> slot = wheel[(int)(tick & WHEEL_MASK)];
+		final int size = slot.size();
+		if (size == 0)
+			return;
+		
+		int keep = 0;
+		for (int i = 0; i < size; i++)
+		{
+			final Entry entry = slot.get(i);
+			if (entry.scheduledTick == tick)
+			{
+				entry.scheduledTick = PENDING;
+				pending.add(entry);
+			}
+			else if (entry.scheduledTick > tick && (entry.scheduledTick & WHEEL_MASK) == (tick & WHEEL_MASK))
+			{
+				// scheduled for one of the next wheel rounds
+				slot.set(keep++, entry);
+			}
+			// else rescheduled or cancelled, drop
+		}
+		
+		// trim
+		for (int i = size - 1; i >= keep; i--)
+			slot.remove(i);
+	}
+	
+	/**
+	 * Get the next channel to be searched, rescheduled or cancelled entries are dropped.
+	 * @return channel to be searched, <code>null</code> if there is none.
+	 */
+	public SearchInstance peekPending()
+	{
+		Entry entry;
+		while ((entry = pending.peek()) != null)
+		{
+			if (entry.scheduledTick == PENDING)
+				return entry.instance;
+
+			// rescheduled or cancelled
+			pending.poll();
+		}
+		return null;
+	}
+	
+	/**
+	 * Mark the channel returned by <code>peekPending()</code> as searched,
+	 * i.e. reschedule it and back-off its search period.
+	 */
+	public void searched()
+	{
+		final Entry entry = pending.poll();
+		schedule(entry, entry.delay);
+		entry.delay = Math.min(entry.delay << 1, MAX_DELAY_TICKS);
+	}
+
+	/**
+	 * Drop the channel returned by <code>peekPending()</code> without searching it.
+	 */
+	public void dropPending()
+	{
+		final Entry entry = pending.poll();
+		entry.scheduledTick = CANCELLED;
+	}
+	
+	/**
+	 * Schedule search of an entry.
+	 * @param entry entry to schedule.
+	 * @param delay delay in ticks, 0 to search as soon as possible.
+	 */
+	private void schedule(Entry entry, int delay)
+	{
+		if (delay == 0)
+		{
+			if (entry.scheduledTick != PENDING)
+			{
+				entry.scheduledTick = PENDING;
+				pending.add(entry);
+			}
+		}
+		else
+		{
+			entry.scheduledTick = tick + delay;
+			wheel[(int)(entry.scheduledTick & WHEEL_MASK)].add(entry);
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2004 by Cosylab
+ * Copyright (c) 2009 by Cosylab
  *
  * The full license specifying the redistribution, modification, usage and other
  * rights and obligations is included with the distribution of this project in
@@ -17,29 +17,30 @@ package org.epics.pvaccess.client.impl.remote.search;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.epics.pvaccess.PVAConstants;
 import org.epics.pvaccess.client.impl.remote.ClientContextImpl;
+import org.epics.pvaccess.client.impl.remote.NameServerConnector;
 import org.epics.pvaccess.impl.remote.ProtocolType;
 import org.epics.pvaccess.impl.remote.TransportSendControl;
 import org.epics.pvaccess.impl.remote.udp.BlockingUDPTransport.InetAddressType;
 import org.epics.pvaccess.impl.remote.utils.GUID;
 import org.epics.pvaccess.util.InetAddressUtil;
-import org.epics.pvaccess.util.IntHashMap;
+import org.epics.pvaccess.util.TokenBucket;
 import org.epics.pvdata.misc.SerializeHelper;
-import org.epics.pvdata.misc.Timer.TimerCallback;
-import org.epics.pvdata.misc.Timer.TimerNode;
-import org.epics.pvdata.misc.TimerFactory;
 import org.epics.pvdata.pv.Field;
 
 /**
- * @author <a href="mailto:matej.sekoranjaATcosylab.com">Matej Sekoranja</a>
- * @version $Id$
+ * Channel search manager that schedules searches using a hashed timing wheel (see <code>SearchTimingWheel</code>).
+ * Outgoing datagrams are paced by a token bucket on the manager's own thread,
+ * channels that cannot be sent due to pacing stay pending and are sent as soon as tokens are available.
+ * Frames are built while holding the manager's lock, but sent outside of it, so that
+ * (un)registration of channels never waits for I/O.
+ * If name servers are configured, search requests are sent to them over TCP instead of UDP.
  */
-public class SimpleChannelSearchManagerImpl implements ChannelSearchManager, TimerCallback, Runnable {
+public class TimingWheelChannelSearchManagerImpl implements ChannelSearchManager, Runnable {
 	
 	/**
 	 * Context.
@@ -56,30 +57,43 @@ public class SimpleChannelSearchManagerImpl implements ChannelSearchManager, Tim
 	 */
 	private final AtomicInteger sequenceNumber = new AtomicInteger(0);
 	
+	// 225ms +/- 25ms random
+	private static final double ATOMIC_PERIOD = 0.225;
+	private static final int PERIOD_JITTER_MS = 25;
+
+	// max 10 frames at once, then 10 frames per 50ms
+	private static final int MAX_FRAMES_AT_ONCE = 10;
+	private static final double FRAMES_PER_SECOND = MAX_FRAMES_AT_ONCE / 0.050;
+
+	// immediate search requests coalescence
+	private static final long IMMEDIATE_COALESCENCE_NS = 10000000L;
+
+	// high-frequency beacon anomaly trigger guard
+	private static final long MIN_BOOST_PERIOD_NS = 100000000L;
+
+	/**
+	 * Send byte buffers (frames), filled while holding this lock and sent outside of it.
+	 * Accessed only by the manager's thread.
+	 */
+	private final ByteBuffer[] frames;
+	
 	/**
-	 * Send byte buffer (frame)
+	 * Channels to be searched, guarded by this.
 	 */
-	private final ByteBuffer sendBuffer;
+	private final SearchTimingWheel wheel = new SearchTimingWheel();
+	
+	private final TokenBucket frameBucket;
+	
+	private final long tickPeriodNs;
+	private long nextTickTime;
+	private long immediateSearchTime = 0;
+	private boolean immediateSearch = false;
+	private long lastBoostTime;
 	
-    /**
-     * Set of registered channels.
-     */
-    private final IntHashMap channels = new IntHashMap();
-    
-    private final ArrayList<SearchInstance> immediateSearch = new ArrayList<SearchInstance>(128);
-    
-    private final TimerNode timerNode;
-    private long lastTimeSent = 0;
-    
-    // 225ms +/- 25ms random
-    private static final double ATOMIC_PERIOD = 0.225;
-    private static final int PERIOD_JITTER_MS = 25;
-
-    
 	private final short responsePort;
 	private final InetAddress responseAddress;
 
-	public SimpleChannelSearchManagerImpl(ClientContextImpl context)
+	public TimingWheelChannelSearchManagerImpl(ClientContextImpl context)
 	{
 		this.context = context;
 
@@ -88,16 +102,21 @@ public class SimpleChannelSearchManagerImpl implements ChannelSearchManager, Tim
 		responsePort = (short)responseSocketAddress.getPort();
 		responseAddress = responseSocketAddress.getAddress();
 		
-		// create and initialize send buffer
-		sendBuffer = ByteBuffer.allocate(PVAConstants.MAX_UDP_UNFRAGMENTED_SEND);
-		initializeSendBuffer();
+		// create send buffers, initialized when used
+		frames = new ByteBuffer[MAX_FRAMES_AT_ONCE];
+		for (int i = 0; i < MAX_FRAMES_AT_ONCE; i++)
+			frames[i] = ByteBuffer.allocate(PVAConstants.MAX_UDP_UNFRAGMENTED_SEND);
 		
 		// add some jitter so that all the clients do not send at the same time
-		double period = ATOMIC_PERIOD + (new Random().nextInt(2*PERIOD_JITTER_MS+1) - PERIOD_JITTER_MS)/(double)1000;
-		timerNode = TimerFactory.createNode(this);
-		context.getTimer().schedulePeriodic(timerNode, period, period);
+		final double period = ATOMIC_PERIOD + (new Random().nextInt(2*PERIOD_JITTER_MS+1) - PERIOD_JITTER_MS)/(double)1000;
+		tickPeriodNs = (long)(period * 1e9);
+		
+		final long now = System.nanoTime();
+		nextTickTime = now + tickPeriodNs;
+		lastBoostTime = now - MIN_BOOST_PERIOD_NS;
+		frameBucket = new TokenBucket(MAX_FRAMES_AT_ONCE, FRAMES_PER_SECOND, now);
 		
-		new Thread(this, "pvAccess immediate-search").start();
+		new Thread(this, "pvAccess search").start();
 	}
 
 	public void run()
@@ -106,41 +125,94 @@ public class SimpleChannelSearchManagerImpl implements ChannelSearchManager, Tim
 		{
 			try
 			{
-				synchronized (immediateSearch) {
-					try {
-						// wait if empty
-						if (immediateSearch.size() == 0)
-							immediateSearch.wait();
-						
-						if (canceled)
-							return;
+				final int frameCount;
+				synchronized (this)
+				{
+					long now = System.nanoTime();
+					
+					// advance the wheel, catch-up if late
+					while (now - nextTickTime >= 0)
+					{
+						nextTickTime += tickPeriodNs;
+						wheel.advance();
+					}
+	
+					if (immediateSearch && now - immediateSearchTime >= IMMEDIATE_COALESCENCE_NS)
+						immediateSearch = false;
+
+					frameCount = immediateSearch ? 0 : buildFrames(now);
+					if (frameCount == 0)
+					{
+						// wait for next tick, coalescence period or token
+						long waitNs = nextTickTime - now;
+						if (immediateSearch)
+							waitNs = Math.min(waitNs, immediateSearchTime + IMMEDIATE_COALESCENCE_NS - now);
+						else if (wheel.peekPending() != null)
+							waitNs = Math.min(waitNs, frameBucket.nanosUntilAvailable(now));
 						
-						// coalescence...
-						Thread.sleep(10);
-					} catch (InterruptedException e) {
-						// noop
+						if (waitNs > 0 && !canceled)
+							this.wait(waitNs / 1000000, (int)(waitNs % 1000000));
+						continue;
 					}
 				}
 				
-				SearchInstance[] sis;
-				synchronized (immediateSearch) {
-					if (immediateSearch.size() == 0)
-						return;
-					sis = new SearchInstance[immediateSearch.size()];
-					immediateSearch.toArray(sis);
-					immediateSearch.clear();
-				}
-					
-				send(sis);
+				for (int i = 0; i < frameCount; i++)
+					send(frames[i]);
+			}
+			catch (InterruptedException ie)
+			{
+				// noop
 			}
 			catch (Throwable th)
 			{
 				// should never happen, be we are careful and verbose
 				th.printStackTrace();
 			}
+		}
+	}
+	
+	/**
+	 * Put pending search requests on the frames, as many as pacing permits.
+	 * Must be called while holding this lock.
+	 * @param now current time.
+	 * @return number of frames to be sent.
+	 */
+	private int buildFrames(long now)
+	{
+		int frameCount = 0;
+		ByteBuffer frame = null;
+		SearchInstance instance;
+		while ((instance = wheel.peekPending()) != null)
+		{
+			if (frame == null)
+			{
+				if (frameCount == frames.length || !frameBucket.tryAcquire(now))
+					break;
+				frame = frames[frameCount];
+				initializeSendBuffer(frame);
+			}
 			
+			if (!generateSearchRequestMessage(instance, frame, mockTransportSendControl))
+			{
+				// empty frame too small, should never happen
+				if (getDataCount(frame) == 0)
+					wheel.dropPending();
+				else
+					frameCount++;
+				frame = null;
+				continue;
+			}
+			
+			// back-off
+			wheel.searched();
 		}
+		
+		if (frame != null && getDataCount(frame) > 0)
+			frameCount++;
+		
+		return frameCount;
 	}
+	
 	/**
 	 * Cancel.
 	 */
@@ -151,21 +223,18 @@ public class SimpleChannelSearchManagerImpl implements ChannelSearchManager, Tim
 		canceled = true;
 		
 		// wake-up
-		synchronized (immediateSearch) {
-			immediateSearch.notifyAll();
-		}		
-		
-		timerNode.cancel();
+		this.notifyAll();
 	}
 
 	private final static int DATA_COUNT_POSITION = PVAConstants.PVA_MESSAGE_HEADER_SIZE + 4+1+3+16+2+1+4;
 	private final static int CAST_POSITION = PVAConstants.PVA_MESSAGE_HEADER_SIZE + 4;
-    private final static int PAYLOAD_POSITION = 4;
+	private final static int PAYLOAD_POSITION = 4;
 
-    /**
+	/**
 	 * Initialize send buffer.
+	 * @param sendBuffer buffer to initialize.
 	 */
-	private void initializeSendBuffer()
+	private void initializeSendBuffer(ByteBuffer sendBuffer)
 	{
 		// new buffer
 		sendBuffer.clear();
@@ -194,19 +263,31 @@ public class SimpleChannelSearchManagerImpl implements ChannelSearchManager, Tim
 		sendBuffer.putShort((short)0);	// count
 	}
 	
+	private static short getDataCount(ByteBuffer sendBuffer)
+	{
+		return sendBuffer.getShort(DATA_COUNT_POSITION);
+	}
+	
 	/**
-	 * Flush send buffer.
+	 * Send a frame.
+	 * Must be called without holding this lock.
+	 * @param sendBuffer frame to send.
 	 */
-	private synchronized void flushSendBuffer()
+	private void send(ByteBuffer sendBuffer)
 	{
+		// name servers are used instead of UDP search, if configured
+		final NameServerConnector nameServerConnector = context.getNameServerConnector();
+		if (nameServerConnector != null)
+		{
+			nameServerConnector.send(sendBuffer);
+			return;
+		}
 		
 		sendBuffer.put(CAST_POSITION, (byte)0x80);	// unicast, no reply required
 		context.getSearchTransport().send(sendBuffer, InetAddressType.UNICAST);
 		
 		sendBuffer.put(CAST_POSITION, (byte)0x00);	// b/m-cast, no reply required
 		context.getSearchTransport().send(sendBuffer, InetAddressType.BROADCAST_MULTICAST);
-		
-		initializeSendBuffer();
 	}
 	
 	private static final TransportSendControl mockTransportSendControl = new TransportSendControl() {
@@ -248,13 +329,13 @@ public class SimpleChannelSearchManagerImpl implements ChannelSearchManager, Tim
 		
 	};
 	
-    /**
-	 * Send search message.
-	 * @return success status.  
+	/**
+	 * Put search request on the frame.
+	 * @return <code>false</code> if there is no more room in the frame.  
 	 */
 	private static boolean generateSearchRequestMessage(SearchInstance si, ByteBuffer requestMessage, TransportSendControl control)
 	{
-	    short dataCount = requestMessage.getShort(DATA_COUNT_POSITION);
+		short dataCount = requestMessage.getShort(DATA_COUNT_POSITION);
 		
 		dataCount++;
 		if (dataCount >= PVAConstants.MAX_SEARCH_BATCH_COUNT)
@@ -277,40 +358,19 @@ public class SimpleChannelSearchManagerImpl implements ChannelSearchManager, Tim
 	}
 
 	/**
-	 * Generate (put on send buffer) search request 
-	 * @param channel 
-	 * @param allowNewFrame flag indicating if new search request message is allowed to be put in new frame.
-	 * @return <code>true</code> if new frame was sent.
+	 * Get number of registered channels.
+	 * @return number of registered channels.
 	 */
-	private synchronized boolean generateSearchRequestMessage(SearchInstance channel, boolean allowNewFrame, boolean flush)
-	{
-		boolean success = generateSearchRequestMessage(channel, sendBuffer, mockTransportSendControl);
-		// buffer full, flush
-		if (!success)
-		{
-			flushSendBuffer();
-			if (allowNewFrame)
-				generateSearchRequestMessage(channel, sendBuffer, mockTransportSendControl);
-			if (flush)
-				flushSendBuffer();
-			return true;
-		}
-		
-		if (flush)
-			flushSendBuffer();
-
-		return flush;
+	public synchronized int registeredCount() {
+		return wheel.registeredCount();
 	}
-	
 
 	/**
-	 * Get number of registered channels.
-	 * @return number of registered channels.
+	 * Get number of channels waiting to be searched (e.g. due to pacing).
+	 * @return number of pending channels.
 	 */
-	public int registeredCount() {
-		synchronized (channels) {
-			return channels.size();
-		}
+	public synchronized int pendingCount() {
+		return wheel.pendingCount();
 	}
 
 	public void register(SearchInstance channel)
@@ -323,37 +383,30 @@ public class SimpleChannelSearchManagerImpl implements ChannelSearchManager, Tim
 	 * @param channel channel to register.
 	 * @param penalize register with penalty (do not issue search immediately).
 	 */
-	public void register(SearchInstance channel, boolean penalize)
+	public synchronized void register(SearchInstance channel, boolean penalize)
 	{
 		if (canceled)
 			return;
 
-		synchronized (channels)
+		// overrided if already registered
+		wheel.register(channel, penalize);
+		
+		// batch immediate search requests
+		if (!penalize && !immediateSearch)
 		{
-			// overrided if already registered
-			channels.put(channel.getChannelID(), channel);
-			channel.getUserValue().set(penalize ? MAX_FALLBACK_COUNT_VALUE : DEFAULT_COUNT_VALUE);
-		}
-
-		// put to immediate, batched list
-		synchronized (immediateSearch) {
-			immediateSearch.add(channel);
-			if (immediateSearch.size() == 1) 
-				immediateSearch.notify();
+			immediateSearch = true;
+			immediateSearchTime = System.nanoTime();
+			this.notifyAll();
 		}
 	}
 
-
 	/**
 	 * Unregister channel.
 	 * @param channel channel to unregister.
 	 */
-	public void unregister(SearchInstance channel)
+	public synchronized void unregister(SearchInstance channel)
 	{
-		synchronized (channels)
-		{
-			channels.remove(channel.getChannelID());
-		}
+		wheel.unregister(channel.getChannelID());
 	}
 	
 	/**
@@ -368,8 +421,8 @@ public class SimpleChannelSearchManagerImpl implements ChannelSearchManager, Tim
 	{
 		// first remove
 		SearchInstance si;
-		synchronized (channels) {
-			si = (SearchInstance)channels.remove(cid);
+		synchronized (this) {
+			si = wheel.unregister(cid);
 		}
 		
 		if (si == null) {
@@ -388,113 +441,20 @@ public class SimpleChannelSearchManagerImpl implements ChannelSearchManager, Tim
 	 * New server detected.
 	 * Boost searching of all channels.
 	 */
-	public void newServerDetected()
+	public synchronized void newServerDetected()
 	{
-		boost();
-		callback();
-	}
-
-	private final static int DEFAULT_COUNT_VALUE = 1;
-	private final static int BOOST_VALUE = 1;
-	// must be power of two (so that search is done)
-	private final static int MAX_COUNT_VALUE = 1 << 8;
-	private final static int MAX_FALLBACK_COUNT_VALUE = (1 << 7) + 1;
-	
-	private void boost()
-	{
-		synchronized (channels) {
-			if (channels.size() == 0)
-				return;
-
-			// TODO no copy when iterator is supported
-			SearchInstance[] sis = new SearchInstance[channels.size()];
-			channels.toArray(sis);
-			
-			
-			for (SearchInstance si : sis)
-				si.getUserValue().set(BOOST_VALUE);
-		}
-	}
-	
-	@Override
-	public void callback() {
+		if (wheel.registeredCount() == 0)
+			return;
 		
 		// high-frequency beacon anomaly trigger guard
-		synchronized (this)
-		{
-			long now = System.currentTimeMillis();
-			if (now - lastTimeSent < 100)
-				return;
-			lastTimeSent = now;
-		}
-
-		try 
-		{
-			SearchInstance[] sis;
-			synchronized (channels) {
-				if (channels.size() == 0)
-					return;
-				sis = new SearchInstance[channels.size()];
-				channels.toArray(sis);
-			}
-			
-			send(sis);
-		}
-		catch (Throwable th)
-		{
-			// should never happen, be we are careful and verbose
-			th.printStackTrace();
-		}
-	}
-
-	private static boolean isPowerOfTwo (int x)
-	{
-	  return ((x > 0) && (x & (x - 1)) == 0);
-	}
-	
-	private static final int MAX_FRAMES_AT_ONCE = 10;
-	private static final int DELAY_BETWEEN_FRAMES_MS = 50;
-	
-	private void send(SearchInstance[] sis) throws InterruptedException
-	{
-		if (sis.length == 0)
+		final long now = System.nanoTime();
+		if (now - lastBoostTime < MIN_BOOST_PERIOD_NS)
 			return;
-
-		int count = 0;
-		int frameSent = 0;
-		for (SearchInstance si : sis)
-		{
-			
-			// no more sync needed since we check/increase value only here
-			int countValue = si.getUserValue().get();
-			boolean skip = !isPowerOfTwo(countValue);
-			
-			if (countValue == MAX_COUNT_VALUE)
-				si.getUserValue().set(MAX_FALLBACK_COUNT_VALUE);
-			else 
-				si.getUserValue().incrementAndGet();
-			
-			// back-off
-			if (skip)
-				continue;
-
-			count++;
-			
-			if (generateSearchRequestMessage(si, true, false))
-				frameSent++;
-			if (frameSent == MAX_FRAMES_AT_ONCE) 
-			{
-				Thread.sleep(DELAY_BETWEEN_FRAMES_MS);
-				frameSent = 0; 
-			}
-		}
+		lastBoostTime = now;
 		
-		if (count > 0)
-			flushSendBuffer();
-	}
-	
-	@Override
-	public void timerStopped() {
-		// noop
+		wheel.boost();
+		
+		this.notifyAll();
 	}
+
 }
@@ -156,6 +156,17 @@ public class BlockingClientTCPTransport extends BlockingTCPTransport
 		}
 	}
 
+	/**
+	 * Get number of clients (channels) using the transport.
+	 * @return number of clients.
+	 */
+	public int getClientCount() {
+		synchronized (owners)
+		{
+			return owners.size();
+		}
+	}
+
 	/** 
 	 * Acquires transport.
 	 * @param client client (channel) acquiring the transport
@@ -16,7 +16,17 @@ package org.epics.pvaccess.client.impl.remote.tcp;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 import org.epics.pvaccess.impl.remote.ConnectionException;
 import org.epics.pvaccess.impl.remote.Connector;
@@ -24,15 +34,21 @@ import org.epics.pvaccess.impl.remote.Context;
 import org.epics.pvaccess.impl.remote.ProtocolType;
 import org.epics.pvaccess.impl.remote.Transport;
 import org.epics.pvaccess.impl.remote.TransportClient;
+import org.epics.pvaccess.impl.remote.TransportVerificationCallback;
 import org.epics.pvaccess.impl.remote.request.ResponseHandler;
-import org.epics.pvaccess.util.sync.NamedLockPattern;
 
 /**
  * Channel Access TCP connector.
+ * Connections are established by the connector thread as a state machine:
+ * non-blocking socket connect (with retries), transport creation and (non-blocking) verification.
+ * Clients connecting to the same server (with the same priority) wait for the same pending connect,
+ * <code>connectAsync</code> never blocks the calling thread.
+ * Optionally more connections (stripes) per server and priority are opened and clients are striped
+ * across them (by hash or to the least-loaded one), to overcome throughput limit of a single TCP stream.
  * @author <a href="mailto:matej.sekoranjaATcosylab.com">Matej Sekoranja</a>
  * @version $Id$
  */
-public class BlockingTCPConnector implements Connector {
+public class BlockingTCPConnector implements Connector, Runnable {
 
 	public interface TransportFactory {
 		public Transport create(Context context, SocketChannel channel,
@@ -41,26 +57,71 @@ public class BlockingTCPConnector implements Connector {
 				float heartbeatInterval, short priority);
 	}
 	
+	/**
+	 * Policy used to assign clients to stripes (connections to the same server).
+	 */
+	public enum StripingPolicy {
+		/**
+		 * Stripe is selected by client's hash code.
+		 */
+		HASH,
+		
+		/**
+		 * Stripe with the least clients is selected, new connection is opened until all stripes are open.
+		 */
+		LEAST_LOADED
+	}
+	
+	/**
+	 * Asynchronous connect callback, called by the connector thread
+	 * (or by the calling thread if an existing transport is reused).
+	 */
+	public interface ConnectCallback {
+		
+		/**
+		 * Transport connected and verified.
+		 * @param transport transport, already acquired for the client.
+		 */
+		public void transportConnected(Transport transport);
+		
+		/**
+		 * Connect failed.
+		 * @param cause failure cause.
+		 */
+		public void transportConnectFailed(ConnectionException cause);
+	}
+	
 	/**
 	 * Context instance.
 	 */
 	private final Context context;
 	
 	/**
-	 * Context instance.
+	 * Socket connect timeout (per attempt).
+	 */
+	private static final int CONNECT_TIMEOUT = 5000;	// 5s
+
+	/**
+	 * Number of socket connect attempts.
 	 */
-	private final NamedLockPattern namedLocker;
+	private static final int CONNECT_TRIES = 3;
 
 	/**
-	 * Lock timeout.
+	 * Delay between two socket connect attempts.
 	 */
-	private static final int LOCK_TIMEOUT = 20 * 1000;	// 20s
+	private static final int RETRY_DELAY = 100;
 
 	/**
 	 * Verification timeout.
 	 */
 	private static final int VERIFICATION_TIMEOUT = 5000;	// 5s
 
+	/**
+	 * Max. time blocking <code>connect</code> waits for connect to complete.
+	 */
+	private static final int BLOCKING_CONNECT_TIMEOUT = 
+		CONNECT_TRIES * (CONNECT_TIMEOUT + RETRY_DELAY) + VERIFICATION_TIMEOUT + 1000;
+
 	/**
 	 * Receive buffer size.
 	 */
@@ -76,14 +137,184 @@ public class BlockingTCPConnector implements Connector {
 	 */
 	private final TransportFactory transportFactory; 
 
+	/**
+	 * Pending connects, guarded by itself.
+	 */
+	private final Map<ConnectKey, PendingConnect> pendingConnects = new HashMap<ConnectKey, PendingConnect>();
+
+	/**
+	 * New connects to be started by the connector thread.
+	 */
+	private final ConcurrentLinkedQueue<PendingConnect> newConnects = new ConcurrentLinkedQueue<PendingConnect>();
+	
+	/**
+	 * Connects whose transport verification completed.
+	 */
+	private final ConcurrentLinkedQueue<PendingConnect> verifiedConnects = new ConcurrentLinkedQueue<PendingConnect>();
+
+	/**
+	 * Selector used by connector thread, created on first connect (guarded by <code>pendingConnects</code>).
+	 */
+	private Selector selector = null;
+	
+	private volatile boolean destroyed = false;
+	
+	/**
+	 * Number of connections (stripes) per server and priority.
+	 */
+	private volatile int stripeCount = 1;
+	
+	/**
+	 * Striping policy.
+	 */
+	private volatile StripingPolicy stripingPolicy = StripingPolicy.HASH;
+	
+	/**
+	 * Striped transports (only if <code>stripeCount > 1</code>), guarded by <code>pendingConnects</code>.
+	 * Closed transports are removed lazily.
+	 */
+	private final Map<ConnectKey, Transport> stripedTransports = new HashMap<ConnectKey, Transport>();
+	
 	public BlockingTCPConnector(Context context, TransportFactory transportFactory, int receiveBufferSize, float heartbeatInterval) {
 		this.context = context;
 		this.transportFactory = transportFactory;
 		this.receiveBufferSize = receiveBufferSize;
 		this.heartbeatInterval = heartbeatInterval;
-		namedLocker = new NamedLockPattern();
 	}
 	
+	/**
+	 * Set number of connections (stripes) opened per server and priority.
+	 * Applies to new connects only.
+	 * @param stripeCount number of connections per server and priority, 1 to disable striping.
+	 * @param stripingPolicy policy used to assign clients to stripes.
+	 */
+	public void setStriping(int stripeCount, StripingPolicy stripingPolicy)
+	{
+		this.stripeCount = Math.max(1, stripeCount);
+		this.stripingPolicy = stripingPolicy;
+	}
+	
+	/**
+	 * Get number of connections (stripes) opened per server and priority.
+	 * @return number of connections per server and priority.
+	 */
+	public int getStripeCount()
+	{
+		return stripeCount;
+	}
+	
+	/**
+	 * Pending connect key.
+	 */
+	private static final class ConnectKey {
+		final InetSocketAddress address;
+		final short priority;
+		final int stripe;
+		
+		ConnectKey(InetSocketAddress address, short priority, int stripe) {
+			this.address = address;
+			this.priority = priority;
+			this.stripe = stripe;
+		}
+
+		@Override
+		public int hashCode() {
+			return (address.hashCode() * 31 + priority) * 31 + stripe;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ConnectKey))
+				return false;
+			final ConnectKey other = (ConnectKey)obj;
+			return priority == other.priority && stripe == other.stripe && address.equals(other.address);
+		}
+	}
+	
+	/**
+	 * Client waiting for the connect.
+	 */
+	private static final class Waiter {
+		final TransportClient client;
+		final ConnectCallback callback;
+		
+		Waiter(TransportClient client, ConnectCallback callback) {
+			this.client = client;
+			this.callback = callback;
+		}
+	}
+	
+	private enum ConnectState { WAITING_RETRY, CONNECTING, VERIFYING }
+	
+	/**
+	 * Pending connect (state machine).
+	 */
+	private final class PendingConnect implements TransportVerificationCallback {
+		final ConnectKey key;
+		final ResponseHandler responseHandler;
+		final byte transportRevision;
+		
+		// guarded by pendingConnects, not modified once removed from pendingConnects
+		final ArrayList<Waiter> waiters = new ArrayList<Waiter>(2);
+		
+		// accessed by connector thread only
+		ConnectState state = ConnectState.WAITING_RETRY;
+		long deadline = 0;
+		int tries = 0;
+		SocketChannel socket = null;
+		Transport transport = null;
+		
+		volatile boolean verified = false;
+		
+		PendingConnect(ConnectKey key, ResponseHandler responseHandler, byte transportRevision) {
+			this.key = key;
+			this.responseHandler = responseHandler;
+			this.transportRevision = transportRevision;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportVerificationCallback#transportVerified(org.epics.pvaccess.impl.remote.Transport, boolean)
+		 */
+		@Override
+		public void transportVerified(Transport transport, boolean verified) {
+			this.verified = verified;
+			verifiedConnects.add(this);
+			selector.wakeup();
+		}
+	}
+	
+	/**
+	 * Callback used to implement blocking connect.
+	 */
+	private static final class BlockingConnectCallback implements ConnectCallback {
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile Transport transport = null;
+		private volatile ConnectionException cause = null;
+		
+		@Override
+		public void transportConnected(Transport transport) {
+			this.transport = transport;
+			done.countDown();
+		}
+
+		@Override
+		public void transportConnectFailed(ConnectionException cause) {
+			this.cause = cause;
+			done.countDown();
+		}
+		
+		Transport get(InetSocketAddress address) throws ConnectionException {
+			try {
+				if (!done.await(BLOCKING_CONNECT_TIMEOUT, TimeUnit.MILLISECONDS))
+					throw new ConnectionException("Timeout while connecting to '" + address + "'.", address, ProtocolType.tcp.name(), null);
+			} catch (InterruptedException ie) {
+				throw new ConnectionException("Interrupted while connecting to '" + address + "'.", address, ProtocolType.tcp.name(), ie);
+			}
+			if (cause != null)
+				throw cause;
+			return transport;
+		}
+	}
 	
 	/**
 	 * @see org.epics.pvaccess.impl.remote.Connector#connect(org.epics.pvaccess.impl.remote.TransportClient, org.epics.pvaccess.impl.remote.request.ResponseHandler, java.net.InetSocketAddress, byte, short)
@@ -92,126 +323,436 @@ public class BlockingTCPConnector implements Connector {
 							 InetSocketAddress address, byte transportRevision, short priority)
 		throws ConnectionException
 	{
-
-		SocketChannel socket = null;
+		final BlockingConnectCallback callback = new BlockingConnectCallback();
+		connectAsync(client, responseHandler, address, transportRevision, priority, callback);
+		return callback.get(address);
+	}
+	
+	/**
+	 * Connect asynchronously, existing transport is reused if available.
+	 * Callback is called when connected and verified (or when connect fails),
+	 * immediately by the calling thread if existing transport is reused.
+	 * @param client	client requesting connection (transport).
+	 * @param responseHandler	reponse handler.
+	 * @param address			address of the server.
+	 * @param transportRevision	transport revision to be used.
+	 * @param priority process priority.
+	 * @param callback callback to notify.
+	 */
+	public void connectAsync(TransportClient client, ResponseHandler responseHandler,
+							 InetSocketAddress address, byte transportRevision, short priority,
+							 ConnectCallback callback)
+	{
+		final int stripes = stripeCount;
+		Transport transport;
+		synchronized (pendingConnects) {
+			final ConnectKey key = (stripes > 1) ?
+					selectStripe(client, address, priority, stripes) :
+					new ConnectKey(address, priority, 0);
+			
+			// join pending connect
+			PendingConnect pendingConnect = pendingConnects.get(key);
+			if (pendingConnect != null)
+			{
+				pendingConnect.waiters.add(new Waiter(client, callback));
+				return;
+			}
+			
+			// NOTE: transports are removed from pending connects only once verified
+			transport = (stripes > 1) ?
+					stripedTransports.get(key) :
+					context.getTransportRegistry().get(ProtocolType.tcp.name(), address, priority);
+			if (transport == null || !transport.acquire(client))
+			{
+				if (transport != null && stripes > 1)
+					stripedTransports.remove(key);
+				transport = null;
+				if (!destroyed && startConnectorThread())
+				{
+					context.getLogger().finer("Connecting to PVA server: " + address);
+					
+					pendingConnect = new PendingConnect(key, responseHandler, transportRevision);
+					pendingConnect.waiters.add(new Waiter(client, callback));
+					pendingConnects.put(key, pendingConnect);
+					newConnects.add(pendingConnect);
+					selector.wakeup();
+					return;
+				}
+			}
+		}
 		
-		// first try to check cache w/o named lock...
-		Transport transport = context.getTransportRegistry().get(ProtocolType.tcp.name(), address, priority);
 		if (transport != null)
 		{
 			context.getLogger().finer("Reusing existant connection to PVA server: " + address);
-			if (transport.acquire(client))
-				return transport;
+			callback.transportConnected(transport);
 		}
-
-		boolean lockAcquired = namedLocker.acquireSynchronizationObject(address, LOCK_TIMEOUT);
-		if (lockAcquired)
-		{ 
+		else
+			callback.transportConnectFailed(new ConnectionException("Connector destroyed or failed to start, failed to connect to '" + address + "'.", address, ProtocolType.tcp.name(), null));
+	}
+	
+	/**
+	 * Select stripe for the client.
+	 * Must be called while holding <code>pendingConnects</code> lock.
+	 */
+	private ConnectKey selectStripe(TransportClient client, InetSocketAddress address, short priority, int stripes)
+	{
+		if (stripingPolicy == StripingPolicy.HASH)
+			return new ConnectKey(address, priority, (client.hashCode() & 0x7FFFFFFF) % stripes);
+		
+		// least-loaded, not yet opened stripe first
+		ConnectKey selected = null;
+		int selectedLoad = Integer.MAX_VALUE;
+		for (int stripe = 0; stripe < stripes; stripe++)
+		{
+			final ConnectKey key = new ConnectKey(address, priority, stripe);
+			final int load;
+			final PendingConnect pendingConnect = pendingConnects.get(key);
+			if (pendingConnect != null)
+				load = pendingConnect.waiters.size();
+			else
+			{
+				final Transport transport = stripedTransports.get(key);
+				if (transport == null)
+					return key;
+				load = clientCount(transport);
+			}
+			
+			if (load < selectedLoad)
+			{
+				selected = key;
+				selectedLoad = load;
+			}
+		}
+		return selected;
+	}
+	
+	private static int clientCount(Transport transport)
+	{
+		if (transport instanceof BlockingClientTCPTransport)
+			return ((BlockingClientTCPTransport)transport).getClientCount();
+		else if (transport instanceof NonBlockingClientTCPTransport)
+			return ((NonBlockingClientTCPTransport)transport).getClientCount();
+		else
+			return 0;
+	}
+	
+	/**
+	 * Start connector thread, if not already started.
+	 * Must be called while holding <code>pendingConnects</code> lock.
+	 * @return <code>true</code> on success.
+	 */
+	private boolean startConnectorThread()
+	{
+		if (selector != null)
+			return true;
+		
+		try {
+			selector = Selector.open();
+		} catch (IOException e) {
+			context.getLogger().log(Level.SEVERE, "Failed to open selector.", e);
+			return false;
+		}
+		
+		Thread thread = new Thread(this, "pvAccess TCP connector");
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+	
+	/**
+	 * Stop connector thread, pending connects fail.
+	 */
+	public void destroy()
+	{
+		synchronized (pendingConnects) {
+			destroyed = true;
+			if (selector != null)
+				selector.wakeup();
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run()
+	{
+		// connects in progress, accessed only by this thread
+		final ArrayList<PendingConnect> active = new ArrayList<PendingConnect>();
+		final ArrayList<PendingConnect> connected = new ArrayList<PendingConnect>();
+		
+		while (!destroyed)
+		{
 			try
-			{   
-				// ... transport created during waiting in lock 
-				transport = context.getTransportRegistry().get(ProtocolType.tcp.name(), address, priority);
-				if (transport != null)
+			{
+				// wait until nearest deadline
+				long timeout = 0;
+				final long now = System.currentTimeMillis();
+				for (PendingConnect pendingConnect : active)
 				{
-					context.getLogger().finer("Reusing existant connection to PVA server: " + address);
-					if (transport.acquire(client))
-						return transport;
+					final long delay = Math.max(1, pendingConnect.deadline - now);
+					timeout = (timeout == 0) ? delay : Math.min(timeout, delay);
 				}
-				     
-				context.getLogger().finer("Connecting to PVA server: " + address);
+				selector.select(timeout);
 				
-				socket = tryConnect(address, 3);
-
-				// use blocking channel
-				socket.configureBlocking(true);
-			
-				// enable TCP_NODELAY (disable Nagle's algorithm)
-				socket.socket().setTcpNoDelay(true);
+				// finish connected sockets, selection keys need to be deregistered before going to blocking mode
+				while (!selector.selectedKeys().isEmpty())
+				{
+					final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while (keys.hasNext())
+					{
+						final SelectionKey key = keys.next();
+						keys.remove();
+						key.cancel();
+						
+						final PendingConnect pendingConnect = (PendingConnect)key.attachment();
+						try {
+							if (pendingConnect.socket.finishConnect())
+								connected.add(pendingConnect);
+						} catch (IOException ioe) {
+							attemptFailed(active, pendingConnect, ioe);
+						}
+					}
+					selector.selectNow();
+				}
 				
-				// enable TCP_KEEPALIVE
-				socket.socket().setKeepAlive(true);
-			
-				// do NOT tune socket buffer sizes, this will disable auto-tuning
-	
-				// create transport
-				transport = transportFactory.create(context, socket, responseHandler, receiveBufferSize, client, transportRevision, heartbeatInterval, priority);
-
-				// verify
-				if (!transport.verify(VERIFICATION_TIMEOUT))
+				for (PendingConnect pendingConnect : connected)
+					createTransport(active, pendingConnect);
+				connected.clear();
+				
+				// start new connects
+				PendingConnect pendingConnect;
+				while ((pendingConnect = newConnects.poll()) != null)
 				{
-					context.getLogger().finer("Connection to PVA client " + address + " failed to be validated, closing it.");
-                	transport.close();
-					throw new ConnectionException("Failed to verify connection to '" + address + "'.", address, ProtocolType.tcp.name(), null);
+					active.add(pendingConnect);
+					startConnect(active, pendingConnect);
 				}
 				
-				// TODO send security token
+				// verification completed
+				while ((pendingConnect = verifiedConnects.poll()) != null)
+				{
+					if (pendingConnect.state != ConnectState.VERIFYING || !active.contains(pendingConnect))
+						continue;
+					
+					if (pendingConnect.verified)
+						completed(active, pendingConnect);
+					else
+						failed(active, pendingConnect, "Failed to verify connection to '" + pendingConnect.key.address + "'.", null);
+				}
 				
-				context.getLogger().finer("Connected to PVA server: " + address);
-	
-				return transport;
+				// timeouts
+				final long time = System.currentTimeMillis();
+				for (int i = active.size() - 1; i >= 0; i--)
+				{
+					pendingConnect = active.get(i);
+					if (time < pendingConnect.deadline)
+						continue;
+					
+					switch (pendingConnect.state)
+					{
+						case WAITING_RETRY:
+							startConnect(active, pendingConnect);
+							break;
+						case CONNECTING:
+							attemptFailed(active, pendingConnect, null);
+							break;
+						case VERIFYING:
+							failed(active, pendingConnect, "Connection to '" + pendingConnect.key.address + "' failed to be validated in time.", null);
+							break;
+					}
+				}
 			}
 			catch (Throwable th)
 			{
-				// close socket, if open
-				try
-				{
-					if (socket != null)
-						socket.close();
-				}
-				catch (Throwable t) { /* noop */ }
-	
-				throw new ConnectionException("Failed to connect to '" + address + "'.", address, ProtocolType.tcp.name(), th);
+				context.getLogger().log(Level.SEVERE, "Unexpected exception caught in TCP connector thread.", th);
 			}
-			finally
+		}
+		
+		// fail all that is left
+		PendingConnect pendingConnect;
+		while ((pendingConnect = newConnects.poll()) != null)
+			active.add(pendingConnect);
+		while (!active.isEmpty())
+			failed(active, active.get(active.size() - 1), "Connector destroyed.", null);
+		
+		try {
+			selector.close();
+		} catch (IOException e) {
+			// noop
+		}
+	}
+	
+	/**
+	 * Open socket and initiate non-blocking connect.
+	 */
+	private void startConnect(ArrayList<PendingConnect> active, PendingConnect pendingConnect)
+	{
+		final InetSocketAddress address = pendingConnect.key.address;
+		context.getLogger().finest("Openning socket to PVA server " + address + ", attempt " + (pendingConnect.tries+1) + ".");
+
+		try
+		{
+			final SocketChannel socket = SocketChannel.open();
+			pendingConnect.socket = socket;
+			socket.configureBlocking(false);
+			if (socket.connect(address))
 			{
-				namedLocker.releaseSynchronizationObject(address);	
+				createTransport(active, pendingConnect);
+				return;
 			}
+			
+			socket.register(selector, SelectionKey.OP_CONNECT, pendingConnect);
+			pendingConnect.state = ConnectState.CONNECTING;
+			pendingConnect.deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
 		}
-		else
-		{     
-			throw new ConnectionException("Failed to obtain synchronization lock for '" + address + "', possible deadlock.", address, ProtocolType.tcp.name(), null);
+		catch (IOException ioe)
+		{
+			attemptFailed(active, pendingConnect, ioe);
 		}
 	}
 
 	/**
-	 * Tries to connect to the given adresss.
-	 * @param address
-	 * @param tries
-	 * @return
-	 * @throws IOException
+	 * Socket connect attempt failed, retry or give up.
 	 */
-	private SocketChannel tryConnect(InetSocketAddress address, int tries)
-		throws IOException
+	private void attemptFailed(ArrayList<PendingConnect> active, PendingConnect pendingConnect, IOException cause)
 	{
+		closeSocket(pendingConnect);
 		
-		IOException lastException = null;
-				
-		for (int tryCount = 0; tryCount < tries; tryCount++)
+		if (++pendingConnect.tries < CONNECT_TRIES)
 		{
+			pendingConnect.state = ConnectState.WAITING_RETRY;
+			pendingConnect.deadline = System.currentTimeMillis() + RETRY_DELAY;
+		}
+		else
+			failed(active, pendingConnect, "Failed to connect to '" + pendingConnect.key.address + "'.", cause);
+	}
+	
+	/**
+	 * Socket connected, create transport and start verification.
+	 */
+	private void createTransport(ArrayList<PendingConnect> active, PendingConnect pendingConnect)
+	{
+		final SocketChannel socket = pendingConnect.socket;
+		try
+		{
+			// use blocking channel
+			socket.configureBlocking(true);
+		
+			// enable TCP_NODELAY (disable Nagle's algorithm)
+			socket.socket().setTcpNoDelay(true);
+			
+			// enable TCP_KEEPALIVE
+			socket.socket().setKeepAlive(true);
+		
+			// do NOT tune socket buffer sizes, this will disable auto-tuning
 
-			// sleep for a while
-			if (tryCount > 0)
-			{
-				try {
-					Thread.sleep(100);
-				} catch (InterruptedException ie) {}
+			// create transport, owned by the first client
+			final TransportClient client;
+			synchronized (pendingConnects) {
+				client = pendingConnect.waiters.get(0).client;
 			}
+			pendingConnect.state = ConnectState.VERIFYING;
+			pendingConnect.deadline = System.currentTimeMillis() + VERIFICATION_TIMEOUT;
+			pendingConnect.transport = transportFactory.create(context, socket, pendingConnect.responseHandler,
+					receiveBufferSize, client, pendingConnect.transportRevision, heartbeatInterval, pendingConnect.key.priority);
+			
+			// verify (completion is queued to verifiedConnects)
+			pendingConnect.transport.verify(pendingConnect);
+		}
+		catch (Throwable th)
+		{
+			failed(active, pendingConnect, "Failed to connect to '" + pendingConnect.key.address + "'.", th);
+		}
+	}
 
-			context.getLogger().finest("Openning socket to PVA server " + address + ", attempt " + (tryCount+1) + ".");
+	/**
+	 * Connect completed, notify all waiters.
+	 */
+	private void completed(ArrayList<PendingConnect> active, PendingConnect pendingConnect)
+	{
+		// TODO send security token
+		
+		final InetSocketAddress address = pendingConnect.key.address;
+		context.getLogger().finer("Connected to PVA server: " + address);
+		
+		final Transport transport = pendingConnect.transport;
+		active.remove(pendingConnect);
+		synchronized (pendingConnects) {
+			pendingConnects.remove(pendingConnect.key);
+			if (stripeCount > 1)
+				stripedTransports.put(pendingConnect.key, transport);
+		}
+		
+		final ArrayList<Waiter> waiters = pendingConnect.waiters;
+		for (int i = 0; i < waiters.size(); i++)
+		{
+			final Waiter waiter = waiters.get(i);
+			// the first client already owns the transport
+			if (i == 0 || transport.acquire(waiter.client))
+				notifyConnected(waiter, transport);
+			else
+				notifyFailed(waiter, new ConnectionException("Connection to '" + address + "' closed.", address, ProtocolType.tcp.name(), null));
+		}
+	}
 
-			try
-			{
-				return SocketChannel.open(address);
-			}
-			catch (IOException ioe)
-			{
-				lastException = ioe;
+	/**
+	 * Connect failed, release resources and notify all waiters.
+	 */
+	private void failed(ArrayList<PendingConnect> active, PendingConnect pendingConnect, String message, Throwable cause)
+	{
+		final InetSocketAddress address = pendingConnect.key.address;
+		
+		if (pendingConnect.transport != null)
+		{
+			context.getLogger().finer(message + " Closing it.");
+			try {
+				pendingConnect.transport.close();
+			} catch (Throwable th) {
+				// noop
 			}
-
-
 		}
-
-		throw lastException;
+		else
+			closeSocket(pendingConnect);
+		
+		active.remove(pendingConnect);
+		synchronized (pendingConnects) {
+			pendingConnects.remove(pendingConnect.key);
+		}
+		
+		final ConnectionException exception = new ConnectionException(message, address, ProtocolType.tcp.name(), cause);
+		for (Waiter waiter : pendingConnect.waiters)
+			notifyFailed(waiter, exception);
+	}
+	
+	private void closeSocket(PendingConnect pendingConnect)
+	{
+		if (pendingConnect.socket == null)
+			return;
+		
+		try {
+			pendingConnect.socket.close();
+		} catch (Throwable th) {
+			// noop
+		}
+		pendingConnect.socket = null;
+	}
+	
+	private void notifyConnected(Waiter waiter, Transport transport)
+	{
+		try {
+			waiter.callback.transportConnected(transport);
+		} catch (Throwable th) {
+			context.getLogger().log(Level.SEVERE, "Unexpected exception caught while notifying connect completion.", th);
+		}
+	}
+	
+	private void notifyFailed(Waiter waiter, ConnectionException cause)
+	{
+		try {
+			waiter.callback.transportConnectFailed(cause);
+		} catch (Throwable th) {
+			context.getLogger().log(Level.SEVERE, "Unexpected exception caught while notifying connect failure.", th);
+		}
 	}
 
 }
@@ -158,6 +158,17 @@ public class NonBlockingClientTCPTransport extends NonBlockingTCPTransport
 		}
 	}
 
+	/**
+	 * Get number of clients (channels) using the transport.
+	 * @return number of clients.
+	 */
+	public int getClientCount() {
+		synchronized (owners)
+		{
+			return owners.size();
+		}
+	}
+
 	/** 
 	 * Acquires transport.
 	 * @param client client (channel) acquiring the transport
@@ -129,6 +129,13 @@ public interface Transport extends DeserializableControl, Channel {
 	 */
 	boolean verify(long timeoutMs);
 	
+	/**
+	 * Non-blocking verification, callback is notified (once) when verified() method is being called,
+	 * immediately if it was already called. Only one callback can be pending at the time.
+	 * @param callback callback to notify.
+	 */
+	void verify(TransportVerificationCallback callback);
+	
 	/**
 	 * Acknowledge that transport was verified.
 	 * @param status verification status.
@@ -49,6 +49,7 @@ public final class TransportRegistry {
 
 	/**
 	 * Save/cache new transport into the registry.
+	 * There can be more transports with the same address and priority (e.g. striped connections).
 	 * @param transport transport to be registered.
 	 */
 	public void put(Transport transport)
@@ -63,7 +64,16 @@ public final class TransportRegistry {
 				priorities = new IntHashMap();
 				transports.put(address, priorities);
 			}
-			priorities.put(priority, transport);
+			final Transport[] existing = (Transport[])priorities.get(priority);
+			if (existing == null)
+				priorities.put(priority, new Transport[] { transport });
+			else
+			{
+				final Transport[] ts = new Transport[existing.length + 1];
+				System.arraycopy(existing, 0, ts, 0, existing.length);
+				ts[existing.length] = transport;
+				priorities.put(priority, ts);
+			}
 			allTransports.add(transport);
 		}
 	}
@@ -73,7 +83,7 @@ public final class TransportRegistry {
 	 * @param type 	protocol type.
 	 * @param address	address of the host computer.
 	 * @param priority  priority of the transport.
-	 * @return corresponding transport, <code>null</code> if none found.
+	 * @return corresponding transport (the first one registered), <code>null</code> if none found.
 	 */
 	public Transport get(String type, InetSocketAddress address, short priority)
 	{
@@ -81,7 +91,32 @@ public final class TransportRegistry {
 		synchronized (transports) {
 			IntHashMap priorities = transports.get(address);
 			if (priorities != null)
-				return (Transport)priorities.get(priority);
+			{
+				final Transport[] ts = (Transport[])priorities.get(priority);
+				return (ts != null) ? ts[0] : null;
+			}
+			else
+				return null;
+		}
+	}
+
+	/**
+	 * Lookup for all transports for given address and priority.
+	 * @param type 	protocol type.
+	 * @param address	address of the host computer.
+	 * @param priority  priority of the transport.
+	 * @return array of corresponding transports, <code>null</code> if none found.
+	 */
+	public Transport[] getAll(String type, InetSocketAddress address, short priority)
+	{
+		// TODO support type
+		synchronized (transports) {
+			IntHashMap priorities = transports.get(address);
+			if (priorities != null)
+			{
+				final Transport[] ts = (Transport[])priorities.get(priority);
+				return (ts != null) ? ts.clone() : null;
+			}
 			else
 				return null;
 		}
@@ -101,8 +136,18 @@ public final class TransportRegistry {
 			if (priorities != null)
 			{
 				// TODO optimize
-				Transport[] ts = new Transport[priorities.size()];
-				priorities.toArray(ts);
+				Transport[][] perPriority = new Transport[priorities.size()][];
+				priorities.toArray(perPriority);
+				int count = 0;
+				for (Transport[] ts : perPriority)
+					count += ts.length;
+				Transport[] ts = new Transport[count];
+				int pos = 0;
+				for (Transport[] pts : perPriority)
+				{
+					System.arraycopy(pts, 0, ts, pos, pts.length);
+					pos += pts.length;
+				}
 				return ts;
 			}
 			else
@@ -124,11 +169,34 @@ public final class TransportRegistry {
 		synchronized (transports) {
 			IntHashMap priorities = transports.get(address);
 			if (priorities != null) {
-				transport = (Transport)priorities.remove(priority);
-				if (priorities.size() == 0)
-					transports.remove(address);
-				if (transport != null)
-					allTransports.remove(transport);
+				final Transport[] existing = (Transport[])priorities.get(priority);
+				if (existing == null)
+					return null;
+				
+				int index = -1;
+				for (int i = 0; i < existing.length; i++)
+					if (existing[i] == transport)
+					{
+						index = i;
+						break;
+					}
+				if (index == -1)
+					return null;
+				
+				if (existing.length == 1)
+				{
+					priorities.remove(priority);
+					if (priorities.size() == 0)
+						transports.remove(address);
+				}
+				else
+				{
+					final Transport[] ts = new Transport[existing.length - 1];
+					System.arraycopy(existing, 0, ts, 0, index);
+					System.arraycopy(existing, index + 1, ts, index, ts.length - index);
+					priorities.put(priority, ts);
+				}
+				allTransports.remove(transport);
 				return transport;
 			}
 			else
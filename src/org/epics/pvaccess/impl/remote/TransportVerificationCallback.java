@@ -0,0 +1,20 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.impl.remote;
+
+/**
+ * Callback notified when transport is verified (or fails to be verified),
+ * non-blocking alternative to <code>Transport.verify(long)</code>.
+ */
+public interface TransportVerificationCallback {
+
+	/**
+	 * Transport verification completed.
+	 * @param transport verified transport.
+	 * @param verified <code>true</code> if verification succeeded, <code>false</code> otherwise.
+	 */
+	void transportVerified(Transport transport, boolean verified);
+}
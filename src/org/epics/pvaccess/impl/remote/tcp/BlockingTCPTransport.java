@@ -26,6 +26,7 @@ import org.epics.pvaccess.impl.remote.Context;
 import org.epics.pvaccess.impl.remote.IntrospectionRegistry;
 import org.epics.pvaccess.impl.remote.ProtocolType;
 import org.epics.pvaccess.impl.remote.Transport;
+import org.epics.pvaccess.impl.remote.TransportVerificationCallback;
 import org.epics.pvaccess.impl.remote.codec.AbstractCodec;
 import org.epics.pvaccess.impl.remote.codec.impl.BlockingSocketAbstractCodec;
 import org.epics.pvaccess.impl.remote.request.ResponseHandler;
@@ -289,9 +290,11 @@ public abstract class BlockingTCPTransport extends BlockingSocketAbstractCodec i
 	protected boolean verifiedCalled = false;
 	protected boolean verified = false;
 	private Object verifiedMonitor = new Object();
+	private TransportVerificationCallback verificationCallback = null;
 	
 	@Override
 	public void verified(Status status) {
+		final TransportVerificationCallback callback;
 		synchronized (verifiedMonitor) {
 			
 			if (!status.isOK())
@@ -306,7 +309,13 @@ public abstract class BlockingTCPTransport extends BlockingSocketAbstractCodec i
 			verifiedCalled = true;
 			verified = status.isSuccess();
 			verifiedMonitor.notifyAll();
+
+			callback = verificationCallback;
+			verificationCallback = null;
 		}
+		
+		if (callback != null)
+			callback.transportVerified(this, status.isSuccess());
 	}
 	
 	/* (non-Javadoc)
@@ -326,4 +335,21 @@ public abstract class BlockingTCPTransport extends BlockingSocketAbstractCodec i
 		}
 	}
 	
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.impl.remote.Transport#verify(org.epics.pvaccess.impl.remote.TransportVerificationCallback)
+	 */
+	@Override
+	public void verify(TransportVerificationCallback callback) {
+		final boolean result;
+		synchronized (verifiedMonitor) {
+			if (!verifiedCalled)
+			{
+				verificationCallback = callback;
+				return;
+			}
+			result = verified;
+		}
+		callback.transportVerified(this, result);
+	}
+	
 }
@@ -26,6 +26,7 @@ import org.epics.pvaccess.impl.remote.Context;
 import org.epics.pvaccess.impl.remote.IntrospectionRegistry;
 import org.epics.pvaccess.impl.remote.ProtocolType;
 import org.epics.pvaccess.impl.remote.Transport;
+import org.epics.pvaccess.impl.remote.TransportVerificationCallback;
 import org.epics.pvaccess.impl.remote.codec.AbstractCodec;
 import org.epics.pvaccess.impl.remote.codec.impl.NonBlockingSocketAbstractCodec;
 import org.epics.pvaccess.impl.remote.io.Poller;
@@ -288,11 +289,14 @@ public abstract class NonBlockingTCPTransport extends NonBlockingSocketAbstractC
 		outgoingIR.serialize(field, buffer, this);
 	}
 
+	protected boolean verifiedCalled = false;
 	protected boolean verified = false;
 	private Object verifiedMonitor = new Object();
+	private TransportVerificationCallback verificationCallback = null;
 	
 	@Override
 	public void verified(Status status) {
+		final TransportVerificationCallback callback;
 		synchronized (verifiedMonitor) {
 			
 			if (!status.isOK())
@@ -304,9 +308,16 @@ public abstract class NonBlockingTCPTransport extends NonBlockingSocketAbstractC
 				context.getLogger().fine(logMessage);
 			}
 			
+			verifiedCalled = true;
 			verified = status.isSuccess();
 			verifiedMonitor.notifyAll();
+
+			callback = verificationCallback;
+			verificationCallback = null;
 		}
+		
+		if (callback != null)
+			callback.transportVerified(this, status.isSuccess());
 	}
 	
 	/* (non-Javadoc)
@@ -326,4 +337,21 @@ public abstract class NonBlockingTCPTransport extends NonBlockingSocketAbstractC
 		}
 	}
 	
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.impl.remote.Transport#verify(org.epics.pvaccess.impl.remote.TransportVerificationCallback)
+	 */
+	@Override
+	public void verify(TransportVerificationCallback callback) {
+		final boolean result;
+		synchronized (verifiedMonitor) {
+			if (!verifiedCalled)
+			{
+				verificationCallback = callback;
+				return;
+			}
+			result = verified;
+		}
+		callback.transportVerified(this, result);
+	}
+	
 }
@@ -29,7 +29,11 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.MembershipKey;
 import java.nio.channels.UnresolvedAddressException;
+import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import org.epics.pvaccess.PVAConstants;
@@ -40,10 +44,12 @@ import org.epics.pvaccess.impl.remote.Transport;
 import org.epics.pvaccess.impl.remote.TransportClient;
 import org.epics.pvaccess.impl.remote.TransportSendControl;
 import org.epics.pvaccess.impl.remote.TransportSender;
+import org.epics.pvaccess.impl.remote.TransportVerificationCallback;
 import org.epics.pvaccess.impl.remote.request.ResponseHandler;
 import org.epics.pvaccess.plugins.SecurityPlugin.SecuritySession;
 import org.epics.pvaccess.server.ServerContext;
 import org.epics.pvaccess.util.InetAddressUtil;
+import org.epics.pvaccess.util.ObjectPool;
 import org.epics.pvdata.pv.Field;
 import org.epics.pvdata.pv.FieldCreate;
 import org.epics.pvdata.pv.PVField;
@@ -92,6 +98,11 @@ public class BlockingUDPTransport implements Transport, TransportSendControl {
 	 */
 	private InetSocketAddress[] ignoredAddresses = null;
 
+	/**
+	 * Ignore addresses set (port is not checked), <code>null</code> if none.
+	 */
+	private volatile Set<InetAddress> ignoredAddressSet = null;
+
 	/**
 	 * Receive buffer.
 	 */
@@ -122,6 +133,26 @@ public class BlockingUDPTransport implements Transport, TransportSendControl {
      */
     private final int clientServerWithBigEndianFlag;
     
+    /**
+     * Max. number of datagrams waiting in a receive worker queue.
+     */
+    private static final int RECEIVE_WORKER_QUEUE_SIZE = 1024;
+    
+    /**
+     * Receive workers, <code>null</code> if datagrams are processed by the receive thread.
+     */
+    private ReceiveWorker[] receiveWorkers = null;
+    
+    /**
+     * Pool of datagrams (buffers) handed to the receive workers.
+     */
+    private ObjectPool<Datagram> datagramPool = null;
+    
+    /**
+     * Number of datagrams dropped because a receive worker queue was full.
+     */
+    private final AtomicLong droppedDatagrams = new AtomicLong();
+    
 	public BlockingUDPTransport(Context context, ResponseHandler responseHandler, DatagramChannel channel,
 							  InetSocketAddress bindAddress, InetSocketAddress[] sendAddresses, 
 							  short remoteTransportRevision) {
@@ -146,10 +177,57 @@ public class BlockingUDPTransport implements Transport, TransportSendControl {
 		sendBuffer = ByteBuffer.allocate(PVAConstants.MAX_UDP_UNFRAGMENTED_SEND);
 	}
 	
+	/**
+	 * Set number of threads processing received datagrams.
+	 * Receive thread then only receives datagrams and hands them off to the workers,
+	 * datagrams from the same (source) address are always processed by the same worker (in order).
+	 * Response handler must be thread-safe if more than one worker is used.
+	 * Must be called before <code>start()</code>.
+	 * @param workerCount number of workers, 0 to process datagrams by the receive thread.
+	 */
+	public void setReceiveWorkerCount(int workerCount) {
+		if (workerCount < 0)
+			throw new IllegalArgumentException("workerCount < 0");
+		
+		if (workerCount == 0)
+		{
+			receiveWorkers = null;
+			datagramPool = null;
+			return;
+		}
+		
+		datagramPool = new ObjectPool<Datagram>(workerCount * RECEIVE_WORKER_QUEUE_SIZE);
+		receiveWorkers = new ReceiveWorker[workerCount];
+		for (int i = 0; i < workerCount; i++)
+			receiveWorkers[i] = new ReceiveWorker("UDP-receive-worker-" + i + " " + socketAddress);
+	}
+
+	/**
+	 * Get number of threads processing received datagrams.
+	 * @return number of workers, 0 if datagrams are processed by the receive thread.
+	 */
+	public int getReceiveWorkerCount() {
+		final ReceiveWorker[] workers = receiveWorkers;
+		return (workers == null) ? 0 : workers.length;
+	}
+	
+	/**
+	 * Get number of received datagrams dropped because receive workers could not keep up.
+	 * @return number of dropped datagrams.
+	 */
+	public long getDroppedDatagramCount() {
+		return droppedDatagrams.get();
+	}
+	
 	/**
 	 * Start processing requests.
 	 */
 	public void start() {
+		final ReceiveWorker[] workers = receiveWorkers;
+		if (workers != null)
+			for (ReceiveWorker worker : workers)
+				worker.start();
+		
 		new Thread(new Runnable() {
 
 			@Override
@@ -177,6 +255,12 @@ public class BlockingUDPTransport implements Transport, TransportSendControl {
 
 		if (bindAddress != null)
 			context.getLogger().finer("UDP connection to " + bindAddress + " closed.");
+		
+		final ReceiveWorker[] workers = receiveWorkers;
+		if (workers != null)
+			for (ReceiveWorker worker : workers)
+				worker.interrupt();
+
 		//context.getReactor().unregisterAndClose(channel);
 		try {
 			// TODO this just does not exit socket.receive()!!!!
@@ -237,22 +321,10 @@ public class BlockingUDPTransport implements Transport, TransportSendControl {
 					break;
 
 				// check if received from ignore address list
-				if (ignoredAddresses != null)
-				{
-					boolean ignore = false;
-
-					// we do not care about the port
-					final InetAddress fromAddressOnly = fromAddress.getAddress();
-					for (int i = 0; i < ignoredAddresses.length; i++)
-						if (ignoredAddresses[i].getAddress().equals(fromAddressOnly))
-						{
-							ignore = true;
-							break;
-						}
-
-					if (ignore)
-						continue;
-				}
+				// we do not care about the port
+				final Set<InetAddress> ignoredAddressSet = this.ignoredAddressSet;
+				if (ignoredAddressSet != null && ignoredAddressSet.contains(fromAddress.getAddress()))
+					continue;
 
 				//context.getLogger().finest("Received " + receiveBuffer.position() + " bytes from " + fromAddress + ".");
 
@@ -260,7 +332,11 @@ public class BlockingUDPTransport implements Transport, TransportSendControl {
 				receiveBuffer.flip();
 
 				// process
-				processBuffer(fromAddress, receiveBuffer);
+				final ReceiveWorker[] workers = receiveWorkers;
+				if (workers != null)
+					dispatch(workers, fromAddress, receiveBuffer);
+				else
+					processBuffer(fromAddress, receiveBuffer);
  			}
 			
 		} catch (AsynchronousCloseException ace) {
@@ -283,6 +359,124 @@ public class BlockingUDPTransport implements Transport, TransportSendControl {
 		}
 	}
 
+	/**
+	 * Hand off received datagram to a receive worker.
+	 * @param workers receive workers.
+	 * @param fromAddress datagram source address.
+	 * @param buffer datagram (flipped).
+	 */
+	private void dispatch(ReceiveWorker[] workers, InetSocketAddress fromAddress, ByteBuffer buffer)
+	{
+		Datagram datagram = datagramPool.poll();
+		if (datagram == null)
+			datagram = new Datagram();
+		datagram.set(fromAddress, buffer);
+		
+		// same source address, same worker
+		final int hash = fromAddress.getAddress().hashCode() * 0x9E3779B9;
+		final ReceiveWorker worker = workers[(hash >>> 1) % workers.length];
+		if (!worker.queue.offer(datagram))
+		{
+			droppedDatagrams.incrementAndGet();
+			recycle(datagram);
+		}
+	}
+	
+	/**
+	 * Return datagram to the pool.
+	 * @param datagram datagram to return.
+	 */
+	private void recycle(Datagram datagram)
+	{
+		datagram.fromAddress = null;
+		// only default size buffers are pooled
+		if (datagram.buffer.capacity() == Datagram.DEFAULT_CAPACITY)
+			datagramPool.offer(datagram);
+	}
+	
+	/**
+	 * Received datagram handed off to a receive worker.
+	 */
+	private static class Datagram {
+		// datagrams sent by PVA (searches, beacons) fit into unfragmented datagram
+		static final int DEFAULT_CAPACITY = PVAConstants.MAX_UDP_UNFRAGMENTED_SEND;
+		
+		ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_CAPACITY);
+		InetSocketAddress fromAddress;
+		
+		void set(InetSocketAddress fromAddress, ByteBuffer data)
+		{
+			this.fromAddress = fromAddress;
+			if (data.remaining() > buffer.capacity())
+				buffer = ByteBuffer.allocate(data.remaining());
+			buffer.clear();
+			buffer.put(data);
+			buffer.flip();
+		}
+	}
+	
+	/**
+	 * Thread processing received datagrams.
+	 */
+	private class ReceiveWorker extends Thread {
+		
+		final BlockingQueue<Datagram> queue = new ArrayBlockingQueue<Datagram>(RECEIVE_WORKER_QUEUE_SIZE);
+		
+		// buffer being processed, used by DeserializableControl methods
+		ByteBuffer buffer = null;
+		
+		ReceiveWorker(String name) {
+			super(name);
+			setDaemon(true);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Thread#run()
+		 */
+		@Override
+		public void run() {
+			while (!closed) {
+				final Datagram datagram;
+				try {
+					datagram = queue.take();
+				} catch (InterruptedException e) {
+					// closed
+					continue;
+				}
+				
+				try {
+					buffer = datagram.buffer;
+					processBuffer(datagram.fromAddress, buffer);
+				} catch (Throwable th) {
+					context.getLogger().log(Level.FINE, "Uncaught exception caught.", th);
+				} finally {
+					buffer = null;
+					recycle(datagram);
+				}
+			}
+		}
+		
+		BlockingUDPTransport getTransport() {
+			return BlockingUDPTransport.this;
+		}
+	}
+	
+	/**
+	 * Get buffer being processed by the current thread.
+	 * @return receive buffer.
+	 */
+	private ByteBuffer currentReceiveBuffer()
+	{
+		final Thread thread = Thread.currentThread();
+		if (thread instanceof ReceiveWorker)
+		{
+			final ReceiveWorker worker = (ReceiveWorker)thread;
+			if (worker.getTransport() == this)
+				return worker.buffer;
+		}
+		return receiveBuffer;
+	}
+	
 	/**
 	 * Process buffer.
 	 * Buffer can contain several messages. Last message must be completed (not partital).
@@ -558,6 +752,17 @@ public class BlockingUDPTransport implements Transport, TransportSendControl {
 	 */
 	public void setIgnoredAddresses(InetSocketAddress[] addresses) {
 		ignoredAddresses = addresses;
+		
+		Set<InetAddress> set = null;
+		if (addresses != null && addresses.length > 0)
+		{
+			set = new HashSet<InetAddress>(addresses.length * 2);
+			for (InetSocketAddress address : addresses)
+				// address == null if unresolved
+				if (address.getAddress() != null)
+					set.add(address.getAddress());
+		}
+		ignoredAddressSet = set;
 	}
 	
 	/**
@@ -701,7 +906,7 @@ public class BlockingUDPTransport implements Transport, TransportSendControl {
 	 */
 	@Override
 	public void ensureData(int size) {
-		if (receiveBuffer.remaining() < size)
+		if (currentReceiveBuffer().remaining() < size)
 			throw new BufferUnderflowException();
 	}
 
@@ -732,6 +937,7 @@ public class BlockingUDPTransport implements Transport, TransportSendControl {
 	@Override
 	public void alignData(int alignment) {
 		final int k = (alignment - 1);
+		final ByteBuffer receiveBuffer = currentReceiveBuffer();
 		final int pos = receiveBuffer.position();
 		int newpos = (pos + k) & (~k);
 		receiveBuffer.position(newpos);
@@ -743,7 +949,7 @@ public class BlockingUDPTransport implements Transport, TransportSendControl {
 	@Override
 	public void setByteOrder(ByteOrder byteOrder) {
 		// called from receive thread... or before processing
-		receiveBuffer.order(byteOrder);
+		currentReceiveBuffer().order(byteOrder);
 
 		synchronized (this) {
 			sendBuffer.order(byteOrder);
@@ -759,6 +965,14 @@ public class BlockingUDPTransport implements Transport, TransportSendControl {
 		return true;
 	}
 
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.impl.remote.Transport#verify(org.epics.pvaccess.impl.remote.TransportVerificationCallback)
+	 */
+	@Override
+	public void verify(TransportVerificationCallback callback) {
+		callback.transportVerified(this, true);
+	}
+
 	@Override
 	public void verified(Status status) {
 		// noop
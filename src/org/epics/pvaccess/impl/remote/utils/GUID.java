@@ -25,6 +25,14 @@ public class GUID {
 		this.guid = guid;
 	}
 
+	/**
+	 * Get GUID value.
+	 * @return GUID value, not a copy.
+	 */
+	public byte[] getBytes() {
+		return guid;
+	}
+
 	@Override
 	public int hashCode() {
 		return Arrays.hashCode(guid);
@@ -0,0 +1,18 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server;
+
+/**
+ * Listener notified when the set of channels hosted by a provider changes.
+ * @see ChannelListChangeNotifier
+ */
+public interface ChannelListChangeListener {
+
+	/**
+	 * Channels were added to or removed from the provider.
+	 */
+	public void channelListChanged();
+}
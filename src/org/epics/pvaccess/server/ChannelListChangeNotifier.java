@@ -0,0 +1,26 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server;
+
+/**
+ * Interface optionally implemented by a <code>ChannelProvider</code> that notifies about changes of its hosted channels.
+ * Server increments its beacon change count on each notification, so that clients re-search unresolved channels
+ * only when some server's set of channels has actually changed.
+ */
+public interface ChannelListChangeNotifier {
+
+	/**
+	 * Add a listener.
+	 * @param listener listener to add.
+	 */
+	public void addChannelListChangeListener(ChannelListChangeListener listener);
+
+	/**
+	 * Remove a listener.
+	 * @param listener listener to remove.
+	 */
+	public void removeChannelListChangeListener(ChannelListChangeListener listener);
+}
@@ -0,0 +1,23 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server;
+
+/**
+ * Index (exact set or a probabilistic filter) of channel names hosted by a channel provider.
+ * Used by the server to skip querying providers for channels they do not host.
+ * @see ChannelNameIndexProvider
+ */
+public interface ChannelNameIndex {
+
+	/**
+	 * Check whether a channel might be hosted.
+	 * Must never return <code>false</code> for a hosted channel, <code>true</code> for non-hosted channel is allowed.
+	 * Must be thread-safe and should be fast (it is called for every searched channel name).
+	 * @param channelName channel name.
+	 * @return <code>false</code> if channel is definitely not hosted.
+	 */
+	public boolean mightHost(String channelName);
+}
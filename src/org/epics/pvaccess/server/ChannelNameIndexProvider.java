@@ -0,0 +1,21 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server;
+
+/**
+ * Interface optionally implemented by a <code>ChannelProvider</code> that publishes an index of its hosted channel names.
+ * Index is fetched by the server on each search, therefore publishing a new index is simply replacing the returned instance.
+ * A new index instance (even if it contains the same names) signals a change of the hosted channels
+ * and invalidates server's negative search cache, i.e. names recently reported as not found by all the providers.
+ */
+public interface ChannelNameIndexProvider {
+
+	/**
+	 * Get current index of hosted channel names.
+	 * @return index, <code>null</code> if no index is available (provider is queried for all names).
+	 */
+	public ChannelNameIndex getChannelNameIndex();
+}
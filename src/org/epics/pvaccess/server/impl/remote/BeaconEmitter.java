@@ -16,6 +16,8 @@ package org.epics.pvaccess.server.impl.remote;
 
 import java.net.InetAddress;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -115,6 +117,16 @@ public class BeaconEmitter implements TimerCallback, TransportSender {
 	 */
 	private final TimerNode timerNode;
 
+	/**
+	 * Change count, incremented when the set of hosted channels changes (16-bit).
+	 */
+	private final AtomicInteger changeCount = new AtomicInteger(0);
+
+	/**
+	 * Announces changes with an extra beacon.
+	 */
+	private final ChangeAnnouncer changeAnnouncer = new ChangeAnnouncer();
+
 	
 	/**
 	 * Constructor.
@@ -178,6 +190,16 @@ public class BeaconEmitter implements TimerCallback, TransportSender {
 	 */
 	@Override
 	public void send(ByteBuffer buffer, TransportSendControl control) {
+		sendBeacon(buffer, control);
+		reschedule();
+	}
+
+	/**
+	 * Serialize a beacon, called from <code>send</code> method of a sender.
+	 * @param buffer buffer to serialize to.
+	 * @param control send control.
+	 */
+	private void sendBeacon(ByteBuffer buffer, TransportSendControl control) {
 		// get server status
 		PVField serverStatus = null;
 		if (serverStatusProvider != null)
@@ -202,8 +224,7 @@ public class BeaconEmitter implements TimerCallback, TransportSender {
 		
 		buffer.put(beaconSequenceID);
 		
-		// TODO for now fixed changeCount
-		buffer.putShort((short)0);
+		buffer.putShort((short)changeCount.get());
 
 		// NOTE: is it possible (very likely) that address is any local address ::ffff:0.0.0.0
 		InetAddressUtil.encodeAsIPv6Address(buffer, serverAddress);
@@ -224,8 +245,87 @@ public class BeaconEmitter implements TimerCallback, TransportSender {
 			
 		// increment beacon sequence ID
 		beaconSequenceID++;
+	}
+	
+	/**
+	 * Notify that the set of hosted channels has changed.
+	 * Change count is incremented and a beacon is sent (changes within the minimal beacon period are announced together),
+	 * so that clients re-search their unresolved channels.
+	 */
+	public void channelListChanged()
+	{
+		changeCount.incrementAndGet();
+		changeAnnouncer.schedule();
+	}
+	
+	/**
+	 * Get current change count.
+	 * @return change count (16-bit).
+	 */
+	public int getChangeCount()
+	{
+		return changeCount.get() & 0xFFFF;
+	}
+	
+	/**
+	 * Sends an extra beacon w/o affecting regular beacon schedule.
+	 */
+	private class ChangeAnnouncer implements TimerCallback, TransportSender {
 		
-		reschedule();
+		private final TimerNode timerNode = TimerFactory.createNode(this);
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+		
+		void schedule()
+		{
+			if (scheduled.compareAndSet(false, true))
+				timer.scheduleAfterDelay(timerNode, EPICS_PVA_MIN_BEACON_PERIOD);
+		}
+		
+		void cancel()
+		{
+			timerNode.cancel();
+		}
+		
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.misc.Timer.TimerCallback#callback()
+		 */
+		@Override
+		public void callback() {
+			scheduled.set(false);
+			transport.enqueueSendRequest(this);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.misc.Timer.TimerCallback#timerStopped()
+		 */
+		@Override
+		public void timerStopped() {
+			// noop
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportSender#lock()
+		 */
+		@Override
+		public void lock() {
+			// noop
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportSender#unlock()
+		 */
+		@Override
+		public void unlock() {
+			// noop
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportSender#send(java.nio.ByteBuffer, org.epics.pvaccess.impl.remote.TransportSendControl)
+		 */
+		@Override
+		public void send(ByteBuffer buffer, TransportSendControl control) {
+			sendBeacon(buffer, control);
+		}
 	}
 
 	/* (non-Javadoc)
@@ -250,6 +350,7 @@ public class BeaconEmitter implements TimerCallback, TransportSender {
 	public void destroy()
 	{
 		timerNode.cancel();
+		changeAnnouncer.cancel();
 	}
 
 }
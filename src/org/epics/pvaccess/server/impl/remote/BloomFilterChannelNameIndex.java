@@ -0,0 +1,40 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote;
+
+import java.util.Collection;
+
+import org.epics.pvaccess.server.ChannelNameIndex;
+import org.epics.pvaccess.util.BloomFilter;
+
+/**
+ * Compact probabilistic channel name index backed by a bloom filter,
+ * suitable for providers with large number of channels.
+ */
+public class BloomFilterChannelNameIndex implements ChannelNameIndex {
+
+	private final BloomFilter filter;
+	
+	/**
+	 * Build an index of given channel names.
+	 * @param channelNames hosted channel names.
+	 * @param falsePositiveProbability false positive probability, <code>(0, 1)</code>.
+	 */
+	public BloomFilterChannelNameIndex(Collection<String> channelNames, double falsePositiveProbability) {
+		filter = new BloomFilter(channelNames.size(), falsePositiveProbability);
+		for (String name : channelNames)
+			filter.add(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.server.ChannelNameIndex#mightHost(java.lang.String)
+	 */
+	@Override
+	public boolean mightHost(String channelName) {
+		return filter.mightContain(channelName);
+	}
+
+}
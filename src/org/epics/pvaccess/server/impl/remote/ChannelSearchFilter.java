@@ -0,0 +1,254 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.epics.pvaccess.client.ChannelProvider;
+import org.epics.pvaccess.server.ChannelNameIndex;
+import org.epics.pvaccess.server.ChannelNameIndexProvider;
+
+/**
+ * Selects channel providers to be queried for a searched channel name.
+ * Providers implementing <code>ChannelNameIndexProvider</code> are skipped if their index excludes the name.
+ * Names recently not found by any of the providers are kept in a time-bounded negative cache,
+ * the cache is invalidated when any provider publishes a new index or on <code>invalidate()</code> call.
+ * Steady-state filtering does not allocate: candidate lists are created once per combination of excluded providers
+ * (up to <code>MAX_MASKED_PROVIDERS</code> providers) and the negative cache is a fixed-size, direct-mapped
+ * (i.e. lossy) table of primitive entries.
+ */
+public class ChannelSearchFilter {
+	
+	private static final int NEGATIVE_CACHE_SIZE_BITS = 16;
+	private static final int NEGATIVE_CACHE_SIZE = 1 << NEGATIVE_CACHE_SIZE_BITS;
+	private static final int LOCK_STRIPES = 64;
+	
+	/**
+	 * Max number of providers for which candidate lists are cached (<code>2^n</code> lists),
+	 * with more providers a new list is created for each filtered name.
+	 */
+	private static final int MAX_MASKED_PROVIDERS = 10;
+
+	private final List<ChannelProvider> providers;
+	
+	private final long negativeCacheTimeoutNs;
+	
+	/**
+	 * Last seen index of each provider, used to detect changes.
+	 */
+	private final AtomicReferenceArray<ChannelNameIndex> lastIndexes;
+	
+	/**
+	 * Candidate lists, indexed by mask of excluded providers, created lazily.
+	 */
+	private final AtomicReferenceArray<List<ChannelProvider>> candidateLists;
+	
+	/**
+	 * Negative cache, slot of a channel name is given by its hash code.
+	 * Entry is valid only for the generation it was created in and until it expires (<code>System.nanoTime()</code>).
+	 * Slot is guarded by <code>locks[slot % LOCK_STRIPES]</code>.
+	 */
+	private final String[] cachedNames;
+	private final long[] cachedExpirations;
+	private final int[] cachedGenerations;
+	private final Object[] locks;
+	
+	/**
+	 * Incremented on every invalidation, invalidates all the cache entries and
+	 * prevents caching results of the queries issued before invalidation.
+	 */
+	private final AtomicInteger generation = new AtomicInteger(0);
+	
+	/**
+	 * Constructor.
+	 * @param providers providers, the list must not change.
+	 * @param negativeCacheTimeout negative cache entry lifetime in seconds, 0 to disable the cache.
+	 */
+	public ChannelSearchFilter(List<ChannelProvider> providers, double negativeCacheTimeout)
+	{
+		this.providers = providers;
+		this.negativeCacheTimeoutNs = (long)(Math.max(0, negativeCacheTimeout) * 1e9);
+		this.lastIndexes = new AtomicReferenceArray<ChannelNameIndex>(providers.size());
+		
+		final int size = providers.size();
+		this.candidateLists = new AtomicReferenceArray<List<ChannelProvider>>(
+				(size <= MAX_MASKED_PROVIDERS) ? (1 << size) : 0);
+		
+		if (negativeCacheTimeoutNs != 0)
+		{
+			cachedNames = new String[NEGATIVE_CACHE_SIZE];
+			cachedExpirations = new long[NEGATIVE_CACHE_SIZE];
+			cachedGenerations = new int[NEGATIVE_CACHE_SIZE];
+			locks = new Object[LOCK_STRIPES];
+			for (int i = 0; i < LOCK_STRIPES; i++)
+				locks[i] = new Object();
+		}
+		else
+		{
+			cachedNames = null;
+			cachedExpirations = null;
+			cachedGenerations = null;
+			locks = null;
+		}
+	}
+	
+	/**
+	 * Get providers that need to be queried for a channel.
+	 * @param channelName channel name.
+	 * @return providers to be queried (must not be modified), empty list if the channel is known not to be hosted.
+	 */
+	public List<ChannelProvider> getCandidateProviders(String channelName)
+	{
+		final int size = providers.size();
+		
+		int excludedMask = 0;
+		int excludedCount = 0;
+		for (int i = 0; i < size; i++)
+		{
+			final ChannelProvider provider = providers.get(i);
+			if (provider instanceof ChannelNameIndexProvider)
+			{
+				final ChannelNameIndex index = ((ChannelNameIndexProvider)provider).getChannelNameIndex();
+				if (index != lastIndexes.get(i))
+				{
+					lastIndexes.set(i, index);
+					invalidate();
+				}
+				
+				if (index != null && !index.mightHost(channelName))
+				{
+					excludedCount++;
+					if (i < MAX_MASKED_PROVIDERS)
+						excludedMask |= 1 << i;
+				}
+			}
+		}
+		
+		if (excludedCount == size || isNegativelyCached(channelName))
+			return Collections.emptyList();
+		
+		if (excludedCount == 0)
+			return providers;
+
+		if (size > MAX_MASKED_PROVIDERS)
+			return createCandidateList(channelName);
+		
+		List<ChannelProvider> candidates = candidateLists.get(excludedMask);
+		if (candidates == null)
+		{
+			// benign race, equal lists
+			candidates = createCandidateList(excludedMask);
+			candidateLists.set(excludedMask, candidates);
+		}
+		return candidates;
+	}
+	
+	private List<ChannelProvider> createCandidateList(int excludedMask)
+	{
+		final ArrayList<ChannelProvider> candidates = new ArrayList<ChannelProvider>(providers.size());
+		for (int i = 0; i < providers.size(); i++)
+			if ((excludedMask & (1 << i)) == 0)
+				candidates.add(providers.get(i));
+		return Collections.unmodifiableList(candidates);
+	}
+	
+	private List<ChannelProvider> createCandidateList(String channelName)
+	{
+		final ArrayList<ChannelProvider> candidates = new ArrayList<ChannelProvider>(providers.size());
+		for (int i = 0; i < providers.size(); i++)
+		{
+			final ChannelNameIndex index = lastIndexes.get(i);
+			if (index == null || index.mightHost(channelName))
+				candidates.add(providers.get(i));
+		}
+		return candidates;
+	}
+	
+	private static int slot(String channelName)
+	{
+		// spread the hash code (Fibonacci hashing)
+		return (channelName.hashCode() * 0x9E3779B9) >>> (32 - NEGATIVE_CACHE_SIZE_BITS);
+	}
+	
+	private boolean isNegativelyCached(String channelName)
+	{
+		if (negativeCacheTimeoutNs == 0)
+			return false;
+		
+		final long now = System.nanoTime();
+		final int generation = this.generation.get();
+		final int slot = slot(channelName);
+		synchronized (locks[slot % LOCK_STRIPES]) {
+			return cachedGenerations[slot] == generation &&
+				   now - cachedExpirations[slot] < 0 &&
+				   channelName.equals(cachedNames[slot]);
+		}
+	}
+	
+	/**
+	 * Get current generation, to be passed to <code>notFound</code> call. 
+	 * @return current generation.
+	 */
+	public int getGeneration()
+	{
+		return generation.get();
+	}
+	
+	/**
+	 * Report that a channel was not found by any of the queried providers.
+	 * Entry of another name with the same slot is replaced.
+	 * @param channelName channel name.
+	 * @param generation generation when providers were queried.
+	 */
+	public void notFound(String channelName, int generation)
+	{
+		if (negativeCacheTimeoutNs == 0 || generation != this.generation.get())
+			return;
+		
+		final long expires = System.nanoTime() + negativeCacheTimeoutNs;
+		final int slot = slot(channelName);
+		synchronized (locks[slot % LOCK_STRIPES]) {
+			cachedNames[slot] = channelName;
+			cachedExpirations[slot] = expires;
+			cachedGenerations[slot] = generation;
+		}
+	}
+	
+	/**
+	 * Invalidate negative cache, e.g. hosted channels of a provider have changed.
+	 */
+	public void invalidate()
+	{
+		generation.incrementAndGet();
+	}
+	
+	/**
+	 * Get number of (valid) names in the negative cache.
+	 * @return number of names in the negative cache.
+	 */
+	public int getNegativeCacheSize()
+	{
+		if (negativeCacheTimeoutNs == 0)
+			return 0;
+		
+		final long now = System.nanoTime();
+		final int generation = this.generation.get();
+		int count = 0;
+		for (int slot = 0; slot < NEGATIVE_CACHE_SIZE; slot++)
+		{
+			synchronized (locks[slot % LOCK_STRIPES]) {
+				if (cachedNames[slot] != null && cachedGenerations[slot] == generation && now - cachedExpirations[slot] < 0)
+					count++;
+			}
+		}
+		return count;
+	}
+	
+}
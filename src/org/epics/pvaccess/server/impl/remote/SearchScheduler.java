@@ -0,0 +1,315 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote;
+
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.epics.pvaccess.util.TokenBucket;
+
+/**
+ * Limits search work per source (client) address and queues the excess fairly.
+ * Each source has its own token bucket (one token per searched channel name). A search within the
+ * source's budget is processed immediately by the caller, otherwise it is deferred to the source's (bounded) queue.
+ * Deferred searches are processed by the scheduler thread, sources with pending searches are served round-robin,
+ * each as soon as its bucket allows. Searches that do not fit into the source's queue are dropped.
+ * A misbehaving source therefore only consumes its own share of the search capacity.
+ */
+public class SearchScheduler implements Runnable {
+
+	/**
+	 * Deferred search.
+	 */
+	public interface DeferredSearch {
+		/**
+		 * Get cost of the search (number of channel names).
+		 * @return cost in tokens.
+		 */
+		int getCost();
+		
+		/**
+		 * Process the search, called by the scheduler thread.
+		 */
+		void process();
+	}
+	
+	/**
+	 * Per source state.
+	 */
+	private static class Source {
+		final TokenBucket bucket;
+		// guarded by this
+		final ArrayDeque<DeferredSearch> queue = new ArrayDeque<DeferredSearch>();
+		// is in the ready ring, guarded by this
+		boolean scheduled = false;
+		
+		Source(double burst, double rate, long now) {
+			bucket = new TokenBucket(burst, rate, now);
+		}
+	}
+	
+	private final Logger logger;
+	private final double rate;
+	private final int burst;
+	private final int maxQueuedPerSource;
+	private final int maxSources;
+	
+	private final ConcurrentHashMap<InetAddress, Source> sources = new ConcurrentHashMap<InetAddress, Source>();
+	private final AtomicLong sourcesCreated = new AtomicLong();
+	
+	/**
+	 * Sources with deferred searches (round-robin), guarded by this.
+	 */
+	private final ArrayDeque<Source> ready = new ArrayDeque<Source>();
+	
+	private final AtomicLong deferredCount = new AtomicLong();
+	private final AtomicInteger queuedCount = new AtomicInteger();
+	private final AtomicLong droppedCount = new AtomicLong();
+	
+	private volatile boolean destroyed = false;
+	private final Thread thread;
+	
+	/**
+	 * Create and start the scheduler.
+	 * @param logger logger to use.
+	 * @param rate allowed rate per source in channel names per second.
+	 * @param burst max. burst per source in channel names.
+	 * @param maxQueuedPerSource max. number of deferred searches per source.
+	 * @param maxSources number of sources tracked before idle ones are purged.
+	 */
+	public SearchScheduler(Logger logger, double rate, int burst, int maxQueuedPerSource, int maxSources)
+	{
+		if (rate <= 0 || burst <= 0)
+			throw new IllegalArgumentException("rate and burst must be > 0");
+		
+		this.logger = logger;
+		this.rate = rate;
+		this.burst = burst;
+		this.maxQueuedPerSource = maxQueuedPerSource;
+		this.maxSources = maxSources;
+		
+		thread = new Thread(this, "pvAccess search scheduler");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	private Source getSource(InetAddress address)
+	{
+		Source source = sources.get(address);
+		if (source == null)
+		{
+			// purge at most every maxSources/4 new sources
+			if (sources.size() >= maxSources && sourcesCreated.incrementAndGet() % Math.max(1, maxSources / 4) == 0)
+				purgeIdleSources();
+			
+			source = new Source(burst, rate, System.nanoTime());
+			final Source existing = sources.putIfAbsent(address, source);
+			if (existing != null)
+				source = existing;
+		}
+		return source;
+	}
+	
+	/**
+	 * Remove sources w/o deferred searches and with full bucket (i.e. no state worth keeping).
+	 */
+	private void purgeIdleSources()
+	{
+		final long now = System.nanoTime();
+		final Iterator<Map.Entry<InetAddress, Source>> iterator = sources.entrySet().iterator();
+		while (iterator.hasNext())
+		{
+			final Source source = iterator.next().getValue();
+			synchronized (source) {
+				if (!source.scheduled && source.bucket.available(now) >= burst)
+					iterator.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Take tokens for a search to be processed immediately.
+	 * Fails if the source has no budget left or has searches deferred (to keep the order).
+	 * @param address source address.
+	 * @param cost cost in tokens (number of channel names).
+	 * @return <code>true</code> if search can be processed now, <code>false</code> if it should be deferred.
+	 */
+	public boolean tryAcquire(InetAddress address, int cost)
+	{
+		final Source source = getSource(address);
+		synchronized (source) {
+			if (!source.queue.isEmpty())
+				return false;
+			return source.bucket.tryAcquire(Math.min(cost, burst), System.nanoTime());
+		}
+	}
+	
+	/**
+	 * Defer a search, scheduler will process it when the source's bucket allows.
+	 * @param address source address.
+	 * @param search search to defer.
+	 * @return <code>true</code> if deferred, <code>false</code> if dropped (source's queue is full).
+	 */
+	public boolean defer(InetAddress address, DeferredSearch search)
+	{
+		final Source source = getSource(address);
+		synchronized (source) {
+			if (source.queue.size() >= maxQueuedPerSource)
+			{
+				droppedCount.incrementAndGet();
+				return false;
+			}
+			source.queue.add(search);
+			queuedCount.incrementAndGet();
+			deferredCount.incrementAndGet();
+			if (source.scheduled)
+				return true;
+			source.scheduled = true;
+		}
+		
+		synchronized (this) {
+			ready.add(source);
+			notify();
+		}
+		return true;
+	}
+	
+	/**
+	 * Count a search dropped by the caller (e.g. cannot be deferred).
+	 */
+	public void dropped()
+	{
+		droppedCount.incrementAndGet();
+	}
+	
+	/**
+	 * Get number of deferred searches (so far).
+	 * @return number of deferred searches.
+	 */
+	public long getDeferredCount()
+	{
+		return deferredCount.get();
+	}
+	
+	/**
+	 * Get number of searches currently waiting to be processed.
+	 * @return number of queued searches.
+	 */
+	public int getQueuedCount()
+	{
+		return queuedCount.get();
+	}
+	
+	/**
+	 * Get number of dropped searches (so far).
+	 * @return number of dropped searches.
+	 */
+	public long getDroppedCount()
+	{
+		return droppedCount.get();
+	}
+	
+	/**
+	 * Get number of tracked sources.
+	 * @return number of tracked sources.
+	 */
+	public int getSourceCount()
+	{
+		return sources.size();
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run()
+	{
+		// number of ready sources visited w/o processing a search, and min. wait time of those
+		int misses = 0;
+		long minWaitNs = Long.MAX_VALUE;
+		
+		while (!destroyed)
+		{
+			Source source;
+			synchronized (this) {
+				try {
+					if (!ready.isEmpty() && misses >= ready.size())
+					{
+						// no source can be served now, wait for a token (or a new source)
+						wait(Math.max(1, minWaitNs / 1000000));
+						misses = 0;
+						minWaitNs = Long.MAX_VALUE;
+					}
+					while (ready.isEmpty() && !destroyed)
+						wait();
+				} catch (InterruptedException e) {
+					// noop
+				}
+				
+				source = ready.poll();
+				if (source == null)
+					continue;
+			}
+
+			DeferredSearch search = null;
+			final boolean reschedule;
+			synchronized (source) {
+				final long now = System.nanoTime();
+				final int cost = Math.min(source.queue.peek().getCost(), burst);
+				if (source.bucket.tryAcquire(cost, now))
+				{
+					search = source.queue.poll();
+					queuedCount.decrementAndGet();
+				}
+				else
+					minWaitNs = Math.min(minWaitNs, source.bucket.nanosUntilAvailable(cost, now));
+				
+				reschedule = !source.queue.isEmpty();
+				if (!reschedule)
+					source.scheduled = false;
+			}
+			
+			if (reschedule)
+			{
+				synchronized (this) {
+					ready.add(source);
+				}
+			}
+			
+			if (search != null)
+			{
+				misses = 0;
+				minWaitNs = Long.MAX_VALUE;
+				try {
+					search.process();
+				} catch (Throwable th) {
+					logger.log(Level.WARNING, "Unexpected exception caught while processing deferred search.", th);
+				}
+			}
+			else
+				misses++;
+		}
+	}
+	
+	/**
+	 * Stop the scheduler, deferred searches are discarded.
+	 */
+	public void destroy()
+	{
+		destroyed = true;
+		synchronized (this) {
+			ready.clear();
+			notifyAll();
+		}
+	}
+}
@@ -47,7 +47,10 @@ import org.epics.pvaccess.impl.remote.request.ResponseHandler;
 import org.epics.pvaccess.impl.remote.udp.BlockingUDPConnector;
 import org.epics.pvaccess.impl.remote.udp.BlockingUDPTransport;
 import org.epics.pvaccess.plugins.SecurityPlugin;
+import org.epics.pvaccess.server.ChannelListChangeListener;
+import org.epics.pvaccess.server.ChannelListChangeNotifier;
 import org.epics.pvaccess.server.ServerContext;
+import org.epics.pvaccess.server.impl.remote.monitor.SharedMonitorRegistry;
 import org.epics.pvaccess.server.impl.remote.tcp.BlockingTCPAcceptor;
 import org.epics.pvaccess.server.plugins.BeaconServerStatusProvider;
 import org.epics.pvaccess.util.InetAddressUtil;
@@ -164,6 +167,63 @@ public class ServerContextImpl implements ServerContext, Context {
 	 */
 	protected int receiveBufferSize = PVAConstants.MAX_TCP_RECV;
 
+	/**
+	 * Share provider monitors (and their serialized updates) among subscribers with identical pvRequest.
+	 */
+	protected volatile boolean monitorSharing = false;
+
+	/**
+	 * Lifetime (in seconds) of the negative search cache entries (names not found by any provider), 0 to disable.
+	 * Disabled by default, since providers that do not notify about channel list changes
+	 * (see <code>ChannelListChangeNotifier</code>) cannot invalidate the cache when a channel is created.
+	 */
+	protected float searchNegativeCacheTimeout = 0.0f;
+
+	/**
+	 * Number of threads processing received datagrams (search requests), 0 to process them by the UDP receive thread.
+	 */
+	protected int udpReceiveThreads = 0;
+
+	/**
+	 * Search provider filter (indexes and negative cache).
+	 */
+	protected ChannelSearchFilter searchFilter = null;
+
+	/**
+	 * Allowed search rate per client address (channel names per second), 0 to disable the limit.
+	 */
+	protected float searchRatePerClient = 0.0f;
+
+	/**
+	 * Per client search rate limiter and fair queue, <code>null</code> if disabled.
+	 */
+	protected SearchScheduler searchScheduler = null;
+
+	/**
+	 * Listener registered to providers implementing <code>ChannelListChangeNotifier</code>.
+	 */
+	private final ChannelListChangeListener channelListChangeListener = new ChannelListChangeListener() {
+		@Override
+		public void channelListChanged() {
+			ServerContextImpl.this.channelListChanged();
+		}
+	};
+	
+	/**
+	 * Max. number of searches deferred per client.
+	 */
+	private static final int MAX_DEFERRED_SEARCHES_PER_CLIENT = 64;
+	
+	/**
+	 * Number of client addresses tracked by the search scheduler before idle ones are purged.
+	 */
+	private static final int MAX_SEARCH_CLIENTS = 65536;
+
+	/**
+	 * Shared monitor registry.
+	 */
+	private final SharedMonitorRegistry sharedMonitorRegistry = new SharedMonitorRegistry();
+
 	/**
 	 * Timer.
 	 */
@@ -354,6 +414,14 @@ public class ServerContextImpl implements ServerContext, Context {
 		
 		channelProviderNames = config.getPropertyAsString("EPICS_PVA_PROVIDER_NAMES", channelProviderNames);
 		channelProviderNames = config.getPropertyAsString("EPICS_PVAS_PROVIDER_NAMES", channelProviderNames);
+
+		monitorSharing = config.getPropertyAsBoolean("EPICS_PVAS_MONITOR_SHARING", monitorSharing);
+
+		searchNegativeCacheTimeout = config.getPropertyAsFloat("EPICS_PVAS_SEARCH_NEGATIVE_CACHE_TMO", searchNegativeCacheTimeout);
+
+		searchRatePerClient = config.getPropertyAsFloat("EPICS_PVAS_SEARCH_RATE_PER_CLIENT", searchRatePerClient);
+
+		udpReceiveThreads = Math.max(0, config.getPropertyAsInteger("EPICS_PVAS_UDP_RECEIVE_THREADS", udpReceiveThreads));
 		
 	}
 	
@@ -443,6 +511,11 @@ public class ServerContextImpl implements ServerContext, Context {
 
 		timer = TimerFactory.create("pvAccess-server timer", ThreadPriority.lower);
 		transportRegistry = new TransportRegistry();
+		searchFilter = new ChannelSearchFilter(channelProviders, searchNegativeCacheTimeout);
+		// one second worth of searches as a burst
+		if (searchRatePerClient > 0)
+			searchScheduler = new SearchScheduler(logger, searchRatePerClient, Math.max(1, (int)searchRatePerClient),
+					MAX_DEFERRED_SEARCHES_PER_CLIENT, MAX_SEARCH_CLIENTS);
 /*
 		try
 		{
@@ -497,6 +570,11 @@ public class ServerContextImpl implements ServerContext, Context {
 		initializeUDPTransport();
 
 		beaconEmitter = new BeaconEmitter(ProtocolType.tcp.name(), broadcastTransport, this);
+		
+		// providers notify about changes of their hosted channels
+		for (ChannelProvider provider : channelProviders)
+			if (provider instanceof ChannelListChangeNotifier)
+				((ChannelListChangeNotifier)provider).addChannelListChangeListener(channelListChangeListener);
 	}
 
 	/**
@@ -587,6 +665,7 @@ public class ServerContextImpl implements ServerContext, Context {
 				logger.config("Failed to detect a loopback network interface, local multicast disabled.");
 			}
 
+			broadcastTransport.setReceiveWorkerCount(udpReceiveThreads);
 			broadcastTransport.start();
 		}
 		catch (ConnectionException ce)
@@ -709,6 +788,14 @@ public class ServerContextImpl implements ServerContext, Context {
 			}
 		}
 
+		// discard deferred searches
+		if (searchScheduler != null)
+			searchScheduler.destroy();
+
+		for (ChannelProvider provider : channelProviders)
+			if (provider instanceof ChannelListChangeNotifier)
+				((ChannelListChangeNotifier)provider).removeChannelListChangeListener(channelListChangeListener);
+
 		// stop accepting connections
 		if (acceptor != null) 
 			acceptor.destroy();
@@ -788,6 +875,10 @@ public class ServerContextImpl implements ServerContext, Context {
 		out.println("SERVER_PORT : " + serverPort);
 		out.println("RCV_BUFFER_SIZE : " + receiveBufferSize);
 		out.println("IGNORE_ADDR_LIST: " + ignoreAddressList);
+		out.println("MONITOR_SHARING : " + monitorSharing);
+		out.println("SEARCH_NEGATIVE_CACHE_TMO : " + searchNegativeCacheTimeout);
+		out.println("SEARCH_RATE_PER_CLIENT : " + searchRatePerClient);
+		out.println("UDP_RECEIVE_THREADS : " + udpReceiveThreads);
 		out.println("STATE : " + state.name());
 	}
 
@@ -963,6 +1054,30 @@ public class ServerContextImpl implements ServerContext, Context {
 		return timer;
 	}
 
+	/**
+	 * Check if monitor sharing is enabled.
+	 * @return <code>true</code> if monitor sharing is enabled.
+	 */
+	public boolean isMonitorSharing() {
+		return monitorSharing;
+	}
+
+	/**
+	 * Enable/disable monitor sharing, applies only to monitors created afterwards.
+	 * @param monitorSharing <code>true</code> to enable monitor sharing.
+	 */
+	public void setMonitorSharing(boolean monitorSharing) {
+		this.monitorSharing = monitorSharing;
+	}
+
+	/**
+	 * Get shared monitor registry.
+	 * @return shared monitor registry.
+	 */
+	public SharedMonitorRegistry getSharedMonitorRegistry() {
+		return sharedMonitorRegistry;
+	}
+
 	// NOTE order must be preserved
 	private final Map<String, SecurityPlugin> securityPlugins = new LinkedHashMap<String, SecurityPlugin>();
 
@@ -1023,6 +1138,38 @@ public class ServerContextImpl implements ServerContext, Context {
 		return channelProviders;
 	}
 
+	/**
+	 * Get search provider filter (indexes and negative cache).
+	 * @return search filter.
+	 */
+	public ChannelSearchFilter getSearchFilter() {
+		return searchFilter;
+	}
+
+	/**
+	 * Notify that the set of channels hosted by this server has changed.
+	 * Negative search cache is invalidated, beacon change count is incremented and announced to the clients.
+	 * Called on <code>ChannelListChangeNotifier</code> provider's notification, can be called also by the providers
+	 * w/o notification support.
+	 */
+	public void channelListChanged() {
+		final ChannelSearchFilter searchFilter = this.searchFilter;
+		if (searchFilter != null)
+			searchFilter.invalidate();
+		
+		final BeaconEmitter beaconEmitter = this.beaconEmitter;
+		if (beaconEmitter != null)
+			beaconEmitter.channelListChanged();
+	}
+
+	/**
+	 * Get per client search rate limiter and fair queue.
+	 * @return search scheduler, <code>null</code> if search rate is not limited.
+	 */
+	public SearchScheduler getSearchScheduler() {
+		return searchScheduler;
+	}
+
 	/**
 	 * Retrun channel (name) to provider mapping.
 	 * @return the map.
@@ -0,0 +1,37 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote;
+
+import java.util.Set;
+
+import org.epics.pvaccess.server.ChannelNameIndex;
+
+/**
+ * Exact channel name index backed by a (thread-safe) set of names.
+ */
+public class SetChannelNameIndex implements ChannelNameIndex {
+
+	private final Set<String> channelNames;
+	
+	/**
+	 * Constructor.
+	 * @param channelNames set of hosted channel names, not copied, must be safe to be read concurrently.
+	 */
+	public SetChannelNameIndex(Set<String> channelNames) {
+		if (channelNames == null)
+			throw new IllegalArgumentException("null channelNames");
+		this.channelNames = channelNames;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.server.ChannelNameIndex#mightHost(java.lang.String)
+	 */
+	@Override
+	public boolean mightHost(String channelName) {
+		return channelNames.contains(channelName);
+	}
+
+}
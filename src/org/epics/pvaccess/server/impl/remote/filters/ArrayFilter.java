@@ -0,0 +1,101 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.filters;
+
+import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvdata.pv.Convert;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVScalarArray;
+import org.epics.pvdata.pv.Type;
+
+/**
+ * Array slice filter for scalar array fields, only the requested elements are copied (and sent).
+ * Option syntax: <code>array=start:end</code> or <code>array=start:stride:end</code>,
+ * <code>end</code> is inclusive, negative indices count from the end of the array (-1 is the last element).
+ */
+public class ArrayFilter implements ChannelFilter {
+
+	public static final ChannelFilterFactory FACTORY = new ChannelFilterFactory() {
+
+		@Override
+		public String getName() {
+			return "array";
+		}
+
+		@Override
+		public ChannelFilter create(String option, PVField pvField) throws IllegalArgumentException {
+			if (pvField.getField().getType() != Type.scalarArray)
+				throw new IllegalArgumentException("array filter requires a scalar array field");
+
+			final String[] tokens = option.split(":");
+			if (tokens.length != 2 && tokens.length != 3)
+				throw new IllegalArgumentException("invalid array option '" + option + "', expected start:end or start:stride:end");
+
+			final int start, stride, end;
+			try {
+				start = Integer.parseInt(tokens[0].trim());
+				stride = (tokens.length == 3) ? Integer.parseInt(tokens[1].trim()) : 1;
+				end = Integer.parseInt(tokens[tokens.length - 1].trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("invalid array option '" + option + "', indices must be integers");
+			}
+			if (stride < 1)
+				throw new IllegalArgumentException("array stride must be >= 1");
+
+			return new ArrayFilter(start, stride, end);
+		}
+	};
+
+	private static final Convert convert = ConvertFactory.getConvert();
+
+	private final int start;
+	private final int stride;
+	private final int end;
+
+	protected ArrayFilter(int start, int stride, int end) {
+		this.start = start;
+		this.stride = stride;
+		this.end = end;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.server.impl.remote.filters.ChannelFilter#filter(org.epics.pvdata.pv.PVField)
+	 */
+	@Override
+	public Result filter(PVField from) {
+		return Result.PASS;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.server.impl.remote.filters.ChannelFilter#copy(org.epics.pvdata.pv.PVField, org.epics.pvdata.pv.PVField)
+	 */
+	@Override
+	public void copy(PVField from, PVField to) {
+		final PVScalarArray fromArray = (PVScalarArray)from;
+		final PVScalarArray toArray = (PVScalarArray)to;
+
+		final int length = fromArray.getLength();
+		final int first = (start < 0) ? Math.max(length + start, 0) : start;
+		final int last = Math.min((end < 0) ? length + end : end, length - 1);
+
+		final int count = (first > last) ? 0 : (last - first) / stride + 1;
+		toArray.setLength(count);
+
+		if (stride == 1)
+			convert.copyScalarArray(fromArray, first, toArray, 0, count);
+		else
+			for (int i = 0; i < count; i++)
+				convert.copyScalarArray(fromArray, first + i * stride, toArray, i, 1);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.server.impl.remote.filters.ChannelFilter#reset()
+	 */
+	@Override
+	public void reset() {
+		// noop
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.filters;
+
+import org.epics.pvdata.pv.PVField;
+
+/**
+ * Server-side channel filter, bound to one field of the structure given out by the provider.
+ * Filters are requested per-field via pvRequest field options, e.g. <code>field(value[deadband=abs:1.0])</code>.
+ * @see ChannelFilterFactory
+ * @see FilterChain
+ */
+public interface ChannelFilter {
+
+	/**
+	 * Filter result.
+	 */
+	public enum Result {
+		/**
+		 * Field change is to be reported.
+		 */
+		PASS,
+		/**
+		 * Field change is not significant, field is not reported.
+		 * The update is discarded if there are no other significant changes.
+		 */
+		IGNORE,
+		/**
+		 * Entire update is to be discarded.
+		 */
+		DISCARD
+	}
+
+	/**
+	 * Check (changed) provider's field.
+	 * @param from provider's field.
+	 * @return filter result.
+	 */
+	Result filter(PVField from);
+
+	/**
+	 * Copy (and transform) provider's field to the field given out to the client.
+	 * Called only if the update is given out, i.e. this is where the filter should update its state.
+	 * @param from provider's field.
+	 * @param to field given out to the client.
+	 */
+	void copy(PVField from, PVField to);
+
+	/**
+	 * Reset filter state, e.g. when monitor is (re)started.
+	 */
+	void reset();
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.filters;
+
+import org.epics.pvdata.pv.PVField;
+
+/**
+ * Channel filter factory, registered to <code>ChannelFilterRegistry</code> under its name.
+ * Name equals the name of the pvRequest field option, e.g. <code>deadband</code>.
+ * @see ChannelFilterRegistry
+ */
+public interface ChannelFilterFactory {
+
+	/**
+	 * Get filter (option) name.
+	 * @return filter name.
+	 */
+	String getName();
+
+	/**
+	 * Create a filter for the given field.
+	 * @param option option value (string after '=').
+	 * @param pvField field (of the structure given out by the provider) to be filtered.
+	 * @return filter instance.
+	 * @throws IllegalArgumentException if option is not valid or field type is not supported.
+	 */
+	ChannelFilter create(String option, PVField pvField) throws IllegalArgumentException;
+}
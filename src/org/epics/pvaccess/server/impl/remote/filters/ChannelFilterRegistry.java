@@ -0,0 +1,48 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.filters;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Registry of server-side channel filter factories.
+ * <code>deadband</code>, <code>array</code> and <code>timestamp</code> filters are registered by default.
+ */
+public class ChannelFilterRegistry {
+	private static final Map<String,ChannelFilterFactory> filterFactoryMap = new TreeMap<String,ChannelFilterFactory>();
+
+	static {
+		registerFilterFactory(DeadbandFilter.FACTORY);
+		registerFilterFactory(ArrayFilter.FACTORY);
+		registerFilterFactory(TimeStampFilter.FACTORY);
+	}
+
+	public static void registerFilterFactory(ChannelFilterFactory filterFactory) {
+		synchronized (filterFactoryMap) {
+			filterFactoryMap.put(filterFactory.getName(), filterFactory);
+		}
+	}
+
+	public static void unregisterFilterFactory(ChannelFilterFactory filterFactory) {
+		synchronized (filterFactoryMap) {
+			ChannelFilterFactory registered = filterFactoryMap.get(filterFactory.getName());
+			if (registered == filterFactory)
+				filterFactoryMap.remove(filterFactory.getName());
+		}
+	}
+
+	/**
+	 * Get filter factory.
+	 * @param name filter (option) name.
+	 * @return filter factory, <code>null</code> if not registered.
+	 */
+	public static ChannelFilterFactory getFilterFactory(String name) {
+		synchronized (filterFactoryMap) {
+			return filterFactoryMap.get(name);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.filters;
+
+import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvdata.pv.Convert;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVScalar;
+import org.epics.pvdata.pv.Scalar;
+import org.epics.pvdata.pv.Type;
+
+/**
+ * Deadband filter for numeric scalar fields, changes within the deadband are not reported.
+ * Option syntax: <code>deadband=abs:&lt;value&gt;</code> (absolute) or
+ * <code>deadband=rel:&lt;percent&gt;</code> (relative to the last reported value).
+ */
+public class DeadbandFilter implements ChannelFilter {
+
+	public static final ChannelFilterFactory FACTORY = new ChannelFilterFactory() {
+
+		@Override
+		public String getName() {
+			return "deadband";
+		}
+
+		@Override
+		public ChannelFilter create(String option, PVField pvField) throws IllegalArgumentException {
+			if (pvField.getField().getType() != Type.scalar ||
+				!((Scalar)pvField.getField()).getScalarType().isNumeric())
+				throw new IllegalArgumentException("deadband filter requires a numeric scalar field");
+
+			final boolean relative;
+			if (option.startsWith("abs:"))
+				relative = false;
+			else if (option.startsWith("rel:"))
+				relative = true;
+			else
+				throw new IllegalArgumentException("invalid deadband option '" + option + "', expected abs:<value> or rel:<percent>");
+
+			final double deadband;
+			try {
+				deadband = Double.parseDouble(option.substring(4));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("invalid deadband value in '" + option + "'");
+			}
+			if (deadband < 0)
+				throw new IllegalArgumentException("deadband must be >= 0");
+
+			return new DeadbandFilter(relative, deadband);
+		}
+	};
+
+	private static final Convert convert = ConvertFactory.getConvert();
+
+	private final boolean relative;
+	private final double deadband;
+
+	private boolean reported = false;
+	private double lastReportedValue;
+
+	protected DeadbandFilter(boolean relative, double deadband) {
+		this.relative = relative;
+		this.deadband = deadband;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.server.impl.remote.filters.ChannelFilter#filter(org.epics.pvdata.pv.PVField)
+	 */
+	@Override
+	public Result filter(PVField from) {
+		if (!reported)
+			return Result.PASS;
+
+		final double value = convert.toDouble((PVScalar)from);
+		double diff = Math.abs(value - lastReportedValue);
+		if (relative)
+		{
+			// any change of zero value is significant
+			if (lastReportedValue == 0)
+				return (diff > 0) ? Result.PASS : Result.IGNORE;
+			diff = 100.0 * diff / Math.abs(lastReportedValue);
+		}
+
+		// NaN is always significant
+		return (diff > deadband || Double.isNaN(diff)) ? Result.PASS : Result.IGNORE;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.server.impl.remote.filters.ChannelFilter#copy(org.epics.pvdata.pv.PVField, org.epics.pvdata.pv.PVField)
+	 */
+	@Override
+	public void copy(PVField from, PVField to) {
+		convert.copyScalar((PVScalar)from, (PVScalar)to);
+		lastReportedValue = convert.toDouble((PVScalar)from);
+		reported = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.server.impl.remote.filters.ChannelFilter#reset()
+	 */
+	@Override
+	public void reset() {
+		reported = false;
+	}
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.filters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.epics.pvaccess.impl.remote.SerializationHelper;
+import org.epics.pvaccess.server.impl.remote.filters.ChannelFilter.Result;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+
+/**
+ * Chain of channel filters requested by pvRequest field options, e.g.
+ * <code>field(value[array=0:10],timeStamp[timestamp=current])</code>.
+ * Chain copies provider's data to the structure given out to the client, filtered fields are
+ * copied (and transformed) only by their filters, i.e. (large) arrays are never copied in full.
+ * An update is discarded if a filter says so, or if its only remaining changes
+ * after ignoring insignificant changes are the ones of the <code>timeStamp</code> field.
+ * Instance is not thread-safe.
+ */
+public final class FilterChain {
+
+	private static final String OPTIONS_FIELD_NAME = "_options";
+
+	private static class FilterRequest {
+		final String path;
+		final String name;
+		final String option;
+		final ChannelFilterFactory factory;
+
+		FilterRequest(String path, String name, String option, ChannelFilterFactory factory) {
+			this.path = path;
+			this.name = name;
+			this.option = option;
+			this.factory = factory;
+		}
+	}
+
+	private static void collect(PVStructure pvRequestField, String path, List<FilterRequest> requests)
+	{
+		for (PVField pvField : pvRequestField.getPVFields())
+		{
+			if (!(pvField instanceof PVStructure))
+				continue;
+
+			final String name = pvField.getFieldName();
+			if (name.equals(OPTIONS_FIELD_NAME))
+			{
+				// top-level options are not field options
+				if (path.length() == 0)
+					continue;
+
+				for (PVField pvOption : ((PVStructure)pvField).getPVFields())
+				{
+					if (!(pvOption instanceof PVString))
+						continue;
+
+					final ChannelFilterFactory factory = ChannelFilterRegistry.getFilterFactory(pvOption.getFieldName());
+					if (factory != null)
+						requests.add(new FilterRequest(path, pvOption.getFieldName(), ((PVString)pvOption).get(), factory));
+				}
+			}
+			else
+				collect((PVStructure)pvField, (path.length() == 0) ? name : path + '.' + name, requests);
+		}
+	}
+
+	private static List<FilterRequest> parse(PVStructure pvRequest)
+	{
+		final List<FilterRequest> requests = new ArrayList<FilterRequest>();
+		if (pvRequest != null)
+		{
+			final PVStructure pvRequestField = pvRequest.getStructureField("field");
+			if (pvRequestField != null)
+				collect(pvRequestField, "", requests);
+		}
+		return requests;
+	}
+
+	/**
+	 * Check if pvRequest requests any (registered) filter.
+	 * @param pvRequest pvRequest.
+	 * @return <code>true</code> if any filter is requested.
+	 */
+	public static boolean isRequested(PVStructure pvRequest)
+	{
+		return !parse(pvRequest).isEmpty();
+	}
+
+	/**
+	 * Create filter chain.
+	 * Filters for fields that are not part of the given structure are silently ignored.
+	 * @param pvRequest pvRequest.
+	 * @param pvStructure structure (instance) given out to the client.
+	 * @return filter chain, <code>null</code> if no filter is requested.
+	 * @throws IllegalArgumentException if a filter option is not valid.
+	 */
+	public static FilterChain create(PVStructure pvRequest, PVStructure pvStructure) throws IllegalArgumentException
+	{
+		final List<FilterRequest> requests = parse(pvRequest);
+
+		final List<PVField> pvFields = new ArrayList<PVField>(requests.size());
+		final List<ChannelFilter> filters = new ArrayList<ChannelFilter>(requests.size());
+		for (FilterRequest request : requests)
+		{
+			final PVField pvField = pvStructure.getSubField(request.path);
+			if (pvField == null)
+				continue;
+
+			try {
+				filters.add(request.factory.create(request.option, pvField));
+				pvFields.add(pvField);
+			} catch (IllegalArgumentException iae) {
+				throw new IllegalArgumentException(request.path + "[" + request.name + "]: " + iae.getMessage());
+			}
+		}
+
+		if (filters.isEmpty())
+			return null;
+
+		return new FilterChain(pvStructure,
+				pvFields.toArray(new PVField[pvFields.size()]),
+				filters.toArray(new ChannelFilter[filters.size()]));
+	}
+
+	private final ChannelFilter[] filters;
+	private final int[] offsets;
+	private final int[] nextOffsets;
+	// path from the top structure to the filtered field (excluding), used to expand structure bits
+	private final PVStructure[][] parents;
+	private final Result[] results;
+
+	private final int timeStampOffset;
+	private final int timeStampNextOffset;
+
+	private FilterChain(PVStructure pvStructure, PVField[] pvFields, ChannelFilter[] filters)
+	{
+		this.filters = filters;
+		this.offsets = new int[filters.length];
+		this.nextOffsets = new int[filters.length];
+		this.parents = new PVStructure[filters.length][];
+		this.results = new Result[filters.length];
+
+		for (int i = 0; i < filters.length; i++)
+		{
+			final PVField pvField = pvFields[i];
+			offsets[i] = pvField.getFieldOffset();
+			nextOffsets[i] = pvField.getNextFieldOffset();
+
+			final ArrayList<PVStructure> path = new ArrayList<PVStructure>();
+			PVStructure parent = pvField.getParent();
+			while (parent != null)
+			{
+				path.add(0, parent);
+				parent = parent.getParent();
+			}
+			parents[i] = path.toArray(new PVStructure[path.size()]);
+		}
+
+		final PVField timeStampField = pvStructure.getSubField("timeStamp");
+		if (timeStampField != null)
+		{
+			timeStampOffset = timeStampField.getFieldOffset();
+			timeStampNextOffset = timeStampField.getNextFieldOffset();
+		}
+		else
+		{
+			timeStampOffset = timeStampNextOffset = -1;
+		}
+	}
+
+	/**
+	 * Reset all the filters, e.g. when monitor is (re)started.
+	 */
+	public void reset()
+	{
+		for (ChannelFilter filter : filters)
+			filter.reset();
+	}
+
+	private boolean isChanged(BitSet changedBitSet, int i)
+	{
+		// field or any of its subfields
+		final int next = changedBitSet.nextSetBit(offsets[i]);
+		if (next >= 0 && next < nextOffsets[i])
+			return true;
+
+		// any of the parents
+		for (PVStructure parent : parents[i])
+			if (changedBitSet.get(parent.getFieldOffset()))
+				return true;
+
+		return false;
+	}
+
+	private void exclude(BitSet bitSet, int i)
+	{
+		// replace parent structure bits with the bits of their subfields
+		for (PVStructure parent : parents[i])
+		{
+			final int offset = parent.getFieldOffset();
+			if (bitSet.get(offset))
+			{
+				bitSet.clear(offset);
+				for (PVField pvField : parent.getPVFields())
+					bitSet.set(pvField.getFieldOffset());
+			}
+		}
+
+		for (int offset = offsets[i]; offset < nextOffsets[i]; offset++)
+			bitSet.clear(offset);
+	}
+
+	private boolean isTimeStamp(int offset)
+	{
+		return offset >= timeStampOffset && offset < timeStampNextOffset;
+	}
+
+	/**
+	 * Apply the filters and copy provider's data.
+	 * @param from provider's structure.
+	 * @param to structure given out to the client, the one given to <code>create</code>.
+	 * @param changedBitSet provider's changed bit-set.
+	 * @param resultBitSet bit-set of the fields to be given out to the client (set by this method).
+	 * @param monitor <code>true</code> if filtering monitor updates, for get all the data is copied and nothing is discarded.
+	 * @return <code>true</code> if update is to be given out, <code>false</code> if discarded.
+	 */
+	public boolean apply(PVStructure from, PVStructure to, BitSet changedBitSet, BitSet resultBitSet, boolean monitor)
+	{
+		resultBitSet.clear();
+		resultBitSet.or(changedBitSet);
+
+		boolean ignored = false;
+		boolean significant = false;
+		for (int i = 0; i < filters.length; i++)
+		{
+			if (!isChanged(changedBitSet, i))
+			{
+				results[i] = null;
+				continue;
+			}
+
+			final Result result = monitor ? filters[i].filter(from.getSubField(offsets[i])) : Result.PASS;
+			if (result == Result.DISCARD)
+				return false;
+			else if (result == Result.IGNORE)
+				ignored = true;
+			else if (!isTimeStamp(offsets[i]))
+				significant = true;
+
+			results[i] = result;
+			exclude(resultBitSet, i);
+		}
+
+		if (ignored && !significant)
+		{
+			int offset = resultBitSet.nextSetBit(0);
+			while (offset >= 0 && isTimeStamp(offset))
+				offset = resultBitSet.nextSetBit(offset + 1);
+
+			// only timeStamp has changed
+			if (offset < 0)
+				return false;
+		}
+
+		SerializationHelper.partialCopy(from, to, resultBitSet);
+
+		for (int i = 0; i < filters.length; i++)
+		{
+			if (results[i] == Result.PASS)
+			{
+				filters[i].copy(from.getSubField(offsets[i]), to.getSubField(offsets[i]));
+				resultBitSet.set(offsets[i]);
+			}
+		}
+
+		return true;
+	}
+}
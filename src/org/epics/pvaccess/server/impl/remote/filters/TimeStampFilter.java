@@ -0,0 +1,111 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.filters;
+
+import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvdata.property.PVTimeStamp;
+import org.epics.pvdata.property.PVTimeStampFactory;
+import org.epics.pvdata.property.TimeStamp;
+import org.epics.pvdata.property.TimeStampFactory;
+import org.epics.pvdata.pv.Convert;
+import org.epics.pvdata.pv.PVField;
+
+/**
+ * Time-stamp filter for <code>timeStamp</code> structure fields.
+ * Option syntax:
+ * <ul>
+ * <li><code>timestamp=current</code> - time-stamp is replaced with the server current time,</li>
+ * <li><code>timestamp=monotonic</code> - updates with time-stamp not newer than the last reported one are discarded.</li>
+ * </ul>
+ */
+public class TimeStampFilter implements ChannelFilter {
+
+	public static final ChannelFilterFactory FACTORY = new ChannelFilterFactory() {
+
+		@Override
+		public String getName() {
+			return "timestamp";
+		}
+
+		@Override
+		public ChannelFilter create(String option, PVField pvField) throws IllegalArgumentException {
+			if (!PVTimeStampFactory.create().attach(pvField))
+				throw new IllegalArgumentException("timestamp filter requires a timeStamp field");
+
+			if (option.equals("current"))
+				return new TimeStampFilter(true);
+			else if (option.equals("monotonic"))
+				return new TimeStampFilter(false);
+			else
+				throw new IllegalArgumentException("invalid timestamp option '" + option + "', expected current or monotonic");
+		}
+	};
+
+	private static final Convert convert = ConvertFactory.getConvert();
+
+	private final boolean current;
+
+	private final PVTimeStamp pvTimeStamp = PVTimeStampFactory.create();
+	private final TimeStamp timeStamp = TimeStampFactory.create();
+
+	private boolean reported = false;
+	private long lastSecondsPastEpoch;
+	private int lastNanoseconds;
+
+	protected TimeStampFilter(boolean current) {
+		this.current = current;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.server.impl.remote.filters.ChannelFilter#filter(org.epics.pvdata.pv.PVField)
+	 */
+	@Override
+	public Result filter(PVField from) {
+		if (current || !reported)
+			return Result.PASS;
+
+		pvTimeStamp.attach(from);
+		pvTimeStamp.get(timeStamp);
+		final long secondsPastEpoch = timeStamp.getSecondsPastEpoch();
+		if (secondsPastEpoch > lastSecondsPastEpoch ||
+			(secondsPastEpoch == lastSecondsPastEpoch && timeStamp.getNanoseconds() > lastNanoseconds))
+			return Result.PASS;
+		else
+			return Result.DISCARD;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.server.impl.remote.filters.ChannelFilter#copy(org.epics.pvdata.pv.PVField, org.epics.pvdata.pv.PVField)
+	 */
+	@Override
+	public void copy(PVField from, PVField to) {
+		convert.copy(from, to);
+
+		pvTimeStamp.attach(to);
+		if (current)
+		{
+			// keep userTag
+			pvTimeStamp.get(timeStamp);
+			timeStamp.getCurrentTime();
+			pvTimeStamp.set(timeStamp);
+		}
+		else
+		{
+			pvTimeStamp.get(timeStamp);
+			lastSecondsPastEpoch = timeStamp.getSecondsPastEpoch();
+			lastNanoseconds = timeStamp.getNanoseconds();
+			reported = true;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.server.impl.remote.filters.ChannelFilter#reset()
+	 */
+	@Override
+	public void reset() {
+		reported = false;
+	}
+}
@@ -17,6 +17,7 @@ package org.epics.pvaccess.server.impl.remote.handlers;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 
@@ -61,26 +62,45 @@ public class CreateChannelHandler extends AbstractServerResponseHandler {
 	public void handleResponse(InetSocketAddress responseFrom, Transport transport, byte version, byte command, int payloadSize, ByteBuffer payloadBuffer) {
 		super.handleResponse(responseFrom, transport, version, command, payloadSize, payloadBuffer);
 
-		// TODO for not only one request at the time is supported, i.e. dataCount == 1
-
-		transport.ensureData((Integer.SIZE+Short.SIZE)/Byte.SIZE);
-		final short count = payloadBuffer.getShort();
-		if (count != 1)
-			throw new UnsupportedOperationException("only 1 supported for now");
-		final int cid = payloadBuffer.getInt();
+		transport.ensureData(Short.SIZE/Byte.SIZE);
+		final int count = payloadBuffer.getShort() & 0xFFFF;
+		if (count == 0 || count > PVAConstants.MAX_CREATE_CHANNEL_BATCH_SIZE)
+		{
+			context.getLogger().warning("Unreasonable create channel request count " + count + ", disconnecting client: " + transport.getRemoteAddress());
+			disconnect(transport);
+			return;
+		}
 		
-		final String channelName = SerializeHelper.deserializeString(payloadBuffer, transport);
+		// responses to a batched request are coalesced
+		final CreateChannelResponseBatch batch = (count > 1) ? new CreateChannelResponseBatch(transport) : null;
+		
+		for (int i = 0; i < count; i++)
+		{
+			transport.ensureData(Integer.SIZE/Byte.SIZE);
+			final int cid = payloadBuffer.getInt();
+			final String channelName = SerializeHelper.deserializeString(payloadBuffer, transport);
+			if (!createChannel(transport, cid, channelName, batch))
+				return;
+		}
+	}
+
+	/**
+	 * Create one channel.
+	 * @return <code>false</code> if client was disconnected.
+	 */
+	private boolean createChannel(Transport transport, int cid, String channelName, CreateChannelResponseBatch batch)
+	{
 		if (channelName == null || channelName.length() == 0)
 		{
 			context.getLogger().warning("Zero length channel name, disconnecting client: " + transport.getRemoteAddress());
 			disconnect(transport);
-			return;
+			return false;
 		}
 		else if (channelName.length() > PVAConstants.MAX_CHANNEL_NAME_LENGTH)
 		{
 			context.getLogger().warning("Unreasonable channel name length, disconnecting client: " + transport.getRemoteAddress());
 			disconnect(transport);
-			return;
+			return false;
 		}
 		
 		SecuritySession securitySession = transport.getSecuritySession();
@@ -90,20 +110,20 @@ public class CreateChannelHandler extends AbstractServerResponseHandler {
 			if (channelSecuritySession == null)
 				throw new SecurityException("null channelSecuritySession");
 		} catch (SecurityException se) {
-			final ChannelRequester cr = new ChannelRequesterImpl(transport, channelName, cid, null);
+			final ChannelRequester cr = new ChannelRequesterImpl(transport, channelName, cid, null, batch);
 			Status asStatus = StatusFactory.getStatusCreate().
 					createStatus(StatusType.ERROR, "Insufficient rights to create a channel: " + se.getMessage(), se);
 			cr.channelCreated(asStatus, null);
-			return;
+			return true;
 		} catch (Throwable th) {
-			final ChannelRequester cr = new ChannelRequesterImpl(transport, channelName, cid, null);
+			final ChannelRequester cr = new ChannelRequesterImpl(transport, channelName, cid, null, batch);
 			Status asStatus = StatusFactory.getStatusCreate().
 					createStatus(StatusType.ERROR, "Unexpected exception caught while examining channel creation access rights: " + th.getMessage(), th);
 			cr.channelCreated(asStatus, null);
-			return;
+			return true;
 		}
 		
-		final ChannelRequester cr = new ChannelRequesterImpl(transport, channelName, cid, channelSecuritySession);
+		final ChannelRequester cr = new ChannelRequesterImpl(transport, channelName, cid, channelSecuritySession, batch);
 		
 		if (channelName.equals(SERVER_CHANNEL_NAME))
 		{
@@ -132,10 +152,12 @@ public class CreateChannelHandler extends AbstractServerResponseHandler {
 					Status asStatus = StatusFactory.getStatusCreate().
 							createStatus(StatusType.ERROR, "Multiple providers installed, but there is no channel to provider mapping available (not implemented).", null);
 					cr.channelCreated(asStatus, null);
-					return;
+					return true;
 				}
 			}
 		}
+		
+		return true;
 	}
 
 	/**
@@ -161,15 +183,17 @@ public class CreateChannelHandler extends AbstractServerResponseHandler {
 		private final String channelName;
 		private final int cid;
 		private final ChannelSecuritySession css;
+		private final CreateChannelResponseBatch batch;
 
 		private Status status;
 		private Channel channel;
 		
-		public ChannelRequesterImpl(Transport transport, String channelName, int cid, ChannelSecuritySession css) {
+		public ChannelRequesterImpl(Transport transport, String channelName, int cid, ChannelSecuritySession css, CreateChannelResponseBatch batch) {
 			this.transport = transport;
 			this.channelName = channelName;
 			this.cid = cid;
 			this.css = css;
+			this.batch = batch;
 		}
 		
 		@Override
@@ -178,7 +202,10 @@ public class CreateChannelHandler extends AbstractServerResponseHandler {
 				this.status = status;
 				this.channel = channel;
 			}
-			transport.enqueueSendRequest(this);
+			if (batch != null)
+				batch.completed(this);
+			else
+				transport.enqueueSendRequest(this);
 		}
 
 
@@ -293,4 +320,67 @@ public class CreateChannelHandler extends AbstractServerResponseHandler {
 		
 	}
 	
+	/**
+	 * Coalesces responses of a batched create channel request,
+	 * all the responses completed until the send thread picks up the batch are sent at once.
+	 */
+	class CreateChannelResponseBatch implements TransportSender
+	{
+		private final Transport transport;
+		
+		// guarded by this
+		private final ArrayList<ChannelRequesterImpl> completed = new ArrayList<ChannelRequesterImpl>();
+		private boolean enqueued = false;
+		
+		public CreateChannelResponseBatch(Transport transport) {
+			this.transport = transport;
+		}
+		
+		void completed(ChannelRequesterImpl requester)
+		{
+			synchronized (this) {
+				completed.add(requester);
+				if (enqueued)
+					return;
+				enqueued = true;
+			}
+			transport.enqueueSendRequest(this);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportSender#send(java.nio.ByteBuffer, org.epics.pvaccess.impl.remote.TransportSendControl)
+		 */
+		@Override
+		public void send(ByteBuffer buffer, TransportSendControl control) {
+			final ChannelRequesterImpl[] toSend;
+			synchronized (this) {
+				toSend = completed.toArray(new ChannelRequesterImpl[completed.size()]);
+				completed.clear();
+				enqueued = false;
+			}
+			
+			for (ChannelRequesterImpl requester : toSend)
+			{
+				requester.send(buffer, control);
+				control.endMessage();
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportSender#lock()
+		 */
+		@Override
+		public void lock() {
+			// noop
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportSender#unlock()
+		 */
+		@Override
+		public void unlock() {
+			// noop
+		}
+	}
+	
 }
@@ -17,6 +17,7 @@ package org.epics.pvaccess.server.impl.remote.handlers;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 
+import org.epics.pvaccess.PVFactory;
 import org.epics.pvaccess.client.ChannelGet;
 import org.epics.pvaccess.client.ChannelGetRequester;
 import org.epics.pvaccess.impl.remote.QoS;
@@ -27,6 +28,7 @@ import org.epics.pvaccess.impl.remote.TransportSender;
 import org.epics.pvaccess.impl.remote.server.ChannelHostingTransport;
 import org.epics.pvaccess.server.impl.remote.ServerChannelImpl;
 import org.epics.pvaccess.server.impl.remote.ServerContextImpl;
+import org.epics.pvaccess.server.impl.remote.filters.FilterChain;
 import org.epics.pvdata.misc.BitSet;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.Status;
@@ -52,9 +54,16 @@ public class GetHandler extends AbstractServerResponseHandler {
 		private volatile Structure structure;
 		private volatile Status status;
 		
+		// server-side filters (field options)
+		private final PVStructure pvRequest;
+		private volatile FilterChain filterChain;
+		private volatile PVStructure filteredPVStructure;
+		private final BitSet filteredBitSet = new BitSet();
+		
 		public ChannelGetRequesterImpl(ServerContextImpl context, ServerChannelImpl channel, int ioid, Transport transport,
 				 PVStructure pvRequest) {
 			super(context, channel, ioid, transport);
+			this.pvRequest = pvRequest;
 			
 			startRequest(QoS.INIT.getMaskValue());
 			channel.registerRequest(ioid, this);
@@ -71,6 +80,17 @@ public class GetHandler extends AbstractServerResponseHandler {
 		
 		@Override
 		public void channelGetConnect(Status status, ChannelGet channelGet, Structure structure) {
+			if (status.isSuccess() && FilterChain.isRequested(pvRequest))
+			{
+				try {
+					final PVStructure pvStructure = PVFactory.getPVDataCreate().createPVStructure(structure);
+					filterChain = FilterChain.create(pvRequest, pvStructure);
+					filteredPVStructure = pvStructure;
+				} catch (IllegalArgumentException iae) {
+					status = statusCreate.createStatus(StatusType.ERROR, iae.getMessage(), null);
+				}
+			}
+			
 			// will JVM optimize subsequent volatile sets?
 			this.status = status;
 			this.channelGet = channelGet;
@@ -86,6 +106,14 @@ public class GetHandler extends AbstractServerResponseHandler {
 
 		@Override
 		public void getDone(Status status, ChannelGet channelGet, PVStructure pvStructure, BitSet bitSet) {
+			final FilterChain filterChain = this.filterChain;
+			if (filterChain != null && status.isSuccess())
+			{
+				filterChain.apply(pvStructure, filteredPVStructure, bitSet, filteredBitSet, false);
+				pvStructure = filteredPVStructure;
+				bitSet = filteredBitSet;
+			}
+			
 			// will JVM optimize subsequent volatile sets?
 			this.status = status;
 			this.pvStructure = pvStructure;
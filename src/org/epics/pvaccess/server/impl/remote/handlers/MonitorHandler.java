@@ -26,6 +26,10 @@ import org.epics.pvaccess.impl.remote.TransportSender;
 import org.epics.pvaccess.impl.remote.server.ChannelHostingTransport;
 import org.epics.pvaccess.server.impl.remote.ServerChannelImpl;
 import org.epics.pvaccess.server.impl.remote.ServerContextImpl;
+import org.epics.pvaccess.server.impl.remote.monitor.FilteredMonitor;
+import org.epics.pvaccess.server.impl.remote.monitor.PipelineQueueMonitor;
+import org.epics.pvaccess.server.impl.remote.monitor.RateLimitedMonitor;
+import org.epics.pvaccess.server.impl.remote.monitor.SharedMonitor;
 import org.epics.pvdata.factory.StatusFactory;
 import org.epics.pvdata.misc.BitSet;
 import org.epics.pvdata.monitor.Monitor;
@@ -55,14 +59,54 @@ public class MonitorHandler extends AbstractServerResponseHandler {
 		private volatile boolean unlisten = false;
 
 		public MonitorRequesterImpl(ServerContextImpl context, ServerChannelImpl channel, int ioid, Transport transport,
-				 PVStructure pvRequest) {
+				 PVStructure pvRequest, boolean pipeline) {
 			super(context, channel, ioid, transport);
 
 			startRequest(QoS.INIT.getMaskValue());
 			channel.registerRequest(ioid, this);
 			
+			// server-side decorators: provider -> filters (field options) -> rate limiting/decimation (record._options)
+			// -> pipeline queue (flow control for providers w/o PipelineMonitor support)
+			MonitorRequester monitorRequester = this;
+			Monitor decorator = null;
+			PipelineQueueMonitor pipelineQueueMonitor = null;
+			if (pipeline)
+				monitorRequester = decorator = pipelineQueueMonitor = new PipelineQueueMonitor(monitorRequester, pvRequest);
 			try {
-				channelMonitor = channel.getChannel().createMonitor(this, pvRequest);
+				final RateLimitedMonitor rateLimitedMonitor = RateLimitedMonitor.create(monitorRequester, pvRequest, context.getTimer());
+				if (rateLimitedMonitor != null)
+				{
+					monitorRequester = rateLimitedMonitor;
+					if (decorator == null)
+						decorator = rateLimitedMonitor;
+				}
+				
+				final FilteredMonitor filteredMonitor = FilteredMonitor.create(monitorRequester, pvRequest);
+				if (filteredMonitor != null)
+				{
+					monitorRequester = filteredMonitor;
+					if (decorator == null)
+						decorator = filteredMonitor;
+				}
+			} catch (IllegalArgumentException iae) {
+				BaseChannelRequester.sendFailureMessage((byte)13, transport, ioid, (byte)QoS.INIT.getMaskValue(),
+						statusCreate.createStatus(StatusType.ERROR, iae.getMessage(), null));
+				destroy();
+				return;
+			}
+
+			// provider's flow control can only be used if no decorator in between merges or discards updates
+			if (pipelineQueueMonitor != null)
+				pipelineQueueMonitor.setPassThroughAllowed(monitorRequester == pipelineQueueMonitor);
+
+			try {
+				final Monitor providerMonitor;
+				// shared monitor (serialize-once), only for plain monitors
+				if (decorator == null && !pipeline && context.isMonitorSharing())
+					providerMonitor = context.getSharedMonitorRegistry().subscribe(channel.getChannel(), pvRequest, this);
+				else
+					providerMonitor = channel.getChannel().createMonitor(monitorRequester, pvRequest);
+				channelMonitor = (decorator != null && providerMonitor != null) ? decorator : providerMonitor;
 			} catch (Throwable th) {
 				// simply cannot trust code above
 				BaseChannelRequester.sendFailureMessage((byte)13, transport, ioid, (byte)QoS.INIT.getMaskValue(),
@@ -180,6 +224,21 @@ public class MonitorHandler extends AbstractServerResponseHandler {
 			else
 			{
 				final Monitor monitor = this.monitor;
+				if (monitor instanceof SharedMonitor.Subscription)
+				{
+					// already serialized changedBitSet, data and overrunBitSet
+					final byte[] update = ((SharedMonitor.Subscription)monitor).poll(buffer.order());
+					if (update != null)
+					{
+						control.startMessage((byte)13, Integer.SIZE/Byte.SIZE + 1);
+						buffer.putInt(ioid);
+						buffer.put((byte)request);
+						
+						SharedMonitor.write(update, buffer, control);
+						return;
+					}
+				}
+				
 				final MonitorElement element = monitor.poll();
 				if (element != null)
 				{
@@ -263,19 +322,24 @@ public class MonitorHandler extends AbstractServerResponseHandler {
 				return;
 			}
 			
-			// create...
-			new MonitorRequesterImpl(context, channel, ioid, transport, pvRequest);
-			
 			// pipelining monitor (i.e. w/ flow control)
 			final boolean ack = QoS.GET_PUT.isSet(qosCode);
+
+			// create...
+			new MonitorRequesterImpl(context, channel, ioid, transport, pvRequest, ack);
+			
 	        if (ack)
 	        {
 	        	transport.ensureData(4);
 	            int nfree = payloadBuffer.getInt();
 				MonitorRequesterImpl request = (MonitorRequesterImpl)channel.getRequest(ioid);
-				Monitor channelMonitor = request.getChannelMonitor();
-				if (channelMonitor instanceof PipelineMonitor)
-					((PipelineMonitor)channelMonitor).reportRemoteQueueStatus(nfree);
+				// null if creation failed
+				if (request != null)
+				{
+					Monitor channelMonitor = request.getChannelMonitor();
+					if (channelMonitor instanceof PipelineMonitor)
+						((PipelineMonitor)channelMonitor).reportRemoteQueueStatus(nfree);
+				}
 	        }
 	    }
 		else
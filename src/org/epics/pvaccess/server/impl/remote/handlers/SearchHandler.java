@@ -18,12 +18,15 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.epics.pvaccess.PVAConstants;
 import org.epics.pvaccess.client.ChannelFind;
 import org.epics.pvaccess.client.ChannelFindRequester;
 import org.epics.pvaccess.client.ChannelProvider;
@@ -33,9 +36,14 @@ import org.epics.pvaccess.impl.remote.Transport;
 import org.epics.pvaccess.impl.remote.TransportSendControl;
 import org.epics.pvaccess.impl.remote.TransportSender;
 import org.epics.pvaccess.impl.remote.udp.BlockingUDPTransport;
+import org.epics.pvaccess.impl.remote.utils.GUID;
+import org.epics.pvaccess.server.impl.remote.ChannelSearchFilter;
+import org.epics.pvaccess.server.impl.remote.SearchScheduler;
 import org.epics.pvaccess.server.impl.remote.ServerContextImpl;
+import org.epics.pvaccess.server.impl.remote.nameserver.DirectoryChannelFind;
 import org.epics.pvaccess.util.InetAddressUtil;
-import org.epics.pvdata.factory.StatusFactory;
+import org.epics.pvaccess.util.ObjectPool;
+import org.epics.pvaccess.util.StringInternTable;
 import org.epics.pvdata.misc.SerializeHelper;
 import org.epics.pvdata.misc.Timer.TimerCallback;
 import org.epics.pvdata.misc.Timer.TimerNode;
@@ -48,11 +56,40 @@ import org.epics.pvdata.pv.Status;
  */
 public class SearchHandler extends AbstractServerResponseHandler {
 
-	private final ChannelFindRequesterImplObjectPool objectPool = new ChannelFindRequesterImplObjectPool();
+	// steady-state search processing allocates nothing, all the per-request objects are pooled or reused
+	private static final int REQUESTER_POOL_SIZE = 1024;
+	private static final int AGGREGATOR_POOL_SIZE = 256;
+	private static final int SERVER_SEARCH_RESPONDER_POOL_SIZE = 64;
+	private static final int DEFERRED_SEARCH_POOL_SIZE = 256;
+	private static final int NAME_INTERN_TABLE_SIZE = 4096;
+	private static final int RESPONSE_ADDRESS_CACHE_SIZE = 64;
+	
+	private final ObjectPool<ChannelFindRequesterImpl> requesterPool = new ObjectPool<ChannelFindRequesterImpl>(REQUESTER_POOL_SIZE);
+	private final ObjectPool<SearchResponseAggregator> aggregatorPool = new ObjectPool<SearchResponseAggregator>(AGGREGATOR_POOL_SIZE);
+	private final ObjectPool<ServerSearchResponder> responderPool = new ObjectPool<ServerSearchResponder>(SERVER_SEARCH_RESPONDER_POOL_SIZE);
+	private final ObjectPool<DeferredSearchImpl> deferredSearchPool = new ObjectPool<DeferredSearchImpl>(DEFERRED_SEARCH_POOL_SIZE);
+	
+	// hot channel names are decoded w/o creating a new string 
+	private final StringInternTable nameTable = new StringInternTable(NAME_INTERN_TABLE_SIZE);
+	
+	// requests are handled by UDP receive and TCP reader threads, each has its own decode buffers
+	private final ThreadLocal<DecodeBuffers> decodeBuffers = new ThreadLocal<DecodeBuffers>() {
+		@Override
+		protected DecodeBuffers initialValue() {
+			return new DecodeBuffers();
+		}
+	};
 	
 	private final Random random = new Random();
 	private static final int MAX_SERVER_SEARCH_RESPONSE_DELAY_MS = 100;
 	
+	// max time to wait for asynchronous providers before responses of a search request are sent
+	private static final double MAX_SEARCH_RESPONSE_AGGREGATION_DELAY = 0.010;
+	
+	// max number of CIDs in one search response message, so that it fits into one unfragmented datagram
+	private static final int MAX_CIDS_PER_RESPONSE =
+		(PVAConstants.MAX_UDP_UNFRAGMENTED_SEND - PVAConstants.PVA_MESSAGE_HEADER_SIZE - (12+4+16+2+(1+3)+1+2)) / 4;
+	
 	public SearchHandler(ServerContextImpl context) {
 		super(context, "Search request");
 	}
@@ -78,34 +115,25 @@ public class SearchHandler extends AbstractServerResponseHandler {
 		payloadBuffer.get();
 		payloadBuffer.getShort();
 
+		final DecodeBuffers buffers = decodeBuffers.get();
+		
 		// 128-bit IPv6 address
-		byte[] byteAddress = new byte[16]; 
-		payloadBuffer.get(byteAddress);
+		payloadBuffer.get(buffers.address);
 		
 		final int port = payloadBuffer.getShort() & 0xFFFF;
 		
-		
-		// NOTE: Java knows how to compare IPv4/IPv6 :)
-		
-		InetAddress addr;
-		try {
-			addr = InetAddress.getByAddress(byteAddress);
-		} catch (UnknownHostException e) {
-			context.getLogger().log(Level.FINER, "Invalid address '" +  new String(byteAddress) + "' in search response received from: " + responseFrom, e);
-			return;
-		}
-
 		// accept given address if explicitly specified by sender
-		if (!addr.isAnyLocalAddress())
-			responseFrom = new InetSocketAddress(addr, port);
-		else
-			responseFrom = new InetSocketAddress(responseFrom.getAddress(), port);
+		responseFrom = buffers.getResponseAddress(responseFrom, port);
+		if (responseFrom == null)
+			return;
 
+		// search requests received over TCP (e.g. by a name server) are replied over the same connection 
+		final Transport replyTransport = SUPPORTED_PROTOCOL.equals(transport.getType()) ? transport : null;
 
 		// 
 		// locally broadcast if unicast (qosCode & 0x80 == 0x80)
 		//
-		if ((qosCode & 0x80) == 0x80)
+		if ((qosCode & 0x80) == 0x80 && replyTransport == null)
 		{
 			BlockingUDPTransport bt = context.getLocalMulticastTransport();
 			if (bt != null)
@@ -130,7 +158,7 @@ public class SearchHandler extends AbstractServerResponseHandler {
 		boolean allowed = (protocolsCount == 0);
 		for (int i = 0; i < protocolsCount; i++)
 		{
-			String protocol = SerializeHelper.deserializeString(payloadBuffer, transport);
+			String protocol = decodeString(buffers, payloadBuffer, transport);
 			if (SUPPORTED_PROTOCOL.equals(protocol))
 				allowed = true;
 		}
@@ -140,63 +168,302 @@ public class SearchHandler extends AbstractServerResponseHandler {
 		transport.ensureData(2);
 		final int count = payloadBuffer.getShort() & 0xFFFF;
 		
-		// TODO DoS attack
 		final boolean responseRequired = QoS.REPLY_REQUIRED.isSet(qosCode);
 		
-		// TODO bloom filter or similar server selection (by GUID)
+		// search work of UDP requests is limited per client (fair share), see SearchScheduler
+		final SearchScheduler scheduler = (replyTransport == null) ? context.getSearchScheduler() : null;
 		
 		if (count > 0)
 		{
+			final int[] cids = buffers.getCIDs(count);
+			final String[] names = buffers.getNames(count);
 			for (int i = 0; i < count; i++) {
 				transport.ensureData(4);
-				final int cid = payloadBuffer.getInt();
-				final String name = SerializeHelper.deserializeString(payloadBuffer, transport);
+				cids[i] = payloadBuffer.getInt();
+				names[i] = decodeString(buffers, payloadBuffer, transport);
 				// no name check here...
-	
-				if (allowed) 
-				{
-					List<ChannelProvider> providers = context.getChannelProviders();
-					ChannelFindRequesterImpl cfri = objectPool.get().set(context.getLogger(), searchSequenceId, name, cid, responseFrom, responseRequired, providers.size());
-					for (ChannelProvider provider : providers)
-						provider.channelFind(name, cfri);
-				}
 			}
+			
+			if (!allowed)
+				return;
+			
+			if (scheduler != null && !scheduler.tryAcquire(responseFrom.getAddress(), count))
+			{
+				DeferredSearchImpl deferred = deferredSearchPool.poll();
+				if (deferred == null)
+					deferred = new DeferredSearchImpl();
+				deferred.set(searchSequenceId, responseFrom, responseRequired, cids, names, count);
+				if (!scheduler.defer(responseFrom.getAddress(), deferred))
+					deferred.recycle();
+				return;
+			}
+			
+			processSearch(searchSequenceId, responseFrom, replyTransport, responseRequired, cids, names, count);
 		}
 		else
 		{
 			// server search response
 			if (allowed)
 			{
-				double delay = random.nextInt(MAX_SERVER_SEARCH_RESPONSE_DELAY_MS) / 1000.0;
-				final InetSocketAddress rf = responseFrom;
-				TimerNode timerNode = TimerFactory.createNode(new TimerCallback() {
-					
-					@Override
-					public void timerStopped() {
-						// noop
-					}
-					
-					@Override
-					public void callback() {
-						objectPool.get().set(context.getLogger(), searchSequenceId, rf).channelFindResult(StatusFactory.getStatusCreate().getStatusOK(), null, false);
-					}
-				});
+				// server search response is cheap and delayed anyway, it is not deferred
+				if (scheduler != null && !scheduler.tryAcquire(responseFrom.getAddress(), 1))
+				{
+					scheduler.dropped();
+					return;
+				}
+				
+				ServerSearchResponder responder = responderPool.poll();
+				if (responder == null)
+					responder = new ServerSearchResponder();
+				
 				// delay response to avoid "UDP search storms"
-				context.getTimer().scheduleAfterDelay(timerNode, delay);
+				double delay = random.nextInt(MAX_SERVER_SEARCH_RESPONSE_DELAY_MS) / 1000.0;
+				responder.schedule(searchSequenceId, responseFrom, replyTransport, delay);
 			}
 		}
 	}
+	
+	/**
+	 * Query providers for the searched channels and send responses.
+	 * @param searchSequenceId search sequence ID of the request.
+	 * @param responseFrom response address.
+	 * @param replyTransport TCP transport to reply over, <code>null</code> for UDP.
+	 * @param responseRequired send also not found responses.
+	 * @param cids channel IDs.
+	 * @param names channel names.
+	 * @param count number of channels.
+	 */
+	private void processSearch(int searchSequenceId, InetSocketAddress responseFrom, Transport replyTransport,
+			boolean responseRequired, int[] cids, String[] names, int count)
+	{
+		// responses for all the channels of this request are gathered into as few messages as possible
+		SearchResponseAggregator aggregator = aggregatorPool.poll();
+		if (aggregator == null)
+			aggregator = new SearchResponseAggregator();
+		aggregator.set(searchSequenceId, responseFrom, replyTransport, responseRequired, count);
 
-	private class ChannelFindRequesterImpl implements ChannelFindRequester, TransportSender {
+		final ChannelSearchFilter searchFilter = context.getSearchFilter();
+		for (int i = 0; i < count; i++) {
+			final int cid = cids[i];
+			final String name = names[i];
+			
+			final int generation = searchFilter.getGeneration();
+			final List<ChannelProvider> providers = searchFilter.getCandidateProviders(name);
+			final int providerCount = providers.size();
+			if (providerCount == 0)
+			{
+				// not hosted or recently not found
+				aggregator.channelResult(cid, false, null);
+				continue;
+			}
+			
+			ChannelFindRequesterImpl cfri = requesterPool.poll();
+			if (cfri == null)
+				cfri = new ChannelFindRequesterImpl();
+			cfri.set(context.getLogger(), name, cid, aggregator, providerCount, generation);
+			for (int p = 0; p < providerCount; p++)
+				providers.get(p).channelFind(name, cfri);
+		}
 		
-		private Logger logger;
+		aggregator.requestProcessed();
+	}
+	
+	/**
+	 * Search request deferred by the scheduler (over its client's budget), instances are pooled.
+	 */
+	private class DeferredSearchImpl implements SearchScheduler.DeferredSearch {
 		
-		private boolean serverSearch;
 		private int searchSequenceId;
+		private InetSocketAddress responseFrom;
+		private boolean responseRequired;
+		private int[] cids = new int[16];
+		private String[] names = new String[16];
+		private int count;
+		
+		public void set(int searchSequenceId, InetSocketAddress responseFrom, boolean responseRequired, int[] cids, String[] names, int count)
+		{
+			this.searchSequenceId = searchSequenceId;
+			this.responseFrom = responseFrom;
+			this.responseRequired = responseRequired;
+			if (this.cids.length < count)
+			{
+				this.cids = new int[count];
+				this.names = new String[count];
+			}
+			System.arraycopy(cids, 0, this.cids, 0, count);
+			System.arraycopy(names, 0, this.names, 0, count);
+			this.count = count;
+		}
+		
+		public void recycle()
+		{
+			responseFrom = null;
+			Arrays.fill(names, 0, count, null);
+			count = 0;
+			deferredSearchPool.offer(this);
+		}
+		
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.server.impl.remote.SearchScheduler.DeferredSearch#getCost()
+		 */
+		@Override
+		public int getCost() {
+			return count;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.server.impl.remote.SearchScheduler.DeferredSearch#process()
+		 */
+		@Override
+		public void process() {
+			try {
+				processSearch(searchSequenceId, responseFrom, null, responseRequired, cids, names, count);
+			} finally {
+				recycle();
+			}
+		}
+	}
+	
+	/**
+	 * Decode a string into the reusable buffer, hot strings are not created again.
+	 * @param buffers decode buffers of the current thread.
+	 * @param payloadBuffer buffer to decode from.
+	 * @param transport transport to ensure data.
+	 * @return decoded string.
+	 */
+	private String decodeString(DecodeBuffers buffers, ByteBuffer payloadBuffer, Transport transport)
+	{
+		final int size = SerializeHelper.readSize(payloadBuffer, transport);
+		if (size < 0)
+			return null;
+		
+		byte[] bytes = buffers.name;
+		int offset = 0;
+		while (offset < size)
+		{
+			transport.ensureData(1);
+			final int chunk = Math.min(size - offset, payloadBuffer.remaining());
+			// grow only for data actually received
+			if (offset + chunk > bytes.length)
+			{
+				final byte[] newBytes = new byte[Math.max(offset + chunk, bytes.length * 2)];
+				System.arraycopy(bytes, 0, newBytes, 0, offset);
+				bytes = buffers.name = newBytes;
+			}
+			payloadBuffer.get(bytes, offset, chunk);
+			offset += chunk;
+		}
+		
+		return nameTable.intern(bytes, 0, size);
+	}
+	
+	/**
+	 * Per thread buffers used to decode search requests.
+	 */
+	private class DecodeBuffers {
+		final byte[] address = new byte[16];
+		byte[] name = new byte[PVAConstants.MAX_CHANNEL_NAME_LENGTH];
+		// channels of the request being decoded
+		int[] cids = new int[16];
+		String[] names = new String[16];
+		// direct-mapped cache of recent response addresses
+		final ResponseAddress[] responseAddresses = new ResponseAddress[RESPONSE_ADDRESS_CACHE_SIZE];
+		
+		int[] getCIDs(int count)
+		{
+			if (cids.length < count)
+				cids = new int[Math.max(count, cids.length * 2)];
+			return cids;
+		}
+		
+		String[] getNames(int count)
+		{
+			if (names.length < count)
+				names = new String[Math.max(count, names.length * 2)];
+			return names;
+		}
+		
+		/**
+		 * Get response address of the request, <code>address</code> and given port.
+		 * @param responseFrom address of the request sender.
+		 * @param port response port.
+		 * @return response address, <code>null</code> if invalid.
+		 */
+		InetSocketAddress getResponseAddress(InetSocketAddress responseFrom, int port)
+		{
+			// NOTE: ::ffff:0.0.0.0 (IPv4) or :: (IPv6), sender's address is used then
+			final boolean anyLocal = isAnyLocalAddress(address);
+			final InetAddress source = anyLocal ? responseFrom.getAddress() : null;
+			
+			int hash = port;
+			for (int i = 0; i < 16; i++)
+				hash = 31 * hash + address[i];
+			if (source != null)
+				hash = 31 * hash + source.hashCode();
+			final int index = (hash ^ (hash >>> 16)) & (RESPONSE_ADDRESS_CACHE_SIZE - 1);
+			
+			ResponseAddress entry = responseAddresses[index];
+			if (entry != null && entry.port == port && Arrays.equals(entry.address, address) &&
+				(source == null ? entry.source == null : source.equals(entry.source)))
+				return entry.socketAddress;
+			
+			// NOTE: Java knows how to compare IPv4/IPv6 :)
+			final InetSocketAddress socketAddress;
+			if (source != null)
+				socketAddress = new InetSocketAddress(source, port);
+			else
+			{
+				try {
+					socketAddress = new InetSocketAddress(InetAddress.getByAddress(address), port);
+				} catch (UnknownHostException e) {
+					context.getLogger().log(Level.FINER, "Invalid address '" +  new String(address) + "' in search request received from: " + responseFrom, e);
+					return null;
+				}
+			}
+			
+			if (entry == null)
+				entry = responseAddresses[index] = new ResponseAddress();
+			System.arraycopy(address, 0, entry.address, 0, 16);
+			entry.source = source;
+			entry.port = port;
+			entry.socketAddress = socketAddress;
+			return socketAddress;
+		}
+		
+		private boolean isAnyLocalAddress(byte[] address)
+		{
+			for (int i = 0; i < 10; i++)
+				if (address[i] != 0)
+					return false;
+			for (int i = 12; i < 16; i++)
+				if (address[i] != 0)
+					return false;
+			// :: or ::ffff:0.0.0.0
+			return (address[10] == 0 && address[11] == 0) ||
+				   (address[10] == (byte)0xFF && address[11] == (byte)0xFF);
+		}
+	}
+	
+	/**
+	 * Response address cache entry.
+	 */
+	private static class ResponseAddress {
+		// address as received
+		final byte[] address = new byte[16];
+		// sender's address if received address is any local address, otherwise null
+		InetAddress source;
+		int port;
+		InetSocketAddress socketAddress;
+	}
+
+	private class ChannelFindRequesterImpl implements ChannelFindRequester {
+		
+		private Logger logger;
+		
 		private String channelName;
 		private int cid;
-		private InetSocketAddress sendTo;
-		private boolean responseRequired;
+		private SearchResponseAggregator aggregator;
+		private int generation;
 		
 		private boolean wasFound;
 		
@@ -212,71 +479,286 @@ public class SearchHandler extends AbstractServerResponseHandler {
 			synchronized (this) {
 				logger = null;
 				channelName = null;
-				sendTo = null;
+				aggregator = null;
 				responseCount = 0;
 				wasFound = false;
 			}
 		}
 		
-		public ChannelFindRequesterImpl set(Logger logger, int searchSequenceId, String channelName, int cid, InetSocketAddress sendTo, boolean responseRequired, int expectedResponseCount)
+		public ChannelFindRequesterImpl set(Logger logger, String channelName, int cid, SearchResponseAggregator aggregator, int expectedResponseCount, int generation)
 		{
 			synchronized (this) {
-				this.serverSearch = false;
-				this.searchSequenceId = searchSequenceId;
+				this.logger = logger;
 				this.channelName = channelName;
 				this.cid = cid;
-				this.sendTo = sendTo;
-				this.responseRequired = responseRequired;
+				this.aggregator = aggregator;
+				this.generation = generation;
 				this.expectedResponseCount = expectedResponseCount;
 			}
 			return this;
 		}
+
+		@Override
+		public void channelFindResult(Status status, ChannelFind channelFind, boolean wasFound) {
+			// TODO status
+			final SearchResponseAggregator aggregator;
+			final int cid;
+			final String channelName;
+			final int generation;
+			boolean report = false;
+			DirectoryChannelFind directory = null;
+			final boolean last;
+			synchronized (this)
+			{
+				aggregator = this.aggregator;
+				cid = this.cid;
+				channelName = this.channelName;
+				generation = this.generation;
+				if (aggregator == null || responseCount >= expectedResponseCount)
+				{
+					if (logger != null)
+						logger.fine("More responses received than expected for channel '" + channelName + "'!");
+					return;
+				}
+				
+				responseCount++;
+				last = (responseCount == expectedResponseCount);
+				
+				if (wasFound)
+				{
+					if (this.wasFound)
+				        logger.fine("Channel '" + channelName + "' is hosted by different channel providers!");
+					else
+					{
+				    	// register mapping (only some of the providers might have been queried)
+				        if (context.getChannelProviders().size() > 1)
+				            context.getChannelNameToProviderMap().put(channelName, channelFind.getChannelProvider());
+	
+						this.wasFound = true;
+						report = true;
+						
+						// channel hosted by another server
+						if (channelFind instanceof DirectoryChannelFind)
+							directory = (DirectoryChannelFind)channelFind;
+					}
+				}
+				else if (last && !this.wasFound)
+				{
+					// not found by any provider
+					report = true;
+				}
+			}
+			
+			if (report)
+			{
+				if (!wasFound)
+					context.getSearchFilter().notFound(channelName, generation);
+				aggregator.channelResult(cid, wasFound, directory);
+			}
+			
+			// return this object to the pool when all the providers responded
+			if (last)
+			{
+				clear();
+				requesterPool.offer(this);
+			}
+		}
+
+	};
+	
+	/**
+	 * Search response (one or more messages) of channels with the same result and hosting server.
+	 * Instances are reused.
+	 */
+	private static class SearchResponse {
+		final boolean wasFound;
+		// hosting server, null if this server
+		final byte[] serverGUID;
+		final InetSocketAddress serverAddress;
+		int[] cids = new int[16];
+		int count = 0;
+		
+		SearchResponse(boolean wasFound, DirectoryChannelFind directory) {
+			this.wasFound = wasFound;
+			if (directory != null)
+			{
+				serverGUID = directory.getServerGUID().getBytes();
+				serverAddress = directory.getServerAddress();
+			}
+			else
+			{
+				serverGUID = null;
+				serverAddress = null;
+			}
+		}
+		
+		void add(int cid) {
+			if (count == cids.length)
+			{
+				int[] newCids = new int[count * 2];
+				System.arraycopy(cids, 0, newCids, 0, count);
+				cids = newCids;
+			}
+			cids[count++] = cid;
+		}
+	}
+	
+	/**
+	 * Gathers results of all the channels of one search request (same sequence id and sender).
+	 * Responses are sent when all the channels are resolved or, for asynchronous providers,
+	 * when the aggregation deadline passes. Results reported after the deadline are sent immediately.
+	 * Instances are pooled, an instance is returned to the pool when all the channels are resolved
+	 * and its timer (if scheduled) has expired.
+	 */
+	private class SearchResponseAggregator implements TimerCallback, TransportSender {
+		
+		private final TimerNode timerNode = TimerFactory.createNode(this);
+		
+		// responses of channels hosted by this server, guarded by this
+		private final SearchResponse found = new SearchResponse(true, null);
+		private final SearchResponse notFound = new SearchResponse(false, null);
+		// hosting server GUID to response map (name server only), guarded by this
+		private Map<GUID, SearchResponse> directoryResponses = null;
+		
+		// request, guarded by this
+		private int searchSequenceId;
+		private InetSocketAddress sendTo;
+		private Transport replyTransport;
+		private boolean responseRequired;
+		
+		// channels w/o result, +1 until whole request is processed, guarded by this
+		private int pendingCount;
+		private boolean deadlinePassed;
+		private boolean timerScheduled;
+		
+		// message being sent (UDP), guarded by this
+		private SearchResponse sendResponse;
+		private int sendOffset;
+		private int sendCount;
 		
-		// server search
-		public ChannelFindRequesterImpl set(Logger logger, int searchSequenceId, InetSocketAddress sendTo)
+		public void set(int searchSequenceId, InetSocketAddress sendTo, Transport replyTransport, boolean responseRequired, int channelCount)
 		{
 			synchronized (this) {
-				this.logger = logger;
-				this.serverSearch = true;
 				this.searchSequenceId = searchSequenceId;
-				this.channelName = null;
-				this.cid = 0;
 				this.sendTo = sendTo;
-				this.responseRequired = true;
-				this.expectedResponseCount = 1;
+				this.replyTransport = replyTransport;
+				this.responseRequired = responseRequired;
+				this.pendingCount = channelCount + 1;
+				this.deadlinePassed = false;
+				this.timerScheduled = false;
 			}
-			return this;
 		}
-
-		@Override
-		public void channelFindResult(Status status, ChannelFind channelFind, boolean wasFound) {
-			// TODO status
+		
+		/**
+		 * Report result of a channel, called exactly once per channel.
+		 * @param cid channel ID.
+		 * @param wasFound found flag.
+		 * @param directory directory lookup result, <code>null</code> if channel is hosted by this server.
+		 */
+		public void channelResult(int cid, boolean wasFound, DirectoryChannelFind directory)
+		{
 			synchronized (this)
 			{
-				responseCount++;
-				if (responseCount > expectedResponseCount)
+				if (wasFound)
 				{
-					if ((responseCount+1) == expectedResponseCount)
-						logger.fine("More responses received than expected for channel '" + channelName + "'!");
-					return;
+					if (directory != null)
+					{
+						if (directoryResponses == null)
+							directoryResponses = new LinkedHashMap<GUID, SearchResponse>();
+						final GUID key = directory.getServerGUID();
+						SearchResponse response = directoryResponses.get(key);
+						if (response == null)
+						{
+							response = new SearchResponse(true, directory);
+							directoryResponses.put(key, response);
+						}
+						response.add(cid);
+					}
+					else
+						found.add(cid);
 				}
+				else if (responseRequired)
+					notFound.add(cid);
+				
+				if (--pendingCount > 0 && !deadlinePassed)
+					return;
 				
-				if (this.wasFound && wasFound)
+				flush();
+			}
+		}
+		
+		/**
+		 * All the channels of the request were given to the providers.
+		 */
+		public void requestProcessed()
+		{
+			synchronized (this)
+			{
+				if (--pendingCount > 0)
 				{
-			        logger.fine("Channel '" + channelName + "' is hosted by different channel providers!");
-			        return;
-			    }
+					// wait for asynchronous providers
+					timerScheduled = true;
+					context.getTimer().scheduleAfterDelay(timerNode, MAX_SEARCH_RESPONSE_AGGREGATION_DELAY);
+					return;
+				}
 				
-			    if (wasFound || (responseRequired && (responseCount == expectedResponseCount)))
-			    {
-			    	// register mapping
-			        if (wasFound && expectedResponseCount > 1)
-			            context.getChannelNameToProviderMap().put(channelName, channelFind.getChannelProvider());
-
-					this.wasFound = wasFound;
+				flush();
+			}
+		}
+		
+		/**
+		 * Send gathered responses, must be called while holding this lock.
+		 */
+		private void flush()
+		{
+			send(found);
+			send(notFound);
+			if (directoryResponses != null)
+			{
+				for (SearchResponse response : directoryResponses.values())
+					send(response);
+				directoryResponses.clear();
+			}
+			
+			// NOTE: timer is not canceled, a callback that is already due would use a recycled instance;
+			// the instance is recycled by the (empty) callback instead
+			if (pendingCount == 0 && (!timerScheduled || deadlinePassed))
+			{
+				sendTo = null;
+				replyTransport = null;
+				aggregatorPool.offer(this);
+			}
+		}
+		
+		/**
+		 * Send a response, must be called while holding this lock.
+		 * @param response response to send.
+		 */
+		private void send(SearchResponse response)
+		{
+			for (int offset = 0; offset < response.count; offset += MAX_CIDS_PER_RESPONSE)
+			{
+				final int count = Math.min(MAX_CIDS_PER_RESPONSE, response.count - offset);
+				if (replyTransport != null)
+				{
+					// TCP messages are sent asynchronously, CIDs are copied
+					final int[] cids = new int[count];
+					System.arraycopy(response.cids, offset, cids, 0, count);
+					replyTransport.enqueueSendRequest(
+							new SearchResponseSender(searchSequenceId, response.serverGUID, response.serverAddress, response.wasFound,
+									cids, count));
+				}
+				else
+				{
+					// UDP message is sent within enqueueSendRequest call, this instance serves as a sender
+					sendResponse = response;
+					sendOffset = offset;
+					sendCount = count;
 					context.getBroadcastTransport().enqueueSendRequest(this);
 				}
 			}
+			response.count = 0;
+			sendResponse = null;
 		}
 
 		/* (non-Javadoc)
@@ -300,72 +782,204 @@ public class SearchHandler extends AbstractServerResponseHandler {
 		 */
 		@Override
 		public void send(ByteBuffer buffer, TransportSendControl control) {
+			// called from send(SearchResponse), lock is held
+			final SearchResponse response = sendResponse;
+			encodeSearchResponse(buffer, control, searchSequenceId, response.serverGUID, response.serverAddress, response.wasFound,
+					response.cids, sendOffset, sendCount);
+			control.setRecipient(sendTo);
+		}
 
-			control.startMessage((byte)4, 12+4+16+2);
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.misc.Timer.TimerCallback#callback()
+		 */
+		@Override
+		public void callback() {
+			synchronized (this) {
+				deadlinePassed = true;
+				flush();
+			}
+		}
 
-			synchronized (this)
-			{
-				buffer.put(context.getGUID());
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.misc.Timer.TimerCallback#timerStopped()
+		 */
+		@Override
+		public void timerStopped() {
+			// noop
+		}
+	}
+	
+	/**
+	 * Sends delayed server search response, instances are pooled.
+	 */
+	private class ServerSearchResponder implements TimerCallback, TransportSender {
 
-				buffer.putInt(searchSequenceId);
-				
-				// NOTE: is it possible (very likely) that address is any local address ::ffff:0.0.0.0
-				InetAddressUtil.encodeAsIPv6Address(buffer, context.getServerInetAddress());
-				buffer.putShort((short)context.getServerPort());
-				
-				SerializeHelper.serializeString(SUPPORTED_PROTOCOL, buffer, control);
+		private final TimerNode timerNode = TimerFactory.createNode(this);
+		
+		private volatile int searchSequenceId;
+		private volatile InetSocketAddress sendTo;
+		private volatile Transport replyTransport;
+		
+		public void schedule(int searchSequenceId, InetSocketAddress sendTo, Transport replyTransport, double delay)
+		{
+			this.searchSequenceId = searchSequenceId;
+			this.sendTo = sendTo;
+			this.replyTransport = replyTransport;
+			context.getTimer().scheduleAfterDelay(timerNode, delay);
+		}
+		
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.misc.Timer.TimerCallback#callback()
+		 */
+		@Override
+		public void callback() {
+			final Transport replyTransport = this.replyTransport;
+			if (replyTransport != null)
+				replyTransport.enqueueSendRequest(this);
+			else
+				context.getBroadcastTransport().enqueueSendRequest(this);
+		}
 
-				control.ensureBuffer(1);
-				buffer.put(wasFound ? (byte)1 : (byte)0);
-				
-				/*
-				if (count > PVAConstants.MAX_SEARCH_BATCH_COUNT)
-					throw new IllegalArgumentException("too many search responses in a batch message");
-				*/
-				if (!serverSearch)
-				{
-					// TODO for now we do not gather search responses
-					buffer.putShort((short)1);
-					buffer.putInt(cid);
-				}
-				else
-				{
-					buffer.putShort((short)0);
-				}
-				
-				control.setRecipient(sendTo);
-			}
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.misc.Timer.TimerCallback#timerStopped()
+		 */
+		@Override
+		public void timerStopped() {
+			// noop
+		}
 
-			// return this object to the pool
-			objectPool.put(this);
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportSender#lock()
+		 */
+		@Override
+		public void lock() {
+			// noop
 		}
 
-	};
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportSender#unlock()
+		 */
+		@Override
+		public void unlock() {
+			// noop
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportSender#send(java.nio.ByteBuffer, org.epics.pvaccess.impl.remote.TransportSendControl)
+		 */
+		@Override
+		public void send(ByteBuffer buffer, TransportSendControl control) {
+			// server search response has no channels
+			encodeSearchResponse(buffer, control, searchSequenceId, null, null, false, null, 0, 0);
+			
+			// TCP reply goes to the connected peer
+			if (replyTransport == null)
+				control.setRecipient(sendTo);
+			
+			// sent, can be reused
+			sendTo = null;
+			replyTransport = null;
+			responderPool.offer(this);
+		}
+	}
 	
-	// TODO limit max, cleanup after some time
-	private class ChannelFindRequesterImplObjectPool {
-		private final ArrayList<ChannelFindRequesterImpl> elements = new ArrayList<ChannelFindRequesterImpl>();
-		
-		public ChannelFindRequesterImpl get() {
-			synchronized (elements) {
-				final int count = elements.size();
-				if (count == 0) {
-					return new ChannelFindRequesterImpl();
-				}
-				else {
-					return elements.remove(count - 1);
-				}
-			}
+	/**
+	 * Sends one search response message over TCP.
+	 */
+	private class SearchResponseSender implements TransportSender {
+		
+		private final int searchSequenceId;
+		private final byte[] serverGUID;
+		private final InetSocketAddress serverAddress;
+		private final boolean wasFound;
+		private final int[] cids;
+		private final int count;
+
+		public SearchResponseSender(int searchSequenceId, byte[] serverGUID, InetSocketAddress serverAddress, boolean wasFound,
+				int[] cids, int count)
+		{
+			this.searchSequenceId = searchSequenceId;
+			this.serverGUID = serverGUID;
+			this.serverAddress = serverAddress;
+			this.wasFound = wasFound;
+			this.cids = cids;
+			this.count = count;
+		}
+		
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportSender#lock()
+		 */
+		@Override
+		public void lock() {
+			// noop
 		}
 
-		public void put(ChannelFindRequesterImpl element) {
-			element.clear();
-			synchronized (elements) {
-				elements.add(element);
-			}
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportSender#unlock()
+		 */
+		@Override
+		public void unlock() {
+			// noop
+		}
+		
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.impl.remote.TransportSender#send(java.nio.ByteBuffer, org.epics.pvaccess.impl.remote.TransportSendControl)
+		 */
+		@Override
+		public void send(ByteBuffer buffer, TransportSendControl control) {
+			// TCP reply goes to the connected peer
+			encodeSearchResponse(buffer, control, searchSequenceId, serverGUID, serverAddress, wasFound, cids, 0, count);
 		}
+
+	}
 	
+	/**
+	 * Encode search response message.
+	 * @param buffer buffer to encode to.
+	 * @param control send control.
+	 * @param searchSequenceId search sequence ID of the request.
+	 * @param serverGUID GUID of the hosting server, <code>null</code> if this server.
+	 * @param serverAddress address of the hosting server, <code>null</code> if this server.
+	 * @param wasFound found flag.
+	 * @param cids array of CIDs.
+	 * @param offset offset of the first CID to send.
+	 * @param count number of CIDs to send.
+	 */
+	private void encodeSearchResponse(ByteBuffer buffer, TransportSendControl control, int searchSequenceId,
+			byte[] serverGUID, InetSocketAddress serverAddress, boolean wasFound, int[] cids, int offset, int count)
+	{
+		control.startMessage((byte)4, 12+4+16+2);
+
+		if (serverAddress != null)
+		{
+			buffer.put(serverGUID);
+
+			buffer.putInt(searchSequenceId);
+
+			InetAddressUtil.encodeAsIPv6Address(buffer, serverAddress.getAddress());
+			buffer.putShort((short)serverAddress.getPort());
+		}
+		else
+		{
+			buffer.put(context.getGUID());
+
+			buffer.putInt(searchSequenceId);
+			
+			// NOTE: is it possible (very likely) that address is any local address ::ffff:0.0.0.0
+			InetAddressUtil.encodeAsIPv6Address(buffer, context.getServerInetAddress());
+			buffer.putShort((short)context.getServerPort());
+		}
+		
+		SerializeHelper.serializeString(SUPPORTED_PROTOCOL, buffer, control);
+
+		// count is limited so that the message fits into one unfragmented datagram
+		control.ensureBuffer(1+2+4*count);
+		buffer.put(wasFound ? (byte)1 : (byte)0);
+		
+		// server search response has no channels
+		buffer.putShort((short)count);
+		for (int i = 0; i < count; i++)
+			buffer.putInt(cids[offset + i]);
 	}
 	
 }
- 
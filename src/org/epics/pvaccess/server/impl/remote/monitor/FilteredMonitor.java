@@ -0,0 +1,242 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.monitor;
+
+import org.epics.pvaccess.PVFactory;
+import org.epics.pvaccess.impl.remote.PipelineMonitor;
+import org.epics.pvaccess.server.impl.remote.filters.FilterChain;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.monitor.Monitor;
+import org.epics.pvdata.monitor.MonitorElement;
+import org.epics.pvdata.monitor.MonitorQueueFactory;
+import org.epics.pvdata.monitor.MonitorRequester;
+import org.epics.pvdata.pv.MessageType;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Status.StatusType;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * Monitor decorator that applies server-side channel filters (see <code>FilterChain</code>)
+ * to the provider's updates before they are serialized.
+ * Discarded updates are released back to the provider and never reach the requester,
+ * if provider's monitor is a <code>PipelineMonitor</code> the credit of a discarded update is given back to it.
+ * <code>poll</code> and <code>release</code> are expected to be called from one thread at the time.
+ */
+public class FilteredMonitor implements PipelineMonitor, MonitorRequester {
+
+	/**
+	 * Create filtering decorator, if any filter is requested by pvRequest.
+	 * @param requester requester to decorate.
+	 * @param pvRequest pvRequest.
+	 * @return the decorator, <code>null</code> if no filter is requested.
+	 */
+	public static FilteredMonitor create(MonitorRequester requester, PVStructure pvRequest)
+	{
+		if (!FilterChain.isRequested(pvRequest))
+			return null;
+
+		return new FilteredMonitor(requester, pvRequest);
+	}
+
+	private final MonitorRequester requester;
+	private final PVStructure pvRequest;
+
+	private volatile Monitor monitor = null;
+	private volatile boolean pipeline = false;
+
+	// guarded by this
+	private FilterChain filterChain = null;
+	private MonitorElement element = null;
+	private MonitorElement takenElement = null;
+	private boolean pollWhileTaken = false;
+
+	protected FilteredMonitor(MonitorRequester requester, PVStructure pvRequest)
+	{
+		this.requester = requester;
+		this.pvRequest = pvRequest;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.MonitorRequester#monitorConnect(org.epics.pvdata.pv.Status, org.epics.pvdata.monitor.Monitor, org.epics.pvdata.pv.Structure)
+	 */
+	@Override
+	public void monitorConnect(Status status, Monitor monitor, Structure structure) {
+		this.monitor = monitor;
+		if (status.isSuccess())
+		{
+			final MonitorElement monitorElement =
+				MonitorQueueFactory.createMonitorElement(PVFactory.getPVDataCreate().createPVStructure(structure));
+			try {
+				final FilterChain chain = FilterChain.create(pvRequest, monitorElement.getPVStructure());
+				synchronized (this) {
+					element = monitorElement;
+					filterChain = chain;
+				}
+			} catch (IllegalArgumentException iae) {
+				status = PVFactory.getStatusCreate().createStatus(StatusType.ERROR, iae.getMessage(), null);
+				structure = null;
+				monitor.destroy();
+			}
+		}
+		requester.monitorConnect(status, this, structure);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.MonitorRequester#monitorEvent(org.epics.pvdata.monitor.Monitor)
+	 */
+	@Override
+	public void monitorEvent(Monitor monitor) {
+		// filtering is done in poll
+		requester.monitorEvent(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.MonitorRequester#unlisten(org.epics.pvdata.monitor.Monitor)
+	 */
+	@Override
+	public void unlisten(Monitor monitor) {
+		requester.unlisten(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.pv.Requester#getRequesterName()
+	 */
+	@Override
+	public String getRequesterName() {
+		return requester.getRequesterName();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.pv.Requester#message(java.lang.String, org.epics.pvdata.pv.MessageType)
+	 */
+	@Override
+	public void message(String message, MessageType messageType) {
+		requester.message(message, messageType);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.Monitor#poll()
+	 */
+	@Override
+	public MonitorElement poll() {
+		final Monitor monitor = this.monitor;
+
+		MonitorElement result = null;
+		int discarded = 0;
+		synchronized (this) {
+			if (element == null)
+				return null;
+
+			if (takenElement != null)
+			{
+				pollWhileTaken = true;
+				return null;
+			}
+
+			MonitorElement monitorElement;
+			while ((monitorElement = monitor.poll()) != null)
+			{
+				final BitSet changedBitSet = monitorElement.getChangedBitSet();
+
+				// notify only (no data), pass through
+				if (changedBitSet == null)
+				{
+					takenElement = result = monitorElement;
+					break;
+				}
+
+				try {
+					if (filterChain.apply(monitorElement.getPVStructure(), element.getPVStructure(),
+							changedBitSet, element.getChangedBitSet(), true))
+					{
+						final BitSet overrunBitSet = element.getOverrunBitSet();
+						overrunBitSet.clear();
+						if (monitorElement.getOverrunBitSet() != null)
+							overrunBitSet.or(monitorElement.getOverrunBitSet());
+
+						takenElement = result = element;
+						break;
+					}
+					discarded++;
+				} finally {
+					monitor.release(monitorElement);
+				}
+			}
+		}
+		
+		// discarded updates will never be acknowledged by the client
+		if (discarded > 0 && pipeline && monitor instanceof PipelineMonitor)
+			((PipelineMonitor)monitor).reportRemoteQueueStatus(discarded);
+		
+		return result;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.Monitor#release(org.epics.pvdata.monitor.MonitorElement)
+	 */
+	@Override
+	public void release(MonitorElement monitorElement) {
+		boolean notify;
+		synchronized (this) {
+			if (monitorElement != takenElement || monitorElement == null)
+				return;
+
+			takenElement = null;
+			if (monitorElement != element)
+				monitor.release(monitorElement);
+
+			notify = pollWhileTaken;
+			pollWhileTaken = false;
+		}
+
+		// provider's updates might be waiting
+		if (notify)
+			requester.monitorEvent(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.Monitor#start()
+	 */
+	@Override
+	public Status start() {
+		synchronized (this) {
+			if (filterChain != null)
+				filterChain.reset();
+		}
+		return monitor.start();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.Monitor#stop()
+	 */
+	@Override
+	public Status stop() {
+		return monitor.stop();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.misc.Destroyable#destroy()
+	 */
+	@Override
+	public void destroy() {
+		final Monitor monitor = this.monitor;
+		if (monitor != null)
+			monitor.destroy();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.impl.remote.PipelineMonitor#reportRemoteQueueStatus(int)
+	 */
+	@Override
+	public void reportRemoteQueueStatus(int freeElements) {
+		pipeline = true;
+		final Monitor monitor = this.monitor;
+		if (monitor instanceof PipelineMonitor)
+			((PipelineMonitor)monitor).reportRemoteQueueStatus(freeElements);
+	}
+
+}
@@ -0,0 +1,407 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.monitor;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.epics.pvaccess.PVFactory;
+import org.epics.pvaccess.impl.remote.PipelineMonitor;
+import org.epics.pvaccess.impl.remote.SerializationHelper;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.monitor.Monitor;
+import org.epics.pvdata.monitor.MonitorElement;
+import org.epics.pvdata.monitor.MonitorQueueFactory;
+import org.epics.pvdata.monitor.MonitorRequester;
+import org.epics.pvdata.pv.MessageType;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * Monitor decorator that gives credit-based (pipeline) flow control to any provider's monitor.
+ * Provider's updates are copied to the decorator's own queue and given to the (server) monitor requester
+ * only while the client has credits (free elements) left, i.e. the client never gets overrun.
+ * Queue grows (elements are allocated) as needed up to <code>record._options.queueSize</code> elements,
+ * and shrinks back once the backlog is sent.
+ * When the queue is full, provider's updates are merged into the last queued element
+ * (changed and overrun bit-sets are OR-ed). If all the elements are being sent, the update is remembered
+ * and queued (incl. overrun) as soon as an element is released.
+ * If provider's monitor is a <code>PipelineMonitor</code> itself and no other decorator is in between,
+ * the decorator only passes everything through. Otherwise upstream <code>PipelineMonitor</code> is granted
+ * one credit per element taken from it, since the elements are released immediately.
+ */
+public class PipelineQueueMonitor implements PipelineMonitor, MonitorRequester {
+
+	private static final int DEFAULT_QUEUE_SIZE = 2;
+
+	private final MonitorRequester requester;
+	private final int maxQueueSize;
+
+	private volatile Monitor monitor = null;
+	private volatile boolean passThroughAllowed = false;
+	private volatile boolean passThrough = false;
+
+	// guarded by this
+	private PVStructure latest = null;
+	private final Map<MonitorElement, BitSet> staleBitSets = new IdentityHashMap<MonitorElement, BitSet>();
+	private final LinkedList<MonitorElement> freeQueue = new LinkedList<MonitorElement>();
+	private final LinkedList<MonitorElement> usedQueue = new LinkedList<MonitorElement>();
+	private int credits = 0;
+	private int taken = 0;
+	private boolean missed = false;
+	private final BitSet missedChangedBitSet = new BitSet();
+	private final BitSet missedOverrunBitSet = new BitSet();
+
+	/**
+	 * Constructor.
+	 * @param requester requester to decorate.
+	 * @param pvRequest pvRequest, <code>record._options.queueSize</code> limits the queue size.
+	 */
+	public PipelineQueueMonitor(MonitorRequester requester, PVStructure pvRequest)
+	{
+		this.requester = requester;
+		this.maxQueueSize = getQueueSize(pvRequest);
+	}
+
+	private static int getQueueSize(PVStructure pvRequest)
+	{
+		if (pvRequest != null)
+		{
+			final PVField pvField = pvRequest.getSubField("record._options.queueSize");
+			if (pvField instanceof PVString)
+			{
+				try {
+					return Math.max(1, Integer.parseInt(((PVString)pvField).get()));
+				} catch (NumberFormatException e) {
+					// noop, use default
+				}
+			}
+		}
+		return DEFAULT_QUEUE_SIZE;
+	}
+
+	/**
+	 * Allow pass-through mode, to be used when provider's monitor already implements flow control.
+	 * Only allowed if this decorator is the provider's monitor requester, i.e. every element given out
+	 * by the provider is sent to the client (1:1); pass-through is used if provider's monitor is a <code>PipelineMonitor</code>.
+	 * Must be called before the provider's monitor is created.
+	 * @param passThroughAllowed pass-through mode allowed flag.
+	 */
+	public void setPassThroughAllowed(boolean passThroughAllowed) {
+		this.passThroughAllowed = passThroughAllowed;
+	}
+	
+	/**
+	 * Check if pass-through mode is used.
+	 * @return pass-through mode flag.
+	 */
+	public boolean isPassThrough() {
+		return passThrough;
+	}
+
+	/**
+	 * Get number of queue elements currently allocated.
+	 * @return number of allocated elements.
+	 */
+	public synchronized int getAllocatedElements() {
+		return staleBitSets.size();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.MonitorRequester#monitorConnect(org.epics.pvdata.pv.Status, org.epics.pvdata.monitor.Monitor, org.epics.pvdata.pv.Structure)
+	 */
+	@Override
+	public void monitorConnect(Status status, Monitor monitor, Structure structure) {
+		this.monitor = monitor;
+		passThrough = passThroughAllowed && monitor instanceof PipelineMonitor;
+		if (status.isSuccess())
+		{
+			synchronized (this) {
+				latest = PVFactory.getPVDataCreate().createPVStructure(structure);
+				staleBitSets.clear();
+				freeQueue.clear();
+				usedQueue.clear();
+				taken = 0;
+				missed = false;
+			}
+			
+			// elements are taken from upstream as they come, i.e. its queue size is the initial credit
+			if (!passThrough && monitor instanceof PipelineMonitor)
+				((PipelineMonitor)monitor).reportRemoteQueueStatus(maxQueueSize);
+		}
+		requester.monitorConnect(status, this, structure);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.MonitorRequester#monitorEvent(org.epics.pvdata.monitor.Monitor)
+	 */
+	@Override
+	public void monitorEvent(Monitor monitor) {
+		if (passThrough)
+		{
+			requester.monitorEvent(this);
+			return;
+		}
+
+		boolean notify = false;
+		int consumed = 0;
+		synchronized (this) {
+			if (latest == null)
+				return;
+
+			MonitorElement monitorElement;
+			while ((monitorElement = monitor.poll()) != null)
+			{
+				consumed++;
+				try {
+					enqueue(monitorElement);
+				} finally {
+					monitor.release(monitorElement);
+				}
+			}
+
+			notify = credits > 0 && !usedQueue.isEmpty();
+		}
+
+		// give taken credits back to upstream
+		if (consumed > 0 && monitor instanceof PipelineMonitor)
+			((PipelineMonitor)monitor).reportRemoteQueueStatus(consumed);
+		
+		if (notify)
+			requester.monitorEvent(this);
+	}
+
+	/**
+	 * Copy provider's element to the queue (copy on write).
+	 * Must be called while holding this lock.
+	 * @param monitorElement provider's element.
+	 */
+	private void enqueue(MonitorElement monitorElement)
+	{
+		final BitSet changedBitSet = monitorElement.getChangedBitSet();
+
+		// notify only (no data) is not supported
+		if (changedBitSet == null)
+			return;
+
+		SerializationHelper.partialCopy(monitorElement.getPVStructure(), latest, changedBitSet);
+		for (BitSet staleBitSet : staleBitSets.values())
+			staleBitSet.or(changedBitSet);
+
+		final BitSet newOverrunBitSet = monitorElement.getOverrunBitSet();
+
+		MonitorElement element = freeQueue.poll();
+		if (element == null && staleBitSets.size() < maxQueueSize)
+		{
+			// grow
+			final PVStructure pvStructure = PVFactory.getPVDataCreate().createPVStructure(latest.getStructure());
+			element = MonitorQueueFactory.createMonitorElement(pvStructure);
+			final BitSet staleBitSet = new BitSet(pvStructure.getNumberFields());
+			staleBitSet.set(0);
+			staleBitSets.put(element, staleBitSet);
+		}
+
+		if (element != null)
+		{
+			copyLatest(element);
+			element.getChangedBitSet().clear();
+			element.getChangedBitSet().or(changedBitSet);
+			element.getOverrunBitSet().clear();
+			if (newOverrunBitSet != null)
+				element.getOverrunBitSet().or(newOverrunBitSet);
+			usedQueue.add(element);
+			return;
+		}
+
+		element = usedQueue.peekLast();
+		if (element != null)
+		{
+			// queue full, merge into the last element
+			copyLatest(element);
+			element.getOverrunBitSet().or_and(element.getChangedBitSet(), changedBitSet);
+			element.getChangedBitSet().or(changedBitSet);
+			if (newOverrunBitSet != null)
+				element.getOverrunBitSet().or(newOverrunBitSet);
+			return;
+		}
+		
+		// all the elements are being sent, remember until one gets released
+		if (missed)
+			missedOverrunBitSet.or_and(missedChangedBitSet, changedBitSet);
+		else
+		{
+			missedChangedBitSet.clear();
+			missedOverrunBitSet.clear();
+			missed = true;
+		}
+		missedChangedBitSet.or(changedBitSet);
+		if (newOverrunBitSet != null)
+			missedOverrunBitSet.or(newOverrunBitSet);
+	}
+
+	/**
+	 * Must be called while holding this lock.
+	 */
+	private void copyLatest(MonitorElement element)
+	{
+		final BitSet staleBitSet = staleBitSets.get(element);
+		SerializationHelper.partialCopy(latest, element.getPVStructure(), staleBitSet);
+		staleBitSet.clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.MonitorRequester#unlisten(org.epics.pvdata.monitor.Monitor)
+	 */
+	@Override
+	public void unlisten(Monitor monitor) {
+		requester.unlisten(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.pv.Requester#getRequesterName()
+	 */
+	@Override
+	public String getRequesterName() {
+		return requester.getRequesterName();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.pv.Requester#message(java.lang.String, org.epics.pvdata.pv.MessageType)
+	 */
+	@Override
+	public void message(String message, MessageType messageType) {
+		requester.message(message, messageType);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.Monitor#poll()
+	 */
+	@Override
+	public MonitorElement poll() {
+		if (passThrough)
+			return monitor.poll();
+
+		final MonitorElement element;
+		final boolean more;
+		synchronized (this) {
+			if (credits <= 0)
+				return null;
+
+			element = usedQueue.poll();
+			if (element == null)
+				return null;
+
+			credits--;
+			taken++;
+			more = credits > 0 && !usedQueue.isEmpty();
+		}
+
+		// one monitorEvent per element is expected
+		if (more)
+			requester.monitorEvent(this);
+
+		return element;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.Monitor#release(org.epics.pvdata.monitor.MonitorElement)
+	 */
+	@Override
+	public void release(MonitorElement monitorElement) {
+		if (passThrough)
+		{
+			monitor.release(monitorElement);
+			return;
+		}
+
+		boolean notify = false;
+		synchronized (this) {
+			if (!staleBitSets.containsKey(monitorElement) || taken == 0)
+				return;
+			taken--;
+
+			if (missed)
+			{
+				// queue update missed while all the elements were being sent
+				missed = false;
+				copyLatest(monitorElement);
+				monitorElement.getChangedBitSet().clear();
+				monitorElement.getChangedBitSet().or(missedChangedBitSet);
+				monitorElement.getOverrunBitSet().clear();
+				monitorElement.getOverrunBitSet().or(missedOverrunBitSet);
+				usedQueue.add(monitorElement);
+				notify = credits > 0;
+			}
+			// shrink when there is no backlog, one spare element is kept
+			else if (usedQueue.isEmpty() && !freeQueue.isEmpty())
+				staleBitSets.remove(monitorElement);
+			else
+				freeQueue.add(monitorElement);
+		}
+		
+		if (notify)
+			requester.monitorEvent(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.impl.remote.PipelineMonitor#reportRemoteQueueStatus(int)
+	 */
+	@Override
+	public void reportRemoteQueueStatus(int freeElements) {
+		if (passThrough)
+		{
+			final Monitor monitor = this.monitor;
+			if (monitor instanceof PipelineMonitor)
+				((PipelineMonitor)monitor).reportRemoteQueueStatus(freeElements);
+			return;
+		}
+
+		boolean notify;
+		synchronized (this) {
+			credits += freeElements;
+			notify = credits > 0 && !usedQueue.isEmpty();
+		}
+
+		if (notify)
+			requester.monitorEvent(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.Monitor#start()
+	 */
+	@Override
+	public Status start() {
+		synchronized (this) {
+			freeQueue.addAll(usedQueue);
+			usedQueue.clear();
+			missed = false;
+		}
+		return monitor.start();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.Monitor#stop()
+	 */
+	@Override
+	public Status stop() {
+		return monitor.stop();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.misc.Destroyable#destroy()
+	 */
+	@Override
+	public void destroy() {
+		final Monitor monitor = this.monitor;
+		if (monitor != null)
+			monitor.destroy();
+	}
+
+}
@@ -0,0 +1,427 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.monitor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.epics.pvaccess.PVFactory;
+import org.epics.pvaccess.impl.remote.PipelineMonitor;
+import org.epics.pvaccess.impl.remote.SerializationHelper;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.misc.Timer;
+import org.epics.pvdata.misc.Timer.TimerCallback;
+import org.epics.pvdata.misc.Timer.TimerNode;
+import org.epics.pvdata.misc.TimerFactory;
+import org.epics.pvdata.monitor.Monitor;
+import org.epics.pvdata.monitor.MonitorElement;
+import org.epics.pvdata.monitor.MonitorQueueFactory;
+import org.epics.pvdata.monitor.MonitorRequester;
+import org.epics.pvdata.pv.MessageType;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * Monitor decorator that limits the rate of the updates given to the (server) monitor requester.
+ * Provider's updates are merged (changed and overrun bit-sets are OR-ed) into one element,
+ * which is given out at most once per minimal interval and only after <code>decimate</code> provider's updates.
+ * Configured via <code>record._options</code> pvRequest options:
+ * <ul>
+ * <li><code>maxRate</code> - maximum rate of updates in Hz,</li>
+ * <li><code>minInterval</code> - minimal interval between two updates in seconds,</li>
+ * <li><code>decimate</code> - give out only every N-th update.</li>
+ * </ul>
+ * The client gives back only one credit per merged batch, so if provider's monitor is a <code>PipelineMonitor</code>
+ * the credits of the updates merged into an already pending batch are given back to it immediately.
+ * <code>poll</code> and <code>release</code> are expected to be called from one thread at the time.
+ */
+public class RateLimitedMonitor implements PipelineMonitor, MonitorRequester, TimerCallback {
+
+	/**
+	 * Create rate limiting decorator, if requested by pvRequest.
+	 * @param requester requester to decorate.
+	 * @param pvRequest pvRequest.
+	 * @param timer timer to use to delay updates.
+	 * @return the decorator, <code>null</code> if no rate limiting is requested.
+	 * @throws IllegalArgumentException if options are not valid.
+	 */
+	public static RateLimitedMonitor create(MonitorRequester requester, PVStructure pvRequest, Timer timer)
+		throws IllegalArgumentException
+	{
+		if (pvRequest == null)
+			return null;
+
+		PVField pvField = pvRequest.getSubField("record._options");
+		if (!(pvField instanceof PVStructure))
+			return null;
+		PVStructure pvOptions = (PVStructure)pvField;
+
+		double minInterval = 0;
+		int decimate = 1;
+
+		PVString pvString = pvOptions.getStringField("maxRate");
+		if (pvString != null) {
+			final double maxRate = parseDouble(pvString.get(), "maxRate");
+			if (maxRate <= 0)
+				throw new IllegalArgumentException("maxRate must be > 0");
+			minInterval = 1.0 / maxRate;
+		}
+
+		pvString = pvOptions.getStringField("minInterval");
+		if (pvString != null) {
+			final double value = parseDouble(pvString.get(), "minInterval");
+			if (value < 0)
+				throw new IllegalArgumentException("minInterval must be >= 0");
+			minInterval = Math.max(minInterval, value);
+		}
+
+		pvString = pvOptions.getStringField("decimate");
+		if (pvString != null) {
+			try {
+				decimate = Integer.parseInt(pvString.get());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("decimate is not a valid integer");
+			}
+			if (decimate < 1)
+				throw new IllegalArgumentException("decimate must be >= 1");
+		}
+
+		if (minInterval == 0 && decimate == 1)
+			return null;
+
+		return new RateLimitedMonitor(requester, timer, minInterval, decimate);
+	}
+
+	private static double parseDouble(String value, String name)
+	{
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(name + " is not a valid number");
+		}
+	}
+
+	private final MonitorRequester requester;
+	private final Timer timer;
+	private final TimerNode timerNode;
+	private final AtomicBoolean timerScheduled = new AtomicBoolean(false);
+
+	private final long minIntervalNs;
+	private final int decimate;
+
+	private volatile Monitor monitor = null;
+	private volatile boolean pipeline = false;
+
+	// merged element, guarded by this
+	private MonitorElement element = null;
+	private boolean hasData = false;
+	private boolean taken = false;
+	private boolean pollWhileTaken = false;
+	private int updates = 0;
+	private long lastGivenOutTime;
+	private volatile boolean flush = false;
+	// credits of the updates that will not be acknowledged by the client, guarded by this
+	private int mergedCredits = 0;
+
+	protected RateLimitedMonitor(MonitorRequester requester, Timer timer, double minInterval, int decimate)
+	{
+		this.requester = requester;
+		this.timer = timer;
+		this.timerNode = TimerFactory.createNode(this);
+		this.minIntervalNs = (long)(minInterval * 1e9);
+		this.decimate = decimate;
+		this.lastGivenOutTime = System.nanoTime() - minIntervalNs;
+	}
+
+	/**
+	 * Get minimal interval between two updates.
+	 * @return minimal interval in seconds.
+	 */
+	public double getMinInterval() {
+		return minIntervalNs / 1e9;
+	}
+
+	/**
+	 * Get decimation factor.
+	 * @return decimation factor, 1 if none.
+	 */
+	public int getDecimate() {
+		return decimate;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.MonitorRequester#monitorConnect(org.epics.pvdata.pv.Status, org.epics.pvdata.monitor.Monitor, org.epics.pvdata.pv.Structure)
+	 */
+	@Override
+	public void monitorConnect(Status status, Monitor monitor, Structure structure) {
+		this.monitor = monitor;
+		if (status.isSuccess())
+		{
+			synchronized (this) {
+				element = MonitorQueueFactory.createMonitorElement(PVFactory.getPVDataCreate().createPVStructure(structure));
+				reset();
+				mergedCredits = 0;
+			}
+		}
+		requester.monitorConnect(status, this, structure);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.MonitorRequester#monitorEvent(org.epics.pvdata.monitor.Monitor)
+	 */
+	@Override
+	public void monitorEvent(Monitor monitor) {
+		// merging is done in poll
+		requester.monitorEvent(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.MonitorRequester#unlisten(org.epics.pvdata.monitor.Monitor)
+	 */
+	@Override
+	public void unlisten(Monitor monitor) {
+		// give out merged data w/o any delay
+		flush = true;
+		requester.unlisten(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.pv.Requester#getRequesterName()
+	 */
+	@Override
+	public String getRequesterName() {
+		return requester.getRequesterName();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.pv.Requester#message(java.lang.String, org.epics.pvdata.pv.MessageType)
+	 */
+	@Override
+	public void message(String message, MessageType messageType) {
+		requester.message(message, messageType);
+	}
+
+	/**
+	 * Must be called while holding this lock.
+	 */
+	private void reset()
+	{
+		// pending batch is discarded
+		if (hasData && !taken)
+			mergedCredits++;
+		hasData = false;
+		taken = false;
+		pollWhileTaken = false;
+		// first update is given out immediately
+		updates = decimate - 1;
+		flush = false;
+		element.getChangedBitSet().clear();
+		element.getOverrunBitSet().clear();
+		lastGivenOutTime = System.nanoTime() - minIntervalNs;
+	}
+
+	/**
+	 * Merge provider's element into the element to be given out.
+	 * Must be called while holding this lock.
+	 * @param monitorElement provider's element.
+	 */
+	private void merge(MonitorElement monitorElement)
+	{
+		final BitSet newChangedBitSet = monitorElement.getChangedBitSet();
+
+		// notify only (no data)
+		if (newChangedBitSet != null)
+		{
+			final BitSet changedBitSet = element.getChangedBitSet();
+			final BitSet overrunBitSet = element.getOverrunBitSet();
+
+			SerializationHelper.partialCopy(monitorElement.getPVStructure(), element.getPVStructure(), newChangedBitSet);
+
+			// OR local overrun
+			if (hasData)
+				overrunBitSet.or_and(changedBitSet, newChangedBitSet);
+
+			// OR change
+			changedBitSet.or(newChangedBitSet);
+
+			// OR provider overrun
+			final BitSet newOverrunBitSet = monitorElement.getOverrunBitSet();
+			if (newOverrunBitSet != null)
+				overrunBitSet.or(newOverrunBitSet);
+		}
+
+		// only one credit per batch is given back by the client
+		if (hasData)
+			mergedCredits++;
+		
+		hasData = true;
+		updates++;
+	}
+	
+	/**
+	 * Give credits of merged updates back to provider's monitor.
+	 * Must be called without holding this lock.
+	 */
+	private void returnMergedCredits()
+	{
+		final int credits;
+		synchronized (this) {
+			credits = mergedCredits;
+			mergedCredits = 0;
+		}
+		
+		final Monitor monitor = this.monitor;
+		if (credits > 0 && pipeline && monitor instanceof PipelineMonitor)
+			((PipelineMonitor)monitor).reportRemoteQueueStatus(credits);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.Monitor#poll()
+	 */
+	@Override
+	public MonitorElement poll() {
+		final MonitorElement element = internalPoll();
+		returnMergedCredits();
+		return element;
+	}
+	
+	private MonitorElement internalPoll() {
+		final Monitor monitor = this.monitor;
+
+		synchronized (this) {
+			if (element == null)
+				return null;
+
+			if (taken)
+			{
+				pollWhileTaken = true;
+				return null;
+			}
+
+			MonitorElement monitorElement;
+			while ((monitorElement = monitor.poll()) != null)
+			{
+				try {
+					merge(monitorElement);
+				} finally {
+					monitor.release(monitorElement);
+				}
+			}
+
+			if (!hasData)
+				return null;
+
+			final long now = System.nanoTime();
+			if (!flush)
+			{
+				if (updates < decimate)
+					return null;
+
+				final long delay = lastGivenOutTime + minIntervalNs - now;
+				if (delay > 0)
+				{
+					if (timerScheduled.compareAndSet(false, true))
+						timer.scheduleAfterDelay(timerNode, delay / 1e9);
+					return null;
+				}
+			}
+
+			taken = true;
+			lastGivenOutTime = now;
+			return element;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.Monitor#release(org.epics.pvdata.monitor.MonitorElement)
+	 */
+	@Override
+	public void release(MonitorElement monitorElement) {
+		boolean notify;
+		synchronized (this) {
+			if (monitorElement != element || !taken)
+				return;
+
+			taken = false;
+			hasData = false;
+			updates = 0;
+			element.getChangedBitSet().clear();
+			element.getOverrunBitSet().clear();
+
+			notify = pollWhileTaken;
+			pollWhileTaken = false;
+		}
+
+		// provider's updates might be waiting
+		if (notify)
+			requester.monitorEvent(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.Monitor#start()
+	 */
+	@Override
+	public Status start() {
+		synchronized (this) {
+			if (element != null)
+				reset();
+		}
+		returnMergedCredits();
+		return monitor.start();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.monitor.Monitor#stop()
+	 */
+	@Override
+	public Status stop() {
+		timerNode.cancel();
+		timerScheduled.set(false);
+		return monitor.stop();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.misc.Destroyable#destroy()
+	 */
+	@Override
+	public void destroy() {
+		timerNode.cancel();
+		final Monitor monitor = this.monitor;
+		if (monitor != null)
+			monitor.destroy();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.impl.remote.PipelineMonitor#reportRemoteQueueStatus(int)
+	 */
+	@Override
+	public void reportRemoteQueueStatus(int freeElements) {
+		pipeline = true;
+		final Monitor monitor = this.monitor;
+		if (monitor instanceof PipelineMonitor)
+			((PipelineMonitor)monitor).reportRemoteQueueStatus(freeElements);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.misc.Timer.TimerCallback#callback()
+	 */
+	@Override
+	public void callback() {
+		timerScheduled.set(false);
+		requester.monitorEvent(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.misc.Timer.TimerCallback#timerStopped()
+	 */
+	@Override
+	public void timerStopped() {
+		// noop
+	}
+
+}
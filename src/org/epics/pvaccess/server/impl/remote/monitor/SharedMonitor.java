@@ -0,0 +1,714 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.monitor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+import org.epics.pvaccess.PVFactory;
+import org.epics.pvaccess.client.Channel;
+import org.epics.pvaccess.impl.remote.SerializationHelper;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.monitor.Monitor;
+import org.epics.pvdata.monitor.MonitorElement;
+import org.epics.pvdata.monitor.MonitorRequester;
+import org.epics.pvdata.pv.MessageType;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.SerializableControl;
+import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Status.StatusType;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * Provider monitor shared among all the subscribers with the same channel and pvRequest.
+ * Each update is serialized only once (per byte order) and the same encoded bytes
+ * are sent to all the subscribers, i.e. serialization cost does not scale with the number of subscribers.
+ * Provider monitor is created using the channel of one of the subscribers (owner);
+ * when the owner unsubscribes, a new provider monitor is created using the channel of the next subscriber.
+ * A subscriber that starts (or falls behind more than <code>queueSize</code> updates) gets
+ * a full update of the latest value first.
+ * Provider monitor runs only while there is at least one started subscriber.
+ * While there is only one started subscriber, provider's elements are given to it directly
+ * (no encoding, no latest value copy); when another subscriber starts, provider monitor is restarted
+ * to get a complete update for the latest value.
+ */
+public class SharedMonitor {
+
+	private static final Status okStatus = PVFactory.getStatusCreate().getStatusOK();
+
+	private static final int DEFAULT_QUEUE_SIZE = 2;
+
+	/**
+	 * Write encoded update (as returned by <code>Subscription.poll(ByteOrder)</code>) to the transport buffer.
+	 * @param update encoded update.
+	 * @param buffer buffer to write to.
+	 * @param control control to use to flush the buffer.
+	 */
+	public static void write(byte[] update, ByteBuffer buffer, SerializableControl control)
+	{
+		UpdateEncoder.write(update, buffer, control);
+	}
+
+	/**
+	 * Update encoded in both byte orders, if needed.
+	 */
+	private static final class EncodedUpdate {
+		byte[] bigEndian;
+		byte[] littleEndian;
+
+		byte[] get(ByteOrder byteOrder) {
+			return (byteOrder == ByteOrder.BIG_ENDIAN) ? bigEndian : littleEndian;
+		}
+	}
+
+	/**
+	 * Provider monitor requester, new instance for each provider monitor created.
+	 */
+	private final class Upstream implements MonitorRequester {
+
+		private final MonitorRequester ownerRequester;
+
+		Upstream(MonitorRequester ownerRequester) {
+			this.ownerRequester = ownerRequester;
+		}
+
+		@Override
+		public void monitorConnect(Status status, Monitor monitor, Structure structure) {
+			upstreamConnected(this, status, monitor, structure);
+		}
+
+		@Override
+		public void monitorEvent(Monitor monitor) {
+			upstreamEvent(this);
+		}
+
+		@Override
+		public void unlisten(Monitor monitor) {
+			upstreamUnlisten(this);
+		}
+
+		@Override
+		public String getRequesterName() {
+			return ownerRequester.getRequesterName();
+		}
+
+		@Override
+		public void message(String message, MessageType messageType) {
+			ownerRequester.message(message, messageType);
+		}
+	}
+
+	/**
+	 * Subscription to the shared monitor.
+	 * Updates are retrieved already encoded via <code>poll(ByteOrder)</code>,
+	 * <code>poll()</code> returns provider's elements only while this is the only started subscription.
+	 */
+	public final class Subscription implements Monitor {
+
+		private final Channel channel;
+		private final MonitorRequester requester;
+
+		// guarded by SharedMonitor.this
+		private final LinkedList<EncodedUpdate> queue = new LinkedList<EncodedUpdate>();
+		private boolean started = false;
+		private boolean resync = false;
+		private boolean overrun = false;
+		private ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+		// provider monitor of the element taken in pass-through mode
+		private Monitor takenFrom = null;
+
+		Subscription(Channel channel, MonitorRequester requester) {
+			this.channel = channel;
+			this.requester = requester;
+		}
+
+		/**
+		 * Must be called while holding SharedMonitor.this lock.
+		 */
+		void enqueue(EncodedUpdate update) {
+			if (resync)
+				return;
+
+			if (queue.size() >= queueSize)
+			{
+				// fell behind, will get the latest value
+				queue.clear();
+				resync = true;
+				overrun = true;
+			}
+			else
+				queue.add(update);
+		}
+
+		/**
+		 * Must be called while holding SharedMonitor.this lock.
+		 */
+		boolean hasPendingUpdates() {
+			return resync || !queue.isEmpty();
+		}
+
+		/**
+		 * Get next encoded update (changed bit-set, data and overrun bit-set).
+		 * @param byteOrder byte order of the transport.
+		 * @return encoded update, <code>null</code> if none.
+		 */
+		public byte[] poll(ByteOrder byteOrder) {
+			final byte[] encoded;
+			final boolean more;
+			synchronized (SharedMonitor.this) {
+				encoded = internalPoll(byteOrder);
+				more = (encoded != null) && hasPendingUpdates();
+			}
+
+			// one monitorEvent per update is expected
+			if (more)
+				requester.monitorEvent(this);
+
+			return encoded;
+		}
+
+		/**
+		 * Must be called while holding SharedMonitor.this lock.
+		 */
+		private byte[] internalPoll(ByteOrder byteOrder) {
+			if (!started)
+				return null;
+
+			if (byteOrder != this.byteOrder)
+			{
+				countSubscriber(this.byteOrder, -1);
+				countSubscriber(byteOrder, 1);
+				this.byteOrder = byteOrder;
+			}
+
+			if (!resync)
+			{
+				final EncodedUpdate update = queue.poll();
+				if (update == null)
+					return null;
+
+				final byte[] encoded = update.get(byteOrder);
+				if (encoded != null)
+					return encoded;
+
+				// not encoded in this byte order (byte order has changed)
+				queue.clear();
+			}
+
+			resync = false;
+			final boolean overrun = this.overrun;
+			this.overrun = false;
+			return encodeLatest(byteOrder, overrun);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.monitor.Monitor#poll()
+		 */
+		@Override
+		public MonitorElement poll() {
+			synchronized (SharedMonitor.this) {
+				if (passThrough != this || !started || takenFrom != null)
+					return null;
+				
+				final MonitorElement element = upstreamMonitor.poll();
+				if (element != null)
+					takenFrom = upstreamMonitor;
+				return element;
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.monitor.Monitor#release(org.epics.pvdata.monitor.MonitorElement)
+		 */
+		@Override
+		public void release(MonitorElement monitorElement) {
+			final Monitor monitor;
+			synchronized (SharedMonitor.this) {
+				monitor = takenFrom;
+				takenFrom = null;
+			}
+			
+			if (monitor != null)
+				monitor.release(monitorElement);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.monitor.Monitor#start()
+		 */
+		@Override
+		public Status start() {
+			boolean notify;
+			synchronized (SharedMonitor.this) {
+				if (!started)
+				{
+					started = true;
+					countSubscriber(byteOrder, 1);
+					resync = hasLatest;
+				}
+				notify = resync;
+			}
+
+			updateUpstream();
+			
+			if (notify)
+				requester.monitorEvent(this);
+			return okStatus;
+		}
+
+		/**
+		 * Must be called while holding SharedMonitor.this lock.
+		 */
+		private void internalStop() {
+			if (started)
+			{
+				started = false;
+				countSubscriber(byteOrder, -1);
+				queue.clear();
+				resync = false;
+				overrun = false;
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.monitor.Monitor#stop()
+		 */
+		@Override
+		public Status stop() {
+			synchronized (SharedMonitor.this) {
+				internalStop();
+			}
+			updateUpstream();
+			return okStatus;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.misc.Destroyable#destroy()
+		 */
+		@Override
+		public void destroy() {
+			unsubscribe(this);
+		}
+	}
+
+	private final SharedMonitorRegistry registry;
+	private final String key;
+	private final PVStructure pvRequest;
+	private final int queueSize;
+
+	private final BitSet fullBitSet = new BitSet();
+	private final BitSet emptyBitSet = new BitSet();
+
+	// guarded by this (and registry for subscriptions and destroyed)
+	private final ArrayList<Subscription> subscriptions = new ArrayList<Subscription>();
+	private Subscription owner = null;
+	private Upstream upstream = null;
+	private Monitor upstreamMonitor = null;
+	private boolean upstreamStarted = false;
+	// the only started subscription, gets provider's elements directly
+	private Subscription passThrough = null;
+	private boolean connected = false;
+	private boolean destroyed = false;
+	private Structure structure = null;
+	private PVStructure latest = null;
+	private boolean hasLatest = false;
+
+	private int bigEndianSubscribers = 0;
+	private int littleEndianSubscribers = 0;
+	private UpdateEncoder bigEndianEncoder = null;
+	private UpdateEncoder littleEndianEncoder = null;
+
+	// encoded latest value (w/o overrun), valid until next update
+	private byte[] encodedLatest = null;
+	private ByteOrder encodedLatestByteOrder = null;
+
+	/**
+	 * Serializes provider monitor start/stop calls, lock order: upstream control lock, shared monitor.
+	 */
+	private final Object upstreamControlLock = new Object();
+
+	SharedMonitor(SharedMonitorRegistry registry, String key, PVStructure pvRequest)
+	{
+		this.registry = registry;
+		this.key = key;
+		this.pvRequest = pvRequest;
+		this.queueSize = getQueueSize(pvRequest);
+		fullBitSet.set(0);
+	}
+
+	private static int getQueueSize(PVStructure pvRequest)
+	{
+		if (pvRequest != null)
+		{
+			final PVField pvField = pvRequest.getSubField("record._options.queueSize");
+			if (pvField instanceof PVString)
+			{
+				try {
+					return Math.max(1, Integer.parseInt(((PVString)pvField).get()));
+				} catch (NumberFormatException e) {
+					// noop, use default
+				}
+			}
+		}
+		return DEFAULT_QUEUE_SIZE;
+	}
+
+	String getKey()
+	{
+		return key;
+	}
+
+	/**
+	 * Get number of subscribers.
+	 * @return number of subscribers.
+	 */
+	public synchronized int getSubscriberCount()
+	{
+		return subscriptions.size();
+	}
+
+	/**
+	 * Must be called while holding registry lock.
+	 */
+	Subscription subscribe(Channel channel, MonitorRequester requester)
+	{
+		synchronized (this) {
+			final Subscription subscription = new Subscription(channel, requester);
+			subscriptions.add(subscription);
+			return subscription;
+		}
+	}
+
+	/**
+	 * Connect the subscription, creates provider monitor if needed.
+	 * Must be called w/o holding any lock.
+	 */
+	void connect(Subscription subscription)
+	{
+		final Upstream newUpstream;
+		final Structure structure;
+		synchronized (this) {
+			if (connected)
+			{
+				newUpstream = null;
+				structure = this.structure;
+			}
+			else if (upstream == null)
+			{
+				owner = subscription;
+				upstream = newUpstream = new Upstream(subscription.requester);
+				structure = null;
+			}
+			else
+			{
+				// provider monitor is being connected
+				return;
+			}
+		}
+
+		if (newUpstream != null)
+			createUpstream(subscription.channel, newUpstream);
+		else
+			subscription.requester.monitorConnect(okStatus, subscription, structure);
+	}
+
+	private void createUpstream(Channel channel, Upstream upstream)
+	{
+		try {
+			channel.createMonitor(upstream, pvRequest);
+		} catch (Throwable th) {
+			upstream.monitorConnect(
+					PVFactory.getStatusCreate().createStatus(StatusType.FATAL, "Unexpected exception caught: " + th.getMessage(), th),
+					null, null);
+		}
+	}
+
+	private void upstreamConnected(Upstream up, Status status, Monitor monitor, Structure structure)
+	{
+		boolean stale = false;
+		boolean start = false;
+		ArrayList<Subscription> toConnect = null;
+		ArrayList<Subscription> toUnlisten = null;
+
+		synchronized (registry) {
+			synchronized (this) {
+				if (up != upstream || destroyed)
+				{
+					stale = true;
+				}
+				else if (!status.isSuccess())
+				{
+					upstream = null;
+					if (!connected)
+					{
+						toConnect = new ArrayList<Subscription>(subscriptions);
+					}
+					else
+					{
+						// failed to recreate provider monitor
+						toUnlisten = new ArrayList<Subscription>(subscriptions);
+					}
+					subscriptions.clear();
+					destroyed = true;
+					registry.remove(this);
+				}
+				else
+				{
+					upstreamMonitor = monitor;
+					upstreamStarted = false;
+					passThrough = null;
+					start = true;
+					if (!connected)
+					{
+						connected = true;
+						this.structure = structure;
+						latest = PVFactory.getPVDataCreate().createPVStructure(structure);
+						toConnect = new ArrayList<Subscription>(subscriptions);
+					}
+				}
+			}
+		}
+
+		if (stale)
+		{
+			if (monitor != null)
+				monitor.destroy();
+			return;
+		}
+
+		if (start)
+			updateUpstream();
+
+		if (toConnect != null)
+			for (Subscription subscription : toConnect)
+				subscription.requester.monitorConnect(status, subscription, status.isSuccess() ? structure : null);
+
+		if (toUnlisten != null)
+			for (Subscription subscription : toUnlisten)
+				subscription.requester.unlisten(subscription);
+	}
+
+	private void upstreamEvent(Upstream up)
+	{
+		final ArrayList<Subscription> toNotify = new ArrayList<Subscription>();
+		synchronized (this) {
+			final Monitor monitor = upstreamMonitor;
+			if (up != upstream || monitor == null)
+				return;
+
+			// elements are polled by the subscriber
+			if (passThrough != null)
+			{
+				toNotify.add(passThrough);
+			}
+			else
+			{
+				MonitorElement element;
+				while ((element = monitor.poll()) != null)
+				{
+					try {
+						update(element);
+					} finally {
+						monitor.release(element);
+					}
+				}
+
+				for (Subscription subscription : subscriptions)
+					if (subscription.started && subscription.hasPendingUpdates())
+						toNotify.add(subscription);
+			}
+		}
+
+		for (Subscription subscription : toNotify)
+			subscription.requester.monitorEvent(subscription);
+	}
+
+	private void upstreamUnlisten(Upstream up)
+	{
+		final ArrayList<Subscription> toUnlisten;
+		synchronized (this) {
+			if (up != upstream)
+				return;
+			toUnlisten = new ArrayList<Subscription>(subscriptions);
+		}
+
+		for (Subscription subscription : toUnlisten)
+			subscription.requester.unlisten(subscription);
+	}
+
+	/**
+	 * Start or stop provider monitor and switch pass-through mode according to the started subscribers.
+	 * Must be called w/o holding this lock.
+	 */
+	private void updateUpstream()
+	{
+		synchronized (upstreamControlLock) {
+			final Monitor monitor;
+			final boolean start;
+			final boolean stop;
+			synchronized (this) {
+				monitor = upstreamMonitor;
+				if (monitor == null || destroyed)
+					return;
+				
+				Subscription single = null;
+				final int started = bigEndianSubscribers + littleEndianSubscribers;
+				if (started == 1)
+					for (Subscription subscription : subscriptions)
+						if (subscription.started)
+							single = subscription;
+				
+				// pass-through to shared, complete update is needed for the latest value
+				final boolean restart = upstreamStarted && passThrough != null && single == null;
+				start = (started > 0 && !upstreamStarted) || restart;
+				stop = (started == 0 && upstreamStarted) || restart;
+				
+				// latest value is not maintained while stopped or in pass-through mode
+				if (started == 0 || single != null)
+				{
+					hasLatest = false;
+					encodedLatest = null;
+				}
+				
+				upstreamStarted = (started > 0);
+				passThrough = single;
+			}
+			
+			if (stop)
+				monitor.stop();
+			if (start)
+				monitor.start();
+		}
+	}
+	
+	/**
+	 * Must be called while holding this lock.
+	 */
+	private void countSubscriber(ByteOrder byteOrder, int delta)
+	{
+		if (byteOrder == ByteOrder.BIG_ENDIAN)
+			bigEndianSubscribers += delta;
+		else
+			littleEndianSubscribers += delta;
+	}
+
+	/**
+	 * Must be called while holding this lock.
+	 */
+	private UpdateEncoder getEncoder(ByteOrder byteOrder)
+	{
+		if (byteOrder == ByteOrder.BIG_ENDIAN)
+		{
+			if (bigEndianEncoder == null)
+				bigEndianEncoder = new UpdateEncoder(ByteOrder.BIG_ENDIAN);
+			return bigEndianEncoder;
+		}
+		else
+		{
+			if (littleEndianEncoder == null)
+				littleEndianEncoder = new UpdateEncoder(ByteOrder.LITTLE_ENDIAN);
+			return littleEndianEncoder;
+		}
+	}
+
+	/**
+	 * Must be called while holding this lock.
+	 */
+	private void update(MonitorElement element)
+	{
+		final BitSet changedBitSet = element.getChangedBitSet();
+
+		// notify only (no data) is not supported
+		if (changedBitSet == null)
+			return;
+
+		final PVStructure pvStructure = element.getPVStructure();
+		SerializationHelper.partialCopy(pvStructure, latest, changedBitSet);
+		hasLatest = true;
+		encodedLatest = null;
+
+		// no active subscriber
+		if (bigEndianSubscribers == 0 && littleEndianSubscribers == 0)
+			return;
+
+		// encode once (per byte order) for all the subscribers
+		final BitSet overrunBitSet = (element.getOverrunBitSet() != null) ? element.getOverrunBitSet() : emptyBitSet;
+		final EncodedUpdate update = new EncodedUpdate();
+		if (bigEndianSubscribers > 0)
+			update.bigEndian = getEncoder(ByteOrder.BIG_ENDIAN).encode(changedBitSet, pvStructure, overrunBitSet);
+		if (littleEndianSubscribers > 0)
+			update.littleEndian = getEncoder(ByteOrder.LITTLE_ENDIAN).encode(changedBitSet, pvStructure, overrunBitSet);
+
+		for (Subscription subscription : subscriptions)
+			if (subscription.started)
+				subscription.enqueue(update);
+	}
+
+	/**
+	 * Must be called while holding this lock.
+	 */
+	private byte[] encodeLatest(ByteOrder byteOrder, boolean overrun)
+	{
+		if (!hasLatest)
+			return null;
+
+		if (overrun)
+			return getEncoder(byteOrder).encode(fullBitSet, latest, fullBitSet);
+
+		// many subscribers usually start at the same time (e.g. server restart)
+		if (encodedLatest == null || encodedLatestByteOrder != byteOrder)
+		{
+			encodedLatest = getEncoder(byteOrder).encode(fullBitSet, latest, emptyBitSet);
+			encodedLatestByteOrder = byteOrder;
+		}
+		return encodedLatest;
+	}
+
+	private void unsubscribe(Subscription subscription)
+	{
+		Monitor toDestroy = null;
+		Upstream newUpstream = null;
+		Channel channel = null;
+
+		synchronized (registry) {
+			synchronized (this) {
+				if (!subscriptions.remove(subscription))
+					return;
+
+				subscription.internalStop();
+
+				if (subscriptions.isEmpty())
+				{
+					destroyed = true;
+					registry.remove(this);
+					toDestroy = upstreamMonitor;
+					upstreamMonitor = null;
+					upstream = null;
+				}
+				else if (subscription == owner)
+				{
+					// recreate provider monitor using the channel of the next subscriber
+					owner = subscriptions.get(0);
+					toDestroy = upstreamMonitor;
+					upstreamMonitor = null;
+					upstream = newUpstream = new Upstream(owner.requester);
+					channel = owner.channel;
+				}
+			}
+		}
+
+		if (toDestroy != null)
+			toDestroy.destroy();
+
+		if (newUpstream != null)
+			createUpstream(channel, newUpstream);
+		else
+			updateUpstream();
+	}
+}
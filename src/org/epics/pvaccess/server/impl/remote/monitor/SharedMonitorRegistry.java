@@ -0,0 +1,81 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.monitor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.epics.pvaccess.client.Channel;
+import org.epics.pvdata.monitor.MonitorRequester;
+import org.epics.pvdata.pv.PVStructure;
+
+/**
+ * Registry of shared monitors, keyed by provider name, channel name and pvRequest.
+ * @see SharedMonitor
+ */
+public class SharedMonitorRegistry {
+
+	// guarded by this, lock order: registry, shared monitor
+	private final Map<String, SharedMonitor> monitors = new HashMap<String, SharedMonitor>();
+
+	private static String createKey(Channel channel, PVStructure pvRequest)
+	{
+		final StringBuilder key = new StringBuilder();
+		key.append(channel.getProvider().getProviderName()).append('\n');
+		key.append(channel.getChannelName()).append('\n');
+		if (pvRequest != null)
+			key.append(pvRequest.toString());
+		return key.toString();
+	}
+
+	/**
+	 * Subscribe to a shared monitor, create one (using given channel) if there is none.
+	 * Requester gets <code>monitorConnect</code> callback when shared monitor is connected.
+	 * @param channel provider's channel.
+	 * @param pvRequest pvRequest.
+	 * @param requester subscription requester.
+	 * @return subscription (monitor).
+	 */
+	public SharedMonitor.Subscription subscribe(Channel channel, PVStructure pvRequest, MonitorRequester requester)
+	{
+		final String key = createKey(channel, pvRequest);
+
+		final SharedMonitor.Subscription subscription;
+		final SharedMonitor sharedMonitor;
+		synchronized (this) {
+			SharedMonitor monitor = monitors.get(key);
+			if (monitor == null)
+			{
+				monitor = new SharedMonitor(this, key, pvRequest);
+				monitors.put(key, monitor);
+			}
+			sharedMonitor = monitor;
+			subscription = sharedMonitor.subscribe(channel, requester);
+		}
+
+		sharedMonitor.connect(subscription);
+		return subscription;
+	}
+
+	/**
+	 * Remove shared monitor, must be called while holding this lock.
+	 * @param sharedMonitor monitor to remove.
+	 */
+	void remove(SharedMonitor sharedMonitor)
+	{
+		if (monitors.get(sharedMonitor.getKey()) == sharedMonitor)
+			monitors.remove(sharedMonitor.getKey());
+	}
+
+	/**
+	 * Get number of shared monitors.
+	 * @return number of shared monitors.
+	 */
+	public synchronized int size()
+	{
+		return monitors.size();
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.monitor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.epics.pvaccess.impl.remote.SerializationHelper;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.Field;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.SerializableControl;
+
+/**
+ * Serializes monitor updates (changed bit-set, data, overrun bit-set) into a byte array
+ * that can be sent over any transport with the same byte order.
+ * Updates are serialized into a reusable buffer that grows to the size of the largest update,
+ * so that each update is copied only once (to the exactly sized byte array).
+ * Introspection interfaces are always serialized in full (no per-connection cache IDs).
+ * Instance is not thread-safe.
+ */
+final class UpdateEncoder implements SerializableControl {
+
+	private static final int INITIAL_BUFFER_SIZE = 16*1024;
+
+	private final ByteOrder byteOrder;
+	private ByteBuffer buffer;
+	
+	// parts of an update that does not fit into the buffer, buffer grows afterwards
+	private byte[] overflow = null;
+	private int overflowSize = 0;
+
+	UpdateEncoder(ByteOrder byteOrder)
+	{
+		this.byteOrder = byteOrder;
+		buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+		buffer.order(byteOrder);
+	}
+
+	/**
+	 * Encode monitor update.
+	 * @param changedBitSet changed bit-set.
+	 * @param pvStructure data.
+	 * @param overrunBitSet overrun bit-set.
+	 * @return encoded update.
+	 */
+	byte[] encode(BitSet changedBitSet, PVStructure pvStructure, BitSet overrunBitSet)
+	{
+		buffer.clear();
+		overflowSize = 0;
+
+		changedBitSet.serialize(buffer, this);
+		pvStructure.serialize(buffer, this, changedBitSet);
+		overrunBitSet.serialize(buffer, this);
+
+		final int size = overflowSize + buffer.position();
+		final byte[] encoded = new byte[size];
+		if (overflowSize > 0)
+			System.arraycopy(overflow, 0, encoded, 0, overflowSize);
+		System.arraycopy(buffer.array(), 0, encoded, overflowSize, buffer.position());
+		
+		if (overflowSize > 0)
+		{
+			// next update of the same size will fit
+			buffer = ByteBuffer.allocate(size);
+			buffer.order(byteOrder);
+			overflow = null;
+			overflowSize = 0;
+		}
+		
+		return encoded;
+	}
+
+	/**
+	 * Move buffer content to the overflow array.
+	 */
+	private void drain()
+	{
+		final int count = buffer.position();
+		if (overflow == null || overflow.length - overflowSize < count)
+		{
+			final byte[] newOverflow = new byte[Math.max(2 * (overflowSize + count), buffer.capacity())];
+			if (overflowSize > 0)
+				System.arraycopy(overflow, 0, newOverflow, 0, overflowSize);
+			overflow = newOverflow;
+		}
+		System.arraycopy(buffer.array(), 0, overflow, overflowSize, count);
+		overflowSize += count;
+		buffer.clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.pv.SerializableControl#flushSerializeBuffer()
+	 */
+	@Override
+	public void flushSerializeBuffer() {
+		drain();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.pv.SerializableControl#ensureBuffer(int)
+	 */
+	@Override
+	public void ensureBuffer(int size) {
+		if (buffer.remaining() >= size)
+			return;
+
+		drain();
+
+		// too large for buffer...
+		if (buffer.remaining() < size)
+			throw new IllegalArgumentException("requested for buffer size " + size + ", but only " + buffer.capacity() + " available.");
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.pv.SerializableControl#alignBuffer(int)
+	 */
+	@Override
+	public void alignBuffer(int alignment) {
+		// noop, data is not aligned
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.pv.SerializableControl#cachedSerialize(org.epics.pvdata.pv.Field, java.nio.ByteBuffer)
+	 */
+	@Override
+	public void cachedSerialize(Field field, ByteBuffer buffer) {
+		// encoded data is shared among connections, no caching
+		if (field == null)
+			SerializationHelper.serializeNullField(buffer, this);
+		else
+			field.serialize(buffer, this);
+	}
+
+	/**
+	 * Write encoded update to the (transport) buffer.
+	 * @param update encoded update.
+	 * @param buffer buffer to write to.
+	 * @param control control to use to flush the buffer.
+	 */
+	static void write(byte[] update, ByteBuffer buffer, SerializableControl control)
+	{
+		int offset = 0;
+		while (offset < update.length)
+		{
+			if (!buffer.hasRemaining())
+				control.flushSerializeBuffer();
+
+			final int count = Math.min(buffer.remaining(), update.length - offset);
+			buffer.put(update, offset, count);
+			offset += count;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.nameserver;
+
+import java.net.InetSocketAddress;
+
+import org.epics.pvaccess.client.ChannelFind;
+import org.epics.pvaccess.impl.remote.utils.GUID;
+
+/**
+ * Result of a channel directory (name server) lookup, the channel is hosted by another server.
+ * Search responses report address and GUID of the hosting server instead of the ones of the responding server.
+ */
+public interface DirectoryChannelFind extends ChannelFind {
+	
+	/**
+	 * Get GUID of the server hosting the channel.
+	 * @return hosting server GUID.
+	 */
+	public GUID getServerGUID();
+	
+	/**
+	 * Get address of the server hosting the channel.
+	 * @return hosting server address, never any local address.
+	 */
+	public InetSocketAddress getServerAddress();
+
+}
@@ -0,0 +1,453 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.nameserver;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.epics.pvaccess.PVAException;
+import org.epics.pvaccess.PVFactory;
+import org.epics.pvaccess.client.Channel;
+import org.epics.pvaccess.client.Channel.ConnectionState;
+import org.epics.pvaccess.client.ChannelProvider;
+import org.epics.pvaccess.client.ChannelRPC;
+import org.epics.pvaccess.client.ChannelRPCRequester;
+import org.epics.pvaccess.client.ChannelRequester;
+import org.epics.pvaccess.client.impl.remote.BeaconHandler;
+import org.epics.pvaccess.client.impl.remote.ClientContextImpl;
+import org.epics.pvaccess.impl.remote.utils.GUID;
+import org.epics.pvaccess.server.impl.remote.ServerContextImpl;
+import org.epics.pvaccess.server.impl.remote.plugins.DefaultBeaconServerDataProvider;
+import org.epics.pvdata.copy.CreateRequest;
+import org.epics.pvdata.pv.Field;
+import org.epics.pvdata.pv.MessageType;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVStringArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.StringArrayData;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * PVA name server.
+ * Servers are discovered via beacons (or added explicitly), their channel lists are fetched
+ * using <code>server</code> channel RPC service (<code>channels</code> operation) and kept in a directory.
+ * Search requests (sent by clients over persistent TCP connections, see <code>EPICS_PVA_NAME_SERVERS</code>)
+ * are answered with the address and GUID of the hosting server.
+ * Channel lists are re-fetched periodically and on beacon change count change,
+ * servers whose beacons are not seen anymore are removed from the directory.
+ */
+public class NameServer implements Runnable {
+
+	// re-fetch channel lists every minute
+	private static final long POLL_PERIOD_MS = 60000;
+	
+	// retry failed channel list fetch
+	private static final long RETRY_PERIOD_MS = 5000;
+	
+	// discovered servers w/o beacons for 3 minutes are removed
+	private static final long SERVER_EXPIRATION_MS = 3*60000;
+	
+	private static final long RPC_TIMEOUT_MS = 5000;
+	
+	private static final Structure channelsRequestStructure =
+		PVFactory.getFieldCreate().createStructure(
+				new String[] { "op" },
+				new Field[] { PVFactory.getFieldCreate().createScalar(ScalarType.pvString) });
+	
+	private static final PVStructure pvRequest = CreateRequest.create().createRequest("");
+	
+	/**
+	 * Known server.
+	 */
+	private static class ServerInfo {
+		final GUID guid;
+		final InetSocketAddress address;
+		// explicitly added, never expires
+		final boolean isStatic;
+		int changeCount;
+		long lastSeen;
+		long nextPoll;
+		
+		ServerInfo(GUID guid, InetSocketAddress address, boolean isStatic) {
+			this.guid = guid;
+			this.address = address;
+			this.isStatic = isStatic;
+		}
+	}
+	
+	/**
+	 * Client context listening to all the beacons.
+	 */
+	private class DiscoveryContextImpl extends ClientContextImpl implements BeaconHandler {
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.impl.remote.ClientContextImpl#getBeaconHandler(java.lang.String, java.net.InetSocketAddress)
+		 */
+		@Override
+		public BeaconHandler getBeaconHandler(String protocol, InetSocketAddress responseFrom) {
+			return this;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.impl.remote.BeaconHandler#beaconNotify(java.net.InetSocketAddress, byte, long, byte[], int, int, org.epics.pvdata.pv.PVField)
+		 */
+		@Override
+		public void beaconNotify(InetSocketAddress from, byte remoteTransportRevision,
+				long timestamp, byte[] guid, int sequentalID, int changeCount,
+				PVField data) {
+			serverDetected(new GUID(guid), from, changeCount, false);
+		}
+	}
+	
+	private final Logger logger = Logger.getLogger(NameServer.class.getName());
+
+	private final NameServerChannelProvider channelProvider = new NameServerChannelProvider();
+	
+	private final ServerContextImpl serverContext = new ServerContextImpl();
+	
+	private final DiscoveryContextImpl discoveryContext = new DiscoveryContextImpl();
+	
+	/**
+	 * Known servers, guarded by this.
+	 */
+	private final Map<GUID, ServerInfo> servers = new HashMap<GUID, ServerInfo>();
+	
+	private GUID ownGUID;
+	
+	private volatile boolean destroyed = false;
+	
+	/**
+	 * Initialize and start the name server (non-blocking).
+	 * @throws PVAException any PVA exception.
+	 */
+	public void start() throws PVAException
+	{
+		serverContext.setBeaconServerStatusProvider(new DefaultBeaconServerDataProvider(serverContext));
+		serverContext.initialize(channelProvider);
+		ownGUID = new GUID(serverContext.getGUID());
+
+		discoveryContext.initialize();
+		
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					serverContext.run(0);
+				} catch (Throwable th) {
+					serverContext.getLogger().log(Level.SEVERE, "Unexpected exception caught in name server thread.", th);
+				}
+			}
+		}, "pvAccess name server").start();
+		
+		Thread poller = new Thread(this, "pvAccess name server poller");
+		poller.setDaemon(true);
+		poller.start();
+	}
+	
+	/**
+	 * Get name server (server) context.
+	 * @return server context.
+	 */
+	public ServerContextImpl getServerContext() {
+		return serverContext;
+	}
+	
+	/**
+	 * Get name server channel directory.
+	 * @return channel directory.
+	 */
+	public NameServerChannelProvider getChannelProvider() {
+		return channelProvider;
+	}
+	
+	/**
+	 * Explicitly add a server, e.g. a server that is not reachable by beacons.
+	 * Explicitly added servers never expire.
+	 * @param address server address.
+	 * @param guid server GUID.
+	 */
+	public void addServer(InetSocketAddress address, GUID guid)
+	{
+		serverDetected(guid, address, 0, true);
+	}
+	
+	private synchronized void serverDetected(GUID guid, InetSocketAddress address, int changeCount, boolean isStatic)
+	{
+		if (destroyed || guid.equals(ownGUID))
+			return;
+		
+		final long now = System.currentTimeMillis();
+		ServerInfo info = servers.get(guid);
+		if (info == null)
+		{
+			// server restarted (new GUID) on the same address
+			Iterator<ServerInfo> iter = servers.values().iterator();
+			while (iter.hasNext())
+			{
+				final ServerInfo si = iter.next();
+				if (si.address.equals(address))
+				{
+					iter.remove();
+					channelProvider.removeServer(si.guid);
+				}
+			}
+			
+			info = new ServerInfo(guid, address, isStatic);
+			info.changeCount = changeCount;
+			info.nextPoll = now;
+			servers.put(guid, info);
+			
+			logger.fine("New server detected: " + address + ", " + guid + ".");
+			this.notifyAll();
+		}
+		else if (info.changeCount != changeCount)
+		{
+			info.changeCount = changeCount;
+			info.nextPoll = now;
+			this.notifyAll();
+		}
+		info.lastSeen = now;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run()
+	{
+		while (!destroyed)
+		{
+			ServerInfo due = null;
+			synchronized (this)
+			{
+				final long now = System.currentTimeMillis();
+				long nextPoll = now + POLL_PERIOD_MS;
+				
+				Iterator<ServerInfo> iter = servers.values().iterator();
+				while (iter.hasNext())
+				{
+					final ServerInfo info = iter.next();
+					if (!info.isStatic && now - info.lastSeen > SERVER_EXPIRATION_MS)
+					{
+						logger.fine("Server " + info.address + " expired.");
+						iter.remove();
+						channelProvider.removeServer(info.guid);
+					}
+					else if (info.nextPoll <= now)
+					{
+						due = info;
+						break;
+					}
+					else
+						nextPoll = Math.min(nextPoll, info.nextPoll);
+				}
+				
+				if (due == null)
+				{
+					try {
+						this.wait(Math.max(1, nextPoll - now));
+					} catch (InterruptedException e) {
+						// noop
+					}
+					continue;
+				}
+				
+				due.nextPoll = now + POLL_PERIOD_MS;
+			}
+			
+			// blocking
+			final List<String> channelNames = fetchChannelList(due.address);
+			
+			synchronized (this)
+			{
+				// removed in the meantime
+				if (servers.get(due.guid) != due)
+					continue;
+				
+				if (channelNames != null)
+					channelProvider.updateServer(due.guid, due.address, channelNames);
+				else
+				{
+					channelProvider.removeServer(due.guid);
+					due.nextPoll = Math.min(due.nextPoll, System.currentTimeMillis() + RETRY_PERIOD_MS);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Fetch channel list of a server.
+	 * @param address server address.
+	 * @return list of the channels, <code>null</code> on failure.
+	 */
+	private List<String> fetchChannelList(InetSocketAddress address)
+	{
+		final ChannelListFetcher fetcher = new ChannelListFetcher();
+		final Channel channel = discoveryContext.getProvider().createChannel(
+				"server", fetcher, ChannelProvider.PRIORITY_DEFAULT,
+				address.getAddress().getHostAddress() + ":" + address.getPort());
+		try
+		{
+			return fetcher.waitForResult(RPC_TIMEOUT_MS);
+		}
+		finally
+		{
+			if (channel != null)
+				channel.destroy();
+		}
+	}
+
+	/**
+	 * Calls <code>channels</code> operation of the <code>server</code> channel RPC service.
+	 */
+	private class ChannelListFetcher implements ChannelRequester, ChannelRPCRequester {
+		
+		private boolean done = false;
+		private List<String> result = null;
+		
+		private synchronized void done(List<String> result)
+		{
+			if (done)
+				return;
+			this.done = true;
+			this.result = result;
+			this.notifyAll();
+		}
+		
+		public synchronized List<String> waitForResult(long timeoutMs)
+		{
+			final long start = System.currentTimeMillis();
+			long diff;
+			while (!done && (diff = System.currentTimeMillis() - start) < timeoutMs)
+			{
+				try {
+					this.wait(timeoutMs - diff);
+				} catch (InterruptedException e) {
+					return null;
+				}
+			}
+			return result;
+		}
+		
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.pv.Requester#getRequesterName()
+		 */
+		@Override
+		public String getRequesterName() {
+			return NameServer.class.getName();
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.pv.Requester#message(java.lang.String, org.epics.pvdata.pv.MessageType)
+		 */
+		@Override
+		public void message(String message, MessageType messageType) {
+			logger.finer("[" + messageType + "] " + message);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.ChannelRequester#channelCreated(org.epics.pvdata.pv.Status, org.epics.pvaccess.client.Channel)
+		 */
+		@Override
+		public void channelCreated(Status status, Channel channel) {
+			if (!status.isSuccess())
+				done(null);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.ChannelRequester#channelStateChange(org.epics.pvaccess.client.Channel, org.epics.pvaccess.client.Channel.ConnectionState)
+		 */
+		@Override
+		public void channelStateChange(Channel channel, ConnectionState connectionState) {
+			if (connectionState == ConnectionState.CONNECTED)
+				channel.createChannelRPC(this, pvRequest);
+			else if (connectionState != ConnectionState.NEVER_CONNECTED)
+				done(null);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.ChannelRPCRequester#channelRPCConnect(org.epics.pvdata.pv.Status, org.epics.pvaccess.client.ChannelRPC)
+		 */
+		@Override
+		public void channelRPCConnect(Status status, ChannelRPC channelRPC) {
+			if (!status.isSuccess())
+			{
+				done(null);
+				return;
+			}
+			
+			PVStructure args = PVFactory.getPVDataCreate().createPVStructure(channelsRequestStructure);
+			args.getStringField("op").put("channels");
+			channelRPC.request(args);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.ChannelRPCRequester#requestDone(org.epics.pvdata.pv.Status, org.epics.pvaccess.client.ChannelRPC, org.epics.pvdata.pv.PVStructure)
+		 */
+		@Override
+		public void requestDone(Status status, ChannelRPC channelRPC, PVStructure pvResponse) {
+			if (!status.isSuccess() || pvResponse == null)
+			{
+				done(null);
+				return;
+			}
+			
+			final PVStringArray pvNames = pvResponse.getSubField(PVStringArray.class, "value");
+			if (pvNames == null)
+			{
+				done(null);
+				return;
+			}
+			
+			final StringArrayData data = new StringArrayData();
+			final int length = pvNames.get(0, pvNames.getLength(), data);
+			final List<String> names = new ArrayList<String>(length);
+			for (int i = 0; i < length; i++)
+				names.add(data.data[data.offset + i]);
+			done(names);
+		}
+		
+	}
+	
+	/**
+	 * Destroy the name server.
+	 */
+	public void destroy()
+	{
+		synchronized (this) {
+			if (destroyed)
+				return;
+			destroyed = true;
+			servers.clear();
+			this.notifyAll();
+		}
+		
+		discoveryContext.dispose();
+		serverContext.dispose();
+		channelProvider.destroy();
+	}
+	
+	/**
+	 * Program entry point, runs the name server until killed.
+	 * @param args	command-line arguments, not used.
+	 * @throws PVAException any PVA exception.
+	 */
+	public static void main(String[] args) throws PVAException
+	{
+		NameServer nameServer = new NameServer();
+		nameServer.start();
+		nameServer.getServerContext().printInfo();
+	}
+
+}
@@ -0,0 +1,330 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.nameserver;
+
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.epics.pvaccess.client.Channel;
+import org.epics.pvaccess.client.ChannelFind;
+import org.epics.pvaccess.client.ChannelFindRequester;
+import org.epics.pvaccess.client.ChannelListRequester;
+import org.epics.pvaccess.client.ChannelProvider;
+import org.epics.pvaccess.client.ChannelRequester;
+import org.epics.pvaccess.impl.remote.utils.GUID;
+import org.epics.pvaccess.server.ChannelListChangeListener;
+import org.epics.pvaccess.server.ChannelListChangeNotifier;
+import org.epics.pvaccess.server.ChannelNameIndex;
+import org.epics.pvaccess.server.ChannelNameIndexProvider;
+import org.epics.pvaccess.server.impl.remote.SetChannelNameIndex;
+import org.epics.pvdata.factory.StatusFactory;
+import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Status.StatusType;
+import org.epics.pvdata.pv.StatusCreate;
+
+/**
+ * Channel provider of a name server, a directory of channels hosted by other servers.
+ * Channels are only found (reporting hosting server), they cannot be created.
+ * If more servers host a channel with the same name, the last reported server is used.
+ * A new channel name index is published and listeners are notified on every directory change.
+ */
+public class NameServerChannelProvider implements ChannelProvider, ChannelNameIndexProvider, ChannelListChangeNotifier {
+
+	public static final String PROVIDER_NAME = "nameServer";
+
+	private static final StatusCreate statusCreate = StatusFactory.getStatusCreate();
+	private static final Status okStatus = statusCreate.getStatusOK();
+	private static final Status channelNotHostedStatus =
+		statusCreate.createStatus(StatusType.ERROR, "channel not hosted by the name server", null);
+
+	/**
+	 * Hosting server.
+	 */
+	private class ServerEntry implements DirectoryChannelFind {
+		
+		private final GUID guid;
+		private final InetSocketAddress address;
+		
+		public ServerEntry(GUID guid, InetSocketAddress address) {
+			this.guid = guid;
+			this.address = address;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.server.impl.remote.nameserver.DirectoryChannelFind#getServerGUID()
+		 */
+		@Override
+		public GUID getServerGUID() {
+			return guid;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.server.impl.remote.nameserver.DirectoryChannelFind#getServerAddress()
+		 */
+		@Override
+		public InetSocketAddress getServerAddress() {
+			return address;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.ChannelFind#getChannelProvider()
+		 */
+		@Override
+		public ChannelProvider getChannelProvider() {
+			return NameServerChannelProvider.this;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.ChannelFind#cancel()
+		 */
+		@Override
+		public void cancel() {
+			// noop, sync call
+		}
+	}
+	
+	private final ChannelFind channelFind = new ChannelFind() {
+		
+		@Override
+		public ChannelProvider getChannelProvider() {
+			return NameServerChannelProvider.this;
+		}
+		
+		@Override
+		public void cancel() {
+			// noop, sync call
+		}
+	};
+	
+	/**
+	 * Channel name to hosting server map, lookups are lock-free.
+	 */
+	private final Map<String, ServerEntry> directory = new ConcurrentHashMap<String, ServerEntry>();
+	
+	/**
+	 * Channels reported by each server, guarded by this.
+	 */
+	private final Map<GUID, Set<String>> serverChannels = new HashMap<GUID, Set<String>>();
+	
+	/**
+	 * Published index (live view of the directory), new instance signals a change.
+	 */
+	private volatile ChannelNameIndex index = new SetChannelNameIndex(directory.keySet());
+	
+	/**
+	 * Directory change listeners.
+	 */
+	private final CopyOnWriteArrayList<ChannelListChangeListener> listeners = new CopyOnWriteArrayList<ChannelListChangeListener>();
+	
+	/**
+	 * Update (replace) list of channels hosted by a server.
+	 * @param guid server GUID.
+	 * @param address server address.
+	 * @param channelNames names of the hosted channels.
+	 */
+	public synchronized void updateServer(GUID guid, InetSocketAddress address, Collection<String> channelNames)
+	{
+		final Set<String> names = new HashSet<String>(channelNames);
+		
+		// periodic update w/o any change
+		if (names.equals(serverChannels.get(guid)) && isUpToDate(guid, address, names))
+			return;
+		
+		remove(guid);
+		
+		final ServerEntry entry = new ServerEntry(guid, address);
+		for (String name : names)
+			directory.put(name, entry);
+		serverChannels.put(guid, names);
+		
+		changed();
+	}
+	
+	/**
+	 * Check if all the names are mapped to the given server.
+	 * Must be called while holding this lock.
+	 */
+	private boolean isUpToDate(GUID guid, InetSocketAddress address, Set<String> names)
+	{
+		for (String name : names)
+		{
+			final ServerEntry entry = directory.get(name);
+			if (entry == null || !entry.guid.equals(guid) || !entry.address.equals(address))
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Remove all the channels hosted by a server.
+	 * @param guid server GUID.
+	 */
+	public synchronized void removeServer(GUID guid)
+	{
+		if (remove(guid))
+			changed();
+	}
+	
+	/**
+	 * Remove all the channels hosted by a server, must be called while holding this lock.
+	 * @param guid server GUID.
+	 * @return <code>true</code> if server was in the directory.
+	 */
+	private boolean remove(GUID guid)
+	{
+		final Set<String> names = serverChannels.remove(guid);
+		if (names == null)
+			return false;
+		
+		for (String name : names)
+		{
+			// might be reported by another server in the meantime
+			final ServerEntry entry = directory.get(name);
+			if (entry != null && entry.guid.equals(guid))
+				directory.remove(name);
+		}
+		return true;
+	}
+	
+	/**
+	 * Publish a new index and notify listeners, must be called while holding this lock.
+	 */
+	private void changed()
+	{
+		index = new SetChannelNameIndex(directory.keySet());
+		for (ChannelListChangeListener listener : listeners)
+			listener.channelListChanged();
+	}
+	
+	/**
+	 * Get number of servers in the directory.
+	 * @return number of servers.
+	 */
+	public synchronized int getServerCount()
+	{
+		return serverChannels.size();
+	}
+	
+	/**
+	 * Get number of channels in the directory.
+	 * @return number of channels.
+	 */
+	public int getChannelCount()
+	{
+		return directory.size();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.server.ChannelNameIndexProvider#getChannelNameIndex()
+	 */
+	@Override
+	public ChannelNameIndex getChannelNameIndex() {
+		return index;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.server.ChannelListChangeNotifier#addChannelListChangeListener(org.epics.pvaccess.server.ChannelListChangeListener)
+	 */
+	@Override
+	public void addChannelListChangeListener(ChannelListChangeListener listener) {
+		listeners.addIfAbsent(listener);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.server.ChannelListChangeNotifier#removeChannelListChangeListener(org.epics.pvaccess.server.ChannelListChangeListener)
+	 */
+	@Override
+	public void removeChannelListChangeListener(ChannelListChangeListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.client.ChannelProvider#destroy()
+	 */
+	@Override
+	public synchronized void destroy() {
+		directory.clear();
+		serverChannels.clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.client.ChannelProvider#getProviderName()
+	 */
+	@Override
+	public String getProviderName() {
+		return PROVIDER_NAME;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.client.ChannelProvider#channelFind(java.lang.String, org.epics.pvaccess.client.ChannelFindRequester)
+	 */
+	@Override
+	public ChannelFind channelFind(String channelName,
+			ChannelFindRequester channelFindRequester) {
+		
+		if (channelName == null)
+			throw new IllegalArgumentException("channelName");
+
+		if (channelFindRequester == null)
+			throw new IllegalArgumentException("channelFindRequester");
+		
+		final ServerEntry entry = directory.get(channelName);
+		if (entry != null)
+		{
+			channelFindRequester.channelFindResult(okStatus, entry, true);
+			return entry;
+		}
+		else
+		{
+			channelFindRequester.channelFindResult(okStatus, channelFind, false);
+			return channelFind;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.client.ChannelProvider#channelList(org.epics.pvaccess.client.ChannelListRequester)
+	 */
+	@Override
+	public ChannelFind channelList(ChannelListRequester channelListRequester) {
+
+		if (channelListRequester == null)
+			throw new IllegalArgumentException("null requester");
+
+		channelListRequester.channelListResult(okStatus, channelFind, new HashSet<String>(directory.keySet()), false);
+		return channelFind;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.client.ChannelProvider#createChannel(java.lang.String, org.epics.pvaccess.client.ChannelRequester, short)
+	 */
+	@Override
+	public Channel createChannel(String channelName,
+			ChannelRequester channelRequester, short priority) {
+		return createChannel(channelName, channelRequester, priority, null);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.client.ChannelProvider#createChannel(java.lang.String, org.epics.pvaccess.client.ChannelRequester, short, java.lang.String)
+	 */
+	@Override
+	public Channel createChannel(String channelName,
+			ChannelRequester channelRequester, short priority, String address) {
+		
+		if (channelRequester == null)
+			throw new IllegalArgumentException("null channelRequester");
+
+		// clients connect directly to the hosting servers
+		channelRequester.channelCreated(channelNotHostedStatus, null);
+		return null;
+	}
+
+}
@@ -19,6 +19,7 @@ import java.lang.management.OperatingSystemMXBean;
 import java.lang.management.ThreadMXBean;
 
 import org.epics.pvaccess.PVFactory;
+import org.epics.pvaccess.server.impl.remote.SearchScheduler;
 import org.epics.pvaccess.server.impl.remote.ServerContextImpl;
 import org.epics.pvaccess.server.plugins.BeaconServerStatusProvider;
 import org.epics.pvdata.pv.Field;
@@ -70,16 +71,20 @@ public class DefaultBeaconServerDataProvider implements
         		"freeMemory",
         		"threads",
         		"deadlocks",
-        		"averageSystemLoad"
+        		"averageSystemLoad",
+        		"cpuLoad",
+        		"queueDepth"
         		};
 
-        Field[] fields = new Field[6];
+        Field[] fields = new Field[8];
         fields[0] = fieldCreate.createScalar(ScalarType.pvInt);
         fields[1] = fieldCreate.createScalar(ScalarType.pvLong);
         fields[2] = fieldCreate.createScalar(ScalarType.pvLong);
         fields[3] = fieldCreate.createScalar(ScalarType.pvInt);
         fields[4] = fieldCreate.createScalar(ScalarType.pvInt);
         fields[5] = fieldCreate.createScalar(ScalarType.pvDouble);
+        fields[6] = fieldCreate.createScalar(ScalarType.pvDouble);
+        fields[7] = fieldCreate.createScalar(ScalarType.pvInt);
         
         status = pvDataCreate.createPVStructure(fieldCreate.createStructure(fieldNames,fields));
 	}
@@ -102,7 +107,13 @@ public class DefaultBeaconServerDataProvider implements
     	status.getIntField("deadlocks").put((deadlocks != null) ? deadlocks.length : 0);
 
         OperatingSystemMXBean osMBean = ManagementFactory.getOperatingSystemMXBean();
-		status.getDoubleField("averageSystemLoad").put(osMBean.getSystemLoadAverage());
+		final double systemLoad = osMBean.getSystemLoadAverage();
+		status.getDoubleField("averageSystemLoad").put(systemLoad);
+
+		// load metrics used by clients to choose the least-loaded of redundant servers
+		status.getDoubleField("cpuLoad").put(systemLoad < 0 ? -1.0 : systemLoad / osMBean.getAvailableProcessors());
+		final SearchScheduler searchScheduler = context.getSearchScheduler();
+		status.getIntField("queueDepth").put(searchScheduler != null ? searchScheduler.getQueuedCount() : 0);
 
 		return status;
 	}
@@ -0,0 +1,109 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util;
+
+/**
+ * Bloom filter of strings.
+ * Membership test never gives false negatives, false positives are possible with configured probability.
+ * Hash functions are derived from (cached) <code>String.hashCode()</code> using double hashing,
+ * so testing a string is allocation free and does not iterate over its characters more than once.
+ * Instance is not thread-safe while being filled, it is safe to be tested concurrently once filled.
+ */
+public final class BloomFilter {
+
+	private static final double LN2 = Math.log(2);
+	
+	private final long[] bits;
+	private final int bitCount;
+	private final int hashCount;
+	
+	/**
+	 * Create an empty filter.
+	 * @param expectedElements expected number of elements.
+	 * @param falsePositiveProbability desired false positive probability, <code>(0, 1)</code>.
+	 * @throws IllegalArgumentException if parameters are not valid.
+	 */
+	public BloomFilter(int expectedElements, double falsePositiveProbability) throws IllegalArgumentException
+	{
+		if (expectedElements < 0)
+			throw new IllegalArgumentException("expectedElements < 0");
+		if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1)
+			throw new IllegalArgumentException("falsePositiveProbability not in (0, 1)");
+		
+		final int n = Math.max(1, expectedElements);
+		final double m = -n * Math.log(falsePositiveProbability) / (LN2 * LN2);
+		bitCount = (int)Math.max(64, Math.min(Integer.MAX_VALUE - 63, Math.ceil(m)));
+		hashCount = Math.max(1, (int)Math.round(bitCount / (double)n * LN2));
+		bits = new long[(bitCount + 63) >>> 6];
+	}
+	
+	/**
+	 * Get number of bits.
+	 * @return number of bits.
+	 */
+	public int getBitCount() {
+		return bitCount;
+	}
+	
+	/**
+	 * Get number of hash functions.
+	 * @return number of hash functions.
+	 */
+	public int getHashCount() {
+		return hashCount;
+	}
+	
+	/**
+	 * Finalization mix of MurmurHash3, spreads bits of the second hash.
+	 */
+	private static int mix(int h)
+	{
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+	
+	/**
+	 * Add a string.
+	 * @param value string to add, non-<code>null</code>.
+	 */
+	public void add(String value)
+	{
+		final int h1 = value.hashCode();
+		final int h2 = mix(h1 ^ 0x9e3779b9) | 1;
+		int h = h1;
+		for (int i = 0; i < hashCount; i++)
+		{
+			final int index = (h & Integer.MAX_VALUE) % bitCount;
+			bits[index >>> 6] |= (1L << index);
+			h += h2;
+		}
+	}
+	
+	/**
+	 * Test whether a string might have been added.
+	 * @param value string to test, non-<code>null</code>.
+	 * @return <code>false</code> if string was definitely not added, <code>true</code> if it might have been added.
+	 */
+	public boolean mightContain(String value)
+	{
+		final int h1 = value.hashCode();
+		final int h2 = mix(h1 ^ 0x9e3779b9) | 1;
+		int h = h1;
+		for (int i = 0; i < hashCount; i++)
+		{
+			final int index = (h & Integer.MAX_VALUE) % bitCount;
+			if ((bits[index >>> 6] & (1L << index)) == 0)
+				return false;
+			h += h2;
+		}
+		return true;
+	}
+	
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free table of objects indexed by generated (int) IDs, e.g. channel IDs or request IDs.
+ * An ID is composed of a slot index (low bits) and slot generation (high bits), so that lookup
+ * is a plain array access and a removed ID is not resolved even if its slot is already reused.
+ * Free slots are kept in a lock-free free list (stack), allocation and removal are O(1).
+ * Slots are allocated in segments, on demand. ID <code>0</code> is never generated.
+ * Instance is thread-safe.
+ * @param <T> element type.
+ */
+public final class IDTable<T> {
+
+	/**
+	 * Number of bits of an ID used for slot index.
+	 */
+	public static final int INDEX_BITS = 22;
+	
+	/**
+	 * Max. number of IDs in use at the same time.
+	 */
+	public static final int CAPACITY = (1 << INDEX_BITS) - 1;
+	
+	private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+	private static final int GENERATION_MASK = (1 << (32 - INDEX_BITS)) - 1;
+	
+	private static final int SEGMENT_BITS = 12;
+	private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+	private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+	
+	/**
+	 * Allocated ID.
+	 */
+	private static final class Entry<T> {
+		final int id;
+		volatile T value;
+		
+		Entry(int id, T value) {
+			this.id = id;
+			this.value = value;
+		}
+	}
+	
+	/**
+	 * Segment of slots.
+	 */
+	private static final class Segment<T> {
+		final AtomicReferenceArray<Entry<T>> entries = new AtomicReferenceArray<Entry<T>>(SEGMENT_SIZE);
+		// generation of the next ID of the slot, modified only by the owner of the (free) slot
+		final AtomicIntegerArray generations = new AtomicIntegerArray(SEGMENT_SIZE);
+		// free list link (index + 1, 0 terminates the list)
+		final AtomicIntegerArray next = new AtomicIntegerArray(SEGMENT_SIZE);
+	}
+	
+	private final AtomicReferenceArray<Segment<T>> segments =
+		new AtomicReferenceArray<Segment<T>>((CAPACITY >>> SEGMENT_BITS) + 1);
+
+	/**
+	 * Free list head, tag (high 32-bits, prevents ABA) and index + 1 (low 32-bits, 0 if empty).
+	 */
+	private final AtomicLong freeHead = new AtomicLong(0);
+	
+	/**
+	 * Next never used slot index, index 0 is reserved (ID 0 is never generated).
+	 */
+	private final AtomicInteger highWater = new AtomicInteger(1);
+	
+	/**
+	 * Number of IDs in use.
+	 */
+	private final AtomicInteger count = new AtomicInteger(0);
+	
+	private Segment<T> segment(int index)
+	{
+		return segments.get(index >>> SEGMENT_BITS);
+	}
+	
+	/**
+	 * Take free slot index (free list first, then never used slot).
+	 */
+	private int takeIndex()
+	{
+		while (true)
+		{
+			final long head = freeHead.get();
+			final int index = (int)head - 1;
+			if (index < 0)
+				break;
+			
+			final int next = segment(index).next.get(index & SEGMENT_MASK);
+			final long tag = (head >>> 32) + 1;
+			if (freeHead.compareAndSet(head, (tag << 32) | (next & 0xFFFFFFFFL)))
+				return index;
+		}
+		
+		final int index = highWater.getAndIncrement();
+		if (index >= CAPACITY)
+		{
+			highWater.decrementAndGet();
+			throw new IllegalStateException("ID table full, " + CAPACITY + " IDs in use");
+		}
+		
+		// create segment on demand
+		final int segmentIndex = index >>> SEGMENT_BITS;
+		if (segments.get(segmentIndex) == null)
+			segments.compareAndSet(segmentIndex, null, new Segment<T>());
+		return index;
+	}
+	
+	/**
+	 * Return slot index to the free list.
+	 */
+	private void releaseIndex(int index)
+	{
+		final Segment<T> segment = segment(index);
+		while (true)
+		{
+			final long head = freeHead.get();
+			segment.next.set(index & SEGMENT_MASK, (int)head);
+			final long tag = (head >>> 32) + 1;
+			if (freeHead.compareAndSet(head, (tag << 32) | (index + 1)))
+				return;
+		}
+	}
+	
+	/**
+	 * Generate a new ID and assign a value to it.
+	 * ID is <code>(generation << INDEX_BITS) | index</code>, where slot generation is incremented
+	 * (modulo <code>2^(32 - INDEX_BITS)</code>) each time the slot is freed. Once a slot has been
+	 * reused more than 511 times, the highest bit of generation is set, i.e. generated ID is a negative <code>int</code>;
+	 * callers must not assume IDs are non-negative. <code>-1</code> (all bits set) is never generated.
+	 * @param value value, can be <code>null</code> (ID is reserved).
+	 * @return generated ID, never <code>0</code>, can be negative.
+	 * @throws IllegalStateException if there is no free ID.
+	 */
+	public int put(T value) throws IllegalStateException
+	{
+		final int index = takeIndex();
+		final Segment<T> segment = segment(index);
+		final int offset = index & SEGMENT_MASK;
+		final int id = (segment.generations.get(offset) << INDEX_BITS) | index;
+		segment.entries.set(offset, new Entry<T>(id, value));
+		count.incrementAndGet();
+		return id;
+	}
+	
+	/**
+	 * Generate (reserve) a new ID, value is to be set later.
+	 * @return generated ID, never <code>0</code>, can be negative (see {@link #put(Object)}).
+	 * @throws IllegalStateException if there is no free ID.
+	 */
+	public int allocate() throws IllegalStateException
+	{
+		return put(null);
+	}
+	
+	/**
+	 * Set value of an ID in use.
+	 * @param id ID.
+	 * @param value value to set.
+	 * @return <code>true</code> on success, <code>false</code> if ID is not in use.
+	 */
+	public boolean set(int id, T value)
+	{
+		final Entry<T> entry = entry(id);
+		if (entry == null)
+			return false;
+		entry.value = value;
+		return true;
+	}
+	
+	private Entry<T> entry(int id)
+	{
+		final int index = id & INDEX_MASK;
+		final Segment<T> segment = (index < CAPACITY) ? segments.get(index >>> SEGMENT_BITS) : null;
+		if (segment == null)
+			return null;
+		final Entry<T> entry = segment.entries.get(index & SEGMENT_MASK);
+		return (entry != null && entry.id == id) ? entry : null;
+	}
+	
+	/**
+	 * Get value of an ID.
+	 * @param id ID.
+	 * @return value, <code>null</code> if ID is not in use (or has no value).
+	 */
+	public T get(int id)
+	{
+		final Entry<T> entry = entry(id);
+		return (entry != null) ? entry.value : null;
+	}
+	
+	/**
+	 * Remove (free) an ID.
+	 * @param id ID to remove.
+	 * @return removed value, <code>null</code> if ID was not in use (or had no value).
+	 */
+	public T remove(int id)
+	{
+		final Entry<T> entry = entry(id);
+		if (entry == null)
+			return null;
+		
+		final int index = id & INDEX_MASK;
+		final Segment<T> segment = segment(index);
+		final int offset = index & SEGMENT_MASK;
+		if (!segment.entries.compareAndSet(offset, entry, null))
+			return null;
+		
+		// slot is owned by this thread until released
+		segment.generations.set(offset, ((id >>> INDEX_BITS) + 1) & GENERATION_MASK);
+		count.decrementAndGet();
+		releaseIndex(index);
+		return entry.value;
+	}
+	
+	/**
+	 * Get number of IDs in use.
+	 * Value is only a snapshot if called while table is being modified.
+	 * @return number of IDs in use.
+	 */
+	public int size()
+	{
+		return Math.max(0, count.get());
+	}
+	
+	/**
+	 * Get (non-<code>null</code>) values of all IDs in use.
+	 * Value is only a snapshot if called while table is being modified.
+	 * @return list of values.
+	 */
+	public ArrayList<T> values()
+	{
+		final ArrayList<T> values = new ArrayList<T>(size());
+		final int limit = Math.min(highWater.get(), CAPACITY);
+		for (int index = 1; index < limit; index++)
+		{
+			final Segment<T> segment = segment(index);
+			if (segment == null)
+				continue;
+			final Entry<T> entry = segment.entries.get(index & SEGMENT_MASK);
+			if (entry != null)
+			{
+				final T value = entry.value;
+				if (value != null)
+					values.add(value);
+			}
+		}
+		return values;
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free pool of reusable objects.
+ * Each slot of the pool is claimed independently by a CAS operation, so there is no ABA problem
+ * and no allocation on <code>poll</code> or <code>offer</code>.
+ * Pooled objects are kept close to a (shared) hint index, stack-like, so that scans are short.
+ * Objects offered to a full pool are not retained (left to GC), which bounds the memory held by the pool.
+ * Instance is thread-safe.
+ * @param <T> pooled object type.
+ */
+public final class ObjectPool<T> {
+
+	/**
+	 * Pool slots, <code>null</code> if empty.
+	 */
+	private final AtomicReferenceArray<T> slots;
+	
+	/**
+	 * Mask to map an index to a slot (capacity is a power of 2).
+	 */
+	private final int mask;
+	
+	/**
+	 * Index of the most recently offered object (top of the stack), only a hint.
+	 */
+	private final AtomicInteger hint = new AtomicInteger(0);
+	
+	/**
+	 * Number of pooled objects, updated after a slot is claimed (might be behind).
+	 */
+	private final AtomicInteger count = new AtomicInteger(0);
+
+	/**
+	 * Create a pool with the given capacity.
+	 * @param capacity max. number of pooled objects, rounded up to the power of 2.
+	 * @exception IllegalArgumentException if capacity less or equal to zero
+	 */
+	public ObjectPool(int capacity) throws IllegalArgumentException {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity <= 0");
+		int size = 1;
+		while (size < capacity)
+			size <<= 1;
+		slots = new AtomicReferenceArray<T>(size);
+		mask = size - 1;
+	}
+
+	/**
+	 * Get pool capacity.
+	 * @return pool capacity.
+	 */
+	public int capacity() {
+		return slots.length();
+	}
+	
+	/**
+	 * Get number of pooled objects.
+	 * Value is only a snapshot if called while pool is being modified.
+	 * @return number of pooled objects.
+	 */
+	public int size() {
+		return Math.max(0, count.get());
+	}
+	
+	/**
+	 * Take an object from the pool.
+	 * @return pooled object, <code>null</code> if the pool is empty.
+	 */
+	public T poll() {
+		// empty pool is not scanned
+		if (count.get() <= 0)
+			return null;
+		
+		// scan down from the top
+		final int start = hint.get();
+		final int length = slots.length();
+		for (int i = 0; i < length; i++)
+		{
+			final int index = (start - i) & mask;
+			final T element = slots.get(index);
+			if (element != null && slots.compareAndSet(index, element, null))
+			{
+				hint.lazySet((index - 1) & mask);
+				count.decrementAndGet();
+				return element;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Return an object to the pool.
+	 * @param element object to return, non-<code>null</code>.
+	 * @return <code>true</code> if pooled, <code>false</code> if the pool is full.
+	 */
+	public boolean offer(T element) {
+		if (element == null)
+			throw new IllegalArgumentException("element == null");
+		
+		// scan up from the top
+		final int start = hint.get();
+		final int length = slots.length();
+		for (int i = 0; i < length; i++)
+		{
+			final int index = (start + i) & mask;
+			if (slots.get(index) == null && slots.compareAndSet(index, null, element))
+			{
+				hint.lazySet(index);
+				count.incrementAndGet();
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Implementation of bounded lock-free circular FIFO buffer.
+ * Instance is thread-safe only if there is at most one thread calling <code>offer</code>
+ * (single producer) and at most one thread calling <code>poll</code> (single consumer) at the same time.
+ * @param <T> buffer element type.
+ */
+public final class SPSCCircularBuffer<T> {
+
+	/**
+	 * Array (circular buffer) of elements.
+	 */
+	private final AtomicReferenceArray<T> elements;
+
+	/**
+	 * Take (read) pointer, modified only by consumer.
+	 */
+	private final AtomicLong takePointer = new AtomicLong(0);
+
+	/**
+	 * Put (write) pointer, modified only by producer.
+	 */
+	private final AtomicLong putPointer = new AtomicLong(0);
+
+	/**
+	 * Create a buffer with the given capacity.
+	 * @param capacity buffer capacity.
+	 * @exception IllegalArgumentException if capacity less or equal to zero
+	 **/
+	public SPSCCircularBuffer(int capacity) throws IllegalArgumentException {
+		if (capacity <= 0)
+			throw new IllegalArgumentException();
+		elements = new AtomicReferenceArray<T>(capacity);
+	}
+
+	/**
+	 * Get number of elements in the buffer.
+	 * Value is only a snapshot if called while buffer is being modified.
+	 * @return number of elements in the buffer.
+	 */
+	public int size() {
+		// read take pointer first, size is never negative
+		final long take = takePointer.get();
+		return (int)(putPointer.get() - take);
+	}
+
+	/**
+	 * Get buffer capacity.
+	 * @return buffer capacity.
+	 */
+	public int capacity() { return elements.length(); }
+
+	/**
+	 * Insert a new element in to the buffer (producer side).
+	 * @param x element to insert, non-<code>null</code>.
+	 * @return <code>true</code> if inserted, <code>false</code> if buffer is full.
+	 */
+	public boolean offer(T x) {
+		if (x == null)
+			throw new IllegalArgumentException("x == null");
+
+		final long put = putPointer.get();
+		if (put - takePointer.get() >= elements.length())
+			return false;
+
+		elements.lazySet((int)(put % elements.length()), x);
+		putPointer.lazySet(put + 1);
+		return true;
+	}
+
+	/**
+	 * Extract the oldest element from the buffer (consumer side).
+	 * @return the oldest element from the buffer, <code>null</code> if empty.
+	 */
+	public T poll() {
+		final long take = takePointer.get();
+		if (take >= putPointer.get())
+			return null;
+
+		final int index = (int)(take % elements.length());
+		final T old = elements.get(index);
+		elements.lazySet(index, null);
+		takePointer.lazySet(take + 1);
+		return old;
+	}
+}
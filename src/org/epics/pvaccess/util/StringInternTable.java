@@ -0,0 +1,90 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size table of recently decoded strings, used to avoid creating a new <code>String</code>
+ * instance every time a frequently used (hot) name is decoded from bytes.
+ * The table is direct-mapped: a newly decoded string replaces the one in its slot, so the memory used is bounded.
+ * Only US-ASCII strings are interned, other strings are always decoded as UTF-8.
+ * Instance is thread-safe.
+ */
+public final class StringInternTable {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private final AtomicReferenceArray<String> table;
+	private final int mask;
+	
+	/**
+	 * Create a table with the given capacity.
+	 * @param capacity number of slots, rounded up to the power of 2.
+	 * @exception IllegalArgumentException if capacity less or equal to zero
+	 */
+	public StringInternTable(int capacity) throws IllegalArgumentException {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity <= 0");
+		int size = 1;
+		while (size < capacity)
+			size <<= 1;
+		table = new AtomicReferenceArray<String>(size);
+		mask = size - 1;
+	}
+	
+	/**
+	 * Get table capacity.
+	 * @return number of slots.
+	 */
+	public int capacity() {
+		return table.length();
+	}
+	
+	/**
+	 * Get string of (UTF-8 encoded) bytes, reusing the instance from the table if present.
+	 * @param bytes bytes.
+	 * @param offset offset of the first byte.
+	 * @param length number of bytes.
+	 * @return decoded string.
+	 */
+	public String intern(byte[] bytes, int offset, int length) {
+		// FNV-1a hash, non-ASCII strings are not interned
+		int hash = 0x811C9DC5;
+		final int end = offset + length;
+		for (int i = offset; i < end; i++)
+		{
+			final byte b = bytes[i];
+			if (b < 0)
+				return new String(bytes, offset, length, UTF8);
+			hash = (hash ^ b) * 0x01000193;
+		}
+		
+		final int index = (hash ^ (hash >>> 16)) & mask;
+		final String cached = table.get(index);
+		if (cached != null && equals(cached, bytes, offset, length))
+			return cached;
+
+		final char[] chars = new char[length];
+		for (int i = 0; i < length; i++)
+			chars[i] = (char)bytes[offset + i];
+		final String str = new String(chars);
+		
+		table.lazySet(index, str);
+		return str;
+	}
+	
+	private static boolean equals(String str, byte[] bytes, int offset, int length)
+	{
+		if (str.length() != length)
+			return false;
+		for (int i = 0; i < length; i++)
+			if (str.charAt(i) != bytes[offset + i])
+				return false;
+		return true;
+	}
+}
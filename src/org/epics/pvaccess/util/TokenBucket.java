@@ -0,0 +1,111 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util;
+
+/**
+ * Non-blocking token bucket, used to pace (rate limit) events.
+ * Tokens are refilled at a constant rate up to the bucket capacity (max burst).
+ * Time is given by the caller (<code>System.nanoTime()</code> based), i.e. no clock is read and no thread is ever blocked.
+ * Instance is not thread-safe.
+ */
+public final class TokenBucket {
+
+	private final double capacity;
+	private final double tokensPerNs;
+
+	private double tokens;
+	private long lastRefillTime;
+
+	/**
+	 * Create a full bucket.
+	 * @param capacity max number of tokens (max burst), must be &gt; 0.
+	 * @param rate refill rate in tokens per second, must be &gt; 0.
+	 * @param now current time in ns.
+	 * @throws IllegalArgumentException if capacity or rate is not positive.
+	 */
+	public TokenBucket(double capacity, double rate, long now) throws IllegalArgumentException
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be > 0");
+		if (rate <= 0)
+			throw new IllegalArgumentException("rate must be > 0");
+
+		this.capacity = capacity;
+		this.tokensPerNs = rate / 1e9;
+		this.tokens = capacity;
+		this.lastRefillTime = now;
+	}
+
+	private void refill(long now)
+	{
+		final long elapsed = now - lastRefillTime;
+		if (elapsed > 0)
+		{
+			tokens = Math.min(capacity, tokens + elapsed * tokensPerNs);
+			lastRefillTime = now;
+		}
+	}
+
+	/**
+	 * Take one token, if available.
+	 * @param now current time in ns.
+	 * @return <code>true</code> if token was taken, <code>false</code> if the bucket is empty.
+	 */
+	public boolean tryAcquire(long now)
+	{
+		return tryAcquire(1, now);
+	}
+
+	/**
+	 * Take given number of tokens, if available (all or none).
+	 * @param count number of tokens to take, must not exceed capacity to ever succeed.
+	 * @param now current time in ns.
+	 * @return <code>true</code> if tokens were taken, <code>false</code> if not enough tokens are available.
+	 */
+	public boolean tryAcquire(int count, long now)
+	{
+		refill(now);
+		if (tokens < count)
+			return false;
+		tokens -= count;
+		return true;
+	}
+
+	/**
+	 * Get time until a token becomes available.
+	 * @param now current time in ns.
+	 * @return time in ns until next token is available, 0 if available now.
+	 */
+	public long nanosUntilAvailable(long now)
+	{
+		return nanosUntilAvailable(1, now);
+	}
+
+	/**
+	 * Get time until given number of tokens becomes available.
+	 * @param count number of tokens.
+	 * @param now current time in ns.
+	 * @return time in ns until tokens are available, 0 if available now.
+	 */
+	public long nanosUntilAvailable(int count, long now)
+	{
+		refill(now);
+		if (tokens >= count)
+			return 0;
+		return (long)Math.ceil((count - tokens) / tokensPerNs);
+	}
+
+	/**
+	 * Get number of (whole) tokens available.
+	 * @param now current time in ns.
+	 * @return number of tokens available.
+	 */
+	public int available(long now)
+	{
+		refill(now);
+		return (int)tokens;
+	}
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util.sync;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates proxies of callback (requester) interfaces that deliver callbacks via an executor.
+ * Only methods returning <code>void</code> are run via the executor,
+ * all the others (e.g. <code>getRequesterName()</code>) are called directly.
+ * To preserve the order of callbacks, use <code>SerialExecutor</code> or a single-threaded executor.
+ */
+public final class ExecutorProxy {
+
+	private static final Logger logger = Logger.getLogger(ExecutorProxy.class.getName());
+
+	private ExecutorProxy() {
+		// static methods only
+	}
+
+	/**
+	 * Create a proxy.
+	 * @param callbackInterface callback interface.
+	 * @param target instance to be called.
+	 * @param executor executor to run the callbacks.
+	 * @return proxy implementing <code>callbackInterface</code>.
+	 */
+	public static <T> T create(Class<T> callbackInterface, final T target, final Executor executor) {
+		if (target == null)
+			throw new IllegalArgumentException("target == null");
+		if (executor == null)
+			throw new IllegalArgumentException("executor == null");
+
+		return callbackInterface.cast(Proxy.newProxyInstance(
+				callbackInterface.getClassLoader(),
+				new Class<?>[] { callbackInterface },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, final Method method, final Object[] args) throws Throwable {
+						if (method.getReturnType() != Void.TYPE || method.getDeclaringClass() == Object.class)
+						{
+							try {
+								return method.invoke(target, args);
+							} catch (InvocationTargetException ite) {
+								throw ite.getCause();
+							}
+						}
+
+						executor.execute(new Runnable() {
+							@Override
+							public void run() {
+								try {
+									method.invoke(target, args);
+								} catch (InvocationTargetException ite) {
+									logger.log(Level.SEVERE, "Unexpected exception caught in a callback.", ite.getCause());
+								} catch (IllegalAccessException iae) {
+									logger.log(Level.SEVERE, "Failed to call a callback.", iae);
+								}
+							}
+						});
+						return null;
+					}
+				}));
+	}
+}
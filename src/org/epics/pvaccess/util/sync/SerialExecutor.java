@@ -0,0 +1,138 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util.sync;
+
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executor that runs tasks one at the time, in submission order, using an underlying executor
+ * (which can be multi-threaded and can be shared among many serial executors).
+ * If there is no underlying executor set, tasks are run by the calling thread.
+ */
+public final class SerialExecutor implements Executor {
+
+	private static final Logger logger = Logger.getLogger(SerialExecutor.class.getName());
+
+	// guarded by tasks
+	private final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+	private boolean active = false;
+
+	private volatile Executor executor;
+
+	private final Runnable runner = new Runnable() {
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+
+	/**
+	 * Constructor.
+	 * @param executor underlying executor, <code>null</code> to run tasks by the calling thread.
+	 */
+	public SerialExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Get underlying executor.
+	 * @return underlying executor, <code>null</code> if tasks are run by the calling thread.
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Set underlying executor, tasks already submitted keep their order.
+	 * @param executor underlying executor, <code>null</code> to run tasks by the calling thread.
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Get number of tasks waiting to be run.
+	 * @return number of tasks waiting to be run.
+	 */
+	public int getQueueDepth() {
+		synchronized (tasks) {
+			return tasks.size();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+	 */
+	@Override
+	public void execute(Runnable task) {
+		final Executor executor = this.executor;
+		synchronized (tasks) {
+			if (executor == null && !active)
+			{
+				// fast path, nothing pending
+				active = true;
+			}
+			else
+			{
+				tasks.add(task);
+				if (active)
+					return;
+				active = true;
+				task = null;
+			}
+		}
+
+		if (task != null)
+		{
+			run(task);
+			// tasks might have been submitted meanwhile
+			drain();
+		}
+		else
+			schedule(executor);
+	}
+
+	private void schedule(Executor executor) {
+		if (executor != null)
+		{
+			try {
+				executor.execute(runner);
+				return;
+			} catch (RejectedExecutionException ree) {
+				// shutdown, run by the calling thread
+			}
+		}
+		drain();
+	}
+
+	private void drain() {
+		while (true)
+		{
+			final Runnable task;
+			synchronized (tasks) {
+				task = tasks.poll();
+				if (task == null)
+				{
+					active = false;
+					return;
+				}
+			}
+			run(task);
+		}
+	}
+
+	private static void run(Runnable task) {
+		try {
+			task.run();
+		} catch (Throwable th) {
+			logger.log(Level.SEVERE, "Unexpected exception caught while running a task.", th);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util.sync;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of single-threaded executors (stripes).
+ * Tasks submitted to the same stripe are run in submission order, different stripes run concurrently.
+ * Queue depth of each stripe can be queried.
+ */
+public final class StripedExecutor {
+
+	private final ThreadPoolExecutor[] stripes;
+
+	/**
+	 * Constructor.
+	 * @param name thread name prefix.
+	 * @param stripeCount number of stripes (threads).
+	 */
+	public StripedExecutor(final String name, int stripeCount) {
+		if (stripeCount <= 0)
+			throw new IllegalArgumentException("stripeCount <= 0");
+
+		stripes = new ThreadPoolExecutor[stripeCount];
+		for (int i = 0; i < stripeCount; i++)
+		{
+			final String threadName = name + " #" + i;
+			stripes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							final Thread thread = new Thread(r, threadName);
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+	}
+
+	/**
+	 * Get number of stripes.
+	 * @return number of stripes.
+	 */
+	public int getStripeCount() {
+		return stripes.length;
+	}
+
+	/**
+	 * Get executor (stripe) for given key, the same key always maps to the same stripe.
+	 * @param key key, e.g. channel ID.
+	 * @return the stripe.
+	 */
+	public Executor getStripe(int key) {
+		return stripes[(key & Integer.MAX_VALUE) % stripes.length];
+	}
+
+	/**
+	 * Get number of tasks waiting in the queue of a stripe.
+	 * @param stripe stripe index.
+	 * @return queue depth.
+	 */
+	public int getQueueDepth(int stripe) {
+		return stripes[stripe].getQueue().size();
+	}
+
+	/**
+	 * Get number of completed tasks of a stripe.
+	 * @param stripe stripe index.
+	 * @return number of completed tasks.
+	 */
+	public long getCompletedTaskCount(int stripe) {
+		return stripes[stripe].getCompletedTaskCount();
+	}
+
+	/**
+	 * Shutdown all the stripes, already submitted tasks are still run.
+	 */
+	public void shutdown() {
+		for (ThreadPoolExecutor stripe : stripes)
+			stripe.shutdown();
+	}
+}
@@ -30,6 +30,8 @@ public class AllTests {
         //$JUnit-BEGIN$
         suite.addTestSuite(ChannelAccessIFLocalTest.class);
         suite.addTestSuite(ChannelAccessIFRemoteTest.class);
+        suite.addTestSuite(ChannelNameCacheTest.class);
+        suite.addTestSuite(SearchTimingWheelTest.class);
         //$JUnit-END$
         return suite;
     }
@@ -13,11 +13,44 @@
  */
 package org.epics.pvaccess.client.test;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.epics.pvaccess.client.Channel;
 import org.epics.pvaccess.client.ChannelProvider;
+import org.epics.pvaccess.client.ChannelRequester;
+import org.epics.pvaccess.client.Channel.ConnectionState;
+import org.epics.pvaccess.client.flow.ChannelMonitorPublisher;
+import org.epics.pvaccess.client.flow.MonitorSubscriber;
+import org.epics.pvaccess.client.flow.MonitorSubscription;
+import org.epics.pvaccess.client.impl.remote.ChannelImpl;
 import org.epics.pvaccess.client.impl.remote.ClientContextImpl;
+import org.epics.pvaccess.impl.remote.utils.GUID;
 import org.epics.pvaccess.server.impl.remote.ServerContextImpl;
+import org.epics.pvaccess.server.impl.remote.nameserver.NameServer;
 import org.epics.pvaccess.server.impl.remote.plugins.DefaultBeaconServerDataProvider;
 import org.epics.pvaccess.server.test.TestChannelProviderImpl;
+import org.epics.pvdata.copy.CreateRequest;
+import org.epics.pvdata.monitor.Monitor;
+import org.epics.pvdata.monitor.MonitorElement;
+import org.epics.pvdata.monitor.MonitorRequester;
+import org.epics.pvdata.pv.DoubleArrayData;
+import org.epics.pvdata.pv.MessageType;
+import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Structure;
 
 /**
  * Channel Access remote IF test.
@@ -153,6 +186,946 @@ public class ChannelAccessIFRemoteTest extends ChannelAccessIFTest {
 	}
 	*/
 	
+	// server-side option, "counter" increases with 1Hz
+	public void testChannelMonitorDecimate() throws Throwable
+	{
+        Channel ch = syncCreateChannel("counter");
+    	CreateRequest createRequest = CreateRequest.create();
+    	PVStructure pvRequest = createRequest.createRequest("record[decimate=2]field(value)");
+    	if(pvRequest==null) {
+    		String message ="createRequest failed " + createRequest.getMessage();
+    		throw new IllegalArgumentException(message);
+    	}
+    	ChannelMonitorRequesterImpl channelMonitorRequester = new ChannelMonitorRequesterImpl();
+	    ch.createMonitor(channelMonitorRequester, pvRequest);
+	    channelMonitorRequester.waitAndCheckConnect();
+
+	    synchronized (channelMonitorRequester) {
+		    channelMonitorRequester.channelMonitor.start();
+		    
+		    // first update is not delayed
+		    if (channelMonitorRequester.monitorCounter.get() == 0)
+		    	channelMonitorRequester.wait(getTimeoutMs());
+		    assertEquals(1, channelMonitorRequester.monitorCounter.get());
+		    int previousValue = channelMonitorRequester.pvStructure.getIntField("value").get();
+
+		    // every second update
+		    for (int i = 2; i < 4; i++) {
+			    channelMonitorRequester.wait(getTimeoutMs());
+			    assertEquals(i, channelMonitorRequester.monitorCounter.get());
+			    int value = channelMonitorRequester.pvStructure.getIntField("value").get();
+			    assertEquals(previousValue + 2, value);
+			    previousValue = value;
+		    }
+
+		    channelMonitorRequester.channelMonitor.stop();
+	    }
+	    ch.destroy();
+	}
+	
+	/**
+	 * Updates within the interval are merged (server-side) and given out by the timer.
+	 * "simpleCounter" increases on process only, no update is given out before process response.
+	 */
+	private void channelMonitorRateLimitTest(String request, long minIntervalMs) throws Throwable
+	{
+        Channel ch = syncCreateChannel("simpleCounter");
+        NoPollMonitorRequester monitorRequester = createNoPollMonitor(ch, request);
+        ChannelProcessRequesterImpl channelProcessRequester = createProcess(ch);
+        final Monitor monitor = monitorRequester.monitor;
+        
+	    // first update is not delayed
+	    monitor.start();
+	    monitorRequester.waitForEvents(1);
+	    final long firstUpdateTime = System.currentTimeMillis();
+	    MonitorElement element = monitor.poll();
+	    assertNotNull(element);
+	    final int initialValue = getValue(element);
+	    monitor.release(element);
+	    
+	    final int UPDATES = 3;
+	    for (int i = 0; i < UPDATES; i++)
+	    	channelProcessRequester.syncProcess(false);
+	    
+	    // held back within the interval
+	    assertEquals(1, monitorRequester.events.get());
+	    
+	    // given out by the timer
+	    monitorRequester.waitForEvents(2);
+	    assertTrue(System.currentTimeMillis() - firstUpdateTime >= minIntervalMs * 8 / 10);
+	    
+	    // merged into one element
+	    element = monitor.poll();
+	    assertNotNull(element);
+	    assertEquals(initialValue + UPDATES, getValue(element));
+	    assertTrue(element.getChangedBitSet().cardinality() > 0);
+	    assertTrue(element.getOverrunBitSet().cardinality() > 0);
+	    monitor.release(element);
+	    assertNull(monitor.poll());
+	    
+	    // nothing more to give out
+	    Thread.sleep(minIntervalMs * 3 / 2);
+	    assertEquals(2, monitorRequester.events.get());
+
+	    monitor.stop();
+	    ch.destroy();
+	}
+	
+	// server-side option
+	public void testChannelMonitorMinInterval() throws Throwable
+	{
+		channelMonitorRateLimitTest("record[minInterval=1.0]field(value)", 1000);
+	}
+	
+	// server-side option
+	public void testChannelMonitorMaxRate() throws Throwable
+	{
+		channelMonitorRateLimitTest("record[maxRate=2]field(value)", 500);
+	}
+	
+	// server-side options, invalid values are rejected on creation
+	public void testChannelMonitorRateLimitInvalidOptions() throws Throwable
+	{
+		final String[] INVALID_REQUESTS = {
+				"record[maxRate=0]field(value)",
+				"record[maxRate=-1]field(value)",
+				"record[maxRate=fast]field(value)",
+				"record[minInterval=-1]field(value)",
+				"record[minInterval=soon]field(value)",
+				"record[decimate=0]field(value)",
+				"record[decimate=2.5]field(value)"
+		};
+
+		Channel ch = syncCreateChannel("simpleCounter");
+		for (String request : INVALID_REQUESTS)
+			createNoPollMonitor(ch, request, false);
+	    ch.destroy();
+	}
+	
+	// "counter" provider does not implement PipelineMonitor, server-side pipeline queue is used
+	public void testChannelMonitorPipeline() throws Throwable
+	{
+        Channel ch = syncCreateChannel("counter");
+    	CreateRequest createRequest = CreateRequest.create();
+    	PVStructure pvRequest = createRequest.createRequest("record[queueSize=4,pipeline=true,ackAny=2]field(value)");
+    	if(pvRequest==null) {
+    		String message ="createRequest failed " + createRequest.getMessage();
+    		throw new IllegalArgumentException(message);
+    	}
+    	ChannelMonitorRequesterImpl channelMonitorRequester = new ChannelMonitorRequesterImpl();
+	    ch.createMonitor(channelMonitorRequester, pvRequest);
+	    channelMonitorRequester.waitAndCheckConnect();
+
+	    synchronized (channelMonitorRequester) {
+		    channelMonitorRequester.channelMonitor.start();
+		    
+		    if (channelMonitorRequester.monitorCounter.get() == 0)
+		    	channelMonitorRequester.wait(getTimeoutMs());
+		    assertEquals(1, channelMonitorRequester.monitorCounter.get());
+		    int previousValue = channelMonitorRequester.pvStructure.getIntField("value").get();
+
+		    // more updates than queueSize, credits must be given back
+		    for (int i = 2; i < 8; i++) {
+			    channelMonitorRequester.wait(getTimeoutMs());
+			    assertEquals(i, channelMonitorRequester.monitorCounter.get());
+			    int value = channelMonitorRequester.pvStructure.getIntField("value").get();
+			    assertEquals(previousValue + 1, value);
+			    previousValue = value;
+		    }
+
+		    channelMonitorRequester.channelMonitor.stop();
+	    }
+	    ch.destroy();
+	}
+	
+	public void testChannelMonitorAdaptivePipeline() throws Throwable
+	{
+        Channel ch = syncCreateChannel("counter");
+    	CreateRequest createRequest = CreateRequest.create();
+    	PVStructure pvRequest = createRequest.createRequest("record[queueSize=8,pipeline=adaptive]field(value)");
+    	if(pvRequest==null) {
+    		String message ="createRequest failed " + createRequest.getMessage();
+    		throw new IllegalArgumentException(message);
+    	}
+    	ChannelMonitorRequesterImpl channelMonitorRequester = new ChannelMonitorRequesterImpl();
+	    ch.createMonitor(channelMonitorRequester, pvRequest);
+	    channelMonitorRequester.waitAndCheckConnect();
+
+	    synchronized (channelMonitorRequester) {
+		    channelMonitorRequester.channelMonitor.start();
+		    
+		    if (channelMonitorRequester.monitorCounter.get() == 0)
+		    	channelMonitorRequester.wait(getTimeoutMs());
+		    assertEquals(1, channelMonitorRequester.monitorCounter.get());
+		    int previousValue = channelMonitorRequester.pvStructure.getIntField("value").get();
+
+		    // more updates than initial credits, acks must flow
+		    for (int i = 2; i < 6; i++) {
+			    channelMonitorRequester.wait(getTimeoutMs());
+			    assertEquals(i, channelMonitorRequester.monitorCounter.get());
+			    int value = channelMonitorRequester.pvStructure.getIntField("value").get();
+			    assertEquals(previousValue + 1, value);
+			    previousValue = value;
+		    }
+
+		    channelMonitorRequester.channelMonitor.stop();
+	    }
+	    ch.destroy();
+	}
+	
+	/**
+	 * Monitor requester that does not poll on events, the test is the consumer.
+	 */
+	private class NoPollMonitorRequester implements MonitorRequester {
+		
+		final AtomicInteger events = new AtomicInteger();
+		volatile Monitor monitor;
+		
+		private Boolean connected = null;
+
+		@Override
+		public void monitorConnect(Status status, Monitor monitor, Structure structure) {
+			synchronized (this) {
+				this.monitor = monitor;
+				connected = Boolean.valueOf(status.isOK());
+				this.notifyAll();
+			}
+		}
+
+		public void waitAndCheckConnect() throws InterruptedException
+		{
+			waitAndCheckConnect(true);
+		}
+
+		public synchronized void waitAndCheckConnect(boolean expectedSuccess) throws InterruptedException
+		{
+			if (connected == null)
+				this.wait(getTimeoutMs());
+			assertNotNull("channel monitor connect timeout", connected);
+			if (expectedSuccess)
+				assertTrue("channel monitor failed to connect", connected.booleanValue());
+			else
+				assertFalse("channel monitor has not failed to connect", connected.booleanValue());
+		}
+
+		@Override
+		public void monitorEvent(Monitor monitor) {
+			synchronized (this) {
+				events.incrementAndGet();
+				this.notifyAll();
+			}
+		}
+
+		public synchronized void waitForEvents(int count) throws InterruptedException
+		{
+			final long deadline = System.currentTimeMillis() + getTimeoutMs();
+			long remaining;
+			while (events.get() < count && (remaining = deadline - System.currentTimeMillis()) > 0)
+				this.wait(remaining);
+			assertEquals(count, events.get());
+		}
+		
+		@Override
+		public void unlisten(Monitor monitor) {
+			// noop
+		}
+
+		@Override
+		public String getRequesterName() {
+			return this.getClass().getName();
+		}
+
+		@Override
+		public void message(String message, MessageType messageType) {
+			System.err.println("[" + messageType + "] " + message);
+		}
+	}
+	
+	private NoPollMonitorRequester createNoPollMonitor(Channel ch, String request) throws Throwable
+	{
+		return createNoPollMonitor(ch, request, true);
+	}
+	
+	private NoPollMonitorRequester createNoPollMonitor(Channel ch, String request, boolean expectedSuccess) throws Throwable
+	{
+    	CreateRequest createRequest = CreateRequest.create();
+    	PVStructure pvRequest = createRequest.createRequest(request);
+    	if(pvRequest==null) {
+    		String message ="createRequest failed " + createRequest.getMessage();
+    		throw new IllegalArgumentException(message);
+    	}
+    	NoPollMonitorRequester monitorRequester = new NoPollMonitorRequester();
+	    ch.createMonitor(monitorRequester, pvRequest);
+	    monitorRequester.waitAndCheckConnect(expectedSuccess);
+	    return monitorRequester;
+	}
+	
+	private ChannelProcessRequesterImpl createProcess(Channel ch) throws Throwable
+	{
+		ChannelProcessRequesterImpl channelProcessRequester = new ChannelProcessRequesterImpl();
+		ch.createChannelProcess(channelProcessRequester, null);
+		channelProcessRequester.waitAndCheckConnect();
+		return channelProcessRequester;
+	}
+	
+	private static int getValue(MonitorElement element)
+	{
+		return element.getPVStructure().getIntField("value").get();
+	}
+
+	// queueSize=1, latest value only; "simpleCounter" increases on process only,
+	// an update is received before the process response
+	public void testChannelMonitorLatestValue() throws Throwable
+	{
+        Channel ch = syncCreateChannel("simpleCounter");
+        NoPollMonitorRequester monitorRequester = createNoPollMonitor(ch, "record[queueSize=1]field(value)");
+        ChannelProcessRequesterImpl channelProcessRequester = createProcess(ch);
+        final Monitor monitor = monitorRequester.monitor;
+        
+	    monitor.start();
+	    monitorRequester.waitForEvents(1);
+	    MonitorElement element = monitor.poll();
+	    assertNotNull(element);
+	    final int initialValue = getValue(element);
+	    assertEquals(0, element.getOverrunBitSet().cardinality());
+	    monitor.release(element);
+	    assertNull(monitor.poll());
+
+	    // not consumed updates get overwritten
+	    final int UPDATES = 3;
+	    for (int i = 0; i < UPDATES; i++)
+	    	channelProcessRequester.syncProcess(false);
+	    monitorRequester.waitForEvents(1 + UPDATES);
+
+	    // only the newest value, overrun merged
+	    element = monitor.poll();
+	    assertNotNull(element);
+	    assertEquals(initialValue + UPDATES, getValue(element));
+	    assertTrue(element.getChangedBitSet().cardinality() > 0);
+	    assertTrue(element.getOverrunBitSet().cardinality() > 0);
+	    monitor.release(element);
+	    assertNull(monitor.poll());
+	    
+	    // next update is not an overrun
+	    channelProcessRequester.syncProcess(false);
+	    monitorRequester.waitForEvents(2 + UPDATES);
+	    element = monitor.poll();
+	    assertNotNull(element);
+	    assertEquals(initialValue + UPDATES + 1, getValue(element));
+	    assertEquals(0, element.getOverrunBitSet().cardinality());
+	    monitor.release(element);
+
+	    monitor.stop();
+	    ch.destroy();
+	}
+	
+	// lock-free ring of 3 elements
+	public void testChannelMonitorRingOverrun() throws Throwable
+	{
+        Channel ch = syncCreateChannel("simpleCounter");
+        NoPollMonitorRequester monitorRequester = createNoPollMonitor(ch, "record[queueSize=3,lockFree=true]field(value)");
+        ChannelProcessRequesterImpl channelProcessRequester = createProcess(ch);
+        final Monitor monitor = monitorRequester.monitor;
+        
+	    monitor.start();
+	    monitorRequester.waitForEvents(1);
+	    
+	    // 1 + 4 updates, the last element gets overwritten once the ring is full
+	    final int UPDATES = 4;
+	    for (int i = 0; i < UPDATES; i++)
+	    	channelProcessRequester.syncProcess(false);
+	    monitorRequester.waitForEvents(1 + UPDATES);
+	    
+	    MonitorElement element = monitor.poll();
+	    assertNotNull(element);
+	    final int initialValue = getValue(element);
+	    assertEquals(0, element.getOverrunBitSet().cardinality());
+	    // only one element can be taken at the time
+	    assertNull(monitor.poll());
+	    monitor.release(element);
+
+	    element = monitor.poll();
+	    assertNotNull(element);
+	    assertEquals(initialValue + 1, getValue(element));
+	    assertEquals(0, element.getOverrunBitSet().cardinality());
+	    monitor.release(element);
+
+	    element = monitor.poll();
+	    assertNotNull(element);
+	    assertEquals(initialValue + UPDATES, getValue(element));
+	    assertTrue(element.getOverrunBitSet().cardinality() > 0);
+	    monitor.release(element);
+	    
+	    assertNull(monitor.poll());
+
+	    monitor.stop();
+	    ch.destroy();
+	}
+
+	public void testChannelMonitorRingRecycling() throws Throwable
+	{
+		final int QUEUE_SIZE = 3;
+        Channel ch = syncCreateChannel("simpleCounter");
+        NoPollMonitorRequester monitorRequester = createNoPollMonitor(ch, "record[queueSize=" + QUEUE_SIZE + ",lockFree=true]field(value)");
+        ChannelProcessRequesterImpl channelProcessRequester = createProcess(ch);
+        final Monitor monitor = monitorRequester.monitor;
+        
+        final Set<PVStructure> structures = Collections.newSetFromMap(new IdentityHashMap<PVStructure, Boolean>());
+        
+	    monitor.start();
+	    monitorRequester.waitForEvents(1);
+	    MonitorElement element = monitor.poll();
+	    assertNotNull(element);
+	    int previousValue = getValue(element);
+	    structures.add(element.getPVStructure());
+	    monitor.release(element);
+	    
+	    // released elements are reused, no update is lost
+	    final int UPDATES = 20;
+	    for (int i = 1; i <= UPDATES; i++)
+	    {
+	    	channelProcessRequester.syncProcess(false);
+		    monitorRequester.waitForEvents(1 + i);
+		    
+		    element = monitor.poll();
+		    assertNotNull(element);
+		    assertEquals(previousValue + 1, getValue(element));
+		    assertEquals(0, element.getOverrunBitSet().cardinality());
+		    previousValue = getValue(element);
+		    structures.add(element.getPVStructure());
+		    monitor.release(element);
+		    assertNull(monitor.poll());
+	    }
+	    assertTrue(structures.size() <= QUEUE_SIZE);
+
+	    monitor.stop();
+	    ch.destroy();
+	}
+
+	public void testChannelMonitorRingRestart() throws Throwable
+	{
+        Channel ch = syncCreateChannel("simpleCounter");
+        NoPollMonitorRequester monitorRequester = createNoPollMonitor(ch, "record[queueSize=3,lockFree=true]field(value)");
+        ChannelProcessRequesterImpl channelProcessRequester = createProcess(ch);
+        final Monitor monitor = monitorRequester.monitor;
+        
+	    monitor.start();
+	    monitorRequester.waitForEvents(1);
+	    MonitorElement element = monitor.poll();
+	    assertNotNull(element);
+	    final int initialValue = getValue(element);
+	    monitor.release(element);
+	    
+	    // two updates are queued, one is being held while restarting
+	    channelProcessRequester.syncProcess(false);
+	    channelProcessRequester.syncProcess(false);
+	    monitorRequester.waitForEvents(3);
+	    final MonitorElement heldElement = monitor.poll();
+	    assertNotNull(heldElement);
+	    assertEquals(initialValue + 1, getValue(heldElement));
+	    
+	    monitor.stop();
+	    // let stop request be sent
+	    Thread.sleep(100);
+	    monitor.start();
+	    
+	    // start gives the current value
+	    monitorRequester.waitForEvents(4);
+
+	    // element taken before restart is released late, it must be ignored
+	    monitor.release(heldElement);
+	    
+	    // not consumed update of the previous start is discarded
+	    element = monitor.poll();
+	    assertNotNull(element);
+	    assertEquals(initialValue + 2, getValue(element));
+	    assertEquals(0, element.getOverrunBitSet().cardinality());
+	    monitor.release(element);
+	    assertNull(monitor.poll());
+	    
+	    // ring works after restart
+	    for (int i = 1; i <= 5; i++)
+	    {
+	    	channelProcessRequester.syncProcess(false);
+		    monitorRequester.waitForEvents(4 + i);
+		    element = monitor.poll();
+		    assertNotNull(element);
+		    assertEquals(initialValue + 2 + i, getValue(element));
+		    monitor.release(element);
+	    }
+	    assertNull(monitor.poll());
+
+	    monitor.stop();
+	    ch.destroy();
+	}
+	
+	// request path reads channel connection state w/o locking
+	public void testCheckAndGetTransportWhileReconnecting() throws Throwable
+	{
+		final ChannelImpl ch = (ChannelImpl)syncCreateChannel("valueOnly");
+		
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicInteger nullTransports = new AtomicInteger();
+		final AtomicInteger connectedChecks = new AtomicInteger();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		
+		final Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++)
+		{
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						while (running.get())
+						{
+							try {
+								if (ch.checkAndGetTransport() == null)
+									nullTransports.incrementAndGet();
+								else
+									connectedChecks.incrementAndGet();
+							} catch (IllegalStateException ise) {
+								// not connected
+							}
+							
+							// null means not connected, destroyed is not expected
+							ch.checkDestroyedAndGetTransport();
+						}
+					} catch (Throwable th) {
+						failure.compareAndSet(null, th);
+					}
+				}
+			}, "checkAndGetTransport");
+			threads[i].start();
+		}
+
+		try {
+			for (int i = 0; i < 10; i++)
+			{
+				ch.disconnect(true, false);
+				
+				// reconnects via search
+				final long deadline = System.currentTimeMillis() + getTimeoutMs();
+				while (ch.getConnectionState() != ConnectionState.CONNECTED && System.currentTimeMillis() < deadline)
+					Thread.sleep(10);
+				assertEquals(ConnectionState.CONNECTED, ch.getConnectionState());
+			}
+		} finally {
+			running.set(false);
+			for (Thread thread : threads)
+				thread.join();
+		}
+		
+		assertNull(failure.get());
+		assertEquals(0, nullTransports.get());
+		assertTrue(connectedChecks.get() > 0);
+		
+		ch.destroy();
+		try {
+			ch.checkAndGetTransport();
+			fail("destroyed channel returned transport");
+		} catch (IllegalStateException ise) {
+			// OK
+		}
+	}
+	
+	public void testChannelCallbackExecutor() throws Throwable
+	{
+        Channel ch = syncCreateChannel("testArray10");
+        
+        final AtomicInteger callbacks = new AtomicInteger();
+        final ExecutorService executorService = Executors.newCachedThreadPool();
+        try {
+	        ((ChannelImpl)ch).setCallbackExecutor(new Executor() {
+				@Override
+				public void execute(Runnable command) {
+					callbacks.incrementAndGet();
+					executorService.execute(command);
+				}
+			});
+	        
+	    	CreateRequest createRequest = CreateRequest.create();
+	    	PVStructure pvRequest = createRequest.createRequest("field(value)");
+	    	if(pvRequest==null) {
+	    		String message ="createRequest failed " + createRequest.getMessage();
+	    		throw new IllegalArgumentException(message);
+	    	}
+	    	ChannelGetRequesterImpl channelGetRequester = new ChannelGetRequesterImpl();
+		    ch.createChannelGet(channelGetRequester, pvRequest);
+		    channelGetRequester.waitAndCheckConnect();
+	
+		    channelGetRequester.syncGet(false);
+		    
+		    // channelGetConnect and getDone
+		    assertTrue(callbacks.get() >= 2);
+		    assertEquals(0, ((ChannelImpl)ch).getCallbackQueueDepth());
+        } finally {
+        	ch.destroy();
+        	executorService.shutdown();
+        }
+	}
+	
+	public void testChannelMonitorPublisher() throws Throwable
+	{
+        Channel ch = syncCreateChannel("counter");
+    	CreateRequest createRequest = CreateRequest.create();
+    	PVStructure pvRequest = createRequest.createRequest("record[queueSize=4,pipeline=true]field(value)");
+    	if(pvRequest==null) {
+    		String message ="createRequest failed " + createRequest.getMessage();
+    		throw new IllegalArgumentException(message);
+    	}
+
+    	final List<Integer> values = new ArrayList<Integer>();
+    	final AtomicReference<MonitorSubscription> subscription = new AtomicReference<MonitorSubscription>();
+    	MonitorSubscriber subscriber = new MonitorSubscriber() {
+			@Override
+			public void onSubscribe(MonitorSubscription s) {
+				subscription.set(s);
+			}
+			@Override
+			public void onNext(MonitorElement element) {
+				synchronized (values) {
+					values.add(element.getPVStructure().getIntField("value").get());
+					values.notifyAll();
+				}
+			}
+			@Override
+			public void onError(Throwable throwable) {
+				fail(throwable.toString());
+			}
+			@Override
+			public void onComplete() {
+				// noop
+			}
+		};
+
+		try {
+			new ChannelMonitorPublisher(ch, pvRequest).subscribe(subscriber);
+			assertNotNull(subscription.get());
+
+			synchronized (values) {
+				// no demand, no updates
+				values.wait(1500);
+				assertEquals(0, values.size());
+
+				subscription.get().request(2);
+				while (values.size() < 2)
+					values.wait(getTimeoutMs());
+				assertEquals(values.get(0).intValue() + 1, values.get(1).intValue());
+
+				// demand satisfied, updates are held back
+				values.wait(1500);
+				assertEquals(2, values.size());
+
+				subscription.get().request(1);
+				while (values.size() < 3)
+					values.wait(getTimeoutMs());
+				assertEquals(3, values.size());
+			}
+		} finally {
+			if (subscription.get() != null)
+				subscription.get().cancel();
+			ch.destroy();
+		}
+	}
+	
+	// server-side filter, "testArray10" holds 0.0, 1.0, ..., 9.0
+	public void testChannelGetArrayFilter() throws Throwable
+	{
+        Channel ch = syncCreateChannel("testArray10");
+    	CreateRequest createRequest = CreateRequest.create();
+    	PVStructure pvRequest = createRequest.createRequest("field(value[array=1:3:-2])");
+    	if(pvRequest==null) {
+    		String message ="createRequest failed " + createRequest.getMessage();
+    		throw new IllegalArgumentException(message);
+    	}
+    	ChannelGetRequesterImpl channelGetRequester = new ChannelGetRequesterImpl();
+	    ch.createChannelGet(channelGetRequester, pvRequest);
+	    channelGetRequester.waitAndCheckConnect();
+
+	    channelGetRequester.syncGet(false);
+	    PVDoubleArray array = (PVDoubleArray)channelGetRequester.pvStructure.getSubField("value");
+	    DoubleArrayData data = new DoubleArrayData();
+	    int count = array.get(0, 100, data);
+	    assertEquals(3, count);
+	    assertEquals(1.0, data.data[0]);
+	    assertEquals(4.0, data.data[1]);
+	    assertEquals(7.0, data.data[2]);
+
+	    ch.destroy();
+	}
+	
+	// server-side filter, "counter" increases with 1Hz
+	public void testChannelMonitorDeadband() throws Throwable
+	{
+        Channel ch = syncCreateChannel("counter");
+    	CreateRequest createRequest = CreateRequest.create();
+    	PVStructure pvRequest = createRequest.createRequest("field(value[deadband=abs:1.5],timeStamp)");
+    	if(pvRequest==null) {
+    		String message ="createRequest failed " + createRequest.getMessage();
+    		throw new IllegalArgumentException(message);
+    	}
+    	ChannelMonitorRequesterImpl channelMonitorRequester = new ChannelMonitorRequesterImpl();
+	    ch.createMonitor(channelMonitorRequester, pvRequest);
+	    channelMonitorRequester.waitAndCheckConnect();
+
+	    synchronized (channelMonitorRequester) {
+		    channelMonitorRequester.channelMonitor.start();
+		    
+		    if (channelMonitorRequester.monitorCounter.get() == 0)
+		    	channelMonitorRequester.wait(getTimeoutMs());
+		    assertEquals(1, channelMonitorRequester.monitorCounter.get());
+		    int previousValue = channelMonitorRequester.pvStructure.getIntField("value").get();
+
+		    // changes of 1 are within the deadband (timeStamp-only changes are not reported)
+		    for (int i = 2; i < 4; i++) {
+			    channelMonitorRequester.wait(getTimeoutMs());
+			    assertEquals(i, channelMonitorRequester.monitorCounter.get());
+			    int value = channelMonitorRequester.pvStructure.getIntField("value").get();
+			    assertEquals(previousValue + 2, value);
+			    previousValue = value;
+		    }
+
+		    channelMonitorRequester.channelMonitor.stop();
+	    }
+	    ch.destroy();
+	}
+	
+	// server-side shared monitor, "counter" increases with 1Hz
+	public void testSharedMonitor() throws Throwable
+	{
+		serverContext.setMonitorSharing(true);
+		try {
+	        Channel ch1 = syncCreateChannel("counter");
+	        Channel ch2 = syncCreateChannel("counter");
+	    	CreateRequest createRequest = CreateRequest.create();
+	    	PVStructure pvRequest = createRequest.createRequest("field(value)");
+	    	if(pvRequest==null) {
+	    		String message ="createRequest failed " + createRequest.getMessage();
+	    		throw new IllegalArgumentException(message);
+	    	}
+	
+	    	ChannelMonitorRequesterImpl channelMonitorRequester1 = new ChannelMonitorRequesterImpl();
+		    ch1.createMonitor(channelMonitorRequester1, pvRequest);
+		    channelMonitorRequester1.waitAndCheckConnect();
+	
+	    	ChannelMonitorRequesterImpl channelMonitorRequester2 = new ChannelMonitorRequesterImpl();
+		    ch2.createMonitor(channelMonitorRequester2, pvRequest);
+		    channelMonitorRequester2.waitAndCheckConnect();
+		    
+		    assertEquals(1, serverContext.getSharedMonitorRegistry().size());
+	
+		    synchronized (channelMonitorRequester1) {
+			    channelMonitorRequester1.channelMonitor.start();
+			    if (channelMonitorRequester1.monitorCounter.get() == 0)
+			    	channelMonitorRequester1.wait(getTimeoutMs());
+			    assertEquals(1, channelMonitorRequester1.monitorCounter.get());
+		    }
+	
+		    // late subscriber gets the latest value first
+		    synchronized (channelMonitorRequester2) {
+			    channelMonitorRequester2.channelMonitor.start();
+			    if (channelMonitorRequester2.monitorCounter.get() == 0)
+			    	channelMonitorRequester2.wait(getTimeoutMs());
+			    assertEquals(1, channelMonitorRequester2.monitorCounter.get());
+			    int previousValue = channelMonitorRequester2.pvStructure.getIntField("value").get();
+			    
+			    // destroy the one whose channel was used to create provider's monitor 
+			    ch1.destroy();
+			    
+			    // updates must continue
+			    channelMonitorRequester2.wait(getTimeoutMs());
+			    int value = channelMonitorRequester2.pvStructure.getIntField("value").get();
+			    assertTrue(channelMonitorRequester2.monitorCounter.get() > 1);
+			    assertTrue(value >= previousValue);
+		    }
+		    
+		    ch2.destroy();
+		    
+		    Thread.sleep(100);
+		    assertEquals(0, serverContext.getSharedMonitorRegistry().size());
+		} finally {
+			serverContext.setMonitorSharing(false);
+		}
+	}
+	
+	public void testClientSharedMonitor() throws Throwable
+	{
+		context.setMonitorSharing(true);
+		try {
+	        Channel ch1 = syncCreateChannel("counter");
+	        Channel ch2 = syncCreateChannel("counter");
+	    	CreateRequest createRequest = CreateRequest.create();
+	    	PVStructure pvRequest1 = createRequest.createRequest("record[queueSize=1]field(value)");
+	    	PVStructure pvRequest2 = createRequest.createRequest("record[queueSize=4]field(value)");
+	    	if(pvRequest1==null || pvRequest2==null) {
+	    		String message ="createRequest failed " + createRequest.getMessage();
+	    		throw new IllegalArgumentException(message);
+	    	}
+	
+	    	ChannelMonitorRequesterImpl channelMonitorRequester1 = new ChannelMonitorRequesterImpl();
+		    ch1.createMonitor(channelMonitorRequester1, pvRequest1);
+		    channelMonitorRequester1.waitAndCheckConnect();
+	
+	    	ChannelMonitorRequesterImpl channelMonitorRequester2 = new ChannelMonitorRequesterImpl();
+		    ch2.createMonitor(channelMonitorRequester2, pvRequest2);
+		    channelMonitorRequester2.waitAndCheckConnect();
+		    
+		    // queueSize is local to each monitor
+		    assertEquals(1, context.getSharedMonitorRegistry().size());
+	
+		    synchronized (channelMonitorRequester1) {
+			    channelMonitorRequester1.channelMonitor.start();
+			    if (channelMonitorRequester1.monitorCounter.get() == 0)
+			    	channelMonitorRequester1.wait(getTimeoutMs());
+			    assertEquals(1, channelMonitorRequester1.monitorCounter.get());
+		    }
+	
+		    // late subscriber gets the latest value first
+		    synchronized (channelMonitorRequester2) {
+			    channelMonitorRequester2.channelMonitor.start();
+			    if (channelMonitorRequester2.monitorCounter.get() == 0)
+			    	channelMonitorRequester2.wait(getTimeoutMs());
+			    assertEquals(1, channelMonitorRequester2.monitorCounter.get());
+			    int previousValue = channelMonitorRequester2.pvStructure.getIntField("value").get();
+			    
+			    // destroy the one whose channel was used to create the wire monitor
+			    ch1.destroy();
+			    
+			    // updates must continue
+			    channelMonitorRequester2.wait(getTimeoutMs());
+			    int value = channelMonitorRequester2.pvStructure.getIntField("value").get();
+			    assertTrue(channelMonitorRequester2.monitorCounter.get() > 1);
+			    assertTrue(value >= previousValue);
+		    }
+		    
+		    ch2.destroy();
+		    
+		    assertEquals(0, context.getSharedMonitorRegistry().size());
+		} finally {
+			context.setMonitorSharing(false);
+		}
+	}
+	
+	public void testBatchedCreateChannel() throws Throwable
+	{
+		final int CHANNELS = 300;
+		context.setCreateChannelBatchSize(64);
+		final Channel[] channels = new Channel[CHANNELS];
+		try {
+			final AtomicInteger connected = new AtomicInteger();
+			ChannelRequester channelRequester = new ChannelRequester() {
+				@Override
+				public void channelCreated(Status status, Channel channel) {
+					// noop
+				}
+				@Override
+				public void channelStateChange(Channel channel, ConnectionState connectionState) {
+					if (connectionState == ConnectionState.CONNECTED)
+						synchronized (connected) {
+							connected.incrementAndGet();
+							connected.notifyAll();
+						}
+				}
+				@Override
+				public String getRequesterName() {
+					return getClass().getName();
+				}
+				@Override
+				public void message(String message, MessageType messageType) {
+					// noop
+				}
+			};
+
+			for (int i = 0; i < CHANNELS; i++)
+				channels[i] = getChannelProvider().createChannel("testBatch" + i, channelRequester, ChannelProvider.PRIORITY_DEFAULT);
+
+			synchronized (connected) {
+				final long deadline = System.currentTimeMillis() + 3*getTimeoutMs();
+				while (connected.get() < CHANNELS && System.currentTimeMillis() < deadline)
+					connected.wait(getTimeoutMs());
+			}
+			assertEquals(CHANNELS, connected.get());
+			assertEquals(0, context.getCreateChannelBatcher().getPendingBatchCount());
+		} finally {
+			context.setCreateChannelBatchSize(1);
+			for (Channel channel : channels)
+				if (channel != null)
+					channel.destroy();
+		}
+	}
+	
+	public void testNameServerSearch() throws Throwable
+	{
+		final NameServer nameServer = new NameServer();
+		nameServer.start();
+		ClientContextImpl nameServerClientContext = null;
+		Channel channel = null;
+		try {
+			final InetAddress localhost = InetAddress.getByName("127.0.0.1");
+			nameServer.addServer(new InetSocketAddress(localhost, serverContext.getServerPort()), new GUID(serverContext.getGUID()));
+
+			// wait for the channel list to be fetched
+			long deadline = System.currentTimeMillis() + getTimeoutMs();
+			while (nameServer.getChannelProvider().getChannelCount() == 0 && System.currentTimeMillis() < deadline)
+				Thread.sleep(50);
+			assertEquals(1, nameServer.getChannelProvider().getServerCount());
+			assertTrue(nameServer.getChannelProvider().getChannelCount() > 0);
+
+			// search only via name server (over TCP)
+			System.setProperty("EPICS_PVA_NAME_SERVERS", "127.0.0.1:" + nameServer.getServerContext().getServerPort());
+			try {
+				nameServerClientContext = new ClientContextImpl();
+			} finally {
+				System.clearProperty("EPICS_PVA_NAME_SERVERS");
+			}
+			nameServerClientContext.initialize();
+			
+			deadline = System.currentTimeMillis() + getTimeoutMs();
+			while (nameServerClientContext.getNameServerConnector().getConnectedCount() == 0 && System.currentTimeMillis() < deadline)
+				Thread.sleep(50);
+			assertEquals(1, nameServerClientContext.getNameServerConnector().getConnectedCount());
+			
+			final AtomicReference<ConnectionState> state = new AtomicReference<ConnectionState>();
+			ChannelRequester channelRequester = new ChannelRequester() {
+				@Override
+				public void channelCreated(Status status, Channel channel) {
+					// noop
+				}
+				@Override
+				public void channelStateChange(Channel channel, ConnectionState connectionState) {
+					synchronized (state) {
+						state.set(connectionState);
+						state.notifyAll();
+					}
+				}
+				@Override
+				public String getRequesterName() {
+					return getClass().getName();
+				}
+				@Override
+				public void message(String message, MessageType messageType) {
+					// noop
+				}
+			};
+			
+			channel = nameServerClientContext.getProvider().createChannel("counter", channelRequester, ChannelProvider.PRIORITY_DEFAULT);
+			synchronized (state) {
+				deadline = System.currentTimeMillis() + getTimeoutMs();
+				while (state.get() != ConnectionState.CONNECTED && System.currentTimeMillis() < deadline)
+					state.wait(getTimeoutMs());
+			}
+			assertEquals(ConnectionState.CONNECTED, state.get());
+			// connected to the hosting server, not to the name server
+			assertEquals(serverContext.getServerPort(), ((ChannelImpl)channel).getTransport().getRemoteAddress().getPort());
+		} finally {
+			if (channel != null)
+				channel.destroy();
+			if (nameServerClientContext != null)
+				nameServerClientContext.dispose();
+			nameServer.destroy();
+		}
+	}
+	
 	protected void internalFinalize() throws Throwable
 	{
 		destroyServerContext();
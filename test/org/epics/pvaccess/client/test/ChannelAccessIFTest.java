@@ -694,7 +694,7 @@ public abstract class ChannelAccessIFTest extends TestCase {
 
     private static PVDataCreate pvDataCreate = PVFactory.getPVDataCreate();
 
-    private class ChannelGetRequesterImpl implements ChannelGetRequester
+    protected class ChannelGetRequesterImpl implements ChannelGetRequester
 	{
 		ChannelGet channelGet;
 		BitSet bitSet;
@@ -1301,7 +1301,7 @@ public abstract class ChannelAccessIFTest extends TestCase {
 		}
 	};
 
-	private class ChannelProcessRequesterImpl implements ChannelProcessRequester {
+	protected class ChannelProcessRequesterImpl implements ChannelProcessRequester {
 		
 		ChannelProcess channelProcess;
 
@@ -1621,7 +1621,7 @@ public abstract class ChannelAccessIFTest extends TestCase {
 		
 	};
 
-	private class ChannelMonitorRequesterImpl implements MonitorRequester {
+	protected class ChannelMonitorRequesterImpl implements MonitorRequester {
 		
 		PVStructure pvStructure;
 		BitSet changeBitSet;
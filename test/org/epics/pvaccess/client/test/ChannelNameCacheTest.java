@@ -0,0 +1,139 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.client.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.InetSocketAddress;
+import java.util.logging.Logger;
+
+import junit.framework.TestCase;
+
+import org.epics.pvaccess.client.impl.remote.search.ChannelNameCache;
+import org.epics.pvaccess.impl.remote.utils.GUID;
+
+/**
+ * <code>ChannelNameCache</code> tests.
+ */
+public class ChannelNameCacheTest extends TestCase {
+
+	private static final Logger logger = Logger.getLogger(ChannelNameCacheTest.class.getName());
+	
+	private File file;
+	
+	public ChannelNameCacheTest(String methodName) {
+		super(methodName);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("pvaNameCache", ".cache");
+		file.delete();
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	private static GUID guid(int id)
+	{
+		byte[] guid = new byte[12];
+		guid[11] = (byte)id;
+		return new GUID(guid);
+	}
+	
+	public void testPersistence() throws Throwable
+	{
+		final InetSocketAddress server1 = new InetSocketAddress("127.0.0.1", 5075);
+		final InetSocketAddress server2 = new InetSocketAddress("10.1.2.3", 5076);
+		
+		ChannelNameCache cache = new ChannelNameCache(file, 1000, logger);
+		cache.start();
+		assertEquals(0, cache.size());
+		cache.put("ch1", server1, guid(1));
+		cache.put("ch2", server1, guid(1));
+		cache.put("ch3\u00e9", server2, guid(2));
+		cache.put("removed", server2, guid(2));
+		cache.remove("removed");
+		cache.destroy();
+		assertTrue(file.exists());
+		
+		cache = new ChannelNameCache(file, 1000, logger);
+		cache.start();
+		try {
+			assertEquals(3, cache.size());
+			
+			ChannelNameCache.Entry entry = cache.get("ch1");
+			assertNotNull(entry);
+			assertEquals(server1, entry.getAddress());
+			assertEquals(guid(1), entry.getGUID());
+	
+			entry = cache.get("ch3\u00e9");
+			assertNotNull(entry);
+			assertEquals(server2, entry.getAddress());
+			assertEquals(guid(2), entry.getGUID());
+			
+			assertNull(cache.get("removed"));
+			assertNull(cache.get("unknown"));
+		} finally {
+			cache.destroy();
+		}
+	}
+	
+	public void testInvalidation() throws Throwable
+	{
+		final InetSocketAddress server1 = new InetSocketAddress("127.0.0.1", 5075);
+		final InetSocketAddress server2 = new InetSocketAddress("127.0.0.1", 5076);
+		
+		ChannelNameCache cache = new ChannelNameCache(file, 1000, logger);
+		cache.start();
+		try {
+			cache.put("ch1", server1, guid(1));
+			cache.put("ch2", server2, guid(2));
+			
+			// server not reachable
+			cache.serverUnreachable(server1);
+			assertNull(cache.get("ch1"));
+			assertNotNull(cache.get("ch2"));
+			
+			// server back
+			cache.serverGUIDReported(server1, guid(1));
+			assertNotNull(cache.get("ch1"));
+			
+			// other server at the same address
+			cache.serverGUIDReported(server2, guid(3));
+			assertNull(cache.get("ch2"));
+			
+			// resolved again
+			cache.put("ch2", server2, guid(3));
+			assertNotNull(cache.get("ch2"));
+		} finally {
+			cache.destroy();
+		}
+	}
+	
+	public void testCorruptedFile() throws Throwable
+	{
+		FileOutputStream fos = new FileOutputStream(file);
+		fos.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 });
+		fos.close();
+		
+		ChannelNameCache cache = new ChannelNameCache(file, 1000, logger);
+		cache.start();
+		try {
+			assertEquals(0, cache.size());
+		} finally {
+			cache.destroy();
+		}
+	}
+}
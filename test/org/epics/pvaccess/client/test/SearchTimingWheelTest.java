@@ -0,0 +1,232 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.client.test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.epics.pvaccess.client.impl.remote.search.SearchInstance;
+import org.epics.pvaccess.client.impl.remote.search.SearchTimingWheel;
+import org.epics.pvaccess.impl.remote.utils.GUID;
+
+/**
+ * <code>SearchTimingWheel</code> tests.
+ */
+public class SearchTimingWheelTest extends TestCase {
+
+	public SearchTimingWheelTest(String methodName) {
+		super(methodName);
+	}
+
+	private static class SearchInstanceImpl implements SearchInstance {
+		
+		private final int cid;
+		private final AtomicInteger userValue = new AtomicInteger();
+		
+		public SearchInstanceImpl(int cid) {
+			this.cid = cid;
+		}
+
+		@Override
+		public int getChannelID() {
+			return cid;
+		}
+
+		@Override
+		public String getChannelName() {
+			return "channel" + cid;
+		}
+
+		@Override
+		public AtomicInteger getUserValue() {
+			return userValue;
+		}
+
+		@Override
+		public void searchResponse(GUID guid, byte minorRevision, InetSocketAddress serverAddress) {
+			// noop
+		}
+	}
+	
+	/**
+	 * Advance the wheel until a channel is pending.
+	 * @return number of ticks advanced.
+	 */
+	private static int ticksUntilPending(SearchTimingWheel wheel)
+	{
+		final int MAX_TICKS = 4 * SearchTimingWheel.MAX_DELAY_TICKS;
+		for (int ticks = 1; ticks <= MAX_TICKS; ticks++)
+		{
+			wheel.advance();
+			if (wheel.peekPending() != null)
+				return ticks;
+		}
+		fail("no channel pending after " + MAX_TICKS + " ticks");
+		return -1;
+	}
+	
+	/**
+	 * Search period sequence of a channel searched each time when due.
+	 */
+	private static void checkBackoff(SearchTimingWheel wheel, SearchInstance channel, int initialDelay)
+	{
+		int delay = initialDelay;
+		for (int i = 0; i < 10; i++)
+		{
+			assertEquals(delay, ticksUntilPending(wheel));
+			assertSame(channel, wheel.peekPending());
+			wheel.searched();
+			assertNull(wheel.peekPending());
+			delay = Math.min(delay << 1, SearchTimingWheel.MAX_DELAY_TICKS);
+		}
+	}
+	
+	public void testImmediateSearchAndBackoff()
+	{
+		SearchTimingWheel wheel = new SearchTimingWheel();
+		SearchInstance channel = new SearchInstanceImpl(1);
+		
+		wheel.register(channel, false);
+		assertEquals(1, wheel.registeredCount());
+		assertSame(channel, wheel.peekPending());
+		wheel.searched();
+		assertNull(wheel.peekPending());
+		
+		// 1, 2, 4, ..., MAX_DELAY_TICKS, MAX_DELAY_TICKS
+		checkBackoff(wheel, channel, 1);
+	}
+
+	public void testPenalize()
+	{
+		SearchTimingWheel wheel = new SearchTimingWheel();
+		SearchInstance channel = new SearchInstanceImpl(1);
+		
+		wheel.register(channel, true);
+		assertNull(wheel.peekPending());
+		
+		checkBackoff(wheel, channel, SearchTimingWheel.MAX_DELAY_TICKS);
+	}
+
+	public void testSlotPlacement()
+	{
+		SearchTimingWheel wheel = new SearchTimingWheel();
+		
+		// start in the middle of a later wheel round
+		for (int i = 0; i < 300; i++)
+			wheel.advance();
+		final long startTick = wheel.getTick();
+		
+		// one channel registered (penalized) per tick
+		final int COUNT = 10;
+		SearchInstance[] channels = new SearchInstance[COUNT];
+		for (int i = 0; i < COUNT; i++)
+		{
+			channels[i] = new SearchInstanceImpl(i);
+			wheel.register(channels[i], true);
+			wheel.advance();
+		}
+		assertEquals(COUNT, wheel.registeredCount());
+		assertNull(wheel.peekPending());
+		
+		// each channel is due on its own tick
+		for (int i = 0; i < COUNT; i++)
+		{
+			ticksUntilPending(wheel);
+			assertEquals(startTick + i + SearchTimingWheel.MAX_DELAY_TICKS, wheel.getTick());
+			assertSame(channels[i], wheel.peekPending());
+			assertEquals(1, wheel.pendingCount());
+			wheel.searched();
+		}
+		assertNull(wheel.peekPending());
+	}
+
+	public void testBoost()
+	{
+		SearchTimingWheel wheel = new SearchTimingWheel();
+		SearchInstance channel = new SearchInstanceImpl(1);
+		SearchInstance otherChannel = new SearchInstanceImpl(2);
+
+		// pending channel is not queued twice
+		wheel.register(channel, false);
+		wheel.boost();
+		assertEquals(1, wheel.pendingCount());
+		wheel.searched();
+		assertNull(wheel.peekPending());
+		
+		// back-off to max period
+		for (int i = 0; i < 8; i++)
+		{
+			ticksUntilPending(wheel);
+			wheel.searched();
+		}
+		wheel.advance();
+		assertNull(wheel.peekPending());
+
+		wheel.register(otherChannel, true);
+
+		// all the channels rescheduled immediately
+		wheel.boost();
+		assertEquals(2, wheel.pendingCount());
+		wheel.searched();
+		wheel.searched();
+		assertNull(wheel.peekPending());
+		
+		// search period is reset, stale (previously scheduled) entries are dropped
+		int delay = 1;
+		int elapsed = 0;
+		while (elapsed < 2 * SearchTimingWheel.MAX_DELAY_TICKS)
+		{
+			final int ticks = ticksUntilPending(wheel);
+			elapsed += ticks;
+			assertEquals(delay, ticks);
+			assertEquals(2, wheel.pendingCount());
+			wheel.searched();
+			wheel.searched();
+			assertNull(wheel.peekPending());
+			delay = Math.min(delay << 1, SearchTimingWheel.MAX_DELAY_TICKS);
+		}
+	}
+
+	public void testUnregister()
+	{
+		SearchTimingWheel wheel = new SearchTimingWheel();
+		SearchInstance channel = new SearchInstanceImpl(1);
+		
+		wheel.register(channel, false);
+		assertSame(channel, wheel.unregister(1));
+		assertNull(wheel.unregister(1));
+		assertEquals(0, wheel.registeredCount());
+		assertNull(wheel.peekPending());
+		assertEquals(0, wheel.pendingCount());
+		
+		// scheduled in the wheel
+		wheel.register(channel, true);
+		assertSame(channel, wheel.unregister(1));
+		for (int i = 0; i < 2 * SearchTimingWheel.MAX_DELAY_TICKS; i++)
+		{
+			wheel.advance();
+			assertNull(wheel.peekPending());
+		}
+	}
+	
+	public void testReregister()
+	{
+		SearchTimingWheel wheel = new SearchTimingWheel();
+		SearchInstance channel = new SearchInstanceImpl(1);
+		SearchInstance sameCIDChannel = new SearchInstanceImpl(1);
+
+		// previous registration is overridden
+		wheel.register(channel, false);
+		wheel.register(sameCIDChannel, true);
+		assertEquals(1, wheel.registeredCount());
+		assertNull(wheel.peekPending());
+		
+		checkBackoff(wheel, sameCIDChannel, SearchTimingWheel.MAX_DELAY_TICKS);
+	}
+	
+}
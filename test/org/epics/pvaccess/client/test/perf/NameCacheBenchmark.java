@@ -0,0 +1,126 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.client.test.perf;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.epics.pvaccess.client.Channel;
+import org.epics.pvaccess.client.Channel.ConnectionState;
+import org.epics.pvaccess.client.ChannelProvider;
+import org.epics.pvaccess.client.ChannelRequester;
+import org.epics.pvaccess.client.impl.remote.ClientContextImpl;
+import org.epics.pvaccess.server.impl.remote.ServerContextImpl;
+import org.epics.pvaccess.server.test.TestChannelProviderImpl;
+import org.epics.pvdata.pv.MessageType;
+import org.epics.pvdata.pv.Status;
+
+/**
+ * Channel name cache benchmark, measures time-to-all-connected of a client startup
+ * with and w/o persistent channel name resolution cache (<code>EPICS_PVA_NAME_CACHE</code>).
+ * Usage: <code>NameCacheBenchmark [channels]</code>, defaults to 100000 channels.
+ */
+public class NameCacheBenchmark implements ChannelRequester {
+
+	private final AtomicInteger connected = new AtomicInteger();
+	
+	private long connectAll(int channels, String nameCacheFile) throws Throwable
+	{
+		System.setProperty("EPICS_PVA_NAME_CACHE", nameCacheFile);
+		final ClientContextImpl context = new ClientContextImpl();
+		context.initialize();
+		try {
+			final ChannelProvider provider = context.getProvider();
+			connected.set(0);
+			final long startTime = System.nanoTime();
+			for (int i = 0; i < channels; i++)
+				provider.createChannel("test" + i, this, ChannelProvider.PRIORITY_DEFAULT);
+			synchronized (connected) {
+				while (connected.get() < channels)
+					connected.wait(1000);
+			}
+			return (System.nanoTime() - startTime) / 1000000;
+		} finally {
+			// also writes the cache
+			context.dispose();
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.client.ChannelRequester#channelCreated(org.epics.pvdata.pv.Status, org.epics.pvaccess.client.Channel)
+	 */
+	@Override
+	public void channelCreated(Status status, Channel channel) {
+		// noop
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.client.ChannelRequester#channelStateChange(org.epics.pvaccess.client.Channel, org.epics.pvaccess.client.Channel.ConnectionState)
+	 */
+	@Override
+	public void channelStateChange(Channel channel, ConnectionState connectionState) {
+		if (connectionState == ConnectionState.CONNECTED)
+		{
+			if (connected.incrementAndGet() % 1000 == 0)
+				synchronized (connected) {
+					connected.notifyAll();
+				}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.pv.Requester#getRequesterName()
+	 */
+	@Override
+	public String getRequesterName() {
+		return getClass().getName();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.pv.Requester#message(java.lang.String, org.epics.pvdata.pv.MessageType)
+	 */
+	@Override
+	public void message(String message, MessageType messageType) {
+		// noop
+	}
+
+	public static void main(String[] args) throws Throwable
+	{
+		final int channels = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+		
+		final ServerContextImpl serverContext = new ServerContextImpl();
+		serverContext.initialize(new TestChannelProviderImpl());
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					serverContext.run(0);
+				} catch (Throwable th) {
+					th.printStackTrace();
+				}
+			}
+		}, "pvAccess server").start();
+
+		final File cacheFile = File.createTempFile("pvaNameCache", ".cache");
+		cacheFile.delete();
+		try {
+			final NameCacheBenchmark benchmark = new NameCacheBenchmark();
+			
+			final long searchTime = benchmark.connectAll(channels, "");
+			System.out.println("channels: " + channels + ", w/o cache: " + searchTime + " ms");
+
+			// first run populates the cache
+			benchmark.connectAll(channels, cacheFile.getPath());
+			final long cachedTime = benchmark.connectAll(channels, cacheFile.getPath());
+			System.out.println("channels: " + channels + ", with cache: " + cachedTime + " ms");
+		} finally {
+			cacheFile.delete();
+			serverContext.dispose();
+		}
+		
+		System.exit(0);
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.client.test.perf;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.epics.pvaccess.client.Channel;
+import org.epics.pvaccess.client.Channel.ConnectionState;
+import org.epics.pvaccess.client.ChannelProvider;
+import org.epics.pvaccess.client.ChannelRequester;
+import org.epics.pvaccess.client.impl.remote.ClientContextImpl;
+import org.epics.pvaccess.server.impl.remote.ServerContextImpl;
+import org.epics.pvaccess.server.test.TestChannelProviderImpl;
+import org.epics.pvdata.pv.MessageType;
+import org.epics.pvdata.pv.Status;
+
+/**
+ * Reconnect storm benchmark, measures time-to-all-connected of a mass connect and
+ * of a reconnect after server restart, with and w/o batched create channel requests.
+ * Usage: <code>ReconnectStormBenchmark [channels [batchSize...]]</code>, defaults to 20000 channels and batch sizes 1 and 256.
+ */
+public class ReconnectStormBenchmark implements ChannelRequester {
+
+	private final AtomicInteger connected = new AtomicInteger();
+	
+	private static ServerContextImpl startServer() throws Throwable
+	{
+		final ServerContextImpl serverContext = new ServerContextImpl();
+		serverContext.initialize(new TestChannelProviderImpl());
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					serverContext.run(0);
+				} catch (Throwable th) {
+					th.printStackTrace();
+				}
+			}
+		}, "pvAccess server").start();
+		return serverContext;
+	}
+	
+	private long waitAllConnected(int channels, long startTime) throws InterruptedException
+	{
+		synchronized (connected) {
+			while (connected.get() < channels)
+				connected.wait(1000);
+		}
+		return (System.nanoTime() - startTime) / 1000000;
+	}
+	
+	private void run(int channels, int batchSize) throws Throwable
+	{
+		ServerContextImpl serverContext = startServer();
+		
+		final ClientContextImpl context = new ClientContextImpl();
+		context.initialize();
+		context.setCreateChannelBatchSize(batchSize);
+		final ChannelProvider provider = context.getProvider();
+		
+		try {
+			connected.set(0);
+			long startTime = System.nanoTime();
+			for (int i = 0; i < channels; i++)
+				provider.createChannel("test" + i, this, ChannelProvider.PRIORITY_DEFAULT);
+			final long connectTime = waitAllConnected(channels, startTime);
+	
+			// restart the server, all the channels reconnect at once
+			serverContext.dispose();
+			connected.set(0);
+			startTime = System.nanoTime();
+			serverContext = startServer();
+			final long reconnectTime = waitAllConnected(channels, startTime);
+			
+			System.out.println("channels: " + channels + ", batch size: " + batchSize +
+					", connect: " + connectTime + " ms, reconnect: " + reconnectTime + " ms");
+		} finally {
+			context.dispose();
+			serverContext.dispose();
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.client.ChannelRequester#channelCreated(org.epics.pvdata.pv.Status, org.epics.pvaccess.client.Channel)
+	 */
+	@Override
+	public void channelCreated(Status status, Channel channel) {
+		// noop
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvaccess.client.ChannelRequester#channelStateChange(org.epics.pvaccess.client.Channel, org.epics.pvaccess.client.Channel.ConnectionState)
+	 */
+	@Override
+	public void channelStateChange(Channel channel, ConnectionState connectionState) {
+		if (connectionState == ConnectionState.CONNECTED)
+		{
+			if (connected.incrementAndGet() % 1000 == 0)
+				synchronized (connected) {
+					connected.notifyAll();
+				}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.pv.Requester#getRequesterName()
+	 */
+	@Override
+	public String getRequesterName() {
+		return getClass().getName();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.epics.pvdata.pv.Requester#message(java.lang.String, org.epics.pvdata.pv.MessageType)
+	 */
+	@Override
+	public void message(String message, MessageType messageType) {
+		// noop
+	}
+
+	public static void main(String[] args) throws Throwable
+	{
+		final int channels = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+		int[] batchSizes = new int[] { 1, 256 };
+		if (args.length > 1)
+		{
+			batchSizes = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++)
+				batchSizes[i - 1] = Integer.parseInt(args[i]);
+		}
+		
+		for (int batchSize : batchSizes)
+			new ReconnectStormBenchmark().run(channels, batchSize);
+		
+		System.exit(0);
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.client.test.perf;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.epics.pvaccess.client.Channel;
+import org.epics.pvaccess.client.Channel.ConnectionState;
+import org.epics.pvaccess.client.ChannelGet;
+import org.epics.pvaccess.client.ChannelGetRequester;
+import org.epics.pvaccess.client.ChannelProvider;
+import org.epics.pvaccess.client.ChannelRequester;
+import org.epics.pvaccess.client.impl.remote.ClientContextImpl;
+import org.epics.pvaccess.server.impl.remote.ServerContextImpl;
+import org.epics.pvaccess.server.test.TestChannelProviderImpl;
+import org.epics.pvdata.copy.CreateRequest;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.MessageType;
+import org.epics.pvdata.pv.PVScalarArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * Aggregate bandwidth benchmark of striped TCP connections (on loopback):
+ * channels with large arrays are read back-to-back (one outstanding get per channel),
+ * with channels striped across the given number of connections to the server.
+ * Usage: <code>StripedThroughputBenchmark [channels [seconds [arrayLength [connections...]]]]</code>,
+ * defaults to 8 channels, 5 seconds, 131072 doubles (1MB) and 1 and 4 connections.
+ */
+public class StripedThroughputBenchmark {
+
+	private static final AtomicLong bytes = new AtomicLong();
+	private static volatile boolean running = true;
+	
+	private static class Reader implements ChannelRequester, ChannelGetRequester {
+
+		private final PVStructure pvRequest;
+		
+		Reader(PVStructure pvRequest) {
+			this.pvRequest = pvRequest;
+		}
+		
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.ChannelRequester#channelCreated(org.epics.pvdata.pv.Status, org.epics.pvaccess.client.Channel)
+		 */
+		@Override
+		public void channelCreated(Status status, Channel channel) {
+			// noop
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.ChannelRequester#channelStateChange(org.epics.pvaccess.client.Channel, org.epics.pvaccess.client.Channel.ConnectionState)
+		 */
+		@Override
+		public void channelStateChange(Channel channel, ConnectionState connectionState) {
+			if (connectionState == ConnectionState.CONNECTED)
+				channel.createChannelGet(this, pvRequest);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.ChannelGetRequester#channelGetConnect(org.epics.pvdata.pv.Status, org.epics.pvaccess.client.ChannelGet, org.epics.pvdata.pv.Structure)
+		 */
+		@Override
+		public void channelGetConnect(Status status, ChannelGet channelGet, Structure structure) {
+			if (status.isSuccess())
+				channelGet.get();
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvaccess.client.ChannelGetRequester#getDone(org.epics.pvdata.pv.Status, org.epics.pvaccess.client.ChannelGet, org.epics.pvdata.pv.PVStructure, org.epics.pvdata.misc.BitSet)
+		 */
+		@Override
+		public void getDone(Status status, ChannelGet channelGet, PVStructure pvStructure, BitSet bitSet) {
+			if (status.isSuccess())
+				bytes.addAndGet(((PVScalarArray)pvStructure.getSubField("value")).getLength() * 8L);
+			if (running)
+				channelGet.get();
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.pv.Requester#getRequesterName()
+		 */
+		@Override
+		public String getRequesterName() {
+			return getClass().getName();
+		}
+
+		/* (non-Javadoc)
+		 * @see org.epics.pvdata.pv.Requester#message(java.lang.String, org.epics.pvdata.pv.MessageType)
+		 */
+		@Override
+		public void message(String message, MessageType messageType) {
+			// noop
+		}
+	}
+	
+	private static ServerContextImpl startServer() throws Throwable
+	{
+		final ServerContextImpl serverContext = new ServerContextImpl();
+		serverContext.initialize(new TestChannelProviderImpl());
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					serverContext.run(0);
+				} catch (Throwable th) {
+					th.printStackTrace();
+				}
+			}
+		}, "pvAccess server").start();
+		return serverContext;
+	}
+	
+	private static void run(int channels, int seconds, int arrayLength, int connections) throws Throwable
+	{
+		final ServerContextImpl serverContext = startServer();
+		
+		System.setProperty("EPICS_PVA_CONNECTIONS_PER_SERVER", String.valueOf(connections));
+		final ClientContextImpl context = new ClientContextImpl();
+		context.initialize();
+		final ChannelProvider provider = context.getProvider();
+		
+		final PVStructure pvRequest = CreateRequest.create().createRequest("field(value)");
+		try {
+			running = true;
+			for (int i = 0; i < channels; i++)
+				provider.createChannel("testArray" + arrayLength + "_" + i, new Reader(pvRequest), ChannelProvider.PRIORITY_DEFAULT);
+			
+			// warm-up
+			Thread.sleep(1000);
+			
+			final long startBytes = bytes.get();
+			final long startTime = System.nanoTime();
+			Thread.sleep(seconds * 1000L);
+			final long transferred = bytes.get() - startBytes;
+			final double elapsed = (System.nanoTime() - startTime) / 1e9;
+			running = false;
+			
+			System.out.printf("channels: %d, connections: %d, array: %d doubles, throughput: %.1f MB/s%n",
+					channels, connections, arrayLength, transferred / elapsed / (1024 * 1024));
+		} finally {
+			context.dispose();
+			serverContext.dispose();
+		}
+	}
+	
+	public static void main(String[] args) throws Throwable
+	{
+		final int channels = (args.length > 0) ? Integer.parseInt(args[0]) : 8;
+		final int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+		final int arrayLength = (args.length > 2) ? Integer.parseInt(args[2]) : 131072;
+		int[] connections = new int[] { 1, 4 };
+		if (args.length > 3)
+		{
+			connections = new int[args.length - 3];
+			for (int i = 3; i < args.length; i++)
+				connections[i - 3] = Integer.parseInt(args[i]);
+		}
+		
+		for (int c : connections)
+			run(channels, seconds, arrayLength, c);
+		
+		System.exit(0);
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.impl.remote.codec.test.perf;
+
+import org.epics.pvaccess.PVFactory;
+import org.epics.pvaccess.impl.remote.SerializationHelper;
+import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvdata.factory.StandardFieldFactory;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.Convert;
+import org.epics.pvdata.pv.Field;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.StandardField;
+
+import com.sun.japex.JapexDriverBase;
+import com.sun.japex.TestCase;
+
+/**
+ * Measures cost of bringing next client monitor queue element up-to-date
+ * (full copy vs. copy of changed fields only) for a waveform structure
+ * where only timeStamp has changed.
+ * Registered as two drivers (<code>deltaCopy</code> driver parameter) in <code>with-japex</code> profile,
+ * waveform size is given by <code>elements</code> test case parameter.
+ */
+public class MonitorElementCopyPerformance extends JapexDriverBase {
+
+	static final FieldCreate fieldCreate = PVFactory.getFieldCreate();
+	static final Convert convert = ConvertFactory.getConvert();
+
+	PVStructure from;
+	PVStructure to;
+	BitSet changedBitSet;
+
+	boolean deltaCopy;
+	long counter;
+
+	/* (non-Javadoc)
+	 * @see com.sun.japex.JapexDriverBase#prepare(com.sun.japex.TestCase)
+	 */
+	@Override
+	public void prepare(TestCase testCase) {
+		// driver parameter, unless overridden by the test case
+		deltaCopy = testCase.hasParam("deltaCopy") ?
+				testCase.getBooleanParam("deltaCopy") : getBooleanParam("deltaCopy");
+		counter = 0;
+
+		final int elements = testCase.getIntParam("elements");
+
+		PVDataCreate pvDataCreate = PVFactory.getPVDataCreate();
+		StandardField standardField = StandardFieldFactory.getStandardField();
+
+        Field[] fields = new Field[3];
+        fields[0] = fieldCreate.createScalarArray(ScalarType.pvDouble);
+        fields[1] = standardField.timeStamp();
+        fields[2] = standardField.doubleAlarm();
+
+        from = pvDataCreate.createPVStructure(fieldCreate.createStructure(new String[] { "value", "timeStamp", "alarm" }, fields));
+        to = pvDataCreate.createPVStructure(from.getStructure());
+
+        PVDoubleArray ba = (PVDoubleArray)from.getSubField("value");
+        double[] toPut = new double[elements];
+        for (int i = 0; i < elements; i++)
+        	toPut[i] = i;
+        ba.put(0, toPut.length, toPut, 0);
+
+        convert.copy(from, to);
+
+        changedBitSet = new BitSet(from.getNumberFields());
+        changedBitSet.set(from.getStructureField("timeStamp").getFieldOffset());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.sun.japex.JapexDriverBase#run(com.sun.japex.TestCase)
+	 */
+	@Override
+	public void run(TestCase testCase) {
+		from.getStructureField("timeStamp").getLongField("secondsPastEpoch").put(counter++);
+		if (deltaCopy)
+			SerializationHelper.partialCopy(from, to, changedBitSet);
+		else
+			convert.copy(from, to);
+	}
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.impl.remote.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+
+import junit.framework.TestCase;
+
+import org.epics.pvaccess.impl.remote.ProtocolType;
+import org.epics.pvaccess.impl.remote.Transport;
+import org.epics.pvaccess.impl.remote.TransportRegistry;
+
+/**
+ * JUnit test for TransportRegistry, incl. more (striped) transports with the same address and priority.
+ */
+public class TransportRegistryTest extends TestCase {
+
+	private static final String TCP = ProtocolType.tcp.name();
+	
+	private static Transport createTransport(final InetSocketAddress address, final short priority)
+	{
+		return (Transport)Proxy.newProxyInstance(Transport.class.getClassLoader(),
+				new Class<?>[] { Transport.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						final String name = method.getName();
+						if (name.equals("getRemoteAddress"))
+							return address;
+						else if (name.equals("getPriority"))
+							return priority;
+						else if (name.equals("getType"))
+							return TCP;
+						else if (name.equals("equals"))
+							return proxy == args[0];
+						else if (name.equals("hashCode"))
+							return System.identityHashCode(proxy);
+						else if (name.equals("toString"))
+							return "Transport to " + address + " (" + priority + ")";
+						throw new UnsupportedOperationException(name);
+					}
+				});
+	}
+	
+	public void testSingle()
+	{
+		final TransportRegistry registry = new TransportRegistry();
+		final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 5075);
+		
+		assertNull(registry.get(TCP, address, (short)0));
+		assertNull(registry.get(TCP, address));
+		
+		final Transport t = createTransport(address, (short)0);
+		registry.put(t);
+		assertSame(t, registry.get(TCP, address, (short)0));
+		assertNull(registry.get(TCP, address, (short)1));
+		assertEquals(1, registry.get(TCP, address).length);
+		assertEquals(1, registry.numberOfActiveTransports());
+		
+		assertSame(t, registry.remove(t));
+		assertNull(registry.remove(t));
+		assertNull(registry.get(TCP, address, (short)0));
+		assertNull(registry.get(TCP, address));
+		assertEquals(0, registry.numberOfActiveTransports());
+	}
+	
+	public void testStriped()
+	{
+		final TransportRegistry registry = new TransportRegistry();
+		final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 5075);
+		
+		final Transport t1 = createTransport(address, (short)0);
+		final Transport t2 = createTransport(address, (short)0);
+		final Transport t3 = createTransport(address, (short)0);
+		final Transport other = createTransport(address, (short)10);
+		registry.put(t1);
+		registry.put(t2);
+		registry.put(t3);
+		registry.put(other);
+		
+		// the first one is returned, none is overwritten
+		assertSame(t1, registry.get(TCP, address, (short)0));
+		Transport[] ts = registry.getAll(TCP, address, (short)0);
+		assertEquals(3, ts.length);
+		assertSame(t1, ts[0]);
+		assertSame(t2, ts[1]);
+		assertSame(t3, ts[2]);
+		assertEquals(4, registry.get(TCP, address).length);
+		assertEquals(4, registry.numberOfActiveTransports());
+		
+		// remove exactly the given instance
+		assertSame(t2, registry.remove(t2));
+		ts = registry.getAll(TCP, address, (short)0);
+		assertEquals(2, ts.length);
+		assertSame(t1, ts[0]);
+		assertSame(t3, ts[1]);
+		
+		assertSame(t1, registry.remove(t1));
+		assertSame(t3, registry.get(TCP, address, (short)0));
+		assertSame(t3, registry.remove(t3));
+		assertNull(registry.get(TCP, address, (short)0));
+		assertNull(registry.getAll(TCP, address, (short)0));
+		
+		// other priority is not affected
+		assertSame(other, registry.get(TCP, address, (short)10));
+		assertEquals(1, registry.get(TCP, address).length);
+		assertEquals(1, registry.numberOfActiveTransports());
+	}
+}
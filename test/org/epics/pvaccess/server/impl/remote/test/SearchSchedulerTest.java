@@ -0,0 +1,197 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.impl.remote.test;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import junit.framework.TestCase;
+
+import org.epics.pvaccess.server.impl.remote.SearchScheduler;
+import org.epics.pvaccess.server.impl.remote.SearchScheduler.DeferredSearch;
+
+/**
+ * <code>SearchScheduler</code> tests.
+ */
+public class SearchSchedulerTest extends TestCase {
+
+	private static final Logger logger = Logger.getLogger(SearchSchedulerTest.class.getName());
+	
+	private static final long TIMEOUT_MS = 5000;
+	
+	private SearchScheduler scheduler;
+	
+	public SearchSchedulerTest(String methodName) {
+		super(methodName);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	@Override
+	protected void tearDown() throws Exception {
+		if (scheduler != null)
+			scheduler.destroy();
+	}
+
+	private static InetAddress address(int id) throws Exception
+	{
+		return InetAddress.getByAddress(new byte[] { 10, 0, 0, (byte)id });
+	}
+	
+	/**
+	 * Records processing order of the searches.
+	 */
+	private static class ProcessedLog {
+		private final List<String> processed = new ArrayList<String>();
+
+		public synchronized void add(String name) {
+			processed.add(name);
+			notifyAll();
+		}
+		
+		public synchronized List<String> waitFor(int count) throws InterruptedException {
+			final long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+			long remaining;
+			while (processed.size() < count && (remaining = deadline - System.currentTimeMillis()) > 0)
+				wait(remaining);
+			assertTrue("searches not processed in time", processed.size() >= count);
+			return new ArrayList<String>(processed);
+		}
+	}
+	
+	private static class DeferredSearchImpl implements DeferredSearch {
+		private final String name;
+		private final ProcessedLog log;
+		
+		public DeferredSearchImpl(String name, ProcessedLog log) {
+			this.name = name;
+			this.log = log;
+		}
+
+		@Override
+		public int getCost() {
+			return 1;
+		}
+
+		@Override
+		public void process() {
+			log.add(name);
+		}
+	}
+
+	public void testOverBudgetSourceDeferred() throws Exception
+	{
+		// one token per second, burst of 2
+		scheduler = new SearchScheduler(logger, 1.0, 2, 10, 100);
+		final InetAddress flooder = address(1);
+		final InetAddress other = address(2);
+		final ProcessedLog log = new ProcessedLog();
+		
+		// within budget
+		assertTrue(scheduler.tryAcquire(flooder, 1));
+		assertTrue(scheduler.tryAcquire(flooder, 1));
+
+		// over budget
+		assertFalse(scheduler.tryAcquire(flooder, 1));
+		for (int i = 0; i < 3; i++)
+			assertTrue(scheduler.defer(flooder, new DeferredSearchImpl("flooder" + i, log)));
+		assertEquals(3, scheduler.getDeferredCount());
+
+		// other source has its own budget
+		assertTrue(scheduler.tryAcquire(other, 1));
+
+		// deferred searches of other source are served before the flooder's bucket is refilled
+		assertTrue(scheduler.defer(other, new DeferredSearchImpl("other", log)));
+		List<String> processed = log.waitFor(1);
+		assertEquals("other", processed.get(0));
+		assertTrue(scheduler.getQueuedCount() >= 2);
+		
+		// flooder is served eventually
+		processed = log.waitFor(2);
+		assertEquals("flooder0", processed.get(1));
+	}
+	
+	public void testPerSourceOrder() throws Exception
+	{
+		// one token per 100ms
+		scheduler = new SearchScheduler(logger, 10.0, 1, 10, 100);
+		final InetAddress source = address(1);
+		final ProcessedLog log = new ProcessedLog();
+		
+		assertTrue(scheduler.tryAcquire(source, 1));
+
+		final int COUNT = 5;
+		for (int i = 0; i < COUNT; i++)
+			assertTrue(scheduler.defer(source, new DeferredSearchImpl(String.valueOf(i), log)));
+		
+		// source with deferred searches cannot jump the queue, even if its bucket is refilled
+		Thread.sleep(150);
+		assertFalse(scheduler.tryAcquire(source, 1));
+		
+		List<String> processed = log.waitFor(COUNT);
+		for (int i = 0; i < COUNT; i++)
+			assertEquals(String.valueOf(i), processed.get(i));
+		assertEquals(0, scheduler.getQueuedCount());
+		
+		// nothing deferred anymore
+		Thread.sleep(150);
+		assertTrue(scheduler.tryAcquire(source, 1));
+	}
+	
+	public void testQueueLimit() throws Exception
+	{
+		// one token per 500ms
+		final int MAX_QUEUED = 3;
+		scheduler = new SearchScheduler(logger, 2.0, 1, MAX_QUEUED, 100);
+		final InetAddress source = address(1);
+		final InetAddress other = address(2);
+		final ProcessedLog log = new ProcessedLog();
+		
+		assertTrue(scheduler.tryAcquire(source, 1));
+
+		for (int i = 0; i < MAX_QUEUED; i++)
+			assertTrue(scheduler.defer(source, new DeferredSearchImpl(String.valueOf(i), log)));
+		
+		// queue full, dropped
+		assertFalse(scheduler.defer(source, new DeferredSearchImpl("dropped", log)));
+		assertEquals(1, scheduler.getDroppedCount());
+		assertEquals(MAX_QUEUED, scheduler.getDeferredCount());
+		
+		// other source is not affected
+		assertTrue(scheduler.defer(other, new DeferredSearchImpl("other", log)));
+		
+		List<String> processed = log.waitFor(MAX_QUEUED + 1);
+		assertFalse(processed.contains("dropped"));
+		assertTrue(processed.contains("other"));
+		assertEquals(1, scheduler.getDroppedCount());
+	}
+	
+	public void testPurgeKeepsQueuedSources() throws Exception
+	{
+		// one token per 100s, idle sources are purged on each new source
+		scheduler = new SearchScheduler(logger, 0.01, 1, 10, 1);
+		final InetAddress busy = address(1);
+		final ProcessedLog log = new ProcessedLog();
+		
+		assertTrue(scheduler.tryAcquire(busy, 1));
+		assertTrue(scheduler.defer(busy, new DeferredSearchImpl("busy", log)));
+		
+		// idle sources, previous one is purged when the next one is added
+		for (int i = 2; i < 10; i++)
+		{
+			assertTrue(scheduler.tryAcquire(address(i), 0));
+			assertEquals(2, scheduler.getSourceCount());
+		}
+		
+		// busy source is kept, its search is still queued and keeps the order
+		assertEquals(1, scheduler.getQueuedCount());
+		assertFalse(scheduler.tryAcquire(busy, 0));
+	}
+	
+}
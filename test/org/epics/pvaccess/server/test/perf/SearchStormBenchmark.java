@@ -0,0 +1,168 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.server.test.perf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.epics.pvaccess.client.Channel;
+import org.epics.pvaccess.client.ChannelFind;
+import org.epics.pvaccess.client.ChannelFindRequester;
+import org.epics.pvaccess.client.ChannelListRequester;
+import org.epics.pvaccess.client.ChannelProvider;
+import org.epics.pvaccess.client.ChannelRequester;
+import org.epics.pvaccess.server.ChannelNameIndex;
+import org.epics.pvaccess.server.ChannelNameIndexProvider;
+import org.epics.pvaccess.server.impl.remote.BloomFilterChannelNameIndex;
+import org.epics.pvaccess.server.impl.remote.ChannelSearchFilter;
+import org.epics.pvdata.factory.StatusFactory;
+import org.epics.pvdata.pv.Status;
+
+/**
+ * Search storm benchmark, measures server-side cost of resolving searched names
+ * (mostly misses, i.e. names not hosted by the server) as done by the search handler:
+ * querying all the providers vs. provider name indexes (bloom filters) and/or negative cache.
+ * Providers keep their records in a synchronized sorted map, as many record databases do.
+ * Usage: <code>SearchStormBenchmark [providers [records [searches]]]</code>,
+ * defaults to 4 providers with 100000 records each and 2000000 searches.
+ */
+public class SearchStormBenchmark {
+
+	private static final Status okStatus = StatusFactory.getStatusCreate().getStatusOK();
+	
+	/**
+	 * Provider with a record database, optionally publishing a name index.
+	 */
+	private static class RecordProvider implements ChannelProvider, ChannelNameIndexProvider, ChannelFind {
+		
+		private final Map<String, Object> records = new TreeMap<String, Object>();
+		private final ChannelNameIndex index;
+		
+		public RecordProvider(String prefix, int recordCount, boolean publishIndex) {
+			for (int i = 0; i < recordCount; i++)
+				records.put(prefix + i + ":value", this);
+			index = publishIndex ? new BloomFilterChannelNameIndex(records.keySet(), 0.01) : null;
+		}
+
+		@Override
+		public ChannelNameIndex getChannelNameIndex() {
+			return index;
+		}
+
+		@Override
+		public ChannelFind channelFind(String channelName, ChannelFindRequester channelFindRequester) {
+			final boolean found;
+			synchronized (records) {
+				found = records.containsKey(channelName);
+			}
+			channelFindRequester.channelFindResult(okStatus, this, found);
+			return this;
+		}
+
+		@Override
+		public void destroy() {
+		}
+
+		@Override
+		public String getProviderName() {
+			return "records";
+		}
+
+		@Override
+		public ChannelFind channelList(ChannelListRequester channelListRequester) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Channel createChannel(String channelName, ChannelRequester channelRequester, short priority) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Channel createChannel(String channelName, ChannelRequester channelRequester, short priority, String address) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public ChannelProvider getChannelProvider() {
+			return this;
+		}
+
+		@Override
+		public void cancel() {
+		}
+	}
+	
+	/**
+	 * Counts responses, reports misses to the filter (as search handler does).
+	 */
+	private static class Requester implements ChannelFindRequester {
+		int found;
+		@Override
+		public void channelFindResult(Status status, ChannelFind channelFind, boolean wasFound) {
+			if (wasFound)
+				found++;
+		}
+	}
+	
+	private static long run(String description, List<ChannelProvider> providers, double negativeCacheTimeout, int searches, int distinctNames)
+	{
+		final ChannelSearchFilter filter = new ChannelSearchFilter(providers, negativeCacheTimeout);
+		final Requester requester = new Requester();
+		
+		// many clients searching for the same (not hosted) names, every 1000th name is hosted
+		final String[] names = new String[distinctNames];
+		for (int i = 0; i < distinctNames; i++)
+			names[i] = (i % 1000 == 0) ? ("p0:" + i + ":value") : ("missing" + i + ":value");
+
+		final long startTime = System.nanoTime();
+		for (int i = 0; i < searches; i++)
+		{
+			final String name = names[i % distinctNames];
+			final int generation = filter.getGeneration();
+			final List<ChannelProvider> candidates = filter.getCandidateProviders(name);
+			final int foundBefore = requester.found;
+			for (int j = 0; j < candidates.size(); j++)
+				candidates.get(j).channelFind(name, requester);
+			if (!candidates.isEmpty() && requester.found == foundBefore)
+				filter.notFound(name, generation);
+		}
+		final long time = System.nanoTime() - startTime;
+		
+		System.out.printf("%-40s %8.1f ns/search, %d found%n", description, time / (double)searches, requester.found);
+		return time;
+	}
+	
+	public static void main(String[] args)
+	{
+		final int providerCount = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		final int recordCount = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		final int searches = args.length > 2 ? Integer.parseInt(args[2]) : 2000000;
+		final int distinctNames = 10000;
+		
+		final List<ChannelProvider> plainProviders = new ArrayList<ChannelProvider>();
+		final List<ChannelProvider> indexedProviders = new ArrayList<ChannelProvider>();
+		for (int i = 0; i < providerCount; i++)
+		{
+			plainProviders.add(new RecordProvider("p" + i + ":", recordCount, false));
+			indexedProviders.add(new RecordProvider("p" + i + ":", recordCount, true));
+		}
+		
+		System.out.println(providerCount + " providers, " + recordCount + " records each, " + searches + " searches of " + distinctNames + " distinct names");
+		
+		// warm-up
+		run("warm-up", plainProviders, 0, searches / 10, distinctNames);
+		run("warm-up", indexedProviders, 2.0, searches / 10, distinctNames);
+		
+		run("all providers queried", plainProviders, 0, searches, distinctNames);
+		run("negative cache", plainProviders, 2.0, searches, distinctNames);
+		run("bloom filter indexes", indexedProviders, 0, searches, distinctNames);
+		run("bloom filter indexes + negative cache", indexedProviders, 2.0, searches, distinctNames);
+	}
+
+}
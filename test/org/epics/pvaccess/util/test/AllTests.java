@@ -32,6 +32,13 @@ public class AllTests {
         suite.addTestSuite(HexDumpTest.class);
         suite.addTestSuite(CircularBufferTest.class);
         suite.addTestSuite(GrowingCircularBufferTest.class);
+        suite.addTestSuite(SPSCCircularBufferTest.class);
+        suite.addTestSuite(SerialExecutorTest.class);
+        suite.addTestSuite(TokenBucketTest.class);
+        suite.addTestSuite(BloomFilterTest.class);
+        suite.addTestSuite(ObjectPoolTest.class);
+        suite.addTestSuite(StringInternTableTest.class);
+        suite.addTestSuite(IDTableTest.class);
         suite.addTestSuite(WildcardMatcherTest.class);
         //$JUnit-END$
         return suite;
@@ -0,0 +1,77 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util.test;
+
+import junit.framework.TestCase;
+
+import org.epics.pvaccess.util.BloomFilter;
+
+/**
+ * <code>BloomFilter</code> tests.
+ */
+public class BloomFilterTest extends TestCase {
+
+	public BloomFilterTest(String methodName) {
+		super(methodName);
+	}
+
+	public void testArguments()
+	{
+		try {
+			new BloomFilter(-1, 0.01);
+			fail("IllegalArgumentException expected on negative expected elements");
+		} catch (IllegalArgumentException iae) {
+			// expected
+		}
+
+		try {
+			new BloomFilter(100, 0);
+			fail("IllegalArgumentException expected on zero probability");
+		} catch (IllegalArgumentException iae) {
+			// expected
+		}
+
+		try {
+			new BloomFilter(100, 1);
+			fail("IllegalArgumentException expected on probability of 1");
+		} catch (IllegalArgumentException iae) {
+			// expected
+		}
+		
+		// empty filter is allowed
+		BloomFilter filter = new BloomFilter(0, 0.01);
+		assertFalse(filter.mightContain("any"));
+	}
+	
+	public void testNoFalseNegatives()
+	{
+		final int ELEMENTS = 100000;
+		BloomFilter filter = new BloomFilter(ELEMENTS, 0.01);
+		for (int i = 0; i < ELEMENTS; i++)
+			filter.add("record" + i + ":value");
+		
+		for (int i = 0; i < ELEMENTS; i++)
+			assertTrue(filter.mightContain("record" + i + ":value"));
+	}
+	
+	public void testFalsePositiveProbability()
+	{
+		final int ELEMENTS = 100000;
+		final double FPP = 0.01;
+		BloomFilter filter = new BloomFilter(ELEMENTS, FPP);
+		for (int i = 0; i < ELEMENTS; i++)
+			filter.add("record" + i + ":value");
+		
+		int falsePositives = 0;
+		for (int i = 0; i < ELEMENTS; i++)
+			if (filter.mightContain("other" + i + ":value"))
+				falsePositives++;
+		
+		// allow some slack
+		assertTrue("false positive rate too high: " + falsePositives, falsePositives < 3 * FPP * ELEMENTS);
+	}
+
+}
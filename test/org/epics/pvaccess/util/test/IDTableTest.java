@@ -0,0 +1,146 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util.test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.epics.pvaccess.util.IDTable;
+
+/**
+ * <code>IDTable</code> tests.
+ */
+public class IDTableTest extends TestCase {
+
+	public IDTableTest(String methodName) {
+		super(methodName);
+	}
+
+	public void testBasic()
+	{
+		final IDTable<String> table = new IDTable<String>();
+		assertEquals(0, table.size());
+		assertNull(table.get(0));
+		assertNull(table.get(1));
+		assertNull(table.remove(1));
+		
+		final int id1 = table.put("one");
+		final int id2 = table.put("two");
+		assertTrue(id1 != 0 && id2 != 0 && id1 != id2);
+		assertEquals("one", table.get(id1));
+		assertEquals("two", table.get(id2));
+		assertEquals(2, table.size());
+		assertEquals(2, table.values().size());
+		
+		// reserved ID w/o value
+		final int id3 = table.allocate();
+		assertNull(table.get(id3));
+		assertEquals(3, table.size());
+		assertEquals(2, table.values().size());
+		assertTrue(table.set(id3, "three"));
+		assertEquals("three", table.get(id3));
+		
+		assertEquals("one", table.remove(id1));
+		assertNull(table.get(id1));
+		assertNull(table.remove(id1));
+		assertFalse(table.set(id1, "one"));
+		assertEquals(2, table.size());
+		
+		assertEquals("two", table.remove(id2));
+		assertEquals("three", table.remove(id3));
+		assertEquals(0, table.size());
+		assertTrue(table.values().isEmpty());
+	}
+	
+	public void testGeneration()
+	{
+		final IDTable<String> table = new IDTable<String>();
+		final int id = table.put("old");
+		table.remove(id);
+		
+		// slot is reused, but with a new generation
+		final int newId = table.put("new");
+		assertTrue(id != newId);
+		assertEquals(id & ((1 << IDTable.INDEX_BITS) - 1), newId & ((1 << IDTable.INDEX_BITS) - 1));
+		assertNull(table.get(id));
+		assertNull(table.remove(id));
+		assertFalse(table.set(id, "stale"));
+		assertEquals("new", table.get(newId));
+	}
+	
+	public void testMany()
+	{
+		final int COUNT = 3 * 4096 + 17;
+		final IDTable<Integer> table = new IDTable<Integer>();
+		final int[] ids = new int[COUNT];
+		final Set<Integer> unique = new HashSet<Integer>();
+		for (int i = 0; i < COUNT; i++)
+		{
+			ids[i] = table.put(i);
+			assertTrue(ids[i] != 0);
+			assertTrue(unique.add(ids[i]));
+		}
+		assertEquals(COUNT, table.size());
+		assertEquals(COUNT, table.values().size());
+		
+		for (int i = 0; i < COUNT; i++)
+			assertEquals(Integer.valueOf(i), table.get(ids[i]));
+		
+		// remove every second, reuse
+		for (int i = 0; i < COUNT; i += 2)
+			assertEquals(Integer.valueOf(i), table.remove(ids[i]));
+		for (int i = 0; i < COUNT; i += 2)
+			ids[i] = table.put(-i);
+		for (int i = 0; i < COUNT; i++)
+			assertEquals(Integer.valueOf((i % 2 == 0) ? -i : i), table.get(ids[i]));
+		assertEquals(COUNT, table.size());
+	}
+	
+	public void testConcurrent() throws InterruptedException
+	{
+		final int THREADS = 4;
+		final int ITERATIONS = 100000;
+		final int HELD = 16;
+		final IDTable<Object> table = new IDTable<Object>();
+		
+		final AtomicInteger failures = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(THREADS);
+		for (int t = 0; t < THREADS; t++)
+		{
+			new Thread(new Runnable() {
+				public void run() {
+					final int[] ids = new int[HELD];
+					final Object[] values = new Object[HELD];
+					for (int i = 0; i < ITERATIONS; i++)
+					{
+						final int slot = i % HELD;
+						if (values[slot] != null)
+						{
+							// no other thread can get or remove our ID
+							if (table.get(ids[slot]) != values[slot] ||
+								table.remove(ids[slot]) != values[slot])
+								failures.incrementAndGet();
+						}
+						values[slot] = new Object();
+						ids[slot] = table.put(values[slot]);
+					}
+					for (int slot = 0; slot < HELD; slot++)
+						if (table.remove(ids[slot]) != values[slot])
+							failures.incrementAndGet();
+					done.countDown();
+				}
+			}).start();
+		}
+		done.await();
+		
+		assertEquals(0, failures.get());
+		assertEquals(0, table.size());
+	}
+}
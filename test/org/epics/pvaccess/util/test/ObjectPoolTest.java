@@ -0,0 +1,104 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util.test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.epics.pvaccess.util.ObjectPool;
+
+/**
+ * <code>ObjectPool</code> tests.
+ */
+public class ObjectPoolTest extends TestCase {
+
+	public ObjectPoolTest(String methodName) {
+		super(methodName);
+	}
+
+	public void testArguments()
+	{
+		try {
+			new ObjectPool<Object>(0);
+			fail("IllegalArgumentException expected on zero capacity");
+		} catch (IllegalArgumentException iae) {
+			// expected
+		}
+
+		try {
+			new ObjectPool<Object>(1).offer(null);
+			fail("IllegalArgumentException expected on null element");
+		} catch (IllegalArgumentException iae) {
+			// expected
+		}
+		
+		assertEquals(8, new ObjectPool<Object>(5).capacity());
+	}
+
+	public void testBounded()
+	{
+		ObjectPool<Object> pool = new ObjectPool<Object>(4);
+		assertNull(pool.poll());
+		assertEquals(0, pool.size());
+
+		Set<Object> pooled = new HashSet<Object>();
+		for (int i = 0; i < 4; i++)
+		{
+			Object o = new Object();
+			pooled.add(o);
+			assertTrue(pool.offer(o));
+		}
+		assertEquals(4, pool.size());
+		
+		// full
+		assertFalse(pool.offer(new Object()));
+
+		for (int i = 0; i < 4; i++)
+			assertTrue(pooled.remove(pool.poll()));
+		assertNull(pool.poll());
+		assertEquals(0, pool.size());
+	}
+
+	public void testConcurrent() throws InterruptedException
+	{
+		final int THREADS = 4;
+		final int ITERATIONS = 100000;
+		final ObjectPool<AtomicInteger> pool = new ObjectPool<AtomicInteger>(THREADS);
+		for (int i = 0; i < THREADS; i++)
+			pool.offer(new AtomicInteger());
+		
+		final AtomicInteger failures = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(THREADS);
+		for (int t = 0; t < THREADS; t++)
+		{
+			new Thread(new Runnable() {
+				public void run() {
+					for (int i = 0; i < ITERATIONS; i++)
+					{
+						AtomicInteger o = pool.poll();
+						if (o == null)
+							continue;
+						// no other thread can hold the same object
+						if (!o.compareAndSet(0, 1))
+							failures.incrementAndGet();
+						o.set(0);
+						if (!pool.offer(o))
+							failures.incrementAndGet();
+					}
+					done.countDown();
+				}
+			}).start();
+		}
+		done.await();
+		
+		assertEquals(0, failures.get());
+		assertEquals(THREADS, pool.size());
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util.test;
+
+import junit.framework.TestCase;
+
+import org.epics.pvaccess.util.SPSCCircularBuffer;
+
+/**
+ * Tests for SPSCCircularBuffer.
+ */
+public class SPSCCircularBufferTest extends TestCase {
+
+	public SPSCCircularBufferTest(String methodName) {
+		super(methodName);
+	}
+
+	/**
+	 * Single thread test.
+	 */
+	public void testBuffer()
+	{
+		final int CAPACITY = 10;
+		SPSCCircularBuffer<Integer> cb = new SPSCCircularBuffer<Integer>(CAPACITY);
+		
+		assertEquals(CAPACITY, cb.capacity());
+		
+		// null test
+		assertNull(cb.poll());
+		
+		// insert, get test
+		assertTrue(cb.offer(1));
+		assertEquals(1, cb.size());
+		assertEquals(Integer.valueOf(1), cb.poll());
+		assertNull(cb.poll());
+		assertEquals(0, cb.size());
+		
+		for (int i = 0; i < 2*CAPACITY; i++) {
+			assertEquals(i < CAPACITY, cb.offer(i));
+			assertEquals(Math.min(i+1, CAPACITY), cb.size());
+		}
+		assertEquals(CAPACITY, cb.size());
+
+		// unlike CircularBuffer, oldest elements are kept
+		for (int i = 0; i < CAPACITY; i++) {
+			assertEquals(Integer.valueOf(i), cb.poll());
+			assertEquals(CAPACITY-i-1, cb.size());
+		}
+		assertNull(cb.poll());
+		assertEquals(0, cb.size());
+	}
+
+	/**
+	 * Producer/consumer thread test, checks order and that nothing gets lost.
+	 */
+	public void testProducerConsumer() throws InterruptedException
+	{
+		final int COUNT = 1000000;
+		final SPSCCircularBuffer<Integer> cb = new SPSCCircularBuffer<Integer>(16);
+		
+		Thread producer = new Thread(new Runnable() {
+			public void run() {
+				for (int i = 0; i < COUNT; i++)
+					while (!cb.offer(i))
+						Thread.yield();
+			}
+		});
+		producer.start();
+		
+		for (int i = 0; i < COUNT; i++)
+		{
+			Integer value;
+			while ((value = cb.poll()) == null)
+				Thread.yield();
+			assertEquals(i, value.intValue());
+		}
+		
+		producer.join();
+		assertNull(cb.poll());
+	}
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.epics.pvaccess.util.sync.ExecutorProxy;
+import org.epics.pvaccess.util.sync.SerialExecutor;
+import org.epics.pvaccess.util.sync.StripedExecutor;
+
+/**
+ * <code>SerialExecutor</code>, <code>StripedExecutor</code> and <code>ExecutorProxy</code> tests.
+ */
+public class SerialExecutorTest extends TestCase {
+
+	public SerialExecutorTest(String methodName) {
+		super(methodName);
+	}
+
+	public void testInline()
+	{
+		final Thread caller = Thread.currentThread();
+		final AtomicInteger counter = new AtomicInteger();
+		SerialExecutor executor = new SerialExecutor(null);
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				assertSame(caller, Thread.currentThread());
+				counter.incrementAndGet();
+			}
+		});
+		assertEquals(1, counter.get());
+		assertEquals(0, executor.getQueueDepth());
+	}
+
+	public void testOrder() throws InterruptedException
+	{
+		final int TASKS = 10000;
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			final SerialExecutor executor = new SerialExecutor(pool);
+			final List<Integer> order = new ArrayList<Integer>(TASKS);
+			final AtomicInteger running = new AtomicInteger();
+			final CountDownLatch done = new CountDownLatch(TASKS);
+			for (int i = 0; i < TASKS; i++)
+			{
+				final int index = i;
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						// one at the time
+						assertEquals(1, running.incrementAndGet());
+						order.add(index);
+						running.decrementAndGet();
+						done.countDown();
+					}
+				});
+			}
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			
+			assertEquals(TASKS, order.size());
+			for (int i = 0; i < TASKS; i++)
+				assertEquals(i, order.get(i).intValue());
+			assertEquals(0, executor.getQueueDepth());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	public void testStripes() throws InterruptedException
+	{
+		StripedExecutor executor = new StripedExecutor("test", 3);
+		try {
+			assertEquals(3, executor.getStripeCount());
+			assertSame(executor.getStripe(1), executor.getStripe(4));
+			assertNotSame(executor.getStripe(1), executor.getStripe(2));
+			assertNotNull(executor.getStripe(-1));
+			
+			// block stripe 0, queue depth must grow
+			final CountDownLatch block = new CountDownLatch(1);
+			executor.getStripe(0).execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						block.await();
+					} catch (InterruptedException e) {
+						// noop
+					}
+				}
+			});
+			final CountDownLatch done = new CountDownLatch(2);
+			for (int i = 0; i < 2; i++)
+				executor.getStripe(0).execute(new Runnable() {
+					@Override
+					public void run() {
+						done.countDown();
+					}
+				});
+			assertEquals(2, executor.getQueueDepth(0));
+			assertEquals(0, executor.getQueueDepth(1));
+			
+			block.countDown();
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private interface Callback {
+		void call(int value);
+		String getName();
+	}
+
+	public void testProxy() throws InterruptedException
+	{
+		final Thread caller = Thread.currentThread();
+		final AtomicInteger sum = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(1);
+		final Callback callback = new Callback() {
+			@Override
+			public void call(int value) {
+				assertNotSame(caller, Thread.currentThread());
+				sum.addAndGet(value);
+				done.countDown();
+			}
+
+			@Override
+			public String getName() {
+				return "name";
+			}
+		};
+		
+		StripedExecutor executor = new StripedExecutor("test", 1);
+		try {
+			Callback proxy = ExecutorProxy.create(Callback.class, callback, executor.getStripe(0));
+			
+			// non-void methods are called directly
+			assertEquals("name", proxy.getName());
+			
+			proxy.call(3);
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			assertEquals(3, sum.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
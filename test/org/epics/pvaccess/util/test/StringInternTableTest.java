@@ -0,0 +1,66 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util.test;
+
+import java.nio.charset.Charset;
+
+import junit.framework.TestCase;
+
+import org.epics.pvaccess.util.StringInternTable;
+
+/**
+ * <code>StringInternTable</code> tests.
+ */
+public class StringInternTableTest extends TestCase {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	public StringInternTableTest(String methodName) {
+		super(methodName);
+	}
+
+	public void testIntern()
+	{
+		StringInternTable table = new StringInternTable(1000);
+		assertEquals(1024, table.capacity());
+		
+		byte[] bytes = "xxmy:pv:namexx".getBytes(UTF8);
+		String s1 = table.intern(bytes, 2, 10);
+		assertEquals("my:pv:name", s1);
+		
+		// same instance
+		assertSame(s1, table.intern("my:pv:name".getBytes(UTF8), 0, 10));
+		
+		assertEquals("", table.intern(bytes, 0, 0));
+		assertEquals("my:pv", table.intern(bytes, 2, 5));
+	}
+
+	public void testCollision()
+	{
+		// all the strings map into the only slot
+		StringInternTable table = new StringInternTable(1);
+		byte[] a = "a".getBytes(UTF8);
+		byte[] b = "b".getBytes(UTF8);
+		
+		String sa = table.intern(a, 0, 1);
+		assertSame(sa, table.intern(a, 0, 1));
+		
+		// replaces "a"
+		assertEquals("b", table.intern(b, 0, 1));
+		
+		String sa2 = table.intern(a, 0, 1);
+		assertEquals("a", sa2);
+		assertNotSame(sa, sa2);
+	}
+
+	public void testNonASCII()
+	{
+		StringInternTable table = new StringInternTable(16);
+		String name = "temp\u00B0C";
+		byte[] bytes = name.getBytes(UTF8);
+		assertEquals(name, table.intern(bytes, 0, bytes.length));
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util.test;
+
+import junit.framework.TestCase;
+
+import org.epics.pvaccess.util.TokenBucket;
+
+/**
+ * <code>TokenBucket</code> tests.
+ */
+public class TokenBucketTest extends TestCase {
+
+	public TokenBucketTest(String methodName) {
+		super(methodName);
+	}
+
+	public void testArguments()
+	{
+		try {
+			new TokenBucket(0, 1, 0);
+			fail("IllegalArgumentException expected on zero capacity");
+		} catch (IllegalArgumentException iae) {
+			// expected
+		}
+
+		try {
+			new TokenBucket(1, 0, 0);
+			fail("IllegalArgumentException expected on zero rate");
+		} catch (IllegalArgumentException iae) {
+			// expected
+		}
+	}
+
+	public void testBurstAndRefill()
+	{
+		// 10 tokens, 100 tokens/s (one per 10ms)
+		long now = 1000;
+		TokenBucket bucket = new TokenBucket(10, 100, now);
+		assertEquals(10, bucket.available(now));
+
+		for (int i = 0; i < 10; i++)
+			assertTrue(bucket.tryAcquire(now));
+		assertFalse(bucket.tryAcquire(now));
+		assertTrue(Math.abs(bucket.nanosUntilAvailable(now) - 10000000L) <= 1);
+
+		// half a token
+		now += 5000000L;
+		assertFalse(bucket.tryAcquire(now));
+		assertTrue(Math.abs(bucket.nanosUntilAvailable(now) - 5000000L) <= 1);
+
+		now += 5000001L;
+		assertEquals(0, bucket.nanosUntilAvailable(now));
+		assertTrue(bucket.tryAcquire(now));
+		assertFalse(bucket.tryAcquire(now));
+
+		// never more than capacity
+		now += 10000000000L;
+		assertEquals(10, bucket.available(now));
+	}
+
+	public void testTimeGoingBackwards()
+	{
+		TokenBucket bucket = new TokenBucket(1, 1, 1000);
+		assertTrue(bucket.tryAcquire(1000));
+		assertFalse(bucket.tryAcquire(0));
+		assertFalse(bucket.tryAcquire(1000));
+	}
+
+	public void testMultipleTokens()
+	{
+		// 10 tokens, 100 tokens/s (one per 10ms)
+		long now = 1000;
+		TokenBucket bucket = new TokenBucket(10, 100, now);
+		
+		assertTrue(bucket.tryAcquire(4, now));
+		assertTrue(bucket.tryAcquire(6, now));
+		
+		// all or none
+		assertFalse(bucket.tryAcquire(3, now));
+		now += 20000000L;
+		assertEquals(2, bucket.available(now));
+		assertFalse(bucket.tryAcquire(3, now));
+		assertEquals(2, bucket.available(now));
+		assertTrue(Math.abs(bucket.nanosUntilAvailable(3, now) - 10000000L) <= 1);
+		
+		now += 10000001L;
+		assertEquals(0, bucket.nanosUntilAvailable(3, now));
+		assertTrue(bucket.tryAcquire(3, now));
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS JavaIOC is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+package org.epics.pvaccess.util.test.perf;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.epics.pvaccess.util.IDTable;
+import org.epics.pvaccess.util.IntHashMap;
+
+/**
+ * ID table contention benchmark, compares a synchronized <code>IntHashMap</code> (previous CID/IOID registry)
+ * with a lock-free <code>IDTable</code>: each thread repeatedly registers a request,
+ * looks it up a few times (as responses are dispatched) and unregisters it.
+ * Usage: <code>IDTableContentionBenchmark [operations [threads...]]</code>,
+ * defaults to 1000000 operations per thread and 1, 2, 4 and 8 threads.
+ */
+public class IDTableContentionBenchmark {
+
+	private static final int LOOKUPS = 4;
+	
+	private interface Registry {
+		int register(Object value);
+		Object lookup(int id);
+		void unregister(int id);
+	}
+	
+	private static class SynchronizedMapRegistry implements Registry {
+		private final IntHashMap map = new IntHashMap();
+		private int lastID = 0;
+
+		@Override
+		public int register(Object value) {
+			synchronized (map) {
+				// same as ClientContextImpl used to do
+				while (map.get(++lastID) != null || lastID == 0);
+				map.put(lastID, value);
+				return lastID;
+			}
+		}
+
+		@Override
+		public Object lookup(int id) {
+			synchronized (map) {
+				return map.get(id);
+			}
+		}
+
+		@Override
+		public void unregister(int id) {
+			synchronized (map) {
+				map.remove(id);
+			}
+		}
+	}
+	
+	private static class IDTableRegistry implements Registry {
+		private final IDTable<Object> table = new IDTable<Object>();
+
+		@Override
+		public int register(Object value) {
+			return table.put(value);
+		}
+
+		@Override
+		public Object lookup(int id) {
+			return table.get(id);
+		}
+
+		@Override
+		public void unregister(int id) {
+			table.remove(id);
+		}
+	}
+	
+	private static long run(final Registry registry, final int threads, final int operations) throws InterruptedException
+	{
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		final CountDownLatch doneLatch = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++)
+		{
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					final Object value = new Object();
+					try {
+						startLatch.await();
+						for (int i = 0; i < operations; i++)
+						{
+							final int id = registry.register(value);
+							for (int l = 0; l < LOOKUPS; l++)
+								if (registry.lookup(id) != value)
+									throw new IllegalStateException("lookup failed for ID " + id);
+							registry.unregister(id);
+						}
+					} catch (Throwable th) {
+						th.printStackTrace();
+					} finally {
+						doneLatch.countDown();
+					}
+				}
+			}).start();
+		}
+		
+		final long startTime = System.nanoTime();
+		startLatch.countDown();
+		doneLatch.await();
+		return System.nanoTime() - startTime;
+	}
+	
+	private static void report(String name, int threads, int operations, long timeNs)
+	{
+		final long total = (long)threads * operations;
+		System.out.println(name + ", threads: " + threads +
+				", " + (total * 1000000000L / timeNs) + " ops/s" +
+				", " + (timeNs / total) + " ns/op");
+	}
+	
+	public static void main(String[] args) throws Throwable
+	{
+		final int operations = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+		int[] threadCounts = new int[] { 1, 2, 4, 8 };
+		if (args.length > 1)
+		{
+			threadCounts = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++)
+				threadCounts[i - 1] = Integer.parseInt(args[i]);
+		}
+		
+		// warm-up
+		run(new SynchronizedMapRegistry(), 2, operations / 10);
+		run(new IDTableRegistry(), 2, operations / 10);
+		
+		for (int threads : threadCounts)
+		{
+			report("synchronized IntHashMap", threads, operations, run(new SynchronizedMapRegistry(), threads, operations));
+			report("IDTable", threads, operations, run(new IDTableRegistry(), threads, operations));
+		}
+	}
+}